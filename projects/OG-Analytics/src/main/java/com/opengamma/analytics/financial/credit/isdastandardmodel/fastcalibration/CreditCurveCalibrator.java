@@ -10,6 +10,8 @@ import static com.opengamma.analytics.financial.credit.isdastandardmodel.Doubles
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import com.opengamma.analytics.financial.credit.isdastandardmodel.AccrualOnDefaultFormulae;
 import com.opengamma.analytics.financial.credit.isdastandardmodel.CDSAnalytic;
@@ -18,6 +20,7 @@ import com.opengamma.analytics.financial.credit.isdastandardmodel.ISDACompliantC
 import com.opengamma.analytics.financial.credit.isdastandardmodel.ISDACompliantCreditCurveBuilder.ArbitrageHandling;
 import com.opengamma.analytics.financial.credit.isdastandardmodel.ISDACompliantYieldCurve;
 import com.opengamma.analytics.financial.credit.isdastandardmodel.MultiCDSAnalytic;
+import com.opengamma.analytics.math.MathException;
 import com.opengamma.analytics.math.function.Function1D;
 import com.opengamma.analytics.math.rootfinding.NewtonRaphsonSingleRootFinder;
 import com.opengamma.util.ArgumentChecker;
@@ -28,6 +31,10 @@ import com.opengamma.util.ArgumentChecker;
 public class CreditCurveCalibrator {
 
   private static final NewtonRaphsonSingleRootFinder ROOTFINDER = new NewtonRaphsonSingleRootFinder();
+  /**
+   * The number of names calibrated one after the other, each warm-started from the previous one, in bulk calibration.
+   */
+  public static final int BULK_BLOCK_SIZE = 64;
 
   private final int _nCDS;
   private final int _nCoupons;
@@ -269,7 +276,7 @@ public class CreditCurveCalibrator {
     ArgumentChecker.isTrue(_nCDS == premiums.length, "premiums wrong length");
     final double[] puf = new double[_nCDS];
     final CalibrationImpl imp = new CalibrationImpl();
-    return imp.calibrate(premiums, puf);
+    return imp.calibrate(premiums, puf, null);
   }
 
   public ISDACompliantCreditCurve calibrate(final double[] premiums, final double[] puf) {
@@ -279,7 +286,100 @@ public class CreditCurveCalibrator {
     ArgumentChecker.isTrue(_nCDS == puf.length, "puf wrong length");
 
     final CalibrationImpl imp = new CalibrationImpl();
-    return imp.calibrate(premiums, puf);
+    return imp.calibrate(premiums, puf, null);
+  }
+
+  /**
+   * Calibrates the credit curves of several names which share the CDS term structure and yield curve of this calibrator.
+   * <p>
+   * The names are split into consecutive blocks of {@link #BULK_BLOCK_SIZE}. In each block, the root finding for a name starts
+   * from the zero hazard rates of the previous name, which is usually much closer to the solution than the guess from the
+   * continuous premiums when the names are similar (e.g. sorted by sector or rating).
+   * @param premiums The premiums (as fractions) by name then by CDS maturity, not null
+   * @param puf The points up-front (as fractions) by name then by CDS maturity, not null
+   * @return The credit curves, in the order of the names
+   */
+  public ISDACompliantCreditCurve[] calibrate(final double[][] premiums, final double[][] puf) {
+    return calibrate(premiums, puf, null);
+  }
+
+  /**
+   * Calibrates the credit curves of several names which share the CDS term structure and yield curve of this calibrator.
+   * <p>
+   * The names are split into consecutive blocks of {@link #BULK_BLOCK_SIZE}. In each block, the root finding for a name starts
+   * from the zero hazard rates of the previous name. The blocks are independent, so they can be calibrated in parallel
+   * in a fork-join pool; the results are the same as those calibrated on the calling thread.
+   * @param premiums The premiums (as fractions) by name then by CDS maturity, not null
+   * @param puf The points up-front (as fractions) by name then by CDS maturity, not null
+   * @param pool The pool used to calibrate the blocks of names in parallel, null to calibrate them on the calling thread
+   * @return The credit curves, in the order of the names
+   */
+  public ISDACompliantCreditCurve[] calibrate(final double[][] premiums, final double[][] puf, final ForkJoinPool pool) {
+    ArgumentChecker.notNull(premiums, "premiums");
+    ArgumentChecker.notNull(puf, "puf");
+    final int nNames = premiums.length;
+    ArgumentChecker.isTrue(nNames == puf.length, "Number of names in premiums ({}) does not match number in puf ({})", nNames, puf.length);
+    for (int i = 0; i < nNames; i++) {
+      ArgumentChecker.notNull(premiums[i], "premiums");
+      ArgumentChecker.notNull(puf[i], "puf");
+      ArgumentChecker.isTrue(_nCDS == premiums[i].length, "premiums wrong length for name {}", i);
+      ArgumentChecker.isTrue(_nCDS == puf[i].length, "puf wrong length for name {}", i);
+    }
+    final ISDACompliantCreditCurve[] res = new ISDACompliantCreditCurve[nNames];
+    final int nBlocks = (nNames + BULK_BLOCK_SIZE - 1) / BULK_BLOCK_SIZE;
+    if (pool == null || nBlocks <= 1) {
+      for (int i = 0; i < nBlocks; i++) {
+        calibrateBlock(premiums, puf, i, res);
+      }
+    } else {
+      pool.invoke(new BlockTask(premiums, puf, 0, nBlocks, res));
+    }
+    return res;
+  }
+
+  /**
+   * Calibrates one block of names, each name being warm-started from the previous one in the block.
+   */
+  private void calibrateBlock(final double[][] premiums, final double[][] puf, final int block, final ISDACompliantCreditCurve[] res) {
+    final int start = block * BULK_BLOCK_SIZE;
+    final int end = Math.min(start + BULK_BLOCK_SIZE, premiums.length);
+    double[] guess = null;
+    for (int i = start; i < end; i++) {
+      res[i] = new CalibrationImpl().calibrate(premiums[i], puf[i], guess);
+      guess = res[i].getKnotZeroRates();
+    }
+  }
+
+  /**
+   * Calibrates a range of blocks of names, splitting the range in two until it is a single block.
+   */
+  private final class BlockTask extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+
+    private final double[][] _premiums;
+    private final double[][] _puf;
+    private final int _from;
+    private final int _to;
+    private final ISDACompliantCreditCurve[] _res;
+
+    private BlockTask(final double[][] premiums, final double[][] puf, final int from, final int to, final ISDACompliantCreditCurve[] res) {
+      _premiums = premiums;
+      _puf = puf;
+      _from = from;
+      _to = to;
+      _res = res;
+    }
+
+    @Override
+    protected void compute() {
+      if (_to - _from == 1) {
+        calibrateBlock(_premiums, _puf, _from, _res);
+      } else {
+        final int mid = (_from + _to) >>> 1;
+        invokeAll(new BlockTask(_premiums, _puf, _from, mid, _res), new BlockTask(_premiums, _puf, mid, _to, _res));
+      }
+    }
   }
 
   private class CalibrationImpl {
@@ -288,14 +388,24 @@ public class CreditCurveCalibrator {
     private double[][] _premLegElmtPV;
     private ISDACompliantCreditCurve _creditCurve;
 
-    public ISDACompliantCreditCurve calibrate(final double[] premiums, final double[] puf) {
+    /**
+     * Calibrates the credit curve.
+     * @param premiums The premiums
+     * @param puf The points up-front
+     * @param startingGuess The zero hazard rates used to start the root finding (e.g. from a similar name), null to start
+     * from the continuous premiums
+     * @return The credit curve
+     */
+    public ISDACompliantCreditCurve calibrate(final double[] premiums, final double[] puf, final double[] startingGuess) {
       _protLegElmtPV = new double[_nCDS][2];
       _premLegElmtPV = new double[_nCoupons][2];
 
       // use continuous premiums as initial guess
       final double[] guess = new double[_nCDS];
+      final double[] continuousGuess = new double[_nCDS];
       for (int i = 0; i < _nCDS; i++) {
-        guess[i] = (premiums[i] + puf[i] / _t[i]) / _lgd[i];
+        continuousGuess[i] = (premiums[i] + puf[i] / _t[i]) / _lgd[i];
+        guess[i] = startingGuess == null ? continuousGuess[i] : startingGuess[i];
       }
 
       _creditCurve = new ISDACompliantCreditCurve(_t, guess);
@@ -304,7 +414,7 @@ public class CreditCurveCalibrator {
         final Function1D<Double, Double> grad = getPointDerivative(i, premiums[i]);
         switch (_arbHandle) {
           case Ignore: {
-            final double zeroRate = ROOTFINDER.getRoot(func, grad, guess[i]);
+            final double zeroRate = getRoot(func, grad, guess[i], startingGuess == null ? Double.NaN : continuousGuess[i]);
             updateAll(zeroRate, i);
             break;
           }
@@ -321,7 +431,7 @@ public class CreditCurveCalibrator {
               throw new IllegalArgumentException(msg.toString());
             }
             guess[i] = Math.max(minValue, guess[i]);
-            final double zeroRate = ROOTFINDER.getRoot(func, grad, guess[i]);
+            final double zeroRate = getRoot(func, grad, guess[i], startingGuess == null ? Double.NaN : Math.max(minValue, continuousGuess[i]));
             updateAll(zeroRate, i);
             break;
           }
@@ -331,7 +441,7 @@ public class CreditCurveCalibrator {
               updateAll(minValue, i); //this is setting the forward hazard rate for this period to zero, rather than letting it go negative
             } else {
               guess[i] = Math.max(minValue, guess[i]);
-              final double zeroRate = ROOTFINDER.getRoot(func, grad, guess[i]);
+              final double zeroRate = getRoot(func, grad, guess[i], startingGuess == null ? Double.NaN : Math.max(minValue, continuousGuess[i]));
               updateAll(zeroRate, i);
             }
             break;
@@ -342,6 +452,21 @@ public class CreditCurveCalibrator {
       return _creditCurve;
     }
 
+    /**
+     * Finds the zero hazard rate from a guess. If the guess is a warm start from another name and the root finder fails,
+     * it is run again from the fall-back guess.
+     */
+    private double getRoot(final Function1D<Double, Double> func, final Function1D<Double, Double> grad, final double guess, final double fallBackGuess) {
+      try {
+        return ROOTFINDER.getRoot(func, grad, guess);
+      } catch (final MathException e) {
+        if (Double.isNaN(fallBackGuess)) {
+          throw e;
+        }
+        return ROOTFINDER.getRoot(func, grad, fallBackGuess);
+      }
+    }
+
     private Function1D<Double, Double> getPointFunction(final int index, final double premium, final double puf) {
       final int[] iCoupons = _cds2CouponsMap[index];
       final int nCoupons = iCoupons.length;
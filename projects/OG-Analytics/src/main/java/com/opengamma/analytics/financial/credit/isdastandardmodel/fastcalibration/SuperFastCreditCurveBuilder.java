@@ -5,11 +5,14 @@
  */
 package com.opengamma.analytics.financial.credit.isdastandardmodel.fastcalibration;
 
+import java.util.concurrent.ForkJoinPool;
+
 import com.opengamma.analytics.financial.credit.isdastandardmodel.AccrualOnDefaultFormulae;
 import com.opengamma.analytics.financial.credit.isdastandardmodel.CDSAnalytic;
 import com.opengamma.analytics.financial.credit.isdastandardmodel.ISDACompliantCreditCurve;
 import com.opengamma.analytics.financial.credit.isdastandardmodel.ISDACompliantCreditCurveBuilder;
 import com.opengamma.analytics.financial.credit.isdastandardmodel.ISDACompliantYieldCurve;
+import com.opengamma.analytics.financial.credit.isdastandardmodel.MultiCDSAnalytic;
 
 /**
  * 
@@ -36,4 +39,51 @@ public class SuperFastCreditCurveBuilder extends ISDACompliantCreditCurveBuilder
     return calibrator.calibrate(premiums, pointsUpfront);
   }
 
+  /**
+   * Calibrates the credit curves of many names quoted on the same CDS term structure and yield curve. The premium and protection
+   * leg elements are built once and shared by all the names, and the root finding for each name starts from the curve of the
+   * previous name (see {@link CreditCurveCalibrator#calibrate(double[][], double[][], ForkJoinPool)}).
+   * @param multiCDS The CDS term structure shared by all the names
+   * @param premiums The premiums (as fractions) by name then by maturity
+   * @param yieldCurve The yield curve
+   * @param pointsUpfront The points up-front (as fractions) by name then by maturity
+   * @return The credit curves, in the order of the names
+   */
+  public ISDACompliantCreditCurve[] calibrateCreditCurves(final MultiCDSAnalytic multiCDS, final double[][] premiums, final ISDACompliantYieldCurve yieldCurve,
+      final double[][] pointsUpfront) {
+    return calibrateCreditCurves(multiCDS, premiums, yieldCurve, pointsUpfront, null);
+  }
+
+  /**
+   * Calibrates the credit curves of many names quoted on the same CDS term structure and yield curve, in parallel in a fork-join pool.
+   * The curves are the same as those calibrated on the calling thread.
+   * @param multiCDS The CDS term structure shared by all the names
+   * @param premiums The premiums (as fractions) by name then by maturity
+   * @param yieldCurve The yield curve
+   * @param pointsUpfront The points up-front (as fractions) by name then by maturity
+   * @param pool The pool, null to calibrate on the calling thread
+   * @return The credit curves, in the order of the names
+   */
+  public ISDACompliantCreditCurve[] calibrateCreditCurves(final MultiCDSAnalytic multiCDS, final double[][] premiums, final ISDACompliantYieldCurve yieldCurve,
+      final double[][] pointsUpfront, final ForkJoinPool pool) {
+    final CreditCurveCalibrator calibrator = new CreditCurveCalibrator(multiCDS, yieldCurve, getAccOnDefaultFormula(), getArbHanding());
+    return calibrator.calibrate(premiums, pointsUpfront, pool);
+  }
+
+  /**
+   * Calibrates the credit curves of many names quoted on the same calibration CDSs and yield curve, in parallel in a fork-join pool.
+   * The curves are the same as those calibrated on the calling thread.
+   * @param calibrationCDSs The calibration CDSs shared by all the names
+   * @param premiums The premiums (as fractions) by name then by CDS
+   * @param yieldCurve The yield curve
+   * @param pointsUpfront The points up-front (as fractions) by name then by CDS
+   * @param pool The pool, null to calibrate on the calling thread
+   * @return The credit curves, in the order of the names
+   */
+  public ISDACompliantCreditCurve[] calibrateCreditCurves(final CDSAnalytic[] calibrationCDSs, final double[][] premiums, final ISDACompliantYieldCurve yieldCurve,
+      final double[][] pointsUpfront, final ForkJoinPool pool) {
+    final CreditCurveCalibrator calibrator = new CreditCurveCalibrator(calibrationCDSs, yieldCurve, getAccOnDefaultFormula(), getArbHanding());
+    return calibrator.calibrate(premiums, pointsUpfront, pool);
+  }
+
 }
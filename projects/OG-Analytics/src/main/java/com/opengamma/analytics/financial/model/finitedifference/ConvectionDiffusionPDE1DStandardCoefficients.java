@@ -47,6 +47,24 @@ public class ConvectionDiffusionPDE1DStandardCoefficients implements ConvectionD
     return _c.getZValue(t, x);
   }
 
+  /**
+   * Evaluates all three coefficients at a set of space points at the same time. Sub-classes that can compute the coefficients more cheaply in bulk
+   * than point by point (e.g. from values held on a grid) should override this.
+   * @param t The time
+   * @param x The space points
+   * @param a The values of $a(t,x)$ are written into this array, which must be at least as long as x
+   * @param b The values of $b(t,x)$ are written into this array, which must be at least as long as x
+   * @param c The values of $c(t,x)$ are written into this array, which must be at least as long as x
+   */
+  public void getCoefficients(final double t, final double[] x, final double[] a, final double[] b, final double[] c) {
+    final int n = x.length;
+    for (int i = 0; i < n; i++) {
+      a[i] = getA(t, x[i]);
+      b[i] = getB(t, x[i]);
+      c[i] = getC(t, x[i]);
+    }
+  }
+
   @Override
   public int hashCode() {
     final int prime = 31;
@@ -7,7 +7,10 @@ package com.opengamma.analytics.financial.model.finitedifference;
 
 import static com.opengamma.analytics.math.linearalgebra.TridiagonalSolver.solvTriDag;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 
 import org.apache.commons.lang.NotImplementedException;
 
@@ -56,12 +59,24 @@ public class ThetaMethodFiniteDifference implements ConvectionDiffusionPDESolver
   @Override
   //TODO This is so ugly
   public PDEResults1D solve(final PDE1DDataBundle<ConvectionDiffusionPDE1DCoefficients> pdeData) {
+    return solve(pdeData, new ThetaMethodWorkspace());
+  }
+
+  /**
+   * Solves the PDE using (and re-using) the arrays in a workspace, so that repeated calls do not allocate memory during the time stepping.
+   * The workspace is only used for {@link ConvectionDiffusionPDE1DStandardCoefficients}.
+   * @param pdeData The PDE data, not null
+   * @param workspace The workspace, not null. This must not be used by another solve at the same time.
+   * @return The results
+   */
+  public PDEResults1D solve(final PDE1DDataBundle<ConvectionDiffusionPDE1DCoefficients> pdeData, final ThetaMethodWorkspace workspace) {
     ArgumentChecker.notNull(pdeData, "pde data");
+    ArgumentChecker.notNull(workspace, "workspace");
     final ConvectionDiffusionPDE1DCoefficients coeff = pdeData.getCoefficients();
     if (coeff instanceof ConvectionDiffusionPDE1DStandardCoefficients) {
       final PDE1DDataBundle<ConvectionDiffusionPDE1DStandardCoefficients> temp = convertPDE1DDataBundle(pdeData);
-      final SolverImpl solver = new SolverImpl(temp);
-      return solver.solve();
+      final SolverImpl solver = new SolverImpl(Collections.singletonList(temp), workspace);
+      return solver.solve()[0];
     } else if (coeff instanceof ConvectionDiffusionPDE1DFullCoefficients) {
       final ConvectionDiffusionPDE1DFullCoefficients temp = (ConvectionDiffusionPDE1DFullCoefficients) coeff;
       final ExtendedSolverImpl solver = new ExtendedSolverImpl(temp, pdeData.getInitialCondition(), pdeData.getLowerBoundary(), pdeData.getUpperBoundary(),
@@ -71,6 +86,30 @@ public class ThetaMethodFiniteDifference implements ConvectionDiffusionPDESolver
     throw new IllegalArgumentException(coeff.getClass() + " not handled");
   }
 
+  /**
+   * Solves several PDEs that have the same coefficients and grid, but different initial and boundary conditions (e.g. the same
+   * model for many strikes), in a single sweep through time. The coefficients are evaluated once per time step for all the PDEs.
+   * @param pdeData The PDE data, not null or empty. All must have the same {@link ConvectionDiffusionPDE1DStandardCoefficients} and grid.
+   * @param workspace The workspace, not null. This must not be used by another solve at the same time.
+   * @return The results, in the same order as the PDE data
+   */
+  public PDEResults1D[] solve(final List<PDE1DDataBundle<ConvectionDiffusionPDE1DCoefficients>> pdeData, final ThetaMethodWorkspace workspace) {
+    ArgumentChecker.notEmpty(pdeData, "pde data");
+    ArgumentChecker.notNull(workspace, "workspace");
+    final List<PDE1DDataBundle<ConvectionDiffusionPDE1DStandardCoefficients>> temp = new ArrayList<>(pdeData.size());
+    final PDE1DDataBundle<ConvectionDiffusionPDE1DCoefficients> first = pdeData.get(0);
+    ArgumentChecker.notNull(first, "pde data");
+    for (final PDE1DDataBundle<ConvectionDiffusionPDE1DCoefficients> data : pdeData) {
+      ArgumentChecker.notNull(data, "pde data");
+      ArgumentChecker.isTrue(data.getCoefficients() instanceof ConvectionDiffusionPDE1DStandardCoefficients, "{} not handled", data.getCoefficients().getClass());
+      ArgumentChecker.isTrue(data.getCoefficients().equals(first.getCoefficients()), "all PDEs must have the same coefficients");
+      ArgumentChecker.isTrue(data.getGrid().equals(first.getGrid()), "all PDEs must have the same grid");
+      temp.add(convertPDE1DDataBundle(data));
+    }
+    final SolverImpl solver = new SolverImpl(temp, workspace);
+    return solver.solve();
+  }
+
   private static PDE1DDataBundle<ConvectionDiffusionPDE1DStandardCoefficients> convertPDE1DDataBundle(final PDE1DDataBundle<ConvectionDiffusionPDE1DCoefficients> pdeData) {
     if (pdeData.getFreeBoundary() == null) {
       return new PDE1DDataBundle<>(
@@ -98,23 +137,26 @@ public class ThetaMethodFiniteDifference implements ConvectionDiffusionPDESolver
     private final double[][] _x1st;
     private final double[][] _x2nd;
     private final double[] _dx;
-    //initial and boundary conditions
-    private final double[] _initial;
-    private final BoundaryCondition _lower;
-    private final BoundaryCondition _upper;
-    //PDE coefficients
+    //initial and boundary conditions, one for each PDE
+    private final int _nPDEs;
+    private final double[][] _initial;
+    private final BoundaryCondition[] _lower;
+    private final BoundaryCondition[] _upper;
+    //PDE coefficients (common to all the PDEs)
     private final ConvectionDiffusionPDE1DStandardCoefficients _coeff;
     //free boundary problems
-    private final SolverMode _mode;
-    private final Surface<Double, Double, Double> _freeB;
+    private final SolverMode[] _mode;
+    private final Surface<Double, Double, Double>[] _freeB;
+    //work arrays
+    private final ThetaMethodWorkspace _ws;
 
-    public SolverImpl(final PDE1DDataBundle<ConvectionDiffusionPDE1DStandardCoefficients> pdeData) {
+    @SuppressWarnings("unchecked")
+    public SolverImpl(final List<PDE1DDataBundle<ConvectionDiffusionPDE1DStandardCoefficients>> pdeData, final ThetaMethodWorkspace workspace) {
 
       //unpack pdeData
-      _grid = pdeData.getGrid();
-      _coeff = pdeData.getCoefficients();
-      _lower = pdeData.getLowerBoundary();
-      _upper = pdeData.getUpperBoundary();
+      final PDE1DDataBundle<ConvectionDiffusionPDE1DStandardCoefficients> first = pdeData.get(0);
+      _grid = first.getGrid();
+      _coeff = first.getCoefficients();
 
       _nNodesX = _grid.getNumSpaceNodes();
       _nNodesT = _grid.getNumTimeNodes();
@@ -130,153 +172,184 @@ public class ThetaMethodFiniteDifference implements ConvectionDiffusionPDESolver
         _dx[ii] = _grid.getSpaceStep(ii);
       }
 
-      _initial = pdeData.getInitialCondition();
       _dt = new double[_nNodesT - 1];
       for (int jj = 0; jj < _nNodesT - 1; jj++) {
         _dt[jj] = _grid.getTimeStep(jj);
       }
 
-      //free boundary
-      _freeB = pdeData.getFreeBoundary();
-      if (_freeB == null) {
-        _mode = SolverMode.tridiagonal;
-      } else {
-        _mode = SolverMode.psor;
+      _nPDEs = pdeData.size();
+      _initial = new double[_nPDEs][];
+      _lower = new BoundaryCondition[_nPDEs];
+      _upper = new BoundaryCondition[_nPDEs];
+      _mode = new SolverMode[_nPDEs];
+      _freeB = new Surface[_nPDEs];
+      for (int k = 0; k < _nPDEs; k++) {
+        final PDE1DDataBundle<ConvectionDiffusionPDE1DStandardCoefficients> data = pdeData.get(k);
+        _initial[k] = data.getInitialCondition();
+        _lower[k] = data.getLowerBoundary();
+        _upper[k] = data.getUpperBoundary();
+        //free boundary
+        _freeB[k] = data.getFreeBoundary();
+        if (_freeB[k] == null) {
+          _mode[k] = SolverMode.tridiagonal;
+        } else {
+          _mode[k] = SolverMode.psor;
+        }
+      }
+
+      _ws = workspace;
+      _ws.ensureSize(_nNodesX, _nPDEs);
+      for (int ii = 0; ii < _nNodesX - 2; ii++) {
+        _ws._x[ii] = _grid.getSpaceNode(ii + 1);
       }
     }
 
     @SuppressWarnings({"synthetic-access" })
-    public PDEResults1D solve() {
-
-      double[][] full = null;
+    public PDEResults1D[] solve() {
+
+      final double[][] h = _ws._h;
+      final double[][] y = _ws._y;
+      final double[] cDag = _ws._cDag;
+      final double[] lDag = _ws._lDag;
+      final double[] uDag = _ws._uDag;
+      final double[] d = _ws._d; //main diag
+      final double[] u = _ws._u; //upper
+      final double[] l = _ws._l; //lower
+
+      double[][][] full = null;
       if (_showFullResults) {
-        full = new double[_nNodesT][_nNodesX];
-        full[0] = _initial;
+        full = new double[_nPDEs][_nNodesT][];
+      }
+      for (int k = 0; k < _nPDEs; k++) {
+        System.arraycopy(_initial[k], 0, h[k], 0, _nNodesX);
+        if (_showFullResults && full != null) {
+          full[k][0] = _initial[k];
+        }
       }
-      double[] h = _initial;
 
       double t = _grid.getTimeNode(0);
-
-      double[] topRow = _lower.getLeftMatrixCondition(_coeff, _grid, t);
-      double[] bottomRow = _upper.getLeftMatrixCondition(_coeff, _grid, t);
-      final double[] cDag = new double[_nNodesX - 2];
-      final double[] lDag = new double[_nNodesX - 2];
-      final double[] uDag = new double[_nNodesX - 2];
-      for (int ii = 0; ii < _nNodesX - 2; ii++) { //tri-diagonal form
-        final double x = _grid.getSpaceNode(ii + 1);
-        final double a = _coeff.getA(t, x);
-        final double b = _coeff.getB(t, x);
-        final double c = _coeff.getC(t, x);
-        cDag[ii] = _x2nd[ii][1] * a + _x1st[ii][1] * b + c;
-        lDag[ii] = _x2nd[ii][0] * a + _x1st[ii][0] * b;
-        uDag[ii] = _x2nd[ii][2] * a + _x1st[ii][2] * b;
-      }
+      updateCoefficients(t);
 
       for (int jj = 0; jj < _nNodesT - 1; jj++) {
         final double dt = _dt[jj];
 
-        //RHS of system
-        final double[] y = new double[_nNodesX];
-        //main part of RHS
-        for (int ii = 1; ii < _nNodesX - 1; ii++) { //tri-diagonal form
-          y[ii] = (1 - (1 - _theta) * dt * cDag[ii - 1]) * h[ii] - (1 - _theta) * dt * (lDag[ii - 1] * h[ii - 1] + +uDag[ii - 1] * h[ii + 1]);
+        //main part of RHS of system
+        for (int k = 0; k < _nPDEs; k++) {
+          final double[] hk = h[k];
+          final double[] yk = y[k];
+          for (int ii = 1; ii < _nNodesX - 1; ii++) { //tri-diagonal form
+            yk[ii] = (1 - (1 - _theta) * dt * cDag[ii - 1]) * hk[ii] - (1 - _theta) * dt * (lDag[ii - 1] * hk[ii - 1] + uDag[ii - 1] * hk[ii + 1]);
+          }
         }
 
         t = _grid.getTimeNode(jj + 1);
-        //lower & upper boundaries
-        y[0] = _lower.getConstant(_coeff, t);
-        y[_nNodesX - 1] = _upper.getConstant(_coeff, t);
+        updateCoefficients(t);
 
         //put the LHS of system in tri-diagonal form
-        final double[] d = new double[_nNodesX]; //main diag
-        final double[] u = new double[_nNodesX - 1]; //upper
-        final double[] l = new double[_nNodesX - 1]; //lower
-        //lower boundary conditions
-        topRow = _lower.getLeftMatrixCondition(_coeff, _grid, t);
-        final int p2 = topRow.length;
-        d[0] = topRow[0];
-        if (p2 > 1) {
-          u[0] = topRow[1];
-          //Review do we need this?
-          ArgumentChecker.isFalse(p2 > 2, "Boundary condition means that system is not tri-diagonal");
-        }
-        bottomRow = _upper.getLeftMatrixCondition(_coeff, _grid, t);
-        final int q2 = bottomRow.length;
-        d[_nNodesX - 1] = bottomRow[q2 - 1];
-        if (q2 > 1) {
-          l[_nNodesX - 2] = bottomRow[q2 - 2];
-          ArgumentChecker.isFalse(q2 > 2, "Boundary condition means that system is not tri-diagonal");
-        }
-
-        for (int ii = 0; ii < _nNodesX - 2; ii++) { //tri-diagonal form
-          final double x = _grid.getSpaceNode(ii + 1);
-          final double a = _coeff.getA(t, x);
-          final double b = _coeff.getB(t, x);
-          final double c = _coeff.getC(t, x);
-          //debug - fitting par
-          //a = getFittingParameter(a, b, ii);
-          cDag[ii] = _x2nd[ii][1] * a + _x1st[ii][1] * b + c;
-          lDag[ii] = _x2nd[ii][0] * a + _x1st[ii][0] * b;
-          uDag[ii] = _x2nd[ii][2] * a + _x1st[ii][2] * b;
-        }
-
-
         for (int ii = 1; ii < _nNodesX - 1; ii++) {
           d[ii] = 1 + _theta * dt * cDag[ii - 1];
           u[ii] = _theta * dt * uDag[ii - 1];
           l[ii - 1] = _theta * dt * lDag[ii - 1];
         }
-        final TridiagonalMatrix lhs = new TridiagonalMatrix(d, u, l);
-
-        //solve the system (update h)
-        switch (_mode) {
-          case tridiagonal:
-            h = solvTriDag(lhs, y);
-            break;
-          case luDecomp:
-            h = solveLU(lhs, y);
-            break;
-          case psor:
-            h = solvTriDag(lhs, y);
-            final double[] free = new double[_nNodesX];
-            for (int ii = 0; ii < _nNodesX; ii++) {
-              final double x = _grid.getSpaceNode(ii);
-              free[ii] = _freeB.getZValue(t, x);
-            }
-            h = solvePSOR(lhs, y, h, free);
-            break;
-          default:
-            throw new NotImplementedException("SolverMode " + _mode.toString() + " not implemented");
-        }
 
-        if (_showFullResults && full != null) {
-          full[jj + 1] = Arrays.copyOf(h, _nNodesX);
+        for (int k = 0; k < _nPDEs; k++) {
+          //lower & upper boundaries
+          y[k][0] = _lower[k].getConstant(_coeff, t);
+          y[k][_nNodesX - 1] = _upper[k].getConstant(_coeff, t);
+
+          final double[] topRow = _lower[k].getLeftMatrixCondition(_coeff, _grid, t);
+          final int p2 = topRow.length;
+          d[0] = topRow[0];
+          if (p2 > 1) {
+            u[0] = topRow[1];
+            //Review do we need this?
+            ArgumentChecker.isFalse(p2 > 2, "Boundary condition means that system is not tri-diagonal");
+          } else {
+            u[0] = 0.0;
+          }
+          final double[] bottomRow = _upper[k].getLeftMatrixCondition(_coeff, _grid, t);
+          final int q2 = bottomRow.length;
+          d[_nNodesX - 1] = bottomRow[q2 - 1];
+          if (q2 > 1) {
+            l[_nNodesX - 2] = bottomRow[q2 - 2];
+            ArgumentChecker.isFalse(q2 > 2, "Boundary condition means that system is not tri-diagonal");
+          } else {
+            l[_nNodesX - 2] = 0.0;
+          }
+
+          //solve the system (update h)
+          switch (_mode[k]) {
+            case tridiagonal:
+              //the solution overwrites the RHS, which then becomes the current solution
+              solvTriDag(d, u, l, y[k], y[k], _ws._work);
+              final double[] temp = h[k];
+              h[k] = y[k];
+              y[k] = temp;
+              break;
+            case luDecomp:
+              System.arraycopy(solveLU(new TridiagonalMatrix(d, u, l), y[k]), 0, h[k], 0, _nNodesX);
+              break;
+            case psor:
+              solvTriDag(d, u, l, y[k], h[k], _ws._work);
+              final double[] free = _ws._free;
+              for (int ii = 0; ii < _nNodesX; ii++) {
+                final double x = _grid.getSpaceNode(ii);
+                free[ii] = _freeB[k].getZValue(t, x);
+              }
+              solvePSOR(d, u, l, y[k], h[k], free);
+              break;
+            default:
+              throw new NotImplementedException("SolverMode " + _mode[k].toString() + " not implemented");
+          }
+
+          if (_showFullResults && full != null) {
+            full[k][jj + 1] = Arrays.copyOf(h[k], _nNodesX);
+          }
         }
       }
-      PDEResults1D res;
-      if (_showFullResults) {
-        res = new PDEFullResults1D(_grid, full);
-      } else {
-        res = new PDETerminalResults1D(_grid, h);
+      final PDEResults1D[] res = new PDEResults1D[_nPDEs];
+      for (int k = 0; k < _nPDEs; k++) {
+        if (_showFullResults && full != null) {
+          res[k] = new PDEFullResults1D(_grid, full[k]);
+        } else {
+          res[k] = new PDETerminalResults1D(_grid, Arrays.copyOf(h[k], _nNodesX));
+        }
       }
       return res;
     }
 
+    /**
+     * Evaluates the PDE coefficients at the interior nodes in bulk, and combines them with the finite difference weights.
+     * @param t The time
+     */
+    private void updateCoefficients(final double t) {
+      final double[] a = _ws._a;
+      final double[] b = _ws._b;
+      final double[] c = _ws._c;
+      final double[] cDag = _ws._cDag;
+      final double[] lDag = _ws._lDag;
+      final double[] uDag = _ws._uDag;
+      _coeff.getCoefficients(t, _ws._x, a, b, c);
+      for (int ii = 0; ii < _nNodesX - 2; ii++) { //tri-diagonal form
+        //debug - fitting par
+        //a = getFittingParameter(a, b, ii);
+        cDag[ii] = _x2nd[ii][1] * a[ii] + _x1st[ii][1] * b[ii] + c[ii];
+        lDag[ii] = _x2nd[ii][0] * a[ii] + _x1st[ii][0] * b[ii];
+        uDag[ii] = _x2nd[ii][2] * a[ii] + _x1st[ii][2] * b[ii];
+      }
+    }
+
     @SuppressWarnings("synthetic-access")
     private double[] solveLU(final TridiagonalMatrix lM, final double[] y) {
       final DecompositionResult res = DCOMP.evaluate(lM.toDoubleMatrix2D());
       return res.solve(y);
     }
 
-    private double[] solvePSOR(final TridiagonalMatrix lM, final double[] b, final double[] x, final double[] minVal) {
-
-      final double[] d = lM.getDiagonalData();
-      final double[] u = lM.getUpperSubDiagonalData();
-      final double[] l = lM.getLowerSubDiagonalData();
+    private double[] solvePSOR(final double[] d, final double[] u, final double[] l, final double[] b, final double[] x, final double[] minVal) {
 
       final int maxInt = 100000;
       final double omega = 1.0;
-      final double[] invD = new double[_nNodesX];
+      final double[] invD = _ws._work;
       for (int ii = 0; ii < _nNodesX; ii++) {
         if (d[ii] == 0.0) {
           throw new MathException("Cannot solve by PSOR - zero on diagonal");
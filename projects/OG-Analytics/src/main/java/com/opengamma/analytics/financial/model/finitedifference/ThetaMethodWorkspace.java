@@ -0,0 +1,87 @@
+/**
+ * Copyright (C) 2014 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.analytics.financial.model.finitedifference;
+
+import com.opengamma.util.ArgumentChecker;
+
+/**
+ * The arrays used by {@link ThetaMethodFiniteDifference} at each time step. Passing the same workspace to repeated solves (e.g. in a
+ * calibration loop) means that no arrays are allocated during the time stepping, and none between solves on grids of the same size.
+ * <p>
+ * A workspace holds the state of the solve that is using it, so it must not be shared between threads.
+ */
+public final class ThetaMethodWorkspace {
+
+  private int _nNodesX;
+  private int _nPDEs;
+
+  // interior space nodes and the PDE coefficients at them
+  /* package */double[] _x;
+  /* package */double[] _a;
+  /* package */double[] _b;
+  /* package */double[] _c;
+  // the coefficients of the discretised PDE at the interior nodes
+  /* package */double[] _cDag;
+  /* package */double[] _lDag;
+  /* package */double[] _uDag;
+  // the tri-diagonal system
+  /* package */double[] _d;
+  /* package */double[] _u;
+  /* package */double[] _l;
+  /* package */double[] _work;
+  /* package */double[] _free;
+  // the solution and right-hand side of each PDE
+  /* package */double[][] _h;
+  /* package */double[][] _y;
+
+  /**
+   * Creates an empty workspace; the arrays are allocated by the first solve.
+   */
+  public ThetaMethodWorkspace() {
+  }
+
+  /**
+   * Creates a workspace with arrays for a grid and number of PDEs.
+   * @param nNodesX The number of space nodes, at least 3
+   * @param nPDEs The number of PDEs solved together, at least 1
+   */
+  public ThetaMethodWorkspace(final int nNodesX, final int nPDEs) {
+    ensureSize(nNodesX, nPDEs);
+  }
+
+  /**
+   * Makes sure the arrays match a grid and number of PDEs, only re-allocating them if the sizes have changed.
+   * @param nNodesX The number of space nodes, at least 3
+   * @param nPDEs The number of PDEs solved together, at least 1
+   */
+  /* package */void ensureSize(final int nNodesX, final int nPDEs) {
+    ArgumentChecker.isTrue(nNodesX > 2, "need at least 3 space nodes, have {}", nNodesX);
+    ArgumentChecker.isTrue(nPDEs > 0, "need at least 1 PDE, have {}", nPDEs);
+    if (nNodesX != _nNodesX) {
+      final int nInterior = nNodesX - 2;
+      _x = new double[nInterior];
+      _a = new double[nInterior];
+      _b = new double[nInterior];
+      _c = new double[nInterior];
+      _cDag = new double[nInterior];
+      _lDag = new double[nInterior];
+      _uDag = new double[nInterior];
+      _d = new double[nNodesX];
+      _u = new double[nNodesX - 1];
+      _l = new double[nNodesX - 1];
+      _work = new double[nNodesX];
+      _free = new double[nNodesX];
+      _h = new double[nPDEs][nNodesX];
+      _y = new double[nPDEs][nNodesX];
+    } else if (nPDEs != _nPDEs) {
+      _h = new double[nPDEs][nNodesX];
+      _y = new double[nPDEs][nNodesX];
+    }
+    _nNodesX = nNodesX;
+    _nPDEs = nPDEs;
+  }
+
+}
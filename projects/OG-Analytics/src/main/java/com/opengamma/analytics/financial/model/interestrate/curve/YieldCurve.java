@@ -13,6 +13,7 @@ import org.apache.commons.lang.ObjectUtils;
 
 import com.opengamma.analytics.math.curve.DoublesCurve;
 import com.opengamma.analytics.math.curve.InterpolatedDoublesCurve;
+import com.opengamma.analytics.math.interpolation.CompiledInterpolator1D;
 import com.opengamma.analytics.math.interpolation.Interpolator1D;
 import com.opengamma.util.ArgumentChecker;
 
@@ -70,6 +71,58 @@ public class YieldCurve extends YieldAndDiscountCurve {
     return getCurve().getYValue(t);
   }
 
+  /**
+   * Gets the interest rates (continuously compounded) at several times. When the underlying curve is an interpolated curve supported by
+   * {@link CompiledInterpolator1D}, the compiled form is used; this is fastest if the times are in increasing order.
+   * @param t The times, not null
+   * @param rates The rates are written into this array, not null, which must be at least as long as t
+   */
+  public void getInterestRates(final double[] t, final double[] rates) {
+    ArgumentChecker.notNull(t, "t");
+    ArgumentChecker.notNull(rates, "rates");
+    ArgumentChecker.isTrue(rates.length >= t.length, "rates array has length {}, need {}", rates.length, t.length);
+    final CompiledInterpolator1D compiled = getCompiledCurve();
+    if (compiled != null) {
+      compiled.evaluate(t, rates);
+    } else {
+      for (int i = 0; i < t.length; i++) {
+        rates[i] = getInterestRate(t[i]);
+      }
+    }
+  }
+
+  /**
+   * Gets the discount factors at several times. See {@link #getInterestRates(double[], double[])}.
+   * @param t The times, not null
+   * @param discountFactors The discount factors are written into this array, not null, which must be at least as long as t
+   */
+  public void getDiscountFactors(final double[] t, final double[] discountFactors) {
+    ArgumentChecker.notNull(t, "t");
+    ArgumentChecker.notNull(discountFactors, "discount factors");
+    ArgumentChecker.isTrue(discountFactors.length >= t.length, "discount factors array has length {}, need {}", discountFactors.length, t.length);
+    final CompiledInterpolator1D compiled = getCompiledCurve();
+    for (int i = 0; i < t.length; i++) {
+      if (t[i] == 0) { //short cut rate lookup
+        discountFactors[i] = 1.0;
+      } else {
+        final double rate = compiled != null ? compiled.evaluate(t[i]) : getInterestRate(t[i]);
+        discountFactors[i] = Math.exp(-t[i] * rate);
+      }
+    }
+  }
+
+  /**
+   * Gets the underlying curve in compiled form, for fast evaluation of the rates in loops.
+   * @return The compiled curve, or null if the underlying curve is not an {@link InterpolatedDoublesCurve} with an interpolator supported
+   * by {@link CompiledInterpolator1D}
+   */
+  public CompiledInterpolator1D getCompiledCurve() {
+    if (_curve instanceof InterpolatedDoublesCurve) {
+      return ((InterpolatedDoublesCurve) _curve).getCompiledInterpolator();
+    }
+    return null;
+  }
+
   @Override
   public double getForwardRate(final double t) {
     final DoublesCurve curve = getCurve();
@@ -0,0 +1,291 @@
+/**
+ * Copyright (C) 2014 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.analytics.financial.model.volatility;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import com.opengamma.analytics.math.random.InverseNormal;
+import com.opengamma.analytics.math.statistics.distribution.fnlib.DERFC;
+import com.opengamma.util.ArgumentChecker;
+
+/**
+ * Computes the log-normal (Black) implied volatilities of many European options at once, for example all the quotes of an option surface.
+ * <p>
+ * The inputs are parallel arrays and the volatilities are written to an output array, without creating any objects for each option.
+ * Each option is converted to the normalised out-the-money price $\beta = P_{otm}/\sqrt{FK}$ at log-moneyness $x = -|\ln(F/K)|$, whose
+ * normalised Black price $b(x, s) = e^{x/2}N(x/s + s/2) - e^{-x/2}N(x/s - s/2)$ is solved for the total volatility $s = \sigma\sqrt{T}$.
+ * The solution starts from a closed-form guess on each side of the inflection point $s_c = \sqrt{2|x|}$ of $b$, and is refined by
+ * Halley steps on $\ln b$ below the inflection point and third order Householder steps on $b$ above it, safeguarded by bisection in
+ * the bracket of the solution. Both converge with order three, taking typically three steps above the inflection point and four or
+ * five below it, where the initial guess is less accurate.
+ * <p>
+ * Options without an implied volatility (e.g. a price below the intrinsic value or above the forward, or a non-positive forward,
+ * strike or time to expiry) get a volatility of NaN rather than causing the whole batch to fail. A price equal to the intrinsic value has
+ * an implied volatility of zero.
+ */
+public final class BlackImpliedVolatilityBatchSolver {
+
+  /** The minimum number of options calibrated by one task in parallel calculations. */
+  private static final int PARALLEL_THRESHOLD = 1024;
+  private static final int MAX_ITERATIONS = 100;
+  /** The relative tolerance on the total volatility. */
+  private static final double TOLERANCE = 1.0E-13;
+  private static final double ROOT2 = Math.sqrt(2.0);
+  private static final double ONE_OVER_ROOT2PI = 1.0 / Math.sqrt(2.0 * Math.PI);
+
+  /**
+   * Restricted constructor.
+   */
+  private BlackImpliedVolatilityBatchSolver() {
+  }
+
+  /**
+   * Computes the implied volatilities of options on the calling thread.
+   * @param forwards The forwards of the underlyings, not null
+   * @param strikes The strikes, not null
+   * @param timesToExpiry The times to expiry, not null
+   * @param discountFactors The discount factors from the payment to the valuation date, not null
+   * @param prices The (present value) prices of the options, not null
+   * @param isCall True for calls and false for puts, not null
+   * @param volatilities The array to which the implied volatilities are written, not null
+   */
+  public static void impliedVolatilities(final double[] forwards, final double[] strikes, final double[] timesToExpiry, final double[] discountFactors,
+      final double[] prices, final boolean[] isCall, final double[] volatilities) {
+    checkArrays(forwards, strikes, timesToExpiry, discountFactors, prices, isCall, volatilities);
+    impliedVolatilities(forwards, strikes, timesToExpiry, discountFactors, prices, isCall, volatilities, 0, volatilities.length);
+  }
+
+  /**
+   * Computes the implied volatilities of options in parallel in a fork-join pool. The results are the same as on the calling thread.
+   * @param forwards The forwards of the underlyings, not null
+   * @param strikes The strikes, not null
+   * @param timesToExpiry The times to expiry, not null
+   * @param discountFactors The discount factors from the payment to the valuation date, not null
+   * @param prices The (present value) prices of the options, not null
+   * @param isCall True for calls and false for puts, not null
+   * @param volatilities The array to which the implied volatilities are written, not null
+   * @param pool The pool, not null
+   */
+  public static void impliedVolatilities(final double[] forwards, final double[] strikes, final double[] timesToExpiry, final double[] discountFactors,
+      final double[] prices, final boolean[] isCall, final double[] volatilities, final ForkJoinPool pool) {
+    checkArrays(forwards, strikes, timesToExpiry, discountFactors, prices, isCall, volatilities);
+    ArgumentChecker.notNull(pool, "pool");
+    pool.invoke(new ImpliedVolatilityTask(forwards, strikes, timesToExpiry, discountFactors, prices, isCall, volatilities, 0, volatilities.length));
+  }
+
+  /**
+   * Computes the implied volatility of a single option.
+   * @param forwardPrice The <b>forward</b> price of the option, i.e. the price divided by the discount factor
+   * @param forward The forward of the underlying
+   * @param strike The strike
+   * @param timeToExpiry The time to expiry
+   * @param isCall True for a call and false for a put
+   * @return The implied volatility, NaN if there is none
+   */
+  public static double impliedVolatility(final double forwardPrice, final double forward, final double strike, final double timeToExpiry,
+      final boolean isCall) {
+    return impliedVolatility(forwardPrice, forward, strike, timeToExpiry, isCall, null);
+  }
+
+  /**
+   * Computes the implied volatility of a single option and the number of steps taken by the solver.
+   * @param forwardPrice The <b>forward</b> price of the option
+   * @param forward The forward of the underlying
+   * @param strike The strike
+   * @param timeToExpiry The time to expiry
+   * @param isCall True for a call and false for a put
+   * @param iterations If not null, the number of steps taken by the solver is written to its first element
+   * @return The implied volatility, NaN if there is none
+   */
+  /* package */ static double impliedVolatility(final double forwardPrice, final double forward, final double strike, final double timeToExpiry,
+      final boolean isCall, final int[] iterations) {
+    if (iterations != null) {
+      iterations[0] = 0;
+    }
+    if (!(forward > 0.0) || !(strike > 0.0) || !(timeToExpiry > 0.0) || Double.isInfinite(forward) || Double.isInfinite(strike)
+        || Double.isInfinite(timeToExpiry)) {
+      return Double.NaN;
+    }
+    final double intrinsic = Math.max(0.0, isCall ? forward - strike : strike - forward);
+    // by put-call parity the out-the-money option price is the price less the intrinsic value
+    final double otmPrice = forwardPrice - intrinsic;
+    if (otmPrice == 0.0) {
+      return 0.0;
+    }
+    if (!(otmPrice > 0.0)) {
+      return Double.NaN;
+    }
+    final double x = -Math.abs(Math.log(forward / strike));
+    final double beta = otmPrice / Math.sqrt(forward * strike);
+    if (!(beta < Math.exp(0.5 * x))) {
+      return Double.NaN;
+    }
+    return normalisedImpliedVolatility(beta, x, iterations) / Math.sqrt(timeToExpiry);
+  }
+
+  //-------------------------------------------------------------------------
+  private static void checkArrays(final double[] forwards, final double[] strikes, final double[] timesToExpiry, final double[] discountFactors,
+      final double[] prices, final boolean[] isCall, final double[] volatilities) {
+    ArgumentChecker.notNull(forwards, "forwards");
+    ArgumentChecker.notNull(strikes, "strikes");
+    ArgumentChecker.notNull(timesToExpiry, "timesToExpiry");
+    ArgumentChecker.notNull(discountFactors, "discountFactors");
+    ArgumentChecker.notNull(prices, "prices");
+    ArgumentChecker.notNull(isCall, "isCall");
+    ArgumentChecker.notNull(volatilities, "volatilities");
+    final int n = volatilities.length;
+    ArgumentChecker.isTrue(forwards.length == n, "forwards length {} does not match volatilities length {}", forwards.length, n);
+    ArgumentChecker.isTrue(strikes.length == n, "strikes length {} does not match volatilities length {}", strikes.length, n);
+    ArgumentChecker.isTrue(timesToExpiry.length == n, "timesToExpiry length {} does not match volatilities length {}", timesToExpiry.length, n);
+    ArgumentChecker.isTrue(discountFactors.length == n, "discountFactors length {} does not match volatilities length {}", discountFactors.length, n);
+    ArgumentChecker.isTrue(prices.length == n, "prices length {} does not match volatilities length {}", prices.length, n);
+    ArgumentChecker.isTrue(isCall.length == n, "isCall length {} does not match volatilities length {}", isCall.length, n);
+  }
+
+  private static void impliedVolatilities(final double[] forwards, final double[] strikes, final double[] timesToExpiry, final double[] discountFactors,
+      final double[] prices, final boolean[] isCall, final double[] volatilities, final int from, final int to) {
+    for (int i = from; i < to; i++) {
+      volatilities[i] = impliedVolatility(prices[i] / discountFactors[i], forwards[i], strikes[i], timesToExpiry[i], isCall[i]);
+    }
+  }
+
+  /**
+   * Solves $b(x, s) = \beta$ for $s$, with $x \le 0$ and $0 < \beta < e^{x/2}$.
+   * @param beta The normalised out-the-money price
+   * @param x The non-positive log-moneyness
+   * @param iterations If not null, the number of steps taken is written to its first element
+   * @return The total volatility $s$
+   */
+  private static double normalisedImpliedVolatility(final double beta, final double x, final int[] iterations) {
+    final double sc = Math.sqrt(-2.0 * x);
+    final boolean lower = sc > 0.0 && beta < normalisedPrice(x, sc);
+    final double logBeta = Math.log(beta);
+    double lo;
+    double hi;
+    double s;
+    if (lower) {
+      // for small s, ln b ~ -x^2 / (2 s^2)
+      lo = 0.0;
+      hi = sc;
+      s = Math.min(-x / Math.sqrt(-2.0 * logBeta), sc);
+    } else {
+      // for large s, b ~ e^{x/2} - (e^{x/2} + e^{-x/2}) N(-s/2), which is exact at the money
+      final double bMax = Math.exp(0.5 * x);
+      lo = sc;
+      hi = Double.POSITIVE_INFINITY;
+      // the probability is only zero if 1 / bMax overflows, the guess is then replaced below
+      final double p = (bMax - beta) / (bMax + 1.0 / bMax);
+      s = p > 0.0 ? Math.max(-2.0 * InverseNormal.inverseCDF(p), sc) : sc;
+    }
+    if (!(s > lo && s < hi)) {
+      s = Double.isInfinite(hi) ? Math.max(2.0 * lo, 1.0) : 0.5 * (lo + hi);
+    }
+    final double x2 = x * x;
+    for (int i = 0; i < MAX_ITERATIONS; i++) {
+      if (iterations != null) {
+        iterations[0] = i + 1;
+      }
+      final double b = normalisedPrice(x, s);
+      if (b == beta) {
+        return s;
+      }
+      if (b > beta) {
+        hi = s;
+      } else {
+        lo = s;
+      }
+      final double vega = ONE_OVER_ROOT2PI * Math.exp(-0.5 * (x2 / (s * s) + 0.25 * s * s));
+      // b''/b' and b'''/b'
+      final double h2 = x2 / (s * s * s) - 0.25 * s;
+      double step;
+      if (lower) {
+        if (b > 0.0) {
+          final double g = Math.log(b) - logBeta;
+          final double gp = vega / b;
+          final double gpp = gp * (h2 - gp);
+          final double nu = g / gp;
+          step = -nu / (1.0 - 0.5 * nu * gpp / gp);
+        } else {
+          step = Double.NaN;
+        }
+      } else {
+        final double h3 = h2 * h2 - 3.0 * x2 / (s * s * s * s) - 0.25;
+        final double nu = (b - beta) / vega;
+        step = -nu * (1.0 - 0.5 * h2 * nu) / (1.0 - nu * (h2 - h3 * nu / 6.0));
+      }
+      double next = s + step;
+      // test the step before the bracket, as a step too small to move s would otherwise be replaced by a bisection
+      if (Math.abs(step) <= TOLERANCE * s) {
+        return next;
+      }
+      if (!(next > lo && next < hi)) {
+        next = Double.isInfinite(hi) ? 2.0 * s : 0.5 * (lo + hi);
+      }
+      if (hi - lo <= TOLERANCE * next) {
+        return next;
+      }
+      s = next;
+    }
+    return s;
+  }
+
+  /**
+   * The normalised out-the-money Black price $b(x, s)$, for $x \le 0$.
+   */
+  private static double normalisedPrice(final double x, final double s) {
+    final double d1 = x / s + 0.5 * s;
+    final double d2 = d1 - s;
+    return Math.max(0.0, Math.exp(0.5 * x) * cumulativeNormal(d1) - Math.exp(-0.5 * x) * cumulativeNormal(d2));
+  }
+
+  private static double cumulativeNormal(final double z) {
+    return 0.5 * DERFC.getErfc(-z / ROOT2);
+  }
+
+  /**
+   * Computes the implied volatilities of a range of options, splitting the range in two until it is small enough.
+   */
+  private static final class ImpliedVolatilityTask extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+
+    private final double[] _forwards;
+    private final double[] _strikes;
+    private final double[] _timesToExpiry;
+    private final double[] _discountFactors;
+    private final double[] _prices;
+    private final boolean[] _isCall;
+    private final double[] _volatilities;
+    private final int _from;
+    private final int _to;
+
+    private ImpliedVolatilityTask(final double[] forwards, final double[] strikes, final double[] timesToExpiry, final double[] discountFactors,
+        final double[] prices, final boolean[] isCall, final double[] volatilities, final int from, final int to) {
+      _forwards = forwards;
+      _strikes = strikes;
+      _timesToExpiry = timesToExpiry;
+      _discountFactors = discountFactors;
+      _prices = prices;
+      _isCall = isCall;
+      _volatilities = volatilities;
+      _from = from;
+      _to = to;
+    }
+
+    @Override
+    protected void compute() {
+      if (_to - _from <= PARALLEL_THRESHOLD) {
+        impliedVolatilities(_forwards, _strikes, _timesToExpiry, _discountFactors, _prices, _isCall, _volatilities, _from, _to);
+      } else {
+        final int mid = (_from + _to) >>> 1;
+        invokeAll(new ImpliedVolatilityTask(_forwards, _strikes, _timesToExpiry, _discountFactors, _prices, _isCall, _volatilities, _from, mid),
+            new ImpliedVolatilityTask(_forwards, _strikes, _timesToExpiry, _discountFactors, _prices, _isCall, _volatilities, mid, _to));
+      }
+    }
+  }
+
+}
@@ -5,6 +5,9 @@
  */
 package com.opengamma.analytics.financial.montecarlo.provider;
 
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
 import com.opengamma.analytics.financial.interestrate.InstrumentDerivative;
 import com.opengamma.analytics.financial.model.interestrate.G2ppPiecewiseConstantModel;
 import com.opengamma.analytics.financial.model.interestrate.definition.G2ppPiecewiseConstantParameters;
@@ -17,6 +20,7 @@ import com.opengamma.analytics.math.linearalgebra.CholeskyDecompositionCommons;
 import com.opengamma.analytics.math.linearalgebra.CholeskyDecompositionResult;
 import com.opengamma.analytics.math.matrix.DoubleMatrix2D;
 import com.opengamma.analytics.math.random.RandomNumberGenerator;
+import com.opengamma.analytics.math.random.SubstreamRandomNumberGenerator;
 import com.opengamma.util.money.Currency;
 import com.opengamma.util.money.MultipleCurrencyAmount;
 
@@ -59,10 +63,20 @@ public class G2ppMonteCarloMethod extends MonteCarloMethod {
     super(numberGenerator, nbPath);
   }
 
+  /**
+   * Constructor for a method that simulates blocks of paths in parallel.
+   * @param numberGenerator The random number generator.
+   * @param nbPath The number of paths.
+   * @param pool The pool used to run blocks of paths.
+   */
+  public G2ppMonteCarloMethod(final SubstreamRandomNumberGenerator numberGenerator, final int nbPath, final ForkJoinPool pool) {
+    super(numberGenerator, nbPath, pool);
+  }
+
   /**
    * Computes the present value in the G2++ two factors model by Monte-Carlo.
    * Implementation note: The total number of paths is divided in blocks of maximum size BLOCK_SIZE=1000. The Monte Carlo is run on each block and the average of each
-   * block price is the total price. 
+   * block price is the total price. The blocks are run in parallel if the method has a pool.
    * @param instrument The swaption.
    * @param ccy The currency
    * @param g2Data The G2++ data (curves and G2++ parameters).
@@ -119,45 +133,31 @@ public class G2ppMonteCarloMethod extends MonteCarloMethod {
     final CholeskyDecompositionCommons cd = new CholeskyDecompositionCommons();
     final CholeskyDecompositionResult cdr = cd.evaluate(new DoubleMatrix2D(cov));
     final double[][] covCD = cdr.getL().getData();
-    final int nbBlock = (int) Math.round(Math.ceil(getNbPath() / ((double) BLOCK_SIZE)));
-    final int[] nbPath2 = new int[nbBlock];
-    for (int i = 0; i < nbBlock - 1; i++) {
-      nbPath2[i] = BLOCK_SIZE;
-    }
-    nbPath2[nbBlock - 1] = getNbPath() - (nbBlock - 1) * BLOCK_SIZE;
     final double[][] impactAmount = decision.getImpactAmount();
-    double pv = 0;
-    for (int loopblock = 0; loopblock < nbBlock; loopblock++) {
-      final double[][] x = getNormalArray(2 * nbJump, nbPath2[loopblock]);
-      final double[][] y = new double[2 * nbJump][nbPath2[loopblock]]; // jump/path
-      for (int looppath = 0; looppath < nbPath2[loopblock]; looppath++) {
-        for (int i = 0; i < 2 * nbJump; i++) {
-          for (int j = 0; j < 2 * nbJump; j++) {
-            y[i][looppath] += x[j][looppath] * covCD[i][j];
+    final List<Double> pvBlocks = simulateBlocks(BLOCK_SIZE, new BlockCalculator<Double>() {
+      @Override
+      public Double simulate(final RandomNumberGenerator numberGenerator, final int nbPath) {
+        final double[][] x = getNormalArray(numberGenerator, 2 * nbJump, nbPath);
+        final double[][] y = new double[2 * nbJump][nbPath]; // jump/path
+        for (int looppath = 0; looppath < nbPath; looppath++) {
+          for (int i = 0; i < 2 * nbJump; i++) {
+            for (int j = 0; j < 2 * nbJump; j++) {
+              y[i][looppath] += x[j][looppath] * covCD[i][j];
+            }
           }
         }
+        final Double[][][] pD = pathGeneratorDiscount(pDI, y, h, tau2);
+        return instrument.accept(MCC, new MonteCarloDiscountFactorDataBundle(pD, impactAmount)) * nbPath;
       }
-      final Double[][][] pD = pathGeneratorDiscount(pDI, y, h, tau2);
-      pv += instrument.accept(MCC, new MonteCarloDiscountFactorDataBundle(pD, impactAmount)) * nbPath2[loopblock];
+    });
+    double pv = 0;
+    for (final Double pvBlock : pvBlocks) {
+      pv += pvBlock;
     }
     pv *= pDN / getNbPath(); // Multiply by the numeraire.
     return MultipleCurrencyAmount.of(ccy, pv);
   }
 
-  /**
-   * Gets a 2D-array of independent normally distributed variables.
-   * @param nbJump The number of jumps.
-   * @param nbPath The number of paths.
-   * @return The array of variables.
-   */
-  private double[][] getNormalArray(final int nbJump, final int nbPath) {
-    final double[][] result = new double[nbJump][nbPath];
-    for (int loopjump = 0; loopjump < nbJump; loopjump++) {
-      result[loopjump] = getNumberGenerator().getVector(nbPath);
-    }
-    return result;
-  }
-
   /**
    * Construct the discount factors on the simulated paths from the random variables and the model constants.
    * @param initDiscountFactor The initial discount factors. jump/cf
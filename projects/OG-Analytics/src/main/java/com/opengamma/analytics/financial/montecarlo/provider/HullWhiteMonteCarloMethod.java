@@ -9,6 +9,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
 
 import com.opengamma.analytics.financial.interestrate.InstrumentDerivative;
 import com.opengamma.analytics.financial.model.interestrate.HullWhiteOneFactorPiecewiseConstantInterestRateModel;
@@ -26,6 +27,7 @@ import com.opengamma.analytics.math.linearalgebra.CholeskyDecompositionCommons;
 import com.opengamma.analytics.math.linearalgebra.CholeskyDecompositionResult;
 import com.opengamma.analytics.math.matrix.DoubleMatrix2D;
 import com.opengamma.analytics.math.random.RandomNumberGenerator;
+import com.opengamma.analytics.math.random.SubstreamRandomNumberGenerator;
 import com.opengamma.util.money.Currency;
 import com.opengamma.util.money.MultipleCurrencyAmount;
 import com.opengamma.util.tuple.DoublesPair;
@@ -69,10 +71,21 @@ public class HullWhiteMonteCarloMethod extends MonteCarloMethod {
     super(numberGenerator, nbPath);
   }
 
+  /**
+   * Constructor of a method that simulates the blocks of paths in parallel. Each block uses its own substream of the
+   * random numbers, so the results don't depend on the number of threads in the pool.
+   * @param numberGenerator The random number generator.
+   * @param nbPath The number of paths.
+   * @param pool The pool in which the blocks of paths are simulated.
+   */
+  public HullWhiteMonteCarloMethod(final SubstreamRandomNumberGenerator numberGenerator, final int nbPath, final ForkJoinPool pool) {
+    super(numberGenerator, nbPath, pool);
+  }
+
   /**
    * Computes the present value in the Hull-White one factor model by Monte-Carlo.
    * Implementation note: The total number of paths is divided in blocks of maximum size BLOCK_SIZE=1000. The Monte Carlo is run on each block and the average of each
-   * block price is the total price.
+   * block price is the total price. If the method has a pool the blocks are simulated in parallel.
    * @param instrument The swaption.
    * @param ccy The currency.
    * @param hwData The Hull-White data (curves and Hull-White parameters).
@@ -136,26 +149,18 @@ public class HullWhiteMonteCarloMethod extends MonteCarloMethod {
         covCD[loopjump + nbZero][loopjump2 + nbZero] = covCD2[loopjump][loopjump2];
       }
     }
-    final int nbBlock = (int) Math.round(Math.ceil(getNbPath() / ((double) BLOCK_SIZE)));
-    final int[] nbPath2 = new int[nbBlock];
-    for (int i = 0; i < nbBlock - 1; i++) {
-      nbPath2[i] = BLOCK_SIZE;
-    }
-    nbPath2[nbBlock - 1] = getNbPath() - (nbBlock - 1) * BLOCK_SIZE;
     final double[][] impactAmount = decision.getImpactAmount();
-    double pv = 0;
-    for (int loopblock = 0; loopblock < nbBlock; loopblock++) {
-      final double[][] x = getNormalArray(nbJump, nbPath2[loopblock]);
-      final double[][] y = new double[nbJump][nbPath2[loopblock]]; // jump/path
-      for (int looppath = 0; looppath < nbPath2[loopblock]; looppath++) {
-        for (int i = 0; i < nbJump; i++) {
-          for (int j = 0; j < nbJump; j++) {
-            y[i][looppath] += x[j][looppath] * covCD[i][j];
-          }
-        }
+    final List<Double> pvBlocks = simulateBlocks(BLOCK_SIZE, new BlockCalculator<Double>() {
+      @Override
+      public Double simulate(final RandomNumberGenerator numberGenerator, final int nbPath) {
+        final double[][] y = correlatedArray(numberGenerator, covCD, nbPath);
+        final Double[][][] pD = pathGeneratorDiscount(pDI, y, h, h2, gamma);
+        return instrument.accept(MCC, new MonteCarloDiscountFactorDataBundle(pD, impactAmount)) * nbPath;
       }
-      final Double[][][] pD = pathGeneratorDiscount(pDI, y, h, h2, gamma);
-      pv += instrument.accept(MCC, new MonteCarloDiscountFactorDataBundle(pD, impactAmount)) * nbPath2[loopblock];
+    });
+    double pv = 0;
+    for (final Double pvBlock : pvBlocks) {
+      pv += pvBlock;
     }
     pv *= pDN / getNbPath(); // Multiply by the numeraire.
     return MultipleCurrencyAmount.of(ccy, pv);
@@ -164,7 +169,7 @@ public class HullWhiteMonteCarloMethod extends MonteCarloMethod {
   /**
    * Computes the present value curve sensitivity in the Hull-White one factor model by Monte-Carlo. The sensitivity is computed by Adjoint Algorithmic Differentiation.
    * Implementation note: The total number of paths is divided in blocks of maximum size BLOCK_SIZE=1000. The Monte Carlo is run on each block and the average of each
-   * block price is the total price.
+   * block price is the total price. If the method has a pool the blocks are simulated in parallel.
    * @param instrument The swaption.
    * @param ccy The currency.
    * @param hwData The Hull-White data (curves and Hull-White parameters).
@@ -228,63 +233,52 @@ public class HullWhiteMonteCarloMethod extends MonteCarloMethod {
         covCD[loopjump + nbZero][loopjump2 + nbZero] = covCD2[loopjump][loopjump2];
       }
     }
-    final int nbBlock = (int) Math.round(Math.ceil(getNbPath() / ((double) BLOCK_SIZE)));
-    final int[] nbPath2 = new int[nbBlock];
-    for (int i = 0; i < nbBlock - 1; i++) {
-      nbPath2[i] = BLOCK_SIZE;
-    }
-    nbPath2[nbBlock - 1] = getNbPath() - (nbBlock - 1) * BLOCK_SIZE;
     final double[][] impactAmount = decision.getImpactAmount();
-    double pv = 0;
-    final double[] pvBlock = new double[nbBlock];
     // Backward sweep (init)
     final double pvBar = 1.0;
-    final double[] pvBlockBar = new double[nbBlock];
-    for (int loopblock = 0; loopblock < nbBlock; loopblock++) {
-      pvBlockBar[loopblock] = pDN / getNbPath() * pvBar;
-    }
-    final double[][] impactAmountBar = new double[nbJump][];
-    for (int loopjump = 0; loopjump < nbJump; loopjump++) {
-      impactAmountBar[loopjump] = new double[impactAmount[loopjump].length];
-    }
-    // Forward sweep (end) and backward sweep (main)
-    final double[][] pDIBar = new double[nbJump][];
-    for (int loopjump = 0; loopjump < nbJump; loopjump++) {
-      pDIBar[loopjump] = new double[impactAmount[loopjump].length];
-    }
-    for (int loopblock = 0; loopblock < nbBlock; loopblock++) {
-      final double[][] x = getNormalArray(nbJump, nbPath2[loopblock]);
-      final double[][] y = new double[nbJump][nbPath2[loopblock]]; // jump/path
-      for (int looppath = 0; looppath < nbPath2[loopblock]; looppath++) {
-        for (int i = 0; i < nbJump; i++) {
-          for (int j = 0; j < nbJump; j++) {
-            y[i][looppath] += x[j][looppath] * covCD[i][j];
-          }
-        }
-      }
-      final Double[][][] pD = pathGeneratorDiscount(pDI, y, h, h2, gamma);
-      final MonteCarloDiscountFactorDerivativeDataBundle mcdDB = new MonteCarloDiscountFactorDerivativeDataBundle(pD, impactAmount);
-      pvBlock[loopblock] = instrument.accept(MCDC, mcdDB) * nbPath2[loopblock];
-      pv += pvBlock[loopblock];
-      // Backward sweep (in block loop)
-      for (int loopjump = 0; loopjump < nbJump; loopjump++) {
-        for (int loopimp = 0; loopimp < impactAmount[loopjump].length; loopimp++) {
-          impactAmountBar[loopjump][loopimp] += mcdDB.getImpactAmountDerivative()[loopjump][loopimp] * nbPath2[loopblock] * pvBlockBar[loopblock];
-        }
-      }
-      final Double[][][] pDBar = new Double[nbPath2[loopblock]][nbJump][];
-      for (int looppath = 0; looppath < nbPath2[loopblock]; looppath++) {
+    final double pvBlockBar = pDN / getNbPath() * pvBar;
+    final List<BlockSensitivity> blocks = simulateBlocks(BLOCK_SIZE, new BlockCalculator<BlockSensitivity>() {
+      @Override
+      public BlockSensitivity simulate(final RandomNumberGenerator numberGenerator, final int nbPath) {
+        final double[][] y = correlatedArray(numberGenerator, covCD, nbPath);
+        final Double[][][] pD = pathGeneratorDiscount(pDI, y, h, h2, gamma);
+        final MonteCarloDiscountFactorDerivativeDataBundle mcdDB = new MonteCarloDiscountFactorDerivativeDataBundle(pD, impactAmount);
+        final double pvBlock = instrument.accept(MCDC, mcdDB) * nbPath;
+        // Backward sweep (in block)
+        final double[][] impactAmountBar = new double[nbJump][];
         for (int loopjump = 0; loopjump < nbJump; loopjump++) {
-          pDBar[looppath][loopjump] = new Double[impactAmount[loopjump].length];
+          impactAmountBar[loopjump] = new double[impactAmount[loopjump].length];
           for (int loopimp = 0; loopimp < impactAmount[loopjump].length; loopimp++) {
-            pDBar[looppath][loopjump][loopimp] = mcdDB.getPathDiscountingFactorDerivative()[looppath][loopjump][loopimp] * nbPath2[loopblock] * pvBlockBar[loopblock];
+            impactAmountBar[loopjump][loopimp] = mcdDB.getImpactAmountDerivative()[loopjump][loopimp] * nbPath * pvBlockBar;
+          }
+        }
+        final Double[][][] pDBar = new Double[nbPath][nbJump][];
+        for (int looppath = 0; looppath < nbPath; looppath++) {
+          for (int loopjump = 0; loopjump < nbJump; loopjump++) {
+            pDBar[looppath][loopjump] = new Double[impactAmount[loopjump].length];
+            for (int loopimp = 0; loopimp < impactAmount[loopjump].length; loopimp++) {
+              pDBar[looppath][loopjump][loopimp] = mcdDB.getPathDiscountingFactorDerivative()[looppath][loopjump][loopimp] * nbPath * pvBlockBar;
+            }
           }
         }
+        final double[][] pDIBar = pathGeneratorDiscountAdjointIDF(pDI, y, h, h2, gamma, pDBar);
+        return new BlockSensitivity(pvBlock, impactAmountBar, pDIBar);
       }
-      final double[][] pDIBarTemp = pathGeneratorDiscountAdjointIDF(pDI, y, h, h2, gamma, pDBar);
+    });
+    // Forward sweep (end) and backward sweep (main), the blocks are combined in order
+    double pv = 0;
+    final double[][] impactAmountBar = new double[nbJump][];
+    final double[][] pDIBar = new double[nbJump][];
+    for (int loopjump = 0; loopjump < nbJump; loopjump++) {
+      impactAmountBar[loopjump] = new double[impactAmount[loopjump].length];
+      pDIBar[loopjump] = new double[impactAmount[loopjump].length];
+    }
+    for (final BlockSensitivity block : blocks) {
+      pv += block._pv;
       for (int loopjump = 0; loopjump < nbJump; loopjump++) {
         for (int loopimp = 0; loopimp < impactAmount[loopjump].length; loopimp++) {
-          pDIBar[loopjump][loopimp] += pDIBarTemp[loopjump][loopimp];
+          impactAmountBar[loopjump][loopimp] += block._impactAmountBar[loopjump][loopimp];
+          pDIBar[loopjump][loopimp] += block._pDIBar[loopjump][loopimp];
         }
       }
     }
@@ -321,17 +315,24 @@ public class HullWhiteMonteCarloMethod extends MonteCarloMethod {
   }
 
   /**
-   * Gets a 2D-array of independent normally distributed variables.
-   * @param nbJump The number of jumps.
-   * @param nbPath The number of paths.
-   * @return The array of variables.
+   * Generates the correlated random variables for a block of paths.
+   * @param numberGenerator The random number generator for the block.
+   * @param covCD The Cholesky decomposition of the covariance matrix.
+   * @param nbPath The number of paths in the block.
+   * @return The correlated random variables (jump/path).
    */
-  private double[][] getNormalArray(final int nbJump, final int nbPath) {
-    final double[][] result = new double[nbJump][nbPath];
-    for (int loopjump = 0; loopjump < nbJump; loopjump++) {
-      result[loopjump] = getNumberGenerator().getVector(nbPath);
+  private static double[][] correlatedArray(final RandomNumberGenerator numberGenerator, final double[][] covCD, final int nbPath) {
+    final int nbJump = covCD.length;
+    final double[][] x = getNormalArray(numberGenerator, nbJump, nbPath);
+    final double[][] y = new double[nbJump][nbPath]; // jump/path
+    for (int looppath = 0; looppath < nbPath; looppath++) {
+      for (int i = 0; i < nbJump; i++) {
+        for (int j = 0; j < nbJump; j++) {
+          y[i][looppath] += x[j][looppath] * covCD[i][j];
+        }
+      }
     }
-    return result;
+    return y;
   }
 
   /**
@@ -464,4 +465,19 @@ public class HullWhiteMonteCarloMethod extends MonteCarloMethod {
   //    return gammaBar;
   //  }
 
+  /**
+   * The contribution of one block of paths to the present value and to the adjoints of the sensitivity calculation.
+   */
+  private static final class BlockSensitivity {
+    private final double _pv;
+    private final double[][] _impactAmountBar;
+    private final double[][] _pDIBar;
+
+    private BlockSensitivity(final double pv, final double[][] impactAmountBar, final double[][] pDIBar) {
+      _pv = pv;
+      _impactAmountBar = impactAmountBar;
+      _pDIBar = pDIBar;
+    }
+  }
+
 }
@@ -6,6 +6,8 @@
 package com.opengamma.analytics.financial.montecarlo.provider;
 
 import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 import com.opengamma.analytics.financial.interestrate.InstrumentDerivative;
 import com.opengamma.analytics.financial.model.interestrate.definition.LiborMarketModelDisplacedDiffusionParameters;
@@ -17,6 +19,7 @@ import com.opengamma.analytics.math.matrix.CommonsMatrixAlgebra;
 import com.opengamma.analytics.math.matrix.DoubleMatrix2D;
 import com.opengamma.analytics.math.matrix.MatrixAlgebra;
 import com.opengamma.analytics.math.random.RandomNumberGenerator;
+import com.opengamma.analytics.math.random.SubstreamRandomNumberGenerator;
 import com.opengamma.util.money.Currency;
 import com.opengamma.util.money.MultipleCurrencyAmount;
 
@@ -68,6 +71,28 @@ public class LiborMarketModelMonteCarloMethod extends MonteCarloMethod {
     _maxJump = maxJump;
   }
 
+  /**
+   * Constructor of a method that simulates the blocks of paths in parallel.
+   * @param numberGenerator The random number generator. Generate Normally distributed numbers.
+   * @param nbPath The number of paths.
+   * @param pool The pool in which the blocks of paths are simulated.
+   */
+  public LiborMarketModelMonteCarloMethod(final SubstreamRandomNumberGenerator numberGenerator, final int nbPath, final ForkJoinPool pool) {
+    this(numberGenerator, nbPath, MAX_JUMP_DEFAULT, pool);
+  }
+
+  /**
+   * Constructor of a method that simulates the blocks of paths in parallel.
+   * @param numberGenerator The random number generator. Generate Normally distributed numbers.
+   * @param nbPath The number of paths.
+   * @param maxJump The maximum length of a jump in the path generation.
+   * @param pool The pool in which the blocks of paths are simulated.
+   */
+  public LiborMarketModelMonteCarloMethod(final SubstreamRandomNumberGenerator numberGenerator, final int nbPath, final double maxJump, final ForkJoinPool pool) {
+    super(numberGenerator, nbPath, pool);
+    _maxJump = maxJump;
+  }
+
   public MultipleCurrencyAmount presentValue(final InstrumentDerivative instrument, final Currency ccy, final LiborMarketModelDisplacedDiffusionProvider lmmData) {
     final MulticurveProviderInterface multicurves = lmmData.getMulticurveProvider();
     final LiborMarketModelDisplacedDiffusionParameters parameters = lmmData.getLMMParameters();
@@ -86,23 +111,28 @@ public class LiborMarketModelMonteCarloMethod extends MonteCarloMethod {
       initL[loopper] = (dfL[loopper] / dfL[loopper + 1] - 1.0) / deltaLMM[loopper];
     }
 
-    final int nbBlock = (int) Math.round(Math.ceil(getNbPath() / ((double) BLOCK_SIZE)));
-    final int[] nbPath2 = new int[nbBlock];
-    for (int i = 0; i < nbBlock - 1; i++) {
-      nbPath2[i] = BLOCK_SIZE;
+    // Each path draws one vector of nbFactor normals for each intermediary jump
+    final double[][] jumpIn = intermediaryJumpTime(decision.getDecisionTime());
+    int nbStep = 0;
+    for (final double[] jumpInDecision : jumpIn) {
+      nbStep += jumpInDecision.length - 1;
     }
-    nbPath2[nbBlock - 1] = getNbPath() - (nbBlock - 1) * BLOCK_SIZE;
-
-    double price = 0.0;
-    for (int loopblock = 0; loopblock < nbBlock; loopblock++) {
-      final double[][] initLPath = new double[nbPeriodLMM][nbPath2[loopblock]];
-      for (int loopper = 0; loopper < nbPeriodLMM; loopper++) {
-        for (int looppath = 0; looppath < nbPath2[loopblock]; looppath++) {
-          initLPath[loopper][looppath] = initL[loopper];
+    final List<Double> priceBlocks = simulateBlocks(BLOCK_SIZE, nbStep, new BlockCalculator<Double>() {
+      @Override
+      public Double simulate(final RandomNumberGenerator numberGenerator, final int nbPath) {
+        final double[][] initLPath = new double[nbPeriodLMM][nbPath];
+        for (int loopper = 0; loopper < nbPeriodLMM; loopper++) {
+          for (int looppath = 0; looppath < nbPath; looppath++) {
+            initLPath[loopper][looppath] = initL[loopper];
+          }
         }
+        final double[][][] pathIbor = pathgeneratorlibor(numberGenerator, jumpIn, initLPath, parameters);
+        return instrument.accept(MCC, new MonteCarloIborRateDataBundle(pathIbor, deltaLMM, decision.getImpactAmount(), impactIndex));
       }
-      final double[][][] pathIbor = pathgeneratorlibor(decision.getDecisionTime(), initLPath, parameters);
-      price += instrument.accept(MCC, new MonteCarloIborRateDataBundle(pathIbor, deltaLMM, decision.getImpactAmount(), impactIndex));
+    });
+    double price = 0.0;
+    for (final Double priceBlock : priceBlocks) {
+      price += priceBlock;
     }
     price *= multicurves.getDiscountFactor(ccy, parameters.getIborTime()[parameters.getIborTime().length - 1]) / getNbPath();
     return MultipleCurrencyAmount.of(ccy, price);
@@ -121,11 +151,12 @@ public class LiborMarketModelMonteCarloMethod extends MonteCarloMethod {
 
   /**
    * Create one step in the LMM diffusion. The step is done through several jump times. The diffusion is approximated with a predictor-corrector approach.
+   * @param numberGenerator The random number generator for the block of paths.
    * @param jumpTime The jump times.
    * @param initIbor Rate at the start of the period. Size: nbPeriodLMM x nbPath.
    * @return The Ibor rates at the end of the jump period. Size: nbPeriodLMM x nbPath.
    */
-  private double[][] stepPC(final double[] jumpTime, final double[][] initIbor, final LiborMarketModelDisplacedDiffusionParameters lmm) {
+  private double[][] stepPC(final RandomNumberGenerator numberGenerator, final double[] jumpTime, final double[][] initIbor, final LiborMarketModelDisplacedDiffusionParameters lmm) {
     final double amr = lmm.getMeanReversion();
     final double[] iborTime = lmm.getIborTime();
     final double[] almm = lmm.getDisplacement();
@@ -164,7 +195,7 @@ public class LiborMarketModelMonteCarloMethod extends MonteCarloMethod {
       }
       final DoubleMatrix2D salpha2 = new DoubleMatrix2D(salpha2Array);
       // Random seed
-      final double[][] dw = getNormalArray(nbFactorLMM, nbPath);
+      final double[][] dw = getNormalArray(numberGenerator, nbFactorLMM, nbPath);
       // Common figures
       final double[] dr1 = new double[nI];
       for (int loopn = 0; loopn < nI; loopn++) {
@@ -213,57 +244,54 @@ public class LiborMarketModelMonteCarloMethod extends MonteCarloMethod {
   }
 
   /**
-   *
+   * Computes the intermediary jump times between the mandatory jumps. A jump longer than the maximum jump length is split in equal sub-jumps.
    * @param jumpTime The time of the mandatory jumps.
-   * @param initIbor The Ibor rates at the start. nbPeriodLMM x nbPath
-   * @param lmm The LMM parameters.
-   * @return The paths. Size: nbJump x nbPeriodLMM x nbPath
+   * @return The intermediary jump times for each mandatory jump, including the start and end times of the jump. Size: nbJump x (nbJumpIn + 1)
    */
-  private double[][][] pathgeneratorlibor(final double[] jumpTime, final double[][] initIbor, final LiborMarketModelDisplacedDiffusionParameters lmm) {
-    final int nbPeriod = initIbor.length;
-    final int nbPath = initIbor[0].length;
+  private double[][] intermediaryJumpTime(final double[] jumpTime) {
     final int nbJump = jumpTime.length;
-    double[][] initTmp = new double[nbPeriod][nbPath];
-    for (int loop1 = 0; loop1 < nbPeriod; loop1++) {
-      System.arraycopy(initIbor[loop1], 0, initTmp[loop1], 0, nbPath);
-    }
     final double[] jumpTimeA = new double[nbJump + 1];
     jumpTimeA[0] = 0;
     System.arraycopy(jumpTime, 0, jumpTimeA, 1, nbJump);
-    final double[][][] result = new double[nbJump][nbPeriod][nbPath];
-    // TODO: add intermediary jump dates if necessary
+    final double[][] jumpIn = new double[nbJump][];
     for (int loopjump = 0; loopjump < nbJump; loopjump++) {
-      // Intermediary jumps
-      double[] jumpIn;
       if (jumpTimeA[loopjump + 1] - jumpTimeA[loopjump] < _maxJump) {
-        jumpIn = new double[] {jumpTimeA[loopjump], jumpTimeA[loopjump + 1]};
+        jumpIn[loopjump] = new double[] {jumpTimeA[loopjump], jumpTimeA[loopjump + 1]};
       } else {
         final double jump = jumpTimeA[loopjump + 1] - jumpTimeA[loopjump];
         final int nbJumpIn = (int) Math.ceil(jump / _maxJump);
-        jumpIn = new double[nbJumpIn + 1];
-        jumpIn[0] = jumpTimeA[loopjump];
+        jumpIn[loopjump] = new double[nbJumpIn + 1];
+        jumpIn[loopjump][0] = jumpTimeA[loopjump];
         for (int loopJumpIn = 1; loopJumpIn <= nbJumpIn; loopJumpIn++) {
-          jumpIn[loopJumpIn] = jumpTimeA[loopjump] + loopJumpIn * jump / nbJumpIn;
+          jumpIn[loopjump][loopJumpIn] = jumpTimeA[loopjump] + loopJumpIn * jump / nbJumpIn;
         }
       }
-      initTmp = stepPC(jumpIn, initTmp, lmm);
-      for (int loop1 = 0; loop1 < nbPeriod; loop1++) {
-        System.arraycopy(initTmp[loop1], 0, result[loopjump][loop1], 0, nbPath);
-      }
     }
-    return result;
+    return jumpIn;
   }
 
   /**
-   * Gets a 2D-array of independent normally distributed variables.
-   * @param nbJump The number of jumps.
-   * @param nbPath The number of paths.
-   * @return The array of variables.
+   * Generates the paths of the Ibor rates for a block of paths.
+   * @param numberGenerator The random number generator for the block of paths.
+   * @param jumpIn The intermediary jump times for each mandatory jump, see {@link #intermediaryJumpTime(double[])}.
+   * @param initIbor The Ibor rates at the start. nbPeriodLMM x nbPath
+   * @param lmm The LMM parameters.
+   * @return The paths. Size: nbJump x nbPeriodLMM x nbPath
    */
-  private double[][] getNormalArray(final int nbJump, final int nbPath) {
-    final double[][] result = new double[nbJump][nbPath];
+  private double[][][] pathgeneratorlibor(final RandomNumberGenerator numberGenerator, final double[][] jumpIn, final double[][] initIbor, final LiborMarketModelDisplacedDiffusionParameters lmm) {
+    final int nbPeriod = initIbor.length;
+    final int nbPath = initIbor[0].length;
+    final int nbJump = jumpIn.length;
+    double[][] initTmp = new double[nbPeriod][nbPath];
+    for (int loop1 = 0; loop1 < nbPeriod; loop1++) {
+      System.arraycopy(initIbor[loop1], 0, initTmp[loop1], 0, nbPath);
+    }
+    final double[][][] result = new double[nbJump][nbPeriod][nbPath];
     for (int loopjump = 0; loopjump < nbJump; loopjump++) {
-      result[loopjump] = getNumberGenerator().getVector(nbPath);
+      initTmp = stepPC(numberGenerator, jumpIn[loopjump], initTmp, lmm);
+      for (int loop1 = 0; loop1 < nbPeriod; loop1++) {
+        System.arraycopy(initTmp[loop1], 0, result[loopjump][loop1], 0, nbPath);
+      }
     }
     return result;
   }
@@ -0,0 +1,98 @@
+/**
+ * Copyright (C) 2014 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.analytics.financial.montecarlo.provider;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Timing statistics for the blocks of paths simulated by a {@link MonteCarloMethod}.
+ * <p>
+ * The statistics are accumulated over all the calculations done by the method until {@link #reset()} is called.
+ * They are updated by the threads running the blocks and can be read at any time.
+ */
+public final class MonteCarloBlockStatistics {
+
+  private final AtomicLong _blockCount = new AtomicLong();
+  private final AtomicLong _pathCount = new AtomicLong();
+  private final AtomicLong _totalNanos = new AtomicLong();
+  private final AtomicLong _maxNanos = new AtomicLong();
+
+  /* package */ MonteCarloBlockStatistics() {
+  }
+
+  /**
+   * Records the time taken to simulate a block.
+   * @param nbPath The number of paths in the block.
+   * @param nanos The time taken in nanoseconds.
+   */
+  /* package */ void record(final int nbPath, final long nanos) {
+    _blockCount.incrementAndGet();
+    _pathCount.addAndGet(nbPath);
+    _totalNanos.addAndGet(nanos);
+    long max = _maxNanos.get();
+    while (nanos > max && !_maxNanos.compareAndSet(max, nanos)) {
+      max = _maxNanos.get();
+    }
+  }
+
+  /**
+   * Gets the number of blocks simulated.
+   * @return The number of blocks.
+   */
+  public long getBlockCount() {
+    return _blockCount.get();
+  }
+
+  /**
+   * Gets the number of paths simulated.
+   * @return The number of paths.
+   */
+  public long getPathCount() {
+    return _pathCount.get();
+  }
+
+  /**
+   * Gets the total time spent simulating blocks, summed over all threads.
+   * @return The time in nanoseconds.
+   */
+  public long getTotalNanos() {
+    return _totalNanos.get();
+  }
+
+  /**
+   * Gets the longest time taken to simulate a block.
+   * @return The time in nanoseconds.
+   */
+  public long getMaxNanos() {
+    return _maxNanos.get();
+  }
+
+  /**
+   * Gets the average time taken to simulate a block.
+   * @return The time in nanoseconds, zero if no blocks have been simulated.
+   */
+  public double getMeanNanos() {
+    final long count = _blockCount.get();
+    return count == 0 ? 0 : _totalNanos.get() / (double) count;
+  }
+
+  /**
+   * Resets the statistics.
+   */
+  public void reset() {
+    _blockCount.set(0);
+    _pathCount.set(0);
+    _totalNanos.set(0);
+    _maxNanos.set(0);
+  }
+
+  @Override
+  public String toString() {
+    return "MonteCarloBlockStatistics[blocks=" + getBlockCount() + ", paths=" + getPathCount() + ", totalNanos=" +
+        getTotalNanos() + ", maxNanos=" + getMaxNanos() + "]";
+  }
+
+}
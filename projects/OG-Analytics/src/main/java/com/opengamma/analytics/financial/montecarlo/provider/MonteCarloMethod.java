@@ -5,10 +5,26 @@
  */
 package com.opengamma.analytics.financial.montecarlo.provider;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import com.opengamma.analytics.math.random.BlockRandomNumberGenerator;
 import com.opengamma.analytics.math.random.RandomNumberGenerator;
+import com.opengamma.analytics.math.random.SubstreamRandomNumberGenerator;
+import com.opengamma.util.ArgumentChecker;
 
 /**
  * Generic Monte-Carlo pricing method.
+ * <p>
+ * The paths are simulated in blocks. If the method has a fork-join pool the blocks are run in parallel in the pool.
+ * The number generator is then a {@link SubstreamRandomNumberGenerator} and each block draws its numbers from the
+ * substream starting at the first vector the block would have used in a sequential run, so the numbers used by a
+ * block don't depend on the order in which the blocks are run and the results of the blocks are always combined in
+ * block order. Without a pool the blocks are run sequentially and share the number generator. For a generator whose
+ * substreams are slices of one sequence, like {@link com.opengamma.analytics.math.random.SobolNormalRandomNumberGenerator},
+ * the parallel results are then the same as the sequential ones.
  */
 public abstract class MonteCarloMethod {
 
@@ -20,6 +36,14 @@ public abstract class MonteCarloMethod {
    * The number of paths.
    */
   private final int _nbPath;
+  /**
+   * The pool used to run blocks of paths in parallel, null if they are run on the calling thread.
+   */
+  private final ForkJoinPool _pool;
+  /**
+   * The timing statistics of the blocks.
+   */
+  private final MonteCarloBlockStatistics _blockStatistics = new MonteCarloBlockStatistics();
 
   /**
    * Constructor.
@@ -29,6 +53,21 @@ public abstract class MonteCarloMethod {
   public MonteCarloMethod(RandomNumberGenerator numberGenerator, int nbPath) {
     _numberGenerator = numberGenerator;
     _nbPath = nbPath;
+    _pool = null;
+  }
+
+  /**
+   * Constructor for a method that simulates blocks of paths in parallel.
+   * @param numberGenerator The random number generator, not null.
+   * @param nbPath The number of paths.
+   * @param pool The pool used to run blocks of paths, not null.
+   */
+  public MonteCarloMethod(SubstreamRandomNumberGenerator numberGenerator, int nbPath, ForkJoinPool pool) {
+    ArgumentChecker.notNull(numberGenerator, "numberGenerator");
+    ArgumentChecker.notNull(pool, "pool");
+    _numberGenerator = numberGenerator;
+    _nbPath = nbPath;
+    _pool = pool;
   }
 
   /**
@@ -47,4 +86,182 @@ public abstract class MonteCarloMethod {
     return _nbPath;
   }
 
+  /**
+   * Gets the pool used to run blocks of paths in parallel.
+   * @return The pool, null if blocks are run on the calling thread.
+   */
+  public ForkJoinPool getPool() {
+    return _pool;
+  }
+
+  /**
+   * Gets the timing statistics of the blocks of paths simulated by this method.
+   * @return The statistics.
+   */
+  public MonteCarloBlockStatistics getBlockStatistics() {
+    return _blockStatistics;
+  }
+
+  /**
+   * Gets a 2D-array of independent normally distributed variables from the method's number generator.
+   * @param nbJump The number of jumps.
+   * @param nbPath The number of paths.
+   * @return The array of variables, jump/path.
+   */
+  protected double[][] getNormalArray(final int nbJump, final int nbPath) {
+    return getNormalArray(_numberGenerator, nbJump, nbPath);
+  }
+
+  /**
+   * Gets a 2D-array of independent normally distributed variables.
+   * <p>
+   * If the number generator is a {@link BlockRandomNumberGenerator} the variables for all the paths are drawn in one
+   * block, each path being a vector with one element per jump, which is the order quasi-random generators need.
+   * Otherwise one vector is drawn per jump, with one element per path.
+   * @param numberGenerator The number generator.
+   * @param nbJump The number of jumps.
+   * @param nbPath The number of paths.
+   * @return The array of variables, jump/path.
+   */
+  protected static double[][] getNormalArray(final RandomNumberGenerator numberGenerator, final int nbJump, final int nbPath) {
+    final double[][] result = new double[nbJump][];
+    if (numberGenerator instanceof BlockRandomNumberGenerator) {
+      final double[] buffer = new double[nbJump * nbPath];
+      ((BlockRandomNumberGenerator) numberGenerator).fillVectors(buffer, nbJump, nbPath);
+      for (int loopjump = 0; loopjump < nbJump; loopjump++) {
+        final double[] jump = new double[nbPath];
+        for (int looppath = 0; looppath < nbPath; looppath++) {
+          jump[looppath] = buffer[looppath * nbJump + loopjump];
+        }
+        result[loopjump] = jump;
+      }
+    } else {
+      for (int loopjump = 0; loopjump < nbJump; loopjump++) {
+        result[loopjump] = numberGenerator.getVector(nbPath);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Divides the paths into blocks and simulates each block.
+   * <p>
+   * The blocks are run in parallel if the method has a pool, otherwise in order on the calling thread.
+   * The results are returned in block order whichever is the case, so combining them in the order of the list gives
+   * the same answer however the blocks were run.
+   * @param <T> The type of the result of a block.
+   * @param blockSize The maximum number of paths in a block.
+   * @param calculator Simulates one block of paths, drawing one vector per path from the number generator.
+   * @return The results of the blocks, in block order.
+   */
+  protected <T> List<T> simulateBlocks(final int blockSize, final BlockCalculator<T> calculator) {
+    return simulateBlocks(blockSize, 1, calculator);
+  }
+
+  /**
+   * Divides the paths into blocks and simulates each block.
+   * <p>
+   * The blocks are run in parallel if the method has a pool, otherwise in order on the calling thread.
+   * The results are returned in block order whichever is the case, so combining them in the order of the list gives
+   * the same answer however the blocks were run.
+   * @param <T> The type of the result of a block.
+   * @param blockSize The maximum number of paths in a block.
+   * @param vectorsPerPath The number of vectors the calculator draws from the number generator for each path. When
+   * the blocks are run in parallel each block's substream starts after the vectors used by the previous blocks, so
+   * no two blocks share numbers.
+   * @param calculator Simulates one block of paths.
+   * @return The results of the blocks, in block order.
+   */
+  protected <T> List<T> simulateBlocks(final int blockSize, final int vectorsPerPath, final BlockCalculator<T> calculator) {
+    ArgumentChecker.notNegativeOrZero(vectorsPerPath, "vectorsPerPath");
+    final int nbBlock = (int) Math.round(Math.ceil(_nbPath / ((double) blockSize)));
+    final Object[] results = new Object[nbBlock];
+    if (_pool == null) {
+      for (int loopblock = 0; loopblock < nbBlock; loopblock++) {
+        results[loopblock] = simulateBlock(blockSize, vectorsPerPath, nbBlock, loopblock, calculator);
+      }
+    } else if (nbBlock > 0) {
+      _pool.invoke(new BlockTask<>(blockSize, vectorsPerPath, nbBlock, 0, nbBlock, calculator, results));
+    }
+    final List<T> list = new ArrayList<>(nbBlock);
+    for (final Object result : results) {
+      @SuppressWarnings("unchecked")
+      final T blockResult = (T) result;
+      list.add(blockResult);
+    }
+    return list;
+  }
+
+  private <T> T simulateBlock(final int blockSize, final int vectorsPerPath, final int nbBlock, final int block,
+      final BlockCalculator<T> calculator) {
+    final int nbPath = block < nbBlock - 1 ? blockSize : _nbPath - (nbBlock - 1) * blockSize;
+    final RandomNumberGenerator generator;
+    if (_pool != null) {
+      // the constructor with a pool only accepts substream generators
+      final long firstVector = (long) block * blockSize * vectorsPerPath;
+      generator = ((SubstreamRandomNumberGenerator) _numberGenerator).getSubstream(firstVector);
+    } else {
+      generator = _numberGenerator;
+    }
+    final long start = System.nanoTime();
+    final T result = calculator.simulate(generator, nbPath);
+    _blockStatistics.record(nbPath, System.nanoTime() - start);
+    return result;
+  }
+
+  /**
+   * Simulates a block of paths.
+   * @param <T> The type of the result.
+   */
+  protected interface BlockCalculator<T> {
+
+    /**
+     * Simulates a block of paths. Blocks can be simulated concurrently so this mustn't modify any shared state.
+     * The number of vectors drawn from the generator for each path must be the number passed to
+     * {@link MonteCarloMethod#simulateBlocks(int, int, BlockCalculator)}.
+     * @param numberGenerator The number generator for the block.
+     * @param nbPath The number of paths in the block.
+     * @return The result for the block.
+     */
+    T simulate(RandomNumberGenerator numberGenerator, int nbPath);
+  }
+
+  /**
+   * Simulates a range of blocks, splitting the range in half until there is one block in each task.
+   */
+  private final class BlockTask<T> extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int _blockSize;
+    private final int _vectorsPerPath;
+    private final int _nbBlock;
+    private final int _from;
+    private final int _to;
+    private final transient BlockCalculator<T> _calculator;
+    private final Object[] _results;
+
+    private BlockTask(final int blockSize, final int vectorsPerPath, final int nbBlock, final int from, final int to,
+        final BlockCalculator<T> calculator, final Object[] results) {
+      _blockSize = blockSize;
+      _vectorsPerPath = vectorsPerPath;
+      _nbBlock = nbBlock;
+      _from = from;
+      _to = to;
+      _calculator = calculator;
+      _results = results;
+    }
+
+    @Override
+    protected void compute() {
+      if (_to - _from == 1) {
+        _results[_from] = simulateBlock(_blockSize, _vectorsPerPath, _nbBlock, _from, _calculator);
+      } else {
+        final int mid = (_from + _to) >>> 1;
+        invokeAll(new BlockTask<>(_blockSize, _vectorsPerPath, _nbBlock, _from, mid, _calculator, _results),
+            new BlockTask<>(_blockSize, _vectorsPerPath, _nbBlock, mid, _to, _calculator, _results));
+      }
+    }
+  }
+
 }
@@ -0,0 +1,133 @@
+/**
+ * Copyright (C) 2014 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.analytics.financial.provider.calculator.discounting;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import com.opengamma.analytics.financial.interestrate.InstrumentDerivative;
+import com.opengamma.analytics.financial.interestrate.annuity.derivative.Annuity;
+import com.opengamma.analytics.financial.interestrate.swap.derivative.Swap;
+import com.opengamma.analytics.financial.interestrate.swap.derivative.SwapMultileg;
+import com.opengamma.analytics.financial.provider.description.interestrate.ParameterProviderInterface;
+import com.opengamma.analytics.financial.provider.sensitivity.multicurve.CompactMulticurveSensitivity;
+import com.opengamma.analytics.financial.provider.sensitivity.multicurve.MulticurveSensitivity;
+import com.opengamma.analytics.financial.provider.sensitivity.multicurve.MulticurveSensitivityAccumulator;
+import com.opengamma.analytics.financial.provider.sensitivity.multicurve.MultipleCurrencyMulticurveSensitivity;
+import com.opengamma.util.ArgumentChecker;
+import com.opengamma.util.money.Currency;
+
+/**
+ * Calculator of the present value curve sensitivity by discounting as {@link CompactMulticurveSensitivity} by currency.
+ * <p>
+ * Swaps and annuities are split into their payments and the sensitivity of each payment, calculated by
+ * {@link PresentValueCurveSensitivityDiscountingCalculator}, is added directly to an accumulator for its currency. This avoids
+ * building the intermediate sums of the legs and of the portfolio as {@link MultipleCurrencyMulticurveSensitivity}, which copy all the
+ * point sensitivities at each addition.
+ */
+public final class PresentValueCurveSensitivityCompactDiscountingCalculator {
+
+  /**
+   * The unique instance of the calculator.
+   */
+  private static final PresentValueCurveSensitivityCompactDiscountingCalculator INSTANCE = new PresentValueCurveSensitivityCompactDiscountingCalculator();
+
+  /**
+   * Gets the calculator instance.
+   * @return The calculator.
+   */
+  public static PresentValueCurveSensitivityCompactDiscountingCalculator getInstance() {
+    return INSTANCE;
+  }
+
+  /**
+   * Constructor.
+   */
+  private PresentValueCurveSensitivityCompactDiscountingCalculator() {
+  }
+
+  /**
+   * The calculator used for the instruments that aren't split.
+   */
+  private static final PresentValueCurveSensitivityDiscountingCalculator PVCSDC = PresentValueCurveSensitivityDiscountingCalculator.getInstance();
+
+  /**
+   * Computes the present value curve sensitivity of an instrument.
+   * @param instrument The instrument, not null.
+   * @param multicurve The multi-curve provider, not null.
+   * @return The sensitivity by currency.
+   */
+  public Map<Currency, CompactMulticurveSensitivity> presentValueCurveSensitivity(final InstrumentDerivative instrument,
+      final ParameterProviderInterface multicurve) {
+    ArgumentChecker.notNull(instrument, "instrument");
+    ArgumentChecker.notNull(multicurve, "multicurve");
+    final Map<Currency, MulticurveSensitivityAccumulator> accumulators = new HashMap<>();
+    accumulate(instrument, multicurve, accumulators);
+    return toCompact(accumulators);
+  }
+
+  /**
+   * Computes the total present value curve sensitivity of several instruments, for example a portfolio.
+   * @param instruments The instruments, not null.
+   * @param multicurve The multi-curve provider, not null.
+   * @return The total sensitivity by currency.
+   */
+  public Map<Currency, CompactMulticurveSensitivity> presentValueCurveSensitivity(final Iterable<? extends InstrumentDerivative> instruments,
+      final ParameterProviderInterface multicurve) {
+    ArgumentChecker.notNull(instruments, "instruments");
+    ArgumentChecker.notNull(multicurve, "multicurve");
+    final Map<Currency, MulticurveSensitivityAccumulator> accumulators = new HashMap<>();
+    for (final InstrumentDerivative instrument : instruments) {
+      ArgumentChecker.notNull(instrument, "instrument");
+      accumulate(instrument, multicurve, accumulators);
+    }
+    return toCompact(accumulators);
+  }
+
+  /**
+   * Adds the present value curve sensitivity of an instrument to accumulators by currency. Accumulators are created for the currencies
+   * which don't have one.
+   * @param instrument The instrument, not null.
+   * @param multicurve The multi-curve provider, not null.
+   * @param accumulators The accumulators by currency, not null.
+   */
+  public void accumulate(final InstrumentDerivative instrument, final ParameterProviderInterface multicurve,
+      final Map<Currency, MulticurveSensitivityAccumulator> accumulators) {
+    if (instrument instanceof Swap) {
+      final Swap<?, ?> swap = (Swap<?, ?>) instrument;
+      accumulate(swap.getFirstLeg(), multicurve, accumulators);
+      accumulate(swap.getSecondLeg(), multicurve, accumulators);
+    } else if (instrument instanceof SwapMultileg) {
+      for (final Annuity<?> leg : ((SwapMultileg) instrument).getLegs()) {
+        accumulate(leg, multicurve, accumulators);
+      }
+    } else if (instrument instanceof Annuity) {
+      final Annuity<?> annuity = (Annuity<?>) instrument;
+      for (int loopp = 0; loopp < annuity.getNumberOfPayments(); loopp++) {
+        accumulate(annuity.getNthPayment(loopp), multicurve, accumulators);
+      }
+    } else {
+      final MultipleCurrencyMulticurveSensitivity sensitivity = instrument.accept(PVCSDC, multicurve);
+      for (final Map.Entry<Currency, MulticurveSensitivity> entry : sensitivity.getSensitivities().entrySet()) {
+        MulticurveSensitivityAccumulator accumulator = accumulators.get(entry.getKey());
+        if (accumulator == null) {
+          accumulator = new MulticurveSensitivityAccumulator();
+          accumulators.put(entry.getKey(), accumulator);
+        }
+        accumulator.add(entry.getValue());
+      }
+    }
+  }
+
+  private static Map<Currency, CompactMulticurveSensitivity> toCompact(final Map<Currency, MulticurveSensitivityAccumulator> accumulators) {
+    final Map<Currency, CompactMulticurveSensitivity> result = new HashMap<>();
+    for (final Map.Entry<Currency, MulticurveSensitivityAccumulator> entry : accumulators.entrySet()) {
+      result.put(entry.getKey(), entry.getValue().toCompactSensitivity());
+    }
+    return result;
+  }
+
+}
@@ -163,11 +163,8 @@ public class MulticurveDiscountBuildingRepository {
     }
     // Sensitivity to parameters
     final int nbIns = instruments.length;
-    final double[][] res = new double[nbParametersCurrentTotal][];
-    for (int loopinstrument = 0; loopinstrument < nbIns; loopinstrument++) {
-      res[loopinstrument] = parameterSensitivityCalculator.calculateSensitivity(instruments[loopinstrument], multicurves, allCurveName).getData();
-      // The sensitivity is to all parameters in the order provided by the allCurveName
-    }
+    // The sensitivity is to all parameters in the order provided by the allCurveName
+    final double[][] res = parameterSensitivityCalculator.calculateSensitivities(instruments, multicurves, allCurveName).getData();
 
     final int nbParametersAllCurvesTotal = res[0].length;
     // Jacobian direct
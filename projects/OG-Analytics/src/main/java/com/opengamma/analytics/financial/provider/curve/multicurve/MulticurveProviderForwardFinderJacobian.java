@@ -7,7 +7,6 @@ package com.opengamma.analytics.financial.provider.curve.multicurve;
 
 import java.util.Set;
 
-import com.opengamma.analytics.financial.interestrate.InstrumentDerivative;
 import com.opengamma.analytics.financial.provider.description.interestrate.MulticurveProviderForward;
 import com.opengamma.analytics.financial.provider.sensitivity.multicurve.ParameterSensitivityMulticurveMatrixAbstractCalculator;
 import com.opengamma.analytics.math.function.Function1D;
@@ -45,13 +44,7 @@ public class MulticurveProviderForwardFinderJacobian extends Function1D<DoubleMa
     final MulticurveProviderForward newCurves = _data.getGeneratorMarket().evaluate(x);
     final Set<String> curvesSet = _data.getGeneratorMarket().getCurvesList();
     bundle.setAll(newCurves);
-    final int nbParameters = _data.getNumberOfInstruments();
-    final double[][] res = new double[nbParameters][nbParameters];
-    for (int loopinstrument = 0; loopinstrument < _data.getNumberOfInstruments(); loopinstrument++) {
-      final InstrumentDerivative deriv = _data.getInstrument(loopinstrument);
-      res[loopinstrument] = _parameterSensitivityCalculator.calculateSensitivity(deriv, bundle, curvesSet).getData();
-    }
-    return new DoubleMatrix2D(res);
+    return _parameterSensitivityCalculator.calculateSensitivities(_data.getInstruments(), bundle, curvesSet);
   }
 
 }
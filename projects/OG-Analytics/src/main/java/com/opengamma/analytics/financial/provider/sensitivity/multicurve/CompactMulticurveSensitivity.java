@@ -0,0 +1,223 @@
+/**
+ * Copyright (C) 2014 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.analytics.financial.provider.sensitivity.multicurve;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.opengamma.util.ArgumentChecker;
+import com.opengamma.util.tuple.DoublesPair;
+
+/**
+ * Immutable point sensitivity to multi-curves stored in primitive arrays.
+ * <p>
+ * This holds the same information as a {@link MulticurveSensitivity}, but the sensitivities of each curve are stored in parallel
+ * arrays sorted by time (by start time, end time and accrual factor for the forward sensitivities) with the values at the same time
+ * added together. It is equivalent to a {@link MulticurveSensitivity} after {@link MulticurveSensitivity#cleaned()}, except that the
+ * compounding of the forward sensitivities is kept.
+ * <p>
+ * Instances are created from a {@link MulticurveSensitivity} using {@link #of(MulticurveSensitivity)} or by a
+ * {@link MulticurveSensitivityAccumulator}, which should be used to add together a large number of sensitivities.
+ */
+public final class CompactMulticurveSensitivity implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * The sensitivities to the yield of the discounting curves, by curve name.
+   */
+  private final Map<String, CurvePointSensitivities> _sensitivityYieldDiscounting;
+  /**
+   * The sensitivities to the forward curves, by curve name.
+   */
+  private final Map<String, CurveForwardSensitivities> _sensitivityForward;
+
+  /**
+   * Constructor. The maps are used directly.
+   * @param sensitivityYieldDiscounting The sensitivities to the discounting curves.
+   * @param sensitivityForward The sensitivities to the forward curves.
+   */
+  /* package */ CompactMulticurveSensitivity(final Map<String, CurvePointSensitivities> sensitivityYieldDiscounting,
+      final Map<String, CurveForwardSensitivities> sensitivityForward) {
+    _sensitivityYieldDiscounting = sensitivityYieldDiscounting;
+    _sensitivityForward = sensitivityForward;
+  }
+
+  /**
+   * Creates a compact sensitivity from a sensitivity.
+   * @param sensitivity The sensitivity, not null. The forward sensitivities must be simply or annually compounded.
+   * @return The compact sensitivity.
+   */
+  public static CompactMulticurveSensitivity of(final MulticurveSensitivity sensitivity) {
+    return new MulticurveSensitivityAccumulator().add(sensitivity).toCompactSensitivity();
+  }
+
+  /**
+   * Gets the names of the curves with a sensitivity to the yield.
+   * @return The curve names.
+   */
+  public Set<String> getYieldDiscountingCurveNames() {
+    return Collections.unmodifiableSet(_sensitivityYieldDiscounting.keySet());
+  }
+
+  /**
+   * Gets the times at which there is a sensitivity to the yield of a curve, in increasing order.
+   * @param curveName The curve name.
+   * @return The times, empty if there is no sensitivity to the curve.
+   */
+  public double[] getYieldDiscountingTimes(final String curveName) {
+    final CurvePointSensitivities curve = _sensitivityYieldDiscounting.get(curveName);
+    return curve == null ? new double[0] : curve.getTimes();
+  }
+
+  /**
+   * Gets the sensitivities to the yield of a curve, in the same order as the times.
+   * @param curveName The curve name.
+   * @return The values, empty if there is no sensitivity to the curve.
+   */
+  public double[] getYieldDiscountingValues(final String curveName) {
+    final CurvePointSensitivities curve = _sensitivityYieldDiscounting.get(curveName);
+    return curve == null ? new double[0] : curve.getValues();
+  }
+
+  /**
+   * Gets the names of the curves with a sensitivity to the forward rates.
+   * @return The curve names.
+   */
+  public Set<String> getForwardCurveNames() {
+    return Collections.unmodifiableSet(_sensitivityForward.keySet());
+  }
+
+  /**
+   * Gets the start times of the forward rates of a curve with a sensitivity.
+   * @param curveName The curve name.
+   * @return The start times, empty if there is no sensitivity to the curve.
+   */
+  public double[] getForwardStartTimes(final String curveName) {
+    final CurveForwardSensitivities curve = _sensitivityForward.get(curveName);
+    return curve == null ? new double[0] : curve.getStartTimes();
+  }
+
+  /**
+   * Gets the end times of the forward rates of a curve with a sensitivity, in the same order as the start times.
+   * @param curveName The curve name.
+   * @return The end times, empty if there is no sensitivity to the curve.
+   */
+  public double[] getForwardEndTimes(final String curveName) {
+    final CurveForwardSensitivities curve = _sensitivityForward.get(curveName);
+    return curve == null ? new double[0] : curve.getEndTimes();
+  }
+
+  /**
+   * Gets the accrual factors of the forward rates of a curve with a sensitivity, in the same order as the start times.
+   * @param curveName The curve name.
+   * @return The accrual factors, empty if there is no sensitivity to the curve.
+   */
+  public double[] getForwardAccrualFactors(final String curveName) {
+    final CurveForwardSensitivities curve = _sensitivityForward.get(curveName);
+    return curve == null ? new double[0] : curve.getAccrualFactors();
+  }
+
+  /**
+   * Gets the sensitivities to the forward rates of a curve, in the same order as the start times.
+   * @param curveName The curve name.
+   * @return The values, empty if there is no sensitivity to the curve.
+   */
+  public double[] getForwardValues(final String curveName) {
+    final CurveForwardSensitivities curve = _sensitivityForward.get(curveName);
+    return curve == null ? new double[0] : curve.getValues();
+  }
+
+  /**
+   * Creates a new sensitivity by adding another sensitivity to this one.
+   * @param other The sensitivity to add, not null.
+   * @return The total sensitivity.
+   */
+  public CompactMulticurveSensitivity plus(final CompactMulticurveSensitivity other) {
+    ArgumentChecker.notNull(other, "sensitivity");
+    return new MulticurveSensitivityAccumulator().add(this).add(other).toCompactSensitivity();
+  }
+
+  /**
+   * Creates a new sensitivity with the values of this one multiplied by a factor.
+   * @param factor The factor.
+   * @return The multiplied sensitivity.
+   */
+  public CompactMulticurveSensitivity multipliedBy(final double factor) {
+    return new MulticurveSensitivityAccumulator().add(this, factor).toCompactSensitivity();
+  }
+
+  /**
+   * Converts to a {@link MulticurveSensitivity}. The pairs of each curve are in increasing time order.
+   * @return The sensitivity.
+   */
+  public MulticurveSensitivity toMulticurveSensitivity() {
+    return toMulticurveSensitivity(_sensitivityYieldDiscounting, _sensitivityForward);
+  }
+
+  /* package */ Map<String, CurvePointSensitivities> getYieldDiscounting() {
+    return _sensitivityYieldDiscounting;
+  }
+
+  /* package */ Map<String, CurveForwardSensitivities> getForward() {
+    return _sensitivityForward;
+  }
+
+  /* package */ static MulticurveSensitivity toMulticurveSensitivity(final Map<String, CurvePointSensitivities> sensitivityYieldDiscounting,
+      final Map<String, CurveForwardSensitivities> sensitivityForward) {
+    final Map<String, List<DoublesPair>> dsc = new HashMap<>();
+    for (final Map.Entry<String, CurvePointSensitivities> entry : sensitivityYieldDiscounting.entrySet()) {
+      final CurvePointSensitivities curve = entry.getValue();
+      final List<DoublesPair> list = new ArrayList<>(curve.size());
+      for (int i = 0; i < curve.size(); i++) {
+        list.add(DoublesPair.of(curve.getTime(i), curve.getValue(i)));
+      }
+      dsc.put(entry.getKey(), list);
+    }
+    final Map<String, List<ForwardSensitivity>> fwd = new HashMap<>();
+    for (final Map.Entry<String, CurveForwardSensitivities> entry : sensitivityForward.entrySet()) {
+      final CurveForwardSensitivities curve = entry.getValue();
+      final List<ForwardSensitivity> list = new ArrayList<>(curve.size());
+      for (int i = 0; i < curve.size(); i++) {
+        list.add(curve.getSensitivity(i));
+      }
+      fwd.put(entry.getKey(), list);
+    }
+    return MulticurveSensitivity.of(dsc, fwd);
+  }
+
+  @Override
+  public String toString() {
+    return _sensitivityYieldDiscounting.toString() + "\n" + _sensitivityForward.toString();
+  }
+
+  @Override
+  public int hashCode() {
+    final int prime = 31;
+    int result = 1;
+    result = prime * result + _sensitivityForward.hashCode();
+    result = prime * result + _sensitivityYieldDiscounting.hashCode();
+    return result;
+  }
+
+  @Override
+  public boolean equals(final Object obj) {
+    if (this == obj) {
+      return true;
+    }
+    if (!(obj instanceof CompactMulticurveSensitivity)) {
+      return false;
+    }
+    final CompactMulticurveSensitivity other = (CompactMulticurveSensitivity) obj;
+    return _sensitivityForward.equals(other._sensitivityForward) && _sensitivityYieldDiscounting.equals(other._sensitivityYieldDiscounting);
+  }
+
+}
@@ -0,0 +1,241 @@
+/**
+ * Copyright (C) 2014 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.analytics.financial.provider.sensitivity.multicurve;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * The sensitivities to the forward rates of one curve, stored in parallel arrays sorted by start time, end time,
+ * accrual factor and compounding. Adding a sensitivity to a forward already present adds the values.
+ */
+/* package */ final class CurveForwardSensitivities implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  /** The compounding of a {@link SimplyCompoundedForwardSensitivity}. */
+  /* package */ static final byte SIMPLY_COMPOUNDED = 0;
+  /** The compounding of an {@link AnnuallyCompoundedForwardSensitivity}. */
+  /* package */ static final byte ANNUALLY_COMPOUNDED = 1;
+
+  private static final int INITIAL_CAPACITY = 8;
+
+  private double[] _startTimes;
+  private double[] _endTimes;
+  private double[] _accrualFactors;
+  private byte[] _compounding;
+  private double[] _values;
+  private int _size;
+
+  /* package */ CurveForwardSensitivities() {
+    this(new double[INITIAL_CAPACITY], new double[INITIAL_CAPACITY], new double[INITIAL_CAPACITY], new byte[INITIAL_CAPACITY],
+        new double[INITIAL_CAPACITY], 0);
+  }
+
+  private CurveForwardSensitivities(final double[] startTimes, final double[] endTimes, final double[] accrualFactors, final byte[] compounding,
+      final double[] values, final int size) {
+    _startTimes = startTimes;
+    _endTimes = endTimes;
+    _accrualFactors = accrualFactors;
+    _compounding = compounding;
+    _values = values;
+    _size = size;
+  }
+
+  /* package */ int size() {
+    return _size;
+  }
+
+  /* package */ double[] getStartTimes() {
+    return Arrays.copyOf(_startTimes, _size);
+  }
+
+  /* package */ double[] getEndTimes() {
+    return Arrays.copyOf(_endTimes, _size);
+  }
+
+  /* package */ double[] getAccrualFactors() {
+    return Arrays.copyOf(_accrualFactors, _size);
+  }
+
+  /* package */ double[] getValues() {
+    return Arrays.copyOf(_values, _size);
+  }
+
+  /**
+   * Creates the forward sensitivity object at an index.
+   * @param index The index.
+   * @return The sensitivity.
+   */
+  /* package */ ForwardSensitivity getSensitivity(final int index) {
+    if (_compounding[index] == ANNUALLY_COMPOUNDED) {
+      return new AnnuallyCompoundedForwardSensitivity(_startTimes[index], _endTimes[index], _accrualFactors[index], _values[index]);
+    }
+    return new SimplyCompoundedForwardSensitivity(_startTimes[index], _endTimes[index], _accrualFactors[index], _values[index]);
+  }
+
+  /**
+   * Adds a forward sensitivity.
+   * @param sensitivity The sensitivity.
+   * @param factor The factor by which the sensitivity value is multiplied.
+   */
+  /* package */ void add(final ForwardSensitivity sensitivity, final double factor) {
+    add(sensitivity.getStartTime(), sensitivity.getEndTime(), sensitivity.getAccrualFactor(), compounding(sensitivity), sensitivity.getValue() * factor);
+  }
+
+  /**
+   * Adds a sensitivity, merging it with an existing sensitivity to the same forward.
+   * @param startTime The start time.
+   * @param endTime The end time.
+   * @param accrualFactor The accrual factor.
+   * @param compounding The compounding.
+   * @param value The sensitivity value.
+   */
+  /* package */ void add(final double startTime, final double endTime, final double accrualFactor, final byte compounding, final double value) {
+    final int index = search(startTime, endTime, accrualFactor, compounding);
+    if (index >= 0) {
+      _values[index] += value;
+    } else {
+      insert(-index - 1, startTime, endTime, accrualFactor, compounding, value);
+    }
+  }
+
+  /**
+   * Adds all the sensitivities of another set multiplied by a factor.
+   * @param other The other sensitivities.
+   * @param factor The factor.
+   */
+  /* package */ void addAll(final CurveForwardSensitivities other, final double factor) {
+    for (int i = 0; i < other._size; i++) {
+      add(other._startTimes[i], other._endTimes[i], other._accrualFactors[i], other._compounding[i], other._values[i] * factor);
+    }
+  }
+
+  /* package */ void multiplyBy(final double factor) {
+    for (int i = 0; i < _size; i++) {
+      _values[i] *= factor;
+    }
+  }
+
+  /* package */ CurveForwardSensitivities copy() {
+    return new CurveForwardSensitivities(Arrays.copyOf(_startTimes, _size), Arrays.copyOf(_endTimes, _size), Arrays.copyOf(_accrualFactors, _size),
+        Arrays.copyOf(_compounding, _size), Arrays.copyOf(_values, _size), _size);
+  }
+
+  private static byte compounding(final ForwardSensitivity sensitivity) {
+    if (sensitivity instanceof SimplyCompoundedForwardSensitivity) {
+      return SIMPLY_COMPOUNDED;
+    }
+    if (sensitivity instanceof AnnuallyCompoundedForwardSensitivity) {
+      return ANNUALLY_COMPOUNDED;
+    }
+    throw new IllegalArgumentException("Unsupported forward sensitivity type " + sensitivity.getClass().getName());
+  }
+
+  private int compare(final int index, final double startTime, final double endTime, final double accrualFactor, final byte compounding) {
+    int cmp = Double.compare(_startTimes[index], startTime);
+    if (cmp != 0) {
+      return cmp;
+    }
+    cmp = Double.compare(_endTimes[index], endTime);
+    if (cmp != 0) {
+      return cmp;
+    }
+    cmp = Double.compare(_accrualFactors[index], accrualFactor);
+    if (cmp != 0) {
+      return cmp;
+    }
+    return _compounding[index] - compounding;
+  }
+
+  private int search(final double startTime, final double endTime, final double accrualFactor, final byte compounding) {
+    int low = 0;
+    int high = _size - 1;
+    while (low <= high) {
+      final int mid = (low + high) >>> 1;
+      final int cmp = compare(mid, startTime, endTime, accrualFactor, compounding);
+      if (cmp < 0) {
+        low = mid + 1;
+      } else if (cmp > 0) {
+        high = mid - 1;
+      } else {
+        return mid;
+      }
+    }
+    return -(low + 1);
+  }
+
+  private void insert(final int index, final double startTime, final double endTime, final double accrualFactor, final byte compounding,
+      final double value) {
+    if (_size == _startTimes.length) {
+      final int capacity = Math.max(INITIAL_CAPACITY, _size * 2);
+      _startTimes = Arrays.copyOf(_startTimes, capacity);
+      _endTimes = Arrays.copyOf(_endTimes, capacity);
+      _accrualFactors = Arrays.copyOf(_accrualFactors, capacity);
+      _compounding = Arrays.copyOf(_compounding, capacity);
+      _values = Arrays.copyOf(_values, capacity);
+    }
+    final int length = _size - index;
+    System.arraycopy(_startTimes, index, _startTimes, index + 1, length);
+    System.arraycopy(_endTimes, index, _endTimes, index + 1, length);
+    System.arraycopy(_accrualFactors, index, _accrualFactors, index + 1, length);
+    System.arraycopy(_compounding, index, _compounding, index + 1, length);
+    System.arraycopy(_values, index, _values, index + 1, length);
+    _startTimes[index] = startTime;
+    _endTimes[index] = endTime;
+    _accrualFactors[index] = accrualFactor;
+    _compounding[index] = compounding;
+    _values[index] = value;
+    _size++;
+  }
+
+  @Override
+  public int hashCode() {
+    int result = 1;
+    for (int i = 0; i < _size; i++) {
+      result = 31 * result + Double.valueOf(_startTimes[i]).hashCode();
+      result = 31 * result + Double.valueOf(_endTimes[i]).hashCode();
+      result = 31 * result + Double.valueOf(_accrualFactors[i]).hashCode();
+      result = 31 * result + _compounding[i];
+      result = 31 * result + Double.valueOf(_values[i]).hashCode();
+    }
+    return result;
+  }
+
+  @Override
+  public boolean equals(final Object obj) {
+    if (this == obj) {
+      return true;
+    }
+    if (!(obj instanceof CurveForwardSensitivities)) {
+      return false;
+    }
+    final CurveForwardSensitivities other = (CurveForwardSensitivities) obj;
+    if (_size != other._size) {
+      return false;
+    }
+    for (int i = 0; i < _size; i++) {
+      if (compare(i, other._startTimes[i], other._endTimes[i], other._accrualFactors[i], other._compounding[i]) != 0 ||
+          Double.compare(_values[i], other._values[i]) != 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public String toString() {
+    final StringBuilder sb = new StringBuilder("[");
+    for (int i = 0; i < _size; i++) {
+      if (i > 0) {
+        sb.append(", ");
+      }
+      sb.append(getSensitivity(i));
+    }
+    return sb.append(']').toString();
+  }
+
+}
@@ -0,0 +1,200 @@
+/**
+ * Copyright (C) 2014 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.analytics.financial.provider.sensitivity.multicurve;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * The sensitivities to the yield of one curve at a set of times, stored in parallel arrays sorted by time.
+ * Adding a sensitivity at a time already present adds the values, so the times are always distinct.
+ */
+/* package */ final class CurvePointSensitivities implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  private static final int INITIAL_CAPACITY = 8;
+
+  private double[] _times;
+  private double[] _values;
+  private int _size;
+
+  /* package */ CurvePointSensitivities() {
+    _times = new double[INITIAL_CAPACITY];
+    _values = new double[INITIAL_CAPACITY];
+  }
+
+  private CurvePointSensitivities(final double[] times, final double[] values, final int size) {
+    _times = times;
+    _values = values;
+    _size = size;
+  }
+
+  /* package */ int size() {
+    return _size;
+  }
+
+  /* package */ double getTime(final int index) {
+    return _times[index];
+  }
+
+  /* package */ double getValue(final int index) {
+    return _values[index];
+  }
+
+  /* package */ double[] getTimes() {
+    return Arrays.copyOf(_times, _size);
+  }
+
+  /* package */ double[] getValues() {
+    return Arrays.copyOf(_values, _size);
+  }
+
+  /**
+   * Adds a sensitivity, merging it with an existing sensitivity at the same time.
+   * @param time The time.
+   * @param value The sensitivity value.
+   */
+  /* package */ void add(final double time, final double value) {
+    // sensitivities are often produced in time order, so check the end first
+    if (_size == 0 || Double.compare(time, _times[_size - 1]) > 0) {
+      insert(_size, time, value);
+      return;
+    }
+    final int index = search(time);
+    if (index >= 0) {
+      _values[index] += value;
+    } else {
+      insert(-index - 1, time, value);
+    }
+  }
+
+  /**
+   * Adds all the sensitivities of another set multiplied by a factor.
+   * @param other The other sensitivities.
+   * @param factor The factor.
+   */
+  /* package */ void addAll(final CurvePointSensitivities other, final double factor) {
+    if (other._size == 0) {
+      return;
+    }
+    // merge the two sorted arrays
+    final double[] times = new double[_size + other._size];
+    final double[] values = new double[_size + other._size];
+    int i = 0;
+    int j = 0;
+    int k = 0;
+    while (i < _size && j < other._size) {
+      final int cmp = Double.compare(_times[i], other._times[j]);
+      if (cmp < 0) {
+        times[k] = _times[i];
+        values[k++] = _values[i++];
+      } else if (cmp > 0) {
+        times[k] = other._times[j];
+        values[k++] = other._values[j++] * factor;
+      } else {
+        times[k] = _times[i];
+        values[k++] = _values[i++] + other._values[j++] * factor;
+      }
+    }
+    while (i < _size) {
+      times[k] = _times[i];
+      values[k++] = _values[i++];
+    }
+    while (j < other._size) {
+      times[k] = other._times[j];
+      values[k++] = other._values[j++] * factor;
+    }
+    _times = times;
+    _values = values;
+    _size = k;
+  }
+
+  /* package */ void multiplyBy(final double factor) {
+    for (int i = 0; i < _size; i++) {
+      _values[i] *= factor;
+    }
+  }
+
+  /* package */ CurvePointSensitivities copy() {
+    return new CurvePointSensitivities(Arrays.copyOf(_times, _size), Arrays.copyOf(_values, _size), _size);
+  }
+
+  private int search(final double time) {
+    int low = 0;
+    int high = _size - 1;
+    while (low <= high) {
+      final int mid = (low + high) >>> 1;
+      final int cmp = Double.compare(_times[mid], time);
+      if (cmp < 0) {
+        low = mid + 1;
+      } else if (cmp > 0) {
+        high = mid - 1;
+      } else {
+        return mid;
+      }
+    }
+    return -(low + 1);
+  }
+
+  private void insert(final int index, final double time, final double value) {
+    if (_size == _times.length) {
+      final int capacity = Math.max(INITIAL_CAPACITY, _size * 2);
+      _times = Arrays.copyOf(_times, capacity);
+      _values = Arrays.copyOf(_values, capacity);
+    }
+    System.arraycopy(_times, index, _times, index + 1, _size - index);
+    System.arraycopy(_values, index, _values, index + 1, _size - index);
+    _times[index] = time;
+    _values[index] = value;
+    _size++;
+  }
+
+  @Override
+  public int hashCode() {
+    int result = 1;
+    for (int i = 0; i < _size; i++) {
+      final long time = Double.doubleToLongBits(_times[i]);
+      final long value = Double.doubleToLongBits(_values[i]);
+      result = 31 * result + (int) (time ^ (time >>> 32));
+      result = 31 * result + (int) (value ^ (value >>> 32));
+    }
+    return result;
+  }
+
+  @Override
+  public boolean equals(final Object obj) {
+    if (this == obj) {
+      return true;
+    }
+    if (!(obj instanceof CurvePointSensitivities)) {
+      return false;
+    }
+    final CurvePointSensitivities other = (CurvePointSensitivities) obj;
+    if (_size != other._size) {
+      return false;
+    }
+    for (int i = 0; i < _size; i++) {
+      if (Double.compare(_times[i], other._times[i]) != 0 || Double.compare(_values[i], other._values[i]) != 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public String toString() {
+    final StringBuilder sb = new StringBuilder("[");
+    for (int i = 0; i < _size; i++) {
+      if (i > 0) {
+        sb.append(", ");
+      }
+      sb.append('[').append(_times[i]).append(", ").append(_values[i]).append(']');
+    }
+    return sb.append(']').toString();
+  }
+
+}
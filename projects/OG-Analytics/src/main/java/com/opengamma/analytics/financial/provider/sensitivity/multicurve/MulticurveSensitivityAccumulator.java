@@ -0,0 +1,195 @@
+/**
+ * Copyright (C) 2014 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.analytics.financial.provider.sensitivity.multicurve;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.opengamma.util.ArgumentChecker;
+import com.opengamma.util.tuple.DoublesPair;
+
+/**
+ * Mutable accumulator of point sensitivities to multi-curves, for example to aggregate the sensitivities of a portfolio.
+ * <p>
+ * The sensitivities of each curve are kept in primitive arrays sorted by time, and sensitivities at the same time are added when they
+ * are accumulated. Adding a sensitivity therefore doesn't create any objects once the arrays have grown to the number of distinct times,
+ * unlike {@link MulticurveSensitivity#plus(MulticurveSensitivity)} which copies all the pairs into new lists.
+ * <p>
+ * This class is not thread-safe.
+ */
+public final class MulticurveSensitivityAccumulator {
+
+  /**
+   * The sensitivities to the yield of the discounting curves, by curve name.
+   */
+  private final Map<String, CurvePointSensitivities> _sensitivityYieldDiscounting = new HashMap<>();
+  /**
+   * The sensitivities to the forward curves, by curve name.
+   */
+  private final Map<String, CurveForwardSensitivities> _sensitivityForward = new HashMap<>();
+
+  /**
+   * Creates an empty accumulator.
+   */
+  public MulticurveSensitivityAccumulator() {
+  }
+
+  /**
+   * Adds the sensitivity to the yield of a curve at a time.
+   * @param curveName The curve name, not null.
+   * @param time The time.
+   * @param value The sensitivity value.
+   * @return This accumulator.
+   */
+  public MulticurveSensitivityAccumulator addYieldDiscounting(final String curveName, final double time, final double value) {
+    ArgumentChecker.notNull(curveName, "curve name");
+    discounting(curveName).add(time, value);
+    return this;
+  }
+
+  /**
+   * Adds the sensitivity to a forward rate of a curve.
+   * @param curveName The curve name, not null.
+   * @param sensitivity The forward sensitivity, not null.
+   * @return This accumulator.
+   */
+  public MulticurveSensitivityAccumulator addForward(final String curveName, final ForwardSensitivity sensitivity) {
+    ArgumentChecker.notNull(curveName, "curve name");
+    ArgumentChecker.notNull(sensitivity, "sensitivity");
+    forward(curveName).add(sensitivity, 1.0);
+    return this;
+  }
+
+  /**
+   * Adds a sensitivity.
+   * @param sensitivity The sensitivity, not null.
+   * @return This accumulator.
+   */
+  public MulticurveSensitivityAccumulator add(final MulticurveSensitivity sensitivity) {
+    return add(sensitivity, 1.0);
+  }
+
+  /**
+   * Adds a sensitivity multiplied by a factor.
+   * @param sensitivity The sensitivity, not null.
+   * @param factor The factor.
+   * @return This accumulator.
+   */
+  public MulticurveSensitivityAccumulator add(final MulticurveSensitivity sensitivity, final double factor) {
+    ArgumentChecker.notNull(sensitivity, "sensitivity");
+    for (final Map.Entry<String, List<DoublesPair>> entry : sensitivity.getYieldDiscountingSensitivities().entrySet()) {
+      final CurvePointSensitivities curve = discounting(entry.getKey());
+      for (final DoublesPair pair : entry.getValue()) {
+        curve.add(pair.getFirstDouble(), pair.getSecondDouble() * factor);
+      }
+    }
+    for (final Map.Entry<String, List<ForwardSensitivity>> entry : sensitivity.getForwardSensitivities().entrySet()) {
+      final CurveForwardSensitivities curve = forward(entry.getKey());
+      for (final ForwardSensitivity point : entry.getValue()) {
+        curve.add(point, factor);
+      }
+    }
+    return this;
+  }
+
+  /**
+   * Adds a sensitivity.
+   * @param sensitivity The sensitivity, not null.
+   * @return This accumulator.
+   */
+  public MulticurveSensitivityAccumulator add(final CompactMulticurveSensitivity sensitivity) {
+    return add(sensitivity, 1.0);
+  }
+
+  /**
+   * Adds a sensitivity multiplied by a factor.
+   * @param sensitivity The sensitivity, not null.
+   * @param factor The factor.
+   * @return This accumulator.
+   */
+  public MulticurveSensitivityAccumulator add(final CompactMulticurveSensitivity sensitivity, final double factor) {
+    ArgumentChecker.notNull(sensitivity, "sensitivity");
+    for (final Map.Entry<String, CurvePointSensitivities> entry : sensitivity.getYieldDiscounting().entrySet()) {
+      discounting(entry.getKey()).addAll(entry.getValue(), factor);
+    }
+    for (final Map.Entry<String, CurveForwardSensitivities> entry : sensitivity.getForward().entrySet()) {
+      forward(entry.getKey()).addAll(entry.getValue(), factor);
+    }
+    return this;
+  }
+
+  /**
+   * Multiplies all the accumulated sensitivities by a factor.
+   * @param factor The factor.
+   * @return This accumulator.
+   */
+  public MulticurveSensitivityAccumulator multiplyBy(final double factor) {
+    for (final CurvePointSensitivities curve : _sensitivityYieldDiscounting.values()) {
+      curve.multiplyBy(factor);
+    }
+    for (final CurveForwardSensitivities curve : _sensitivityForward.values()) {
+      curve.multiplyBy(factor);
+    }
+    return this;
+  }
+
+  /**
+   * Removes all the accumulated sensitivities.
+   */
+  public void clear() {
+    _sensitivityYieldDiscounting.clear();
+    _sensitivityForward.clear();
+  }
+
+  /**
+   * Returns the sensitivities accumulated so far. Later changes to the accumulator don't affect the result.
+   * @return The sensitivity.
+   */
+  public CompactMulticurveSensitivity toCompactSensitivity() {
+    final Map<String, CurvePointSensitivities> dsc = new HashMap<>();
+    for (final Map.Entry<String, CurvePointSensitivities> entry : _sensitivityYieldDiscounting.entrySet()) {
+      dsc.put(entry.getKey(), entry.getValue().copy());
+    }
+    final Map<String, CurveForwardSensitivities> fwd = new HashMap<>();
+    for (final Map.Entry<String, CurveForwardSensitivities> entry : _sensitivityForward.entrySet()) {
+      fwd.put(entry.getKey(), entry.getValue().copy());
+    }
+    return new CompactMulticurveSensitivity(dsc, fwd);
+  }
+
+  /**
+   * Returns the sensitivities accumulated so far as a {@link MulticurveSensitivity}, with the times of each curve sorted and distinct.
+   * @return The sensitivity.
+   */
+  public MulticurveSensitivity toMulticurveSensitivity() {
+    return CompactMulticurveSensitivity.toMulticurveSensitivity(_sensitivityYieldDiscounting, _sensitivityForward);
+  }
+
+  private CurvePointSensitivities discounting(final String curveName) {
+    CurvePointSensitivities curve = _sensitivityYieldDiscounting.get(curveName);
+    if (curve == null) {
+      curve = new CurvePointSensitivities();
+      _sensitivityYieldDiscounting.put(curveName, curve);
+    }
+    return curve;
+  }
+
+  private CurveForwardSensitivities forward(final String curveName) {
+    CurveForwardSensitivities curve = _sensitivityForward.get(curveName);
+    if (curve == null) {
+      curve = new CurveForwardSensitivities();
+      _sensitivityForward.put(curveName, curve);
+    }
+    return curve;
+  }
+
+  @Override
+  public String toString() {
+    return "MulticurveSensitivityAccumulator[" + _sensitivityYieldDiscounting + ", " + _sensitivityForward + "]";
+  }
+
+}
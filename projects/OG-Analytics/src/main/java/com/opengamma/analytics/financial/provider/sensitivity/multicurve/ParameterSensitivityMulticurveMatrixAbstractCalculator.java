@@ -14,6 +14,7 @@ import com.opengamma.analytics.financial.interestrate.InstrumentDerivativeVisito
 import com.opengamma.analytics.financial.provider.description.interestrate.MulticurveProviderInterface;
 import com.opengamma.analytics.financial.provider.description.interestrate.ParameterProviderInterface;
 import com.opengamma.analytics.math.matrix.DoubleMatrix1D;
+import com.opengamma.analytics.math.matrix.DoubleMatrix2D;
 import com.opengamma.util.ArgumentChecker;
 
 /**
@@ -57,6 +58,34 @@ public abstract class ParameterSensitivityMulticurveMatrixAbstractCalculator {
     return pointToParameterSensitivity(sensitivity, multicurves, curvesSet);
   }
 
+  /**
+   * Computes the sensitivities of several instruments with respect to the parameters, for example the rows of a calibration Jacobian.
+   * Each row is computed as in {@link #calculateSensitivity(InstrumentDerivative, MulticurveProviderInterface, Set)}: the point sensitivity of the instrument
+   * is computed by the curve sensitivity calculator and then converted to parameters. Implementations can override this to compute the layout of the
+   * parameters, which depends only on the multi-curve and the curves set, once for all the instruments.
+   * @param instruments The instruments. Not null.
+   * @param multicurves The multi-curve provider. Not null.
+   * @param curvesSet The set of curves for which the sensitivity will be computed. Not null.
+   * @return The sensitivities, one row per instrument. The order of the sensitivity in each row is by curve as provided by the curvesSet.
+   */
+  public DoubleMatrix2D calculateSensitivities(final InstrumentDerivative[] instruments, final MulticurveProviderInterface multicurves, final Set<String> curvesSet) {
+    Validate.notNull(instruments, "null instruments");
+    // TODO: Compute the point sensitivities of all the instruments in a single adjoint sweep over primitive arrays, instead of one MulticurveSensitivity per instrument.
+    final double[][] result = new double[instruments.length][];
+    for (int loopins = 0; loopins < instruments.length; loopins++) {
+      result[loopins] = calculateSensitivity(instruments[loopins], multicurves, curvesSet).getData();
+    }
+    return DoubleMatrix2D.noCopy(result);
+  }
+
+  /**
+   * Gets the curve sensitivity calculator.
+   * @return The calculator.
+   */
+  protected InstrumentDerivativeVisitor<ParameterProviderInterface, MulticurveSensitivity> getCurveSensitivityCalculator() {
+    return _curveSensitivityCalculator;
+  }
+
   /**
    * Computes the sensitivity with respect to the parameters from the point sensitivities.
    * @param sensitivity The point sensitivity.
@@ -7,17 +7,18 @@ package com.opengamma.analytics.financial.provider.sensitivity.multicurve;
 
 import it.unimi.dsi.fastutil.ints.IntArrayList;
 
-import java.util.LinkedHashMap;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
-import org.apache.commons.lang.ArrayUtils;
-
+import com.opengamma.analytics.financial.interestrate.InstrumentDerivative;
 import com.opengamma.analytics.financial.interestrate.InstrumentDerivativeVisitor;
 import com.opengamma.analytics.financial.provider.description.interestrate.MulticurveProviderInterface;
 import com.opengamma.analytics.financial.provider.description.interestrate.ParameterProviderInterface;
 import com.opengamma.analytics.math.matrix.DoubleMatrix1D;
+import com.opengamma.analytics.math.matrix.DoubleMatrix2D;
 import com.opengamma.util.ArgumentChecker;
 import com.opengamma.util.tuple.DoublesPair;
 
@@ -45,109 +46,147 @@ public class ParameterSensitivityMulticurveUnderlyingMatrixCalculator extends Pa
    */
   @Override
   public DoubleMatrix1D pointToParameterSensitivity(final MulticurveSensitivity sensitivity, final MulticurveProviderInterface multicurves, final Set<String> sensicurveNamesSet) {
-    // TODO: The first part depends only of the multicurves and curvesSet, not the sensitivity. Should it be refactored and done only once?
-    final Set<String> multicurveNamesSet = multicurves.getAllNames();
-    // Implementation note: Check sensicurve are in multicurve
-    ArgumentChecker.isTrue(multicurveNamesSet.containsAll(sensicurveNamesSet), "curve in the names set not in the multi-curve provider");
-    final int nbMultiCurve = multicurveNamesSet.size();
-    // Populate the name names and numbers for the curves in the multicurve
-    int loopname = 0;
-    final LinkedHashMap<String, Integer> multicurveNum = new LinkedHashMap<>();
-    for (final String name : multicurveNamesSet) { // loop over all curves in multicurves (by name)
-      multicurveNum.put(name, loopname++);
-    }
-    final int[] nbNewParameters = new int[nbMultiCurve];
-    final int[] nbParameters = new int[nbMultiCurve];
-    // Implementation note: nbNewParameters - number of new parameters in the curve, parameters not from an underlying curve which is another curve of the bundle.
-    loopname = 0;
-    for (final String name : multicurveNamesSet) { // loop over all curves in multicurves (by name)
-      nbParameters[loopname] = multicurves.getNumberOfParameters(name);
-      nbNewParameters[loopname] = nbParameters[loopname];
-      loopname++;
+    final ParameterLayout layout = new ParameterLayout(multicurves, sensicurveNamesSet);
+    final double[] result = new double[layout.getNumberOfParameters()];
+    layout.addSensitivity(sensitivity, multicurves, result);
+    return new DoubleMatrix1D(result);
+  }
+
+  /**
+   * {@inheritDoc}
+   * The position of each curve parameter in the output depends only on the multi-curve and the curves set, so it is computed once for all the instruments.
+   * The point sensitivity of each instrument is still computed separately by the curve sensitivity calculator, its parameter sensitivity is then
+   * accumulated directly in its row.
+   */
+  @Override
+  public DoubleMatrix2D calculateSensitivities(final InstrumentDerivative[] instruments, final MulticurveProviderInterface multicurves, final Set<String> curvesSet) {
+    ArgumentChecker.notNull(instruments, "instruments");
+    ArgumentChecker.notNull(multicurves, "multicurves");
+    ArgumentChecker.notNull(curvesSet, "curves set");
+    final ParameterLayout layout = new ParameterLayout(multicurves, curvesSet);
+    final double[][] result = new double[instruments.length][layout.getNumberOfParameters()];
+    for (int loopins = 0; loopins < instruments.length; loopins++) {
+      ArgumentChecker.notNull(instruments[loopins], "instrument");
+      final MulticurveSensitivity sensitivity = instruments[loopins].accept(getCurveSensitivityCalculator(), multicurves);
+      layout.addSensitivity(sensitivity, multicurves, result[loopins]);
     }
-    loopname = 0;
-    for (final String name : multicurveNamesSet) { // loop over all curves in multicurves (by name)
-      final List<String> underlyingCurveNames = multicurves.getUnderlyingCurvesNames(name);
-      for (final String u : underlyingCurveNames) {
-        final Integer i = multicurveNum.get(u);
-        if (i != null) {
-          nbNewParameters[loopname] -= nbNewParameters[i]; // Only one level: a curve used as an underlying can not have an underlying itself.
-        }
+    return DoubleMatrix2D.noCopy(result);
+  }
+
+  /**
+   * The position in the output of the parameters of each curve in a multi-curve provider.
+   * <p>
+   * A curve can have other curves of the provider as underlying curves. Its parameters are then the parameters of the underlying curves followed by its own
+   * (new) parameters. The sensitivity to a parameter of an underlying curve is added to the sensitivity to the same parameter in the underlying curve itself.
+   */
+  private static final class ParameterLayout {
+    /**
+     * The curve names, in the multi-curve order.
+     */
+    private final String[] _names;
+    /**
+     * For each curve and each of its parameters, the index of the output where the sensitivity is added or -1 if it is not in the output.
+     */
+    private final int[][] _target;
+    /**
+     * The total number of parameters in the output.
+     */
+    private final int _nbParameters;
+
+    private ParameterLayout(final MulticurveProviderInterface multicurves, final Set<String> sensicurveNamesSet) {
+      final Set<String> multicurveNamesSet = multicurves.getAllNames();
+      // Implementation note: Check sensicurve are in multicurve
+      ArgumentChecker.isTrue(multicurveNamesSet.containsAll(sensicurveNamesSet), "curve in the names set not in the multi-curve provider");
+      final int nbMultiCurve = multicurveNamesSet.size();
+      // Populate the name names and numbers for the curves in the multicurve
+      _names = multicurveNamesSet.toArray(new String[nbMultiCurve]);
+      final Map<String, Integer> multicurveNum = new HashMap<>();
+      for (int loopname = 0; loopname < nbMultiCurve; loopname++) {
+        multicurveNum.put(_names[loopname], loopname);
       }
-      loopname++;
-    }
-    // Implementation note: nbNewParamSensiCurve
-    final int[][] indexOtherMulticurve = new int[nbMultiCurve][];
-    // Implementation note: indexOtherMultiCurve - for each curve in the multi-curve, the index of the underlying curves in the same set
-    final int[] startOwnParameter = new int[nbMultiCurve];
-    // Implementation note: The start index of the parameters of the own (new) parameters.
-    final int[][] startUnderlyingParameter = new int[nbMultiCurve][];
-    // Implementation note: The start index of the parameters of the underlying curves
-    loopname = 0;
-    for (final String name : multicurveNamesSet) { // loop over all curves in multi-curve (by name)
-      final List<String> underlyingCurveNames = multicurves.getUnderlyingCurvesNames(name);
-      final IntArrayList indexOtherMulticurveList = new IntArrayList();
-      for (final String u : underlyingCurveNames) {
-        final Integer i = multicurveNum.get(u);
-        if (i != null) {
-          indexOtherMulticurveList.add(i);
+      final int[] nbParameters = new int[nbMultiCurve];
+      final int[] nbNewParameters = new int[nbMultiCurve];
+      // Implementation note: nbNewParameters - number of new parameters in the curve, parameters not from an underlying curve which is another curve of the bundle.
+      for (int loopname = 0; loopname < nbMultiCurve; loopname++) {
+        nbParameters[loopname] = multicurves.getNumberOfParameters(_names[loopname]);
+        nbNewParameters[loopname] = nbParameters[loopname];
+      }
+      final int[][] underlying = new int[nbMultiCurve][];
+      // Implementation note: underlying - for each curve in the multi-curve, the index of the underlying curves in the same set
+      for (int loopname = 0; loopname < nbMultiCurve; loopname++) {
+        final IntArrayList underlyingList = new IntArrayList();
+        for (final String u : multicurves.getUnderlyingCurvesNames(_names[loopname])) {
+          final Integer i = multicurveNum.get(u);
+          if (i != null) {
+            underlyingList.add(i.intValue());
+            nbNewParameters[loopname] -= nbNewParameters[i]; // Only one level: a curve used as an underlying can not have an underlying itself.
+          }
         }
+        underlying[loopname] = underlyingList.toIntArray();
       }
-      indexOtherMulticurve[loopname] = indexOtherMulticurveList.toIntArray();
-      loopname++;
-    }
-    for (final String name : multicurveNamesSet) { // loop over all curves (by name)
-      int loopstart = 0;
-      final int num = multicurveNum.get(name);
-      final IntArrayList startUnderlyingParamList = new IntArrayList();
-      final List<String> underlyingCurveNames = multicurves.getUnderlyingCurvesNames(name);
-      for (final String u : underlyingCurveNames) {
-        final Integer i = multicurveNum.get(u);
-        if (i != null) {
-          startUnderlyingParamList.add(loopstart);
-          loopstart += nbNewParameters[i]; // Implementation note: Rely on underlying curves being first and then the new parameters
+      // The start index in the output of the new parameters of each curve in the names set
+      final int[] outputStart = new int[nbMultiCurve];
+      Arrays.fill(outputStart, -1);
+      int nbOutput = 0;
+      for (final String name : sensicurveNamesSet) {
+        final int num = multicurveNum.get(name);
+        outputStart[num] = nbOutput;
+        nbOutput += nbNewParameters[num];
+      }
+      _nbParameters = nbOutput;
+      _target = new int[nbMultiCurve][];
+      for (int loopname = 0; loopname < nbMultiCurve; loopname++) {
+        _target[loopname] = new int[nbParameters[loopname]];
+        Arrays.fill(_target[loopname], -1);
+        int loopstart = 0;
+        // Implementation note: Rely on underlying curves being first and then the new parameters
+        for (final int u : underlying[loopname]) {
+          setTarget(_target[loopname], loopstart, outputStart[u], nbNewParameters[u]);
+          loopstart += nbNewParameters[u];
         }
+        setTarget(_target[loopname], loopstart, outputStart[loopname], nbNewParameters[loopname]);
       }
-      startOwnParameter[num] = loopstart;
-      startUnderlyingParameter[num] = startUnderlyingParamList.toIntArray();
     }
-    // Implementation note: Compute the "dirty" sensitivity, i.e. the sensitivity to all the parameters in each curve. The underlying are taken into account in the "clean" step.
-    double[][] sensiDirty = new double[nbMultiCurve][];
-    final Map<String, List<DoublesPair>> sensitivityDsc = sensitivity.getYieldDiscountingSensitivities();
-    final Map<String, List<ForwardSensitivity>> sensitivityFwd = sensitivity.getForwardSensitivities();
-    for (final String name : multicurveNamesSet) { // loop over all curves (by name)
-      final int num = multicurveNum.get(name);
-      sensiDirty[num] = new double[nbParameters[num]];
-      final double[] sDsc1Name = multicurves.parameterSensitivity(name, sensitivityDsc.get(name));
-      final double[] sFwd1Name = multicurves.parameterForwardSensitivity(name, sensitivityFwd.get(name));
-      for (int loopp = 0; loopp < nbParameters[num]; loopp++) {
-        sensiDirty[num][loopp] = sDsc1Name[loopp] + sFwd1Name[loopp];
+
+    private static void setTarget(final int[] target, final int start, final int outputStart, final int nbParameters) {
+      if (outputStart >= 0) {
+        for (int loopi = 0; loopi < nbParameters; loopi++) {
+          target[start + loopi] = outputStart + loopi;
+        }
       }
     }
-    // Implementation note: "clean" the sensitivity, i.e. add the parts on the same curves together.
-    double[][] sensiClean = new double[nbMultiCurve][];
-    for (int loopc = 0; loopc < nbMultiCurve; loopc++) {
-      sensiClean[loopc] = new double[nbNewParameters[loopc]];
+
+    private int getNumberOfParameters() {
+      return _nbParameters;
     }
-    for (final String name : multicurveNamesSet) { // loop over all curves (by name)
-      final int num = multicurveNum.get(name);
-      // Direct sensitivity
-      for (int loopi = 0; loopi < nbNewParameters[num]; loopi++) {
-        sensiClean[num][loopi] += sensiDirty[num][startOwnParameter[num] + loopi];
-      }
-      // Underlying (indirect) sensitivity
-      for (int loopu = 0; loopu < startUnderlyingParameter[num].length; loopu++) {
-        for (int loopi = 0; loopi < nbNewParameters[indexOtherMulticurve[num][loopu]]; loopi++) {
-          sensiClean[indexOtherMulticurve[num][loopu]][loopi] += sensiDirty[num][startUnderlyingParameter[num][loopu] + loopi];
+
+    /**
+     * Adds the parameter sensitivity corresponding to a point sensitivity to an array. Only the curves that appear in the point sensitivity are used.
+     * @param sensitivity The point sensitivity.
+     * @param multicurves The multi-curve provider.
+     * @param result The array to which the sensitivity is added, in the output order.
+     */
+    private void addSensitivity(final MulticurveSensitivity sensitivity, final MulticurveProviderInterface multicurves, final double[] result) {
+      final Map<String, List<DoublesPair>> sensitivityDsc = sensitivity.getYieldDiscountingSensitivities();
+      final Map<String, List<ForwardSensitivity>> sensitivityFwd = sensitivity.getForwardSensitivities();
+      for (int loopname = 0; loopname < _names.length; loopname++) {
+        final String name = _names[loopname];
+        final List<DoublesPair> dsc = sensitivityDsc.get(name);
+        final List<ForwardSensitivity> fwd = sensitivityFwd.get(name);
+        if (dsc == null && fwd == null) {
+          continue;
+        }
+        final int[] target = _target[loopname];
+        final double[] sDsc1Name = dsc == null ? null : multicurves.parameterSensitivity(name, dsc);
+        final double[] sFwd1Name = fwd == null ? null : multicurves.parameterForwardSensitivity(name, fwd);
+        for (int loopp = 0; loopp < target.length; loopp++) {
+          if (target[loopp] >= 0) {
+            final double sensi = sDsc1Name == null ? sFwd1Name[loopp] : (sFwd1Name == null ? sDsc1Name[loopp] : sDsc1Name[loopp] + sFwd1Name[loopp]);
+            result[target[loopp]] += sensi;
+          }
         }
       }
     }
-    double[] result = new double[0];
-    for (String name : sensicurveNamesSet) {
-      final int num = multicurveNum.get(name);
-      result = ArrayUtils.addAll(result, sensiClean[num]);
-    }
-    return new DoubleMatrix1D(result);
   }
 
 }
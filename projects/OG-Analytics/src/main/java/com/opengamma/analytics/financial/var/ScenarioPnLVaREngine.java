@@ -0,0 +1,489 @@
+/**
+ * Copyright (C) 2014 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.analytics.financial.var;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import com.opengamma.util.ArgumentChecker;
+
+/**
+ * Holds the full-revaluation profit and loss of each position of a portfolio under a common set of scenarios (historical or
+ * Monte Carlo), and the aggregated profit and loss of each group of positions (e.g. desk) and of the whole portfolio, from which the
+ * empirical VaR and expected shortfall are calculated.
+ * <p>
+ * The profit and loss of each position is held as a primitive vector by scenario. The group and portfolio vectors are kept up to date
+ * as positions are set or removed, so changing one position costs one pass over its scenarios rather than a re-aggregation of the
+ * portfolio. The updates are made by adding differences, so after a very large number of updates the aggregates may differ from a
+ * fresh sum by rounding; {@link #reaggregate(ForkJoinPool)} recomputes them.
+ * <p>
+ * The VaR is calculated as by {@link EmpiricalDistributionVaRCalculator} and the expected shortfall as by
+ * {@link com.opengamma.analytics.financial.var.conditional.EmpiricalDistributionConditionalVaRCalculator} with the arithmetic mean.
+ * <p>
+ * The methods that take a pool split their work into blocks of a fixed size, so the results do not depend on the pool.
+ * This class is not thread-safe: updates must not run at the same time as other calls.
+ */
+public class ScenarioPnLVaREngine {
+
+  /**
+   * The number of scenarios summed together in one task when aggregating in parallel.
+   */
+  public static final int SCENARIO_BLOCK_SIZE = 64;
+
+  private final int _nScenarios;
+  private final int _nGroups;
+  /** The group of each position */
+  private final int[] _groups;
+  /** The profit and loss by position then by scenario, null for positions with none set */
+  private final double[][] _positionPnL;
+  /** The profit and loss by group then by scenario */
+  private final double[][] _groupPnL;
+  private final double[] _totalPnL;
+
+  /**
+   * Creates an engine with no profit and loss set for any position.
+   * @param nScenarios The number of scenarios, greater than zero
+   * @param groups The group of each position, not null. The groups are numbered from zero, so the number of groups is one more
+   * than the largest group.
+   */
+  public ScenarioPnLVaREngine(final int nScenarios, final int[] groups) {
+    ArgumentChecker.isTrue(nScenarios > 0, "need at least one scenario, have {}", nScenarios);
+    ArgumentChecker.notNull(groups, "groups");
+    int nGroups = 0;
+    for (int i = 0; i < groups.length; i++) {
+      ArgumentChecker.isTrue(groups[i] >= 0, "group of position {} is negative", i);
+      nGroups = Math.max(nGroups, groups[i] + 1);
+    }
+    _nScenarios = nScenarios;
+    _nGroups = nGroups;
+    _groups = Arrays.copyOf(groups, groups.length);
+    _positionPnL = new double[groups.length][];
+    _groupPnL = new double[nGroups][nScenarios];
+    _totalPnL = new double[nScenarios];
+  }
+
+  /**
+   * Gets the number of scenarios.
+   * @return The number of scenarios
+   */
+  public int getNumberOfScenarios() {
+    return _nScenarios;
+  }
+
+  /**
+   * Gets the number of positions.
+   * @return The number of positions
+   */
+  public int getNumberOfPositions() {
+    return _groups.length;
+  }
+
+  /**
+   * Gets the number of groups.
+   * @return The number of groups
+   */
+  public int getNumberOfGroups() {
+    return _nGroups;
+  }
+
+  /**
+   * Gets the group of a position.
+   * @param position The position
+   * @return The group
+   */
+  public int getGroup(final int position) {
+    checkPosition(position);
+    return _groups[position];
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Sets, or replaces, the profit and loss of a position, updating its group and the portfolio.
+   * @param position The position
+   * @param pnl The profit and loss by scenario, not null, with length equal to the number of scenarios. The values are copied.
+   */
+  public void setPositionPnL(final int position, final double[] pnl) {
+    checkPosition(position);
+    ArgumentChecker.notNull(pnl, "pnl");
+    ArgumentChecker.isTrue(pnl.length == _nScenarios, "pnl has {} scenarios, need {}", pnl.length, _nScenarios);
+    double[] current = _positionPnL[position];
+    if (current == null) {
+      current = new double[_nScenarios];
+      _positionPnL[position] = current;
+    }
+    final double[] group = _groupPnL[_groups[position]];
+    for (int j = 0; j < _nScenarios; j++) {
+      final double change = pnl[j] - current[j];
+      group[j] += change;
+      _totalPnL[j] += change;
+      current[j] = pnl[j];
+    }
+  }
+
+  /**
+   * Removes the profit and loss of a position from its group and the portfolio.
+   * @param position The position
+   */
+  public void removePosition(final int position) {
+    checkPosition(position);
+    final double[] current = _positionPnL[position];
+    if (current == null) {
+      return;
+    }
+    final double[] group = _groupPnL[_groups[position]];
+    for (int j = 0; j < _nScenarios; j++) {
+      group[j] -= current[j];
+      _totalPnL[j] -= current[j];
+    }
+    _positionPnL[position] = null;
+  }
+
+  /**
+   * Moves a position to another group, e.g. after a re-organisation of the desks.
+   * @param position The position
+   * @param group The new group, which must be less than the number of groups
+   */
+  public void setGroup(final int position, final int group) {
+    checkPosition(position);
+    ArgumentChecker.isTrue(group >= 0 && group < _nGroups, "group {} out of range, have {} groups", group, _nGroups);
+    final int oldGroup = _groups[position];
+    if (oldGroup == group) {
+      return;
+    }
+    final double[] current = _positionPnL[position];
+    if (current != null) {
+      final double[] from = _groupPnL[oldGroup];
+      final double[] to = _groupPnL[group];
+      for (int j = 0; j < _nScenarios; j++) {
+        from[j] -= current[j];
+        to[j] += current[j];
+      }
+    }
+    _groups[position] = group;
+  }
+
+  /**
+   * Recomputes the profit and loss of the groups and the portfolio from those of the positions.
+   * @param pool The pool used to sum blocks of scenarios in parallel, null to sum them on the calling thread
+   */
+  public void reaggregate(final ForkJoinPool pool) {
+    run(new ReaggregateTask(0, getNumberOfBlocks()), pool);
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Gets the profit and loss of a position.
+   * @param position The position
+   * @return The profit and loss by scenario, or null if none has been set
+   */
+  public double[] getPositionPnL(final int position) {
+    checkPosition(position);
+    final double[] pnl = _positionPnL[position];
+    return pnl == null ? null : Arrays.copyOf(pnl, _nScenarios);
+  }
+
+  /**
+   * Gets the profit and loss of a group.
+   * @param group The group
+   * @return The profit and loss by scenario
+   */
+  public double[] getGroupPnL(final int group) {
+    checkGroup(group);
+    return Arrays.copyOf(_groupPnL[group], _nScenarios);
+  }
+
+  /**
+   * Gets the profit and loss of the portfolio.
+   * @return The profit and loss by scenario
+   */
+  public double[] getTotalPnL() {
+    return Arrays.copyOf(_totalPnL, _nScenarios);
+  }
+
+  /**
+   * Gets the profit and loss of any sub-portfolio, summing the positions by scenario.
+   * @param positions The positions in the sub-portfolio, not null. Positions with no profit and loss set are ignored.
+   * @param pool The pool used to sum blocks of scenarios in parallel, null to sum them on the calling thread
+   * @return The profit and loss by scenario
+   */
+  public double[] getPnL(final int[] positions, final ForkJoinPool pool) {
+    ArgumentChecker.notNull(positions, "positions");
+    for (final int position : positions) {
+      checkPosition(position);
+    }
+    final double[] pnl = new double[_nScenarios];
+    run(new SubPortfolioTask(positions, pnl, 0, getNumberOfBlocks()), pool);
+    return pnl;
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Gets the VaR of a group.
+   * @param parameters The parameters, not null
+   * @param group The group
+   * @return The VaR
+   */
+  public VaRCalculationResult getGroupVaR(final EmpiricalDistributionVaRParameters parameters, final int group) {
+    checkGroup(group);
+    return getVaR(parameters, _groupPnL[group]);
+  }
+
+  /**
+   * Gets the expected shortfall of a group.
+   * @param parameters The parameters, not null
+   * @param group The group
+   * @return The expected shortfall
+   */
+  public VaRCalculationResult getGroupExpectedShortfall(final EmpiricalDistributionVaRParameters parameters, final int group) {
+    checkGroup(group);
+    return getExpectedShortfall(parameters, _groupPnL[group]);
+  }
+
+  /**
+   * Gets the VaR of the portfolio.
+   * @param parameters The parameters, not null
+   * @return The VaR
+   */
+  public VaRCalculationResult getTotalVaR(final EmpiricalDistributionVaRParameters parameters) {
+    return getVaR(parameters, _totalPnL);
+  }
+
+  /**
+   * Gets the expected shortfall of the portfolio.
+   * @param parameters The parameters, not null
+   * @return The expected shortfall
+   */
+  public VaRCalculationResult getTotalExpectedShortfall(final EmpiricalDistributionVaRParameters parameters) {
+    return getExpectedShortfall(parameters, _totalPnL);
+  }
+
+  /**
+   * Calculates the VaR and expected shortfall of every group.
+   * @param parameters The parameters, not null
+   * @param var The VaR of each group is written into this array, not null, which must be at least as long as the number of groups
+   * @param expectedShortfall The expected shortfall of each group is written into this array, not null, which must be at least as long
+   * as the number of groups
+   * @param pool The pool used to calculate the groups in parallel, null to calculate them on the calling thread
+   */
+  public void getGroupVaRAndExpectedShortfall(final EmpiricalDistributionVaRParameters parameters, final double[] var, final double[] expectedShortfall,
+      final ForkJoinPool pool) {
+    ArgumentChecker.notNull(parameters, "parameters");
+    ArgumentChecker.notNull(var, "var");
+    ArgumentChecker.notNull(expectedShortfall, "expected shortfall");
+    ArgumentChecker.isTrue(var.length >= _nGroups, "var array has length {}, need {}", var.length, _nGroups);
+    ArgumentChecker.isTrue(expectedShortfall.length >= _nGroups, "expected shortfall array has length {}, need {}", expectedShortfall.length, _nGroups);
+    if (_nGroups > 0) {
+      run(new GroupTask(parameters, var, expectedShortfall, 0, _nGroups), pool);
+    }
+  }
+
+  /**
+   * Calculates the VaR of a profit and loss vector, as {@link EmpiricalDistributionVaRCalculator} does for a time series.
+   * @param parameters The parameters, not null
+   * @param pnl The profit and loss by scenario, not null or empty
+   * @return The VaR
+   */
+  public static VaRCalculationResult getVaR(final EmpiricalDistributionVaRParameters parameters, final double[] pnl) {
+    ArgumentChecker.notNull(parameters, "parameters");
+    ArgumentChecker.notEmpty(pnl, "pnl");
+    final double[] sorted = Arrays.copyOf(pnl, pnl.length);
+    Arrays.sort(sorted);
+    return new VaRCalculationResult(var(parameters, sorted), null);
+  }
+
+  /**
+   * Calculates the expected shortfall of a profit and loss vector, the mean loss in the scenarios with a loss greater than the VaR,
+   * as {@link com.opengamma.analytics.financial.var.conditional.EmpiricalDistributionConditionalVaRCalculator} does for a time series.
+   * If no scenario has a loss greater than the VaR, the VaR is returned.
+   * @param parameters The parameters, not null
+   * @param pnl The profit and loss by scenario, not null or empty
+   * @return The expected shortfall
+   */
+  public static VaRCalculationResult getExpectedShortfall(final EmpiricalDistributionVaRParameters parameters, final double[] pnl) {
+    ArgumentChecker.notNull(parameters, "parameters");
+    ArgumentChecker.notEmpty(pnl, "pnl");
+    final double[] sorted = Arrays.copyOf(pnl, pnl.length);
+    Arrays.sort(sorted);
+    return new VaRCalculationResult(expectedShortfall(var(parameters, sorted), sorted), null);
+  }
+
+  //-------------------------------------------------------------------------
+  private static double var(final EmpiricalDistributionVaRParameters parameters, final double[] sorted) {
+    return -parameters.getMult() * parameters.getPercentileCalculator().evaluate(sorted);
+  }
+
+  private static double expectedShortfall(final double var, final double[] sorted) {
+    double sum = 0;
+    int n = 0;
+    while (n < sorted.length && sorted[n] < -var) {
+      sum += sorted[n];
+      n++;
+    }
+    return n == 0 ? var : -sum / n;
+  }
+
+  private void checkPosition(final int position) {
+    ArgumentChecker.isTrue(position >= 0 && position < _groups.length, "position {} out of range, have {} positions", position, _groups.length);
+  }
+
+  private void checkGroup(final int group) {
+    ArgumentChecker.isTrue(group >= 0 && group < _nGroups, "group {} out of range, have {} groups", group, _nGroups);
+  }
+
+  private int getNumberOfBlocks() {
+    return (_nScenarios + SCENARIO_BLOCK_SIZE - 1) / SCENARIO_BLOCK_SIZE;
+  }
+
+  private static void run(final RangeTask task, final ForkJoinPool pool) {
+    if (pool == null || task._to - task._from <= 1) {
+      for (int i = task._from; i < task._to; i++) {
+        task.computeOne(i);
+      }
+    } else {
+      pool.invoke(task);
+    }
+  }
+
+  /**
+   * Works on a range of items (blocks of scenarios or groups), splitting the range in two until it is a single item.
+   */
+  private abstract static class RangeTask extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int _from;
+    private final int _to;
+
+    protected RangeTask(final int from, final int to) {
+      _from = from;
+      _to = to;
+    }
+
+    protected abstract void computeOne(int i);
+
+    protected abstract RangeTask create(int from, int to);
+
+    @Override
+    protected void compute() {
+      if (_to - _from == 1) {
+        computeOne(_from);
+      } else {
+        final int mid = (_from + _to) >>> 1;
+        invokeAll(create(_from, mid), create(mid, _to));
+      }
+    }
+  }
+
+  /**
+   * Sums the positions into the groups and the portfolio for a block of scenarios.
+   */
+  private final class ReaggregateTask extends RangeTask {
+
+    private static final long serialVersionUID = 1L;
+
+    private ReaggregateTask(final int from, final int to) {
+      super(from, to);
+    }
+
+    @Override
+    protected void computeOne(final int block) {
+      final int start = block * SCENARIO_BLOCK_SIZE;
+      final int end = Math.min(start + SCENARIO_BLOCK_SIZE, _nScenarios);
+      for (int g = 0; g < _nGroups; g++) {
+        Arrays.fill(_groupPnL[g], start, end, 0.0);
+      }
+      Arrays.fill(_totalPnL, start, end, 0.0);
+      for (int i = 0; i < _positionPnL.length; i++) {
+        final double[] pnl = _positionPnL[i];
+        if (pnl == null) {
+          continue;
+        }
+        final double[] group = _groupPnL[_groups[i]];
+        for (int j = start; j < end; j++) {
+          group[j] += pnl[j];
+          _totalPnL[j] += pnl[j];
+        }
+      }
+    }
+
+    @Override
+    protected RangeTask create(final int from, final int to) {
+      return new ReaggregateTask(from, to);
+    }
+  }
+
+  /**
+   * Sums the positions of a sub-portfolio for a block of scenarios.
+   */
+  private final class SubPortfolioTask extends RangeTask {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int[] _positions;
+    private final double[] _result;
+
+    private SubPortfolioTask(final int[] positions, final double[] result, final int from, final int to) {
+      super(from, to);
+      _positions = positions;
+      _result = result;
+    }
+
+    @Override
+    protected void computeOne(final int block) {
+      final int start = block * SCENARIO_BLOCK_SIZE;
+      final int end = Math.min(start + SCENARIO_BLOCK_SIZE, _nScenarios);
+      for (final int position : _positions) {
+        final double[] pnl = _positionPnL[position];
+        if (pnl == null) {
+          continue;
+        }
+        for (int j = start; j < end; j++) {
+          _result[j] += pnl[j];
+        }
+      }
+    }
+
+    @Override
+    protected RangeTask create(final int from, final int to) {
+      return new SubPortfolioTask(_positions, _result, from, to);
+    }
+  }
+
+  /**
+   * Calculates the VaR and expected shortfall of a range of groups.
+   */
+  private final class GroupTask extends RangeTask {
+
+    private static final long serialVersionUID = 1L;
+
+    private final EmpiricalDistributionVaRParameters _parameters;
+    private final double[] _var;
+    private final double[] _expectedShortfall;
+
+    private GroupTask(final EmpiricalDistributionVaRParameters parameters, final double[] var, final double[] expectedShortfall, final int from,
+        final int to) {
+      super(from, to);
+      _parameters = parameters;
+      _var = var;
+      _expectedShortfall = expectedShortfall;
+    }
+
+    @Override
+    protected void computeOne(final int group) {
+      final double[] sorted = Arrays.copyOf(_groupPnL[group], _nScenarios);
+      Arrays.sort(sorted);
+      _var[group] = var(_parameters, sorted);
+      _expectedShortfall[group] = expectedShortfall(_var[group], sorted);
+    }
+
+    @Override
+    protected RangeTask create(final int from, final int to) {
+      return new GroupTask(_parameters, _var, _expectedShortfall, from, to);
+    }
+  }
+
+}
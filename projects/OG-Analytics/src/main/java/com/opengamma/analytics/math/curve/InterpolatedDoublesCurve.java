@@ -23,6 +23,7 @@ import org.joda.beans.impl.direct.DirectBeanBuilder;
 import org.joda.beans.impl.direct.DirectMetaProperty;
 import org.joda.beans.impl.direct.DirectMetaPropertyMap;
 
+import com.opengamma.analytics.math.interpolation.CompiledInterpolator1D;
 import com.opengamma.analytics.math.interpolation.Interpolator1D;
 import com.opengamma.analytics.math.interpolation.data.Interpolator1DDataBundle;
 import com.opengamma.util.ArgumentChecker;
@@ -45,6 +46,10 @@ public class InterpolatedDoublesCurve extends ArraysDoublesCurve implements Seri
    */
   @PropertyDefinition(validate = "notNull", get = "manual", set = "private")
   private Interpolator1D _interpolator;
+  /**
+   * The compiled form of the interpolator and data, created when first requested.
+   */
+  private transient volatile CompiledInterpolator1D _compiledInterpolator;
 
   //-------------------------------------------------------------------------
   /**
@@ -560,6 +565,20 @@ public class InterpolatedDoublesCurve extends ArraysDoublesCurve implements Seri
     return _interpolator.firstDerivative(_dataBundle, x);
   }
 
+  /**
+   * Gets the interpolator and data compiled into piecewise polynomial form, for fast evaluation in loops. This is created the first
+   * time it is requested. Its node sensitivities are to the y-values of all the nodes in the data bundle.
+   * @return The compiled interpolator, or null if the interpolator (or one of its extrapolators) is not supported by {@link CompiledInterpolator1D}
+   */
+  public CompiledInterpolator1D getCompiledInterpolator() {
+    CompiledInterpolator1D compiled = _compiledInterpolator;
+    if (compiled == null && CompiledInterpolator1D.isSupported(_interpolator, _dataBundle)) {
+      compiled = CompiledInterpolator1D.of(_interpolator, _dataBundle);
+      _compiledInterpolator = compiled;
+    }
+    return compiled;
+  }
+
   //-------------------------------------------------------------------------
   @Override
   public boolean equals(final Object obj) {
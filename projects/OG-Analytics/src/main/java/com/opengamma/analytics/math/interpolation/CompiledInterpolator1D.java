@@ -0,0 +1,373 @@
+/**
+ * Copyright (C) 2014 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.analytics.math.interpolation;
+
+import java.util.Arrays;
+
+import com.opengamma.analytics.math.interpolation.data.Interpolator1DCubicSplineDataBundle;
+import com.opengamma.analytics.math.interpolation.data.Interpolator1DDataBundle;
+import com.opengamma.analytics.math.interpolation.data.Interpolator1DPiecewisePoynomialDataBundle;
+import com.opengamma.analytics.math.matrix.DoubleMatrix2D;
+import com.opengamma.util.ArgumentChecker;
+
+/**
+ * An interpolator and its data compiled into piecewise polynomial form, for fast repeated evaluation (e.g. of the discount factors
+ * when pricing a portfolio of swaps). The knots, the polynomial coefficients on each interval and their sensitivities to the node values
+ * are held in primitive arrays, so evaluation needs no data bundle look-ups or boxing.
+ * <p>
+ * The interval containing the last point evaluated is remembered, so a sequence of increasing (or repeated) points finds its interval
+ * without a binary search. The remembered interval is only a hint, so an instance may be shared between threads.
+ * <p>
+ * The supported interpolators are {@link LinearInterpolator1D}, {@link NaturalCubicSplineInterpolator1D} and the
+ * {@link PiecewisePolynomialInterpolator1D} that interpolate the values directly (not their logarithm), on their own or in a
+ * {@link CombinedInterpolatorExtrapolator} with {@link FlatExtrapolator1D} or {@link LinearExtrapolator1D}.
+ */
+public final class CompiledInterpolator1D {
+
+  /**
+   * How points outside the knots are handled.
+   */
+  private enum Extrapolation {
+    /** The polynomial of the end interval is used */
+    POLYNOMIAL,
+    /** A straight line through the end node */
+    LINEAR,
+    /** No extrapolation; an exception is thrown */
+    NONE
+  }
+
+  private final double[] _knots;
+  private final int _nNodes;
+  private final int _order;
+  /** The coefficients of the polynomial in (x - knot) on each interval, highest degree first */
+  private final double[] _coefs;
+  /** The sensitivities of the coefficients to the node values: the entry for coefficient k of interval i and node j is at ((i * order) + k) * nNodes + j */
+  private final double[] _coefSensitivities;
+  private final Extrapolation _leftExtrapolation;
+  private final Extrapolation _rightExtrapolation;
+  // straight line extrapolation: end node value + slope * (x - end knot)
+  private final double _leftValue;
+  private final double _leftSlope;
+  private final double[] _leftSlopeSensitivities;
+  private final double _rightValue;
+  private final double _rightSlope;
+  private final double[] _rightSlopeSensitivities;
+  private int _lastInterval;
+
+  /**
+   * Compiles an interpolator and its data.
+   * @param interpolator The interpolator, not null
+   * @param data The data, not null. This must have been created by the interpolator.
+   * @return The compiled interpolator
+   * @throws IllegalArgumentException if the interpolator is not supported
+   */
+  public static CompiledInterpolator1D of(final Interpolator1D interpolator, final Interpolator1DDataBundle data) {
+    ArgumentChecker.notNull(interpolator, "interpolator");
+    ArgumentChecker.notNull(data, "data");
+    ArgumentChecker.isTrue(isSupported(interpolator, data), "Cannot compile {} with data {}", interpolator, data.getClass().getSimpleName());
+    return new CompiledInterpolator1D(interpolator, data);
+  }
+
+  /**
+   * Tests whether an interpolator can be compiled.
+   * @param interpolator The interpolator, not null
+   * @param data The data, not null
+   * @return true if the interpolator and its extrapolators, if any, are supported
+   */
+  public static boolean isSupported(final Interpolator1D interpolator, final Interpolator1DDataBundle data) {
+    ArgumentChecker.notNull(interpolator, "interpolator");
+    ArgumentChecker.notNull(data, "data");
+    if (data.size() < 2) {
+      return false;
+    }
+    if (interpolator instanceof CombinedInterpolatorExtrapolator) {
+      final CombinedInterpolatorExtrapolator combined = (CombinedInterpolatorExtrapolator) interpolator;
+      return isSupportedInterpolator(combined.getInterpolator(), data) && isSupportedExtrapolator(combined.getLeftExtrapolator())
+          && isSupportedExtrapolator(combined.getRightExtrapolator());
+    }
+    return isSupportedInterpolator(interpolator, data);
+  }
+
+  private static boolean isSupportedInterpolator(final Interpolator1D interpolator, final Interpolator1DDataBundle data) {
+    if (interpolator instanceof LinearInterpolator1D) {
+      return true;
+    }
+    if (interpolator instanceof NaturalCubicSplineInterpolator1D) {
+      return data instanceof Interpolator1DCubicSplineDataBundle;
+    }
+    // the log-transformed and extra-knot variants use other data bundles
+    return interpolator instanceof PiecewisePolynomialInterpolator1D && data.getClass() == Interpolator1DPiecewisePoynomialDataBundle.class
+        && ((Interpolator1DPiecewisePoynomialDataBundle) data).getPiecewisePolynomialResultsWithSensitivity().getDimensions() == 1;
+  }
+
+  private static boolean isSupportedExtrapolator(final Interpolator1D extrapolator) {
+    return extrapolator == null || extrapolator instanceof FlatExtrapolator1D || extrapolator instanceof LinearExtrapolator1D;
+  }
+
+  private CompiledInterpolator1D(final Interpolator1D interpolator, final Interpolator1DDataBundle data) {
+    Interpolator1D base = interpolator;
+    Interpolator1D left = null;
+    Interpolator1D right = null;
+    if (interpolator instanceof CombinedInterpolatorExtrapolator) {
+      final CombinedInterpolatorExtrapolator combined = (CombinedInterpolatorExtrapolator) interpolator;
+      base = combined.getInterpolator();
+      left = combined.getLeftExtrapolator();
+      right = combined.getRightExtrapolator();
+    }
+    _nNodes = data.size();
+    final int nIntervals = _nNodes - 1;
+    Extrapolation defaultExtrapolation = Extrapolation.NONE;
+    if (base instanceof LinearInterpolator1D) {
+      _knots = Arrays.copyOf(data.getKeys(), _nNodes);
+      final double[] y = data.getValues();
+      _order = 2;
+      _coefs = new double[nIntervals * _order];
+      _coefSensitivities = new double[nIntervals * _order * _nNodes];
+      for (int i = 0; i < nIntervals; i++) {
+        final double h = _knots[i + 1] - _knots[i];
+        _coefs[2 * i] = (y[i + 1] - y[i]) / h;
+        _coefs[2 * i + 1] = y[i];
+        final int offset = 2 * i * _nNodes;
+        _coefSensitivities[offset + i] = -1.0 / h;
+        _coefSensitivities[offset + i + 1] = 1.0 / h;
+        _coefSensitivities[offset + _nNodes + i] = 1.0;
+      }
+    } else if (base instanceof NaturalCubicSplineInterpolator1D) {
+      final Interpolator1DCubicSplineDataBundle splineData = (Interpolator1DCubicSplineDataBundle) data;
+      _knots = Arrays.copyOf(data.getKeys(), _nNodes);
+      final double[] y = data.getValues();
+      final double[] y2 = splineData.getSecondDerivatives();
+      final double[][] y2Sensitivities = splineData.getSecondDerivativesSensitivities();
+      _order = 4;
+      _coefs = new double[nIntervals * _order];
+      _coefSensitivities = new double[nIntervals * _order * _nNodes];
+      for (int i = 0; i < nIntervals; i++) {
+        final double h = _knots[i + 1] - _knots[i];
+        _coefs[4 * i] = (y2[i + 1] - y2[i]) / 6.0 / h;
+        _coefs[4 * i + 1] = y2[i] / 2.0;
+        _coefs[4 * i + 2] = (y[i + 1] - y[i]) / h - h * (2.0 * y2[i] + y2[i + 1]) / 6.0;
+        _coefs[4 * i + 3] = y[i];
+        final int offset = 4 * i * _nNodes;
+        for (int j = 0; j < _nNodes; j++) {
+          _coefSensitivities[offset + j] = (y2Sensitivities[i + 1][j] - y2Sensitivities[i][j]) / 6.0 / h;
+          _coefSensitivities[offset + _nNodes + j] = y2Sensitivities[i][j] / 2.0;
+          _coefSensitivities[offset + 2 * _nNodes + j] = -h * (2.0 * y2Sensitivities[i][j] + y2Sensitivities[i + 1][j]) / 6.0;
+        }
+        _coefSensitivities[offset + 2 * _nNodes + i] -= 1.0 / h;
+        _coefSensitivities[offset + 2 * _nNodes + i + 1] += 1.0 / h;
+        _coefSensitivities[offset + 3 * _nNodes + i] = 1.0;
+      }
+    } else {
+      final PiecewisePolynomialResultsWithSensitivity pp = ((Interpolator1DPiecewisePoynomialDataBundle) data).getPiecewisePolynomialResultsWithSensitivity();
+      _knots = pp.getKnots().toArray();
+      _order = pp.getOrder();
+      final double[][] coefMatrix = pp.getCoefMatrix().getData();
+      ArgumentChecker.isTrue(coefMatrix.length == nIntervals && _knots.length == _nNodes, "Piecewise polynomial does not have a knot at each node");
+      _coefs = new double[nIntervals * _order];
+      _coefSensitivities = new double[nIntervals * _order * _nNodes];
+      for (int i = 0; i < nIntervals; i++) {
+        System.arraycopy(coefMatrix[i], 0, _coefs, i * _order, _order);
+        final DoubleMatrix2D sensitivity = pp.getCoefficientSensitivity(i);
+        for (int k = 0; k < _order; k++) {
+          System.arraycopy(sensitivity.getData()[k], 0, _coefSensitivities, (i * _order + k) * _nNodes, _nNodes);
+        }
+      }
+      defaultExtrapolation = Extrapolation.POLYNOMIAL;
+    }
+
+    _leftExtrapolation = left == null ? defaultExtrapolation : Extrapolation.LINEAR;
+    _rightExtrapolation = right == null ? defaultExtrapolation : Extrapolation.LINEAR;
+    _leftValue = data.firstValue();
+    _rightValue = data.lastValue();
+    _leftSlopeSensitivities = new double[_nNodes];
+    _rightSlopeSensitivities = new double[_nNodes];
+    _leftSlope = left == null ? 0.0 : compileLinearExtrapolation(left, data, _knots[0], 0, _leftSlopeSensitivities);
+    _rightSlope = right == null ? 0.0 : compileLinearExtrapolation(right, data, _knots[_nNodes - 1], _nNodes - 1, _rightSlopeSensitivities);
+  }
+
+  /**
+   * The flat and linear extrapolators are straight lines through the end node, so are described by their slope and its sensitivities,
+   * which are found at a point one unit beyond the end knot.
+   */
+  private static double compileLinearExtrapolation(final Interpolator1D extrapolator, final Interpolator1DDataBundle data, final double endKnot,
+      final int endIndex, final double[] slopeSensitivities) {
+    final double dx = endIndex == 0 ? -1.0 : 1.0;
+    final double[] sensitivities = extrapolator.getNodeSensitivitiesForValue(data, endKnot + dx);
+    for (int j = 0; j < sensitivities.length; j++) {
+      slopeSensitivities[j] = (sensitivities[j] - (j == endIndex ? 1.0 : 0.0)) / dx;
+    }
+    return extrapolator.firstDerivative(data, endKnot + dx);
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Gets the number of nodes, which is the length of the sensitivity arrays.
+   * @return The number of nodes
+   */
+  public int getNumberOfNodes() {
+    return _nNodes;
+  }
+
+  /**
+   * Gets the interpolated value.
+   * @param x The point
+   * @return The value
+   */
+  public double evaluate(final double x) {
+    final int n = _nNodes - 1;
+    if (x < _knots[0] && _leftExtrapolation != Extrapolation.POLYNOMIAL) {
+      checkExtrapolation(_leftExtrapolation, x);
+      return _leftValue + (x - _knots[0]) * _leftSlope;
+    }
+    if (x > _knots[n] && _rightExtrapolation != Extrapolation.POLYNOMIAL) {
+      checkExtrapolation(_rightExtrapolation, x);
+      return _rightValue + (x - _knots[n]) * _rightSlope;
+    }
+    final int interval = getInterval(x);
+    final double s = x - _knots[interval];
+    final int offset = interval * _order;
+    double res = _coefs[offset];
+    for (int k = 1; k < _order; k++) {
+      res *= s;
+      res += _coefs[offset + k];
+    }
+    return res;
+  }
+
+  /**
+   * Gets the first derivative of the interpolant.
+   * @param x The point
+   * @return The first derivative
+   */
+  public double firstDerivative(final double x) {
+    final int n = _nNodes - 1;
+    if (x < _knots[0] && _leftExtrapolation != Extrapolation.POLYNOMIAL) {
+      checkExtrapolation(_leftExtrapolation, x);
+      return _leftSlope;
+    }
+    if (x > _knots[n] && _rightExtrapolation != Extrapolation.POLYNOMIAL) {
+      checkExtrapolation(_rightExtrapolation, x);
+      return _rightSlope;
+    }
+    final int interval = getInterval(x);
+    final double s = x - _knots[interval];
+    final int offset = interval * _order;
+    double res = 0.0;
+    for (int k = 0; k < _order - 1; k++) {
+      res *= s;
+      res += (_order - 1 - k) * _coefs[offset + k];
+    }
+    return res;
+  }
+
+  /**
+   * Gets the sensitivities of the interpolated value to the node values.
+   * @param x The point
+   * @param sensitivities The sensitivities are written into this array, which must have length at least {@link #getNumberOfNodes()}
+   */
+  public void nodeSensitivities(final double x, final double[] sensitivities) {
+    final int n = _nNodes - 1;
+    if (x < _knots[0] && _leftExtrapolation != Extrapolation.POLYNOMIAL) {
+      checkExtrapolation(_leftExtrapolation, x);
+      linearSensitivities(x - _knots[0], 0, _leftSlopeSensitivities, sensitivities);
+      return;
+    }
+    if (x > _knots[n] && _rightExtrapolation != Extrapolation.POLYNOMIAL) {
+      checkExtrapolation(_rightExtrapolation, x);
+      linearSensitivities(x - _knots[n], n, _rightSlopeSensitivities, sensitivities);
+      return;
+    }
+    final int interval = getInterval(x);
+    final double s = x - _knots[interval];
+    final int offset = interval * _order * _nNodes;
+    System.arraycopy(_coefSensitivities, offset, sensitivities, 0, _nNodes);
+    for (int k = 1; k < _order; k++) {
+      final int rowOffset = offset + k * _nNodes;
+      for (int j = 0; j < _nNodes; j++) {
+        sensitivities[j] = sensitivities[j] * s + _coefSensitivities[rowOffset + j];
+      }
+    }
+  }
+
+  /**
+   * Gets the interpolated values at several points. This is fastest if the points are in increasing order.
+   * @param x The points, not null
+   * @param values The values are written into this array, not null, which must be at least as long as x
+   */
+  public void evaluate(final double[] x, final double[] values) {
+    ArgumentChecker.notNull(x, "x");
+    ArgumentChecker.notNull(values, "values");
+    ArgumentChecker.isTrue(values.length >= x.length, "values array has length {}, need {}", values.length, x.length);
+    for (int i = 0; i < x.length; i++) {
+      values[i] = evaluate(x[i]);
+    }
+  }
+
+  /**
+   * Gets the interpolated values, and their sensitivities to the node values, at several points. This is fastest if the points are in
+   * increasing order.
+   * @param x The points, not null
+   * @param values The values are written into this array, not null, which must be at least as long as x
+   * @param sensitivities The sensitivities at x[i] are written into sensitivities[i], which must have length at least {@link #getNumberOfNodes()}.
+   * Not null, and at least as long as x.
+   */
+  public void evaluate(final double[] x, final double[] values, final double[][] sensitivities) {
+    ArgumentChecker.notNull(x, "x");
+    ArgumentChecker.notNull(values, "values");
+    ArgumentChecker.notNull(sensitivities, "sensitivities");
+    ArgumentChecker.isTrue(values.length >= x.length, "values array has length {}, need {}", values.length, x.length);
+    ArgumentChecker.isTrue(sensitivities.length >= x.length, "sensitivities array has length {}, need {}", sensitivities.length, x.length);
+    for (int i = 0; i < x.length; i++) {
+      values[i] = evaluate(x[i]);
+      nodeSensitivities(x[i], sensitivities[i]);
+    }
+  }
+
+  //-------------------------------------------------------------------------
+  private void linearSensitivities(final double dx, final int endIndex, final double[] slopeSensitivities, final double[] sensitivities) {
+    for (int j = 0; j < _nNodes; j++) {
+      sensitivities[j] = dx * slopeSensitivities[j];
+    }
+    sensitivities[endIndex] += 1.0;
+  }
+
+  private static void checkExtrapolation(final Extrapolation extrapolation, final double x) {
+    if (extrapolation == Extrapolation.NONE) {
+      throw new IllegalArgumentException("Value " + x + " is outside the data range and there is no extrapolator");
+    }
+  }
+
+  /**
+   * Finds the interval i with knot[i] <= x < knot[i + 1], using the last interval at x = knot[n], the first interval below the knots and
+   * the last interval above them. The remembered interval, and the one following it, are tried before a binary search.
+   */
+  private int getInterval(final double x) {
+    final int last = _nNodes - 2;
+    if (x < _knots[0]) {
+      return 0;
+    }
+    if (x >= _knots[last + 1]) {
+      return last;
+    }
+    final int hint = _lastInterval;
+    if (x >= _knots[hint]) {
+      if (x < _knots[hint + 1]) {
+        return hint;
+      }
+      if (hint < last && x < _knots[hint + 2]) {
+        _lastInterval = hint + 1;
+        return hint + 1;
+      }
+    }
+    int index = Arrays.binarySearch(_knots, x);
+    if (index < 0) {
+      index = -(index + 1) - 1;
+    }
+    _lastInterval = index;
+    return index;
+  }
+
+}
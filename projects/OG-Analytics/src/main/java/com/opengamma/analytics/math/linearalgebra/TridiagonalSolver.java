@@ -5,8 +5,6 @@
  */
 package com.opengamma.analytics.math.linearalgebra;
 
-import java.util.Arrays;
-
 import com.opengamma.analytics.math.matrix.DoubleMatrix1D;
 import com.opengamma.util.ArgumentChecker;
 
@@ -26,28 +24,41 @@ public class TridiagonalSolver {
 
     ArgumentChecker.notNull(aM, "null matrix");
     ArgumentChecker.notNull(b, "null vector");
-    final double[] d = aM.getDiagonal(); //b is modified, so get copy of diagonal
+    final double[] d = aM.getDiagonalData();
     final int n = d.length;
     ArgumentChecker.isTrue(n == b.length, "vector y wrong length for matrix");
-    final double[] y = Arrays.copyOf(b, n);
-
-    final double[] l = aM.getLowerSubDiagonalData();
-    final double[] u = aM.getUpperSubDiagonalData();
-
     final double[] x = new double[n];
+    solvTriDag(d, aM.getUpperSubDiagonalData(), aM.getLowerSubDiagonalData(), b, x, new double[n]);
+    return x;
+  }
+
+  /**
+   * Solves the system Ax = y for the unknown vector x, where A is a tridiagonal matrix given by its three diagonals and y is a vector. This is
+   * the Thomas algorithm with no memory allocation: none of the inputs are modified and the intermediate values are held in the supplied
+   * work array, so that repeated solves (e.g. at each time step of a finite difference scheme) can reuse the same arrays. The solution
+   * may be written over the known vector, i.e. x and y may be the same array.
+   * @param d The main diagonal, length n
+   * @param u The upper sub-diagonal, length n - 1
+   * @param l The lower sub-diagonal, length n - 1
+   * @param y The known vector, length n
+   * @param x The array that the solution is written into, length at least n
+   * @param work The work array, length at least n
+   */
+  public static void solvTriDag(final double[] d, final double[] u, final double[] l, final double[] y, final double[] x, final double[] work) {
+    final int n = d.length;
+    work[0] = d[0];
+    x[0] = y[0];
     for (int i = 1; i < n; i++) {
-      final double m = l[i - 1] / d[i - 1];
-      d[i] = d[i] - m * u[i - 1];
-      y[i] = y[i] - m * y[i - 1];
+      final double m = l[i - 1] / work[i - 1];
+      work[i] = d[i] - m * u[i - 1];
+      x[i] = y[i] - m * x[i - 1];
     }
 
-    x[n - 1] = y[n - 1] / d[n - 1];
+    x[n - 1] = x[n - 1] / work[n - 1];
 
     for (int i = n - 2; i >= 0; i--) {
-      x[i] = (y[i] - u[i] * x[i + 1]) / d[i];
+      x[i] = (x[i] - u[i] * x[i + 1]) / work[i];
     }
-
-    return x;
   }
 
   /**
@@ -0,0 +1,284 @@
+/**
+ * Copyright (C) 2014 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.analytics.math.matrix;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Cache-blocked matrix product kernels used by {@link OGMatrixAlgebra}.
+ * <p>
+ * The right hand matrix of a product is packed into a contiguous row-major array before the multiplication and
+ * the result rows are accumulated in i-k-j order, so the innermost loop runs along contiguous memory in both
+ * operands. The k and j loops are blocked so the part of the packed matrix in use stays in cache. Products with
+ * more than {@link #PARALLEL_THRESHOLD} multiply-adds are split by rows and run in a fork-join pool.
+ * <p>
+ * Every element of a result is summed in the same order as the textbook triple loop, so the results are
+ * identical to those of a naive implementation whether or not the product is calculated in parallel.
+ */
+/* package */ final class MatrixMultiplyKernels {
+
+  /** The number of multiply-adds above which a product is calculated in parallel. */
+  /* package */ static final long PARALLEL_THRESHOLD = 1L << 18;
+
+  /** The number of rows of the inner dimension in each block. */
+  private static final int K_BLOCK = 128;
+  /** The number of columns of the result in each block. */
+  private static final int J_BLOCK = 256;
+  /** The minimum number of result rows calculated by each parallel task. */
+  private static final int MIN_ROWS_PER_TASK = 8;
+
+  private MatrixMultiplyKernels() {
+  }
+
+  /**
+   * Calculates $\mathbf{AB}$.
+   *
+   * @param a the m by p matrix A, not null
+   * @param b the p by n matrix B, not null
+   * @param n the number of columns in B
+   * @return the m by n product
+   */
+  /* package */ static double[][] multiply(final double[][] a, final double[][] b, final int n) {
+    final int m = a.length;
+    final int p = b.length;
+    final double[][] res = new double[m][n];
+    final double[] packed = pack(b, n);
+    run(m, (long) m * n * p, new RowKernel() {
+      @Override
+      public void compute(final int fromRow, final int toRow) {
+        multiplyRows(a, packed, res, p, n, fromRow, toRow);
+      }
+    });
+    return res;
+  }
+
+  /**
+   * Calculates $\mathbf{A}^T\mathbf{B}$ without forming the transpose of A.
+   *
+   * @param a the p by m matrix A, not null
+   * @param b the p by n matrix B, not null
+   * @param m the number of columns in A
+   * @param n the number of columns in B
+   * @return the m by n product
+   */
+  /* package */ static double[][] transposeMultiply(final double[][] a, final double[][] b, final int m, final int n) {
+    final int p = b.length;
+    final double[][] res = new double[m][n];
+    final double[] packed = pack(b, n);
+    run(m, (long) m * n * p, new RowKernel() {
+      @Override
+      public void compute(final int fromRow, final int toRow) {
+        transposeMultiplyRows(a, packed, res, p, n, fromRow, toRow);
+      }
+    });
+    return res;
+  }
+
+  /**
+   * Calculates $\mathbf{AB}^T$ without forming the transpose of B.
+   *
+   * @param a the m by p matrix A, not null
+   * @param b the n by p matrix B, not null
+   * @param p the number of columns in A and B
+   * @return the m by n product
+   */
+  /* package */ static double[][] multiplyTranspose(final double[][] a, final double[][] b, final int p) {
+    final int m = a.length;
+    final int n = b.length;
+    final double[][] res = new double[m][n];
+    run(m, (long) m * n * p, new RowKernel() {
+      @Override
+      public void compute(final int fromRow, final int toRow) {
+        multiplyTransposeRows(a, b, res, p, fromRow, toRow);
+      }
+    });
+    return res;
+  }
+
+  /**
+   * Calculates $\mathbf{A}x$.
+   *
+   * @param a the m by n matrix A, not null
+   * @param x the vector x of length n, not null
+   * @return the product, of length m
+   */
+  /* package */ static double[] multiply(final double[][] a, final double[] x) {
+    final int m = a.length;
+    final int n = x.length;
+    final double[] res = new double[m];
+    run(m, (long) m * n, new RowKernel() {
+      @Override
+      public void compute(final int fromRow, final int toRow) {
+        for (int i = fromRow; i < toRow; i++) {
+          final double[] row = a[i];
+          double sum = 0.0;
+          for (int j = 0; j < n; j++) {
+            sum += row[j] * x[j];
+          }
+          res[i] = sum;
+        }
+      }
+    });
+    return res;
+  }
+
+  /**
+   * Calculates $x^T\mathbf{A}$, reading A by rows.
+   *
+   * @param x the vector x of length m, not null
+   * @param a the m by n matrix A, not null
+   * @param n the number of columns in A
+   * @return the product, of length n
+   */
+  /* package */ static double[] multiply(final double[] x, final double[][] a, final int n) {
+    final int m = x.length;
+    final double[] res = new double[n];
+    for (int k = 0; k < m; k++) {
+      final double xk = x[k];
+      final double[] row = a[k];
+      for (int j = 0; j < n; j++) {
+        res[j] += xk * row[j];
+      }
+    }
+    return res;
+  }
+
+  //-------------------------------------------------------------------------
+  private static double[] pack(final double[][] data, final int columns) {
+    final double[] packed = new double[data.length * columns];
+    for (int i = 0; i < data.length; i++) {
+      System.arraycopy(data[i], 0, packed, i * columns, columns);
+    }
+    return packed;
+  }
+
+  private static void multiplyRows(final double[][] a, final double[] b, final double[][] res,
+      final int p, final int n, final int fromRow, final int toRow) {
+    for (int k0 = 0; k0 < p; k0 += K_BLOCK) {
+      final int k1 = Math.min(k0 + K_BLOCK, p);
+      for (int j0 = 0; j0 < n; j0 += J_BLOCK) {
+        final int j1 = Math.min(j0 + J_BLOCK, n);
+        for (int i = fromRow; i < toRow; i++) {
+          final double[] aRow = a[i];
+          final double[] resRow = res[i];
+          for (int k = k0; k < k1; k++) {
+            final double aik = aRow[k];
+            final int offset = k * n;
+            for (int j = j0; j < j1; j++) {
+              resRow[j] += aik * b[offset + j];
+            }
+          }
+        }
+      }
+    }
+  }
+
+  private static void transposeMultiplyRows(final double[][] a, final double[] b, final double[][] res,
+      final int p, final int n, final int fromRow, final int toRow) {
+    for (int k0 = 0; k0 < p; k0 += K_BLOCK) {
+      final int k1 = Math.min(k0 + K_BLOCK, p);
+      for (int j0 = 0; j0 < n; j0 += J_BLOCK) {
+        final int j1 = Math.min(j0 + J_BLOCK, n);
+        for (int i = fromRow; i < toRow; i++) {
+          final double[] resRow = res[i];
+          for (int k = k0; k < k1; k++) {
+            final double aki = a[k][i];
+            final int offset = k * n;
+            for (int j = j0; j < j1; j++) {
+              resRow[j] += aki * b[offset + j];
+            }
+          }
+        }
+      }
+    }
+  }
+
+  private static void multiplyTransposeRows(final double[][] a, final double[][] b, final double[][] res,
+      final int p, final int fromRow, final int toRow) {
+    final int n = b.length;
+    // each element is the dot product of two rows, blocking over the rows of B keeps them in cache
+    final int jBlock = Math.max(1, (K_BLOCK * J_BLOCK) / Math.max(p, 1));
+    for (int j0 = 0; j0 < n; j0 += jBlock) {
+      final int j1 = Math.min(j0 + jBlock, n);
+      for (int i = fromRow; i < toRow; i++) {
+        final double[] aRow = a[i];
+        final double[] resRow = res[i];
+        for (int j = j0; j < j1; j++) {
+          final double[] bRow = b[j];
+          double sum = 0.0;
+          for (int k = 0; k < p; k++) {
+            sum += aRow[k] * bRow[k];
+          }
+          resRow[j] = sum;
+        }
+      }
+    }
+  }
+
+  private static void run(final int rows, final long work, final RowKernel kernel) {
+    if (work < PARALLEL_THRESHOLD || rows < 2 * MIN_ROWS_PER_TASK) {
+      kernel.compute(0, rows);
+    } else {
+      final ForkJoinPool pool = PoolHolder.POOL;
+      final int rowsPerTask = Math.max(MIN_ROWS_PER_TASK, rows / (4 * pool.getParallelism()));
+      pool.invoke(new RowTask(kernel, 0, rows, rowsPerTask));
+    }
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Calculates the rows of a result in a range.
+   */
+  private interface RowKernel {
+
+    /**
+     * Calculates the rows of the result in a range.
+     *
+     * @param fromRow the first row, inclusive
+     * @param toRow the last row, exclusive
+     */
+    void compute(int fromRow, int toRow);
+  }
+
+  /**
+   * Calculates a range of rows of a result, splitting the range in half until each part is small enough.
+   */
+  private static final class RowTask extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+
+    private final transient RowKernel _kernel;
+    private final int _fromRow;
+    private final int _toRow;
+    private final int _rowsPerTask;
+
+    private RowTask(final RowKernel kernel, final int fromRow, final int toRow, final int rowsPerTask) {
+      _kernel = kernel;
+      _fromRow = fromRow;
+      _toRow = toRow;
+      _rowsPerTask = rowsPerTask;
+    }
+
+    @Override
+    protected void compute() {
+      if (_toRow - _fromRow <= _rowsPerTask) {
+        _kernel.compute(_fromRow, _toRow);
+      } else {
+        final int mid = (_fromRow + _toRow) >>> 1;
+        invokeAll(new RowTask(_kernel, _fromRow, mid, _rowsPerTask), new RowTask(_kernel, mid, _toRow, _rowsPerTask));
+      }
+    }
+  }
+
+  /**
+   * Holds the pool used for parallel products, created the first time it's needed.
+   */
+  private static final class PoolHolder {
+    private static final ForkJoinPool POOL = new ForkJoinPool();
+  }
+
+}
@@ -14,6 +14,9 @@ import com.opengamma.util.ArgumentChecker;
 /**
  * An absolutely minimal implementation of matrix algebra - only various multiplications covered. For more advanced
  * stuff (e.g. calculating the inverse) use {@link ColtMatrixAlgebra} or {@link CommonsMatrixAlgebra}
+ * <p>
+ * Products of dense matrices use cache-blocked kernels and large products are calculated in parallel. The results
+ * are identical to those of the textbook triple loop.
  */
 public class OGMatrixAlgebra extends MatrixAlgebra {
 
@@ -231,6 +234,36 @@ public class OGMatrixAlgebra extends MatrixAlgebra {
             m1.getClass() + " and " + m2.getClass());
   }
 
+  /**
+   * Compute $\mathbf{A}^T\mathbf{B}$ without forming the transpose of $\mathbf{A}$.
+   * @param a The matrix $\mathbf{A}$, not null
+   * @param b The matrix $\mathbf{B}$, not null. Must have the same number of rows as $\mathbf{A}$
+   * @return The result of $\mathbf{A}^T\mathbf{B}$
+   */
+  public DoubleMatrix2D matrixTransposeMultiplyMatrix(final DoubleMatrix2D a, final DoubleMatrix2D b) {
+    ArgumentChecker.notNull(a, "a");
+    ArgumentChecker.notNull(b, "b");
+    ArgumentChecker.isTrue(a.getNumberOfRows() == b.getNumberOfRows(),
+        "Matrix size mismatch. a has {} rows but b has {}", a.getNumberOfRows(), b.getNumberOfRows());
+    return new DoubleMatrix2D(MatrixMultiplyKernels.transposeMultiply(a.getData(), b.getData(),
+        a.getNumberOfColumns(), b.getNumberOfColumns()));
+  }
+
+  /**
+   * Compute $\mathbf{A}\mathbf{B}^T$ without forming the transpose of $\mathbf{B}$.
+   * @param a The matrix $\mathbf{A}$, not null
+   * @param b The matrix $\mathbf{B}$, not null. Must have the same number of columns as $\mathbf{A}$
+   * @return The result of $\mathbf{A}\mathbf{B}^T$
+   */
+  public DoubleMatrix2D matrixMultiplyMatrixTranspose(final DoubleMatrix2D a, final DoubleMatrix2D b) {
+    ArgumentChecker.notNull(a, "a");
+    ArgumentChecker.notNull(b, "b");
+    ArgumentChecker.isTrue(a.getNumberOfColumns() == b.getNumberOfColumns(),
+        "Matrix size mismatch. a has {} columns but b has {}", a.getNumberOfColumns(), b.getNumberOfColumns());
+    return new DoubleMatrix2D(MatrixMultiplyKernels.multiplyTranspose(a.getData(), b.getData(),
+        a.getNumberOfColumns()));
+  }
+
   /**
    * {@inheritDoc}
    * @throws NotImplementedException
@@ -267,21 +300,7 @@ public class OGMatrixAlgebra extends MatrixAlgebra {
         a[0].length == p,
         "Matrix size mismatch. m1 is " + m1.getNumberOfRows() + " by " + m1.getNumberOfColumns() + ", but m2 is " +
             m2.getNumberOfRows() + " by " + m2.getNumberOfColumns());
-    final int m = a.length;
-    final int n = b[0].length;
-    double sum;
-    final double[][] res = new double[m][n];
-    int i, j, k;
-    for (i = 0; i < m; i++) {
-      for (j = 0; j < n; j++) {
-        sum = 0.0;
-        for (k = 0; k < p; k++) {
-          sum += a[i][k] * b[k][j];
-        }
-        res[i][j] = sum;
-      }
-    }
-    return new DoubleMatrix2D(res);
+    return new DoubleMatrix2D(MatrixMultiplyKernels.multiply(a, b, b[0].length));
   }
 
   private DoubleMatrix1D multiply(final IdentityMatrix matrix, final DoubleMatrix1D vector) {
@@ -303,18 +322,7 @@ public class OGMatrixAlgebra extends MatrixAlgebra {
     final double[] b = vector.getData();
     final int n = b.length;
     Validate.isTrue(a[0].length == n, "Matrix/vector size mismatch");
-    final int m = a.length;
-    final double[] res = new double[m];
-    int i, j;
-    double sum;
-    for (i = 0; i < m; i++) {
-      sum = 0.0;
-      for (j = 0; j < n; j++) {
-        sum += a[i][j] * b[j];
-      }
-      res[i] = sum;
-    }
-    return new DoubleMatrix1D(res);
+    return new DoubleMatrix1D(MatrixMultiplyKernels.multiply(a, b));
   }
 
   private DoubleMatrix1D multiply(final TridiagonalMatrix matrix, final DoubleMatrix1D vector) {
@@ -339,18 +347,7 @@ public class OGMatrixAlgebra extends MatrixAlgebra {
     final double[][] b = matrix.getData();
     final int n = a.length;
     Validate.isTrue(b.length == n, "Matrix/vector size mismatch");
-    final int m = b[0].length;
-    final double[] res = new double[m];
-    int i, j;
-    double sum;
-    for (i = 0; i < m; i++) {
-      sum = 0.0;
-      for (j = 0; j < n; j++) {
-        sum += a[j] * b[j][i];
-      }
-      res[i] = sum;
-    }
-    return new DoubleMatrix1D(res);
+    return new DoubleMatrix1D(MatrixMultiplyKernels.multiply(a, b, b[0].length));
   }
 
   private DoubleMatrix1D multiply(final DoubleMatrix1D vector, final TridiagonalMatrix matrix) {
@@ -0,0 +1,60 @@
+/**
+ * Copyright (C) 2014 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.analytics.math.random;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.opengamma.util.ArgumentChecker;
+
+/**
+ * Base class for block random number generators. The vector methods of {@link RandomNumberGenerator} are
+ * implemented using {@link #fillVectors}, which checks its arguments and delegates to {@link #fill}.
+ */
+public abstract class AbstractBlockRandomNumberGenerator implements BlockRandomNumberGenerator {
+
+  @Override
+  public double[] getVector(final int dimension) {
+    ArgumentChecker.notNegative(dimension, "dimension");
+    final double[] result = new double[dimension];
+    fill(result, dimension, 1);
+    return result;
+  }
+
+  @Override
+  public List<double[]> getVectors(final int dimension, final int n) {
+    ArgumentChecker.notNegative(dimension, "dimension");
+    ArgumentChecker.notNegative(n, "n");
+    final double[] buffer = new double[dimension * n];
+    fill(buffer, dimension, n);
+    final List<double[]> result = new ArrayList<>(n);
+    for (int i = 0; i < n; i++) {
+      final double[] x = new double[dimension];
+      System.arraycopy(buffer, i * dimension, x, 0, dimension);
+      result.add(x);
+    }
+    return result;
+  }
+
+  @Override
+  public void fillVectors(final double[] buffer, final int dimension, final int n) {
+    ArgumentChecker.notNull(buffer, "buffer");
+    ArgumentChecker.notNegative(dimension, "dimension");
+    ArgumentChecker.notNegative(n, "n");
+    ArgumentChecker.isTrue(buffer.length >= (long) dimension * n,
+        "Buffer of length {} too short for {} vectors of dimension {}", buffer.length, n, dimension);
+    fill(buffer, dimension, n);
+  }
+
+  /**
+   * Fills a buffer with n vectors of the given dimension in row-major order. The arguments have been checked.
+   * @param buffer The buffer
+   * @param dimension The dimension of each vector
+   * @param n The number of vectors
+   */
+  protected abstract void fill(double[] buffer, int dimension, int n);
+
+}
@@ -0,0 +1,67 @@
+/**
+ * Copyright (C) 2014 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.analytics.math.random;
+
+import com.opengamma.util.ArgumentChecker;
+
+/**
+ * Pairs each vector of an underlying generator of numbers symmetric around zero with its negation.
+ * <p>
+ * The vectors with even indices in a block come from the underlying generator and each is followed by its
+ * negation, which halves the number of random numbers drawn and reduces the variance of estimates that are
+ * monotonic in the random numbers. Successive calls to {@link #getVector(int)} also alternate between a new vector
+ * and the negation of the previous one.
+ */
+public class AntitheticRandomNumberGenerator extends AbstractBlockRandomNumberGenerator {
+
+  private final BlockRandomNumberGenerator _underlying;
+  /** The last vector returned by getVector if its negation hasn't been returned yet */
+  private double[] _pending;
+
+  /**
+   * @param underlying The underlying generator, not null. Its numbers must be symmetric around zero
+   */
+  public AntitheticRandomNumberGenerator(final BlockRandomNumberGenerator underlying) {
+    ArgumentChecker.notNull(underlying, "underlying");
+    _underlying = underlying;
+  }
+
+  @Override
+  public double[] getVector(final int dimension) {
+    ArgumentChecker.notNegative(dimension, "dimension");
+    final double[] result = new double[dimension];
+    if (_pending != null && _pending.length == dimension) {
+      for (int i = 0; i < dimension; i++) {
+        result[i] = -_pending[i];
+      }
+      _pending = null;
+    } else {
+      _underlying.fillVectors(result, dimension, 1);
+      _pending = result.clone();
+    }
+    return result;
+  }
+
+  @Override
+  protected void fill(final double[] buffer, final int dimension, final int n) {
+    final int drawn = (n + 1) / 2;
+    _underlying.fillVectors(buffer, dimension, drawn);
+    // spread the drawn vectors out from the end so none is overwritten before it's copied
+    for (int i = drawn - 1; i >= 0; i--) {
+      final int from = i * dimension;
+      final int to = 2 * i * dimension;
+      if (i > 0) {
+        System.arraycopy(buffer, from, buffer, to, dimension);
+      }
+      if (2 * i + 1 < n) {
+        for (int j = 0; j < dimension; j++) {
+          buffer[to + dimension + j] = -buffer[to + j];
+        }
+      }
+    }
+  }
+
+}
@@ -0,0 +1,23 @@
+/**
+ * Copyright (C) 2014 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.analytics.math.random;
+
+/**
+ * A random number generator that can fill a caller-supplied buffer with a block of vectors, so that large
+ * numbers of random numbers can be generated without allocating an array for each vector.
+ */
+public interface BlockRandomNumberGenerator extends RandomNumberGenerator {
+
+  /**
+   * Fills a buffer with n vectors of the given dimension. The buffer is filled in row-major order, the element
+   * j of vector i is written to {@code buffer[i * dimension + j]}.
+   * @param buffer The buffer, not null. Its length must be at least dimension * n
+   * @param dimension The dimension of each vector, not negative
+   * @param n The number of vectors, not negative
+   */
+  void fillVectors(double[] buffer, int dimension, int n);
+
+}
@@ -0,0 +1,108 @@
+/**
+ * Copyright (C) 2014 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.analytics.math.random;
+
+import com.opengamma.util.ArgumentChecker;
+
+/**
+ * Reorders the standard normal vectors of an underlying generator using a Brownian bridge.
+ * <p>
+ * Each vector of dimension n from the underlying generator is used to build a Brownian path on the times
+ * 1, 2, ..., n: the first element gives the end point of the path, the second its mid-point, and so on,
+ * bisecting each interval in turn. The vector returned is the increments of that path, which are again
+ * independent standard normal numbers. This puts the most important, coarse-grained, features of a path on the first
+ * elements of the underlying vectors, which is where quasi-random sequences such as
+ * {@link SobolNormalRandomNumberGenerator} are most uniform.
+ * <p>
+ * The underlying generator must produce standard normal numbers.
+ */
+public class BrownianBridgeRandomNumberGenerator extends AbstractBlockRandomNumberGenerator {
+
+  private final BlockRandomNumberGenerator _underlying;
+  private final int _dimension;
+  /** The index in the path of the point populated by each element of the underlying vector */
+  private final int[] _bridgeIndex;
+  /** The index of the populated point on the left of the interval, -1 for the start of the path */
+  private final int[] _leftIndex;
+  private final int[] _rightIndex;
+  private final double[] _leftWeight;
+  private final double[] _rightWeight;
+  private final double[] _stdDev;
+
+  /**
+   * @param underlying The generator of standard normal vectors, not null
+   * @param dimension The dimension of the vectors, greater than zero
+   */
+  public BrownianBridgeRandomNumberGenerator(final BlockRandomNumberGenerator underlying, final int dimension) {
+    ArgumentChecker.notNull(underlying, "underlying");
+    ArgumentChecker.notNegativeOrZero(dimension, "dimension");
+    _underlying = underlying;
+    _dimension = dimension;
+    _bridgeIndex = new int[dimension];
+    _leftIndex = new int[dimension];
+    _rightIndex = new int[dimension];
+    _leftWeight = new double[dimension];
+    _rightWeight = new double[dimension];
+    _stdDev = new double[dimension];
+    // populated[i] is true once the point at time i + 1 has been given a value
+    final boolean[] populated = new boolean[dimension];
+    populated[dimension - 1] = true;
+    _bridgeIndex[0] = dimension - 1;
+    _leftIndex[0] = -1;
+    _stdDev[0] = Math.sqrt(dimension);
+    int left = 0;
+    for (int i = 1; i < dimension; i++) {
+      // find the next unpopulated interval, starting at left and ending before the populated point right
+      while (populated[left]) {
+        left++;
+      }
+      int right = left;
+      while (!populated[right]) {
+        right++;
+      }
+      final int point = left + ((right - 1 - left) >> 1);
+      populated[point] = true;
+      _bridgeIndex[i] = point;
+      _leftIndex[i] = left - 1;
+      _rightIndex[i] = right;
+      // times are index + 1, the time of the point to the left of the interval is left
+      final double tLeft = left;
+      final double tPoint = point + 1;
+      final double tRight = right + 1;
+      _leftWeight[i] = (tRight - tPoint) / (tRight - tLeft);
+      _rightWeight[i] = (tPoint - tLeft) / (tRight - tLeft);
+      _stdDev[i] = Math.sqrt((tPoint - tLeft) * (tRight - tPoint) / (tRight - tLeft));
+      left = right + 1;
+      if (left >= dimension) {
+        left = 0;
+      }
+    }
+  }
+
+  @Override
+  protected void fill(final double[] buffer, final int dimension, final int n) {
+    ArgumentChecker.isTrue(dimension == _dimension, "Dimension {} does not match bridge dimension {}",
+        dimension, _dimension);
+    _underlying.fillVectors(buffer, dimension, n);
+    final double[] path = new double[dimension];
+    for (int i = 0; i < n; i++) {
+      final int offset = i * dimension;
+      path[_dimension - 1] = _stdDev[0] * buffer[offset];
+      for (int j = 1; j < _dimension; j++) {
+        final int leftIndex = _leftIndex[j];
+        final double leftValue = leftIndex < 0 ? 0 : path[leftIndex];
+        path[_bridgeIndex[j]] = _leftWeight[j] * leftValue + _rightWeight[j] * path[_rightIndex[j]] +
+            _stdDev[j] * buffer[offset + j];
+      }
+      // the time steps are all one so the increments are standard normal
+      buffer[offset] = path[0];
+      for (int j = 1; j < _dimension; j++) {
+        buffer[offset + j] = path[j] - path[j - 1];
+      }
+    }
+  }
+
+}
@@ -0,0 +1,156 @@
+/**
+ * Copyright (C) 2014 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.analytics.math.random;
+
+import com.opengamma.util.ArgumentChecker;
+
+/**
+ * A block generator of normally distributed quasi-random numbers, generated from a Sobol low-discrepancy sequence
+ * using {@link InverseNormal}.
+ * <p>
+ * Each vector is the next point of the sequence, so the dimension of the vectors must not change between calls
+ * and can be at most {@link #MAX_DIMENSION}. The point at index zero, which is the origin, is skipped.
+ * Points are generated in Gray code order, so the sequence can be partitioned between threads
+ * reproducibly by creating one generator per thread and calling {@link #skipTo(long)}, or using
+ * {@link #getSubstream(long)}.
+ * <p>
+ * The direction numbers are those of S. Joe and F. Y. Kuo, "Constructing Sobol sequences with better
+ * two-dimensional projections", SIAM J. Sci. Comput. 30 (2008) 2635-2654.
+ * Most of the benefit of a Sobol sequence is in its first few dimensions so when simulating paths it should
+ * usually be combined with a {@link BrownianBridgeRandomNumberGenerator}.
+ */
+public class SobolNormalRandomNumberGenerator extends AbstractBlockRandomNumberGenerator
+    implements SubstreamRandomNumberGenerator {
+  /** The maximum supported dimension */
+  public static final int MAX_DIMENSION = 21;
+
+  private static final int BITS = 32;
+  private static final double SCALE = 1.0 / (1L << BITS);
+
+  /** The degree of the primitive polynomial for each dimension after the first */
+  private static final int[] DEGREE = {1, 2, 3, 3, 4, 4, 5, 5, 5, 5, 5, 5, 6, 6, 6, 6, 6, 6, 7, 7 };
+  /** The coefficients of the primitive polynomial for each dimension after the first */
+  private static final int[] COEFFICIENTS = {0, 1, 1, 2, 1, 4, 2, 4, 7, 11, 13, 14, 1, 13, 16, 19, 22, 25, 1, 4 };
+  /** The initial direction numbers for each dimension after the first */
+  private static final int[][] INITIAL_DIRECTIONS = {
+    {1 }, {1, 3 }, {1, 3, 1 }, {1, 1, 1 }, {1, 1, 3, 3 }, {1, 3, 5, 13 }, {1, 1, 5, 5, 17 }, {1, 1, 5, 5, 5 },
+    {1, 1, 7, 11, 19 }, {1, 1, 5, 1, 1 }, {1, 1, 1, 3, 11 }, {1, 3, 5, 5, 31 }, {1, 3, 3, 9, 7, 49 },
+    {1, 1, 1, 15, 21, 21 }, {1, 3, 1, 13, 27, 49 }, {1, 1, 1, 15, 7, 5 }, {1, 3, 1, 15, 13, 25 },
+    {1, 1, 5, 5, 19, 61 }, {1, 3, 7, 11, 23, 15, 103 }, {1, 3, 7, 13, 13, 15, 69 } };
+
+  private final int _dimension;
+  private final double _mean;
+  private final double _sigma;
+  /** direction numbers, dimension/bit */
+  private final long[][] _directions;
+  /** The current point of the sequence as integers */
+  private final long[] _point;
+  /** The index of the current point */
+  private long _index;
+
+  /**
+   * Creates a standard normal generator.
+   * @param dimension The dimension of the vectors, between 1 and {@link #MAX_DIMENSION}
+   */
+  public SobolNormalRandomNumberGenerator(final int dimension) {
+    this(0, 1, dimension);
+  }
+
+  /**
+   * @param mean The mean of the distribution
+   * @param sigma The standard deviation of the distribution, greater than zero
+   * @param dimension The dimension of the vectors, between 1 and {@link #MAX_DIMENSION}
+   */
+  public SobolNormalRandomNumberGenerator(final double mean, final double sigma, final int dimension) {
+    ArgumentChecker.notNegativeOrZero(sigma, "standard deviation");
+    ArgumentChecker.isTrue(dimension >= 1 && dimension <= MAX_DIMENSION, "Dimension must be between 1 and {}, have {}",
+        MAX_DIMENSION, dimension);
+    _mean = mean;
+    _sigma = sigma;
+    _dimension = dimension;
+    _directions = new long[dimension][BITS];
+    for (int i = 0; i < BITS; i++) {
+      _directions[0][i] = 1L << (BITS - 1 - i);
+    }
+    for (int d = 1; d < dimension; d++) {
+      final int s = DEGREE[d - 1];
+      final int a = COEFFICIENTS[d - 1];
+      final int[] m = INITIAL_DIRECTIONS[d - 1];
+      final long[] v = _directions[d];
+      for (int i = 0; i < s; i++) {
+        v[i] = ((long) m[i]) << (BITS - 1 - i);
+      }
+      for (int i = s; i < BITS; i++) {
+        v[i] = v[i - s] ^ (v[i - s] >>> s);
+        for (int k = 1; k < s; k++) {
+          v[i] ^= ((a >>> (s - 1 - k)) & 1) * v[i - k];
+        }
+      }
+    }
+    _point = new long[dimension];
+  }
+
+  /**
+   * Moves the generator so the next vector is the point of the sequence with the given index.
+   * @param index The index, greater than zero
+   */
+  public void skipTo(final long index) {
+    ArgumentChecker.notNegativeOrZero(index, "index");
+    ArgumentChecker.isTrue(index < (1L << BITS), "Index {} is beyond the end of the sequence", index);
+    // the point before the index in Gray code order
+    final long previous = index - 1;
+    final long gray = previous ^ (previous >>> 1);
+    for (int d = 0; d < _dimension; d++) {
+      long x = 0;
+      for (int bit = 0; bit < BITS; bit++) {
+        if (((gray >>> bit) & 1) != 0) {
+          x ^= _directions[d][bit];
+        }
+      }
+      _point[d] = x;
+    }
+    _index = previous;
+  }
+
+  /**
+   * {@inheritDoc}
+   * The substream's vectors are the points of this sequence starting at index firstVector + 1, the point at index
+   * zero being skipped.
+   */
+  @Override
+  public SobolNormalRandomNumberGenerator getSubstream(final long firstVector) {
+    ArgumentChecker.notNegative(firstVector, "firstVector");
+    final SobolNormalRandomNumberGenerator substream = new SobolNormalRandomNumberGenerator(_mean, _sigma, _dimension);
+    substream.skipTo(firstVector + 1);
+    return substream;
+  }
+
+  /**
+   * Gets the dimension of the vectors.
+   * @return The dimension
+   */
+  public int getDimension() {
+    return _dimension;
+  }
+
+  @Override
+  protected void fill(final double[] buffer, final int dimension, final int n) {
+    ArgumentChecker.isTrue(dimension == _dimension, "Dimension {} does not match generator dimension {}",
+        dimension, _dimension);
+    ArgumentChecker.isTrue(_index + n < (1L << BITS), "Sobol sequence exhausted");
+    int offset = 0;
+    for (int i = 0; i < n; i++) {
+      // the bit that changes in the Gray code of the next index is the lowest zero bit of the current index
+      final int bit = Long.numberOfTrailingZeros(~_index);
+      _index++;
+      for (int d = 0; d < _dimension; d++) {
+        _point[d] ^= _directions[d][bit];
+        buffer[offset++] = _mean + _sigma * InverseNormal.inverseCDF(_point[d] * SCALE);
+      }
+    }
+  }
+
+}
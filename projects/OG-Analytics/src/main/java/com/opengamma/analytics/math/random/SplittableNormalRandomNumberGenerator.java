@@ -0,0 +1,101 @@
+/**
+ * Copyright (C) 2014 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.analytics.math.random;
+
+import com.opengamma.util.ArgumentChecker;
+
+/**
+ * A block generator of normally distributed pseudo-random numbers that can be split into independent generators,
+ * one per thread, with reproducible results.
+ * <p>
+ * Uniform numbers are generated with the SplitMix64 algorithm, which needs a single long of state and a few
+ * arithmetic operations per number, and are mapped to normal ones using {@link InverseNormal}.
+ * A generator created with a given seed always produces the same sequence, as do the generators returned by
+ * successive calls to {@link #split()} on it, and the generators returned by {@link #getSubstream(long)}.
+ * Instances are not thread safe, each thread should use its own split or substream.
+ */
+public class SplittableNormalRandomNumberGenerator extends AbstractBlockRandomNumberGenerator
+    implements SubstreamRandomNumberGenerator {
+  /** The increment applied to the state for each number, the odd integer closest to 2^64 divided by the golden ratio */
+  private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+  /** Converts the top 53 bits of a long to a double in [0, 1) */
+  private static final double DOUBLE_UNIT = 1.0 / (1L << 53);
+
+  private final double _mean;
+  private final double _sigma;
+  private final long _seed;
+  private long _state;
+
+  /**
+   * Creates a standard normal generator.
+   * @param seed The seed
+   */
+  public SplittableNormalRandomNumberGenerator(final long seed) {
+    this(0, 1, seed);
+  }
+
+  /**
+   * @param mean The mean of the distribution
+   * @param sigma The standard deviation of the distribution, greater than zero
+   * @param seed The seed
+   */
+  public SplittableNormalRandomNumberGenerator(final double mean, final double sigma, final long seed) {
+    ArgumentChecker.notNegativeOrZero(sigma, "standard deviation");
+    _mean = mean;
+    _sigma = sigma;
+    _seed = seed;
+    _state = seed;
+  }
+
+  /**
+   * Returns a new generator with the same distribution whose sequence is independent of this one.
+   * The new generator's seed is drawn from this generator, so it advances this generator's sequence.
+   * @return The new generator
+   */
+  public SplittableNormalRandomNumberGenerator split() {
+    return new SplittableNormalRandomNumberGenerator(_mean, _sigma, nextLong());
+  }
+
+  /**
+   * {@inheritDoc}
+   * The substream is seeded with the index mixed with this generator's seed, so it doesn't depend on the numbers
+   * already drawn from this generator.
+   */
+  @Override
+  public SplittableNormalRandomNumberGenerator getSubstream(final long firstVector) {
+    ArgumentChecker.notNegative(firstVector, "firstVector");
+    return new SplittableNormalRandomNumberGenerator(_mean, _sigma, mix(_seed + (firstVector + 1) * GOLDEN_GAMMA));
+  }
+
+  /**
+   * Returns the next uniformly distributed number, strictly between 0 and 1.
+   * @return The number
+   */
+  public double nextUniform() {
+    return ((nextLong() >>> 11) + 0.5) * DOUBLE_UNIT;
+  }
+
+  @Override
+  protected void fill(final double[] buffer, final int dimension, final int n) {
+    final int size = dimension * n;
+    for (int i = 0; i < size; i++) {
+      buffer[i] = _mean + _sigma * InverseNormal.inverseCDF(nextUniform());
+    }
+  }
+
+  private long nextLong() {
+    _state += GOLDEN_GAMMA;
+    return mix(_state);
+  }
+
+  private static long mix(final long state) {
+    long z = state;
+    z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+    z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+    return z ^ (z >>> 31);
+  }
+
+}
@@ -0,0 +1,27 @@
+/**
+ * Copyright (C) 2014 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.analytics.math.random;
+
+/**
+ * A block random number generator whose output can be partitioned into substreams that are generated independently,
+ * for example on different threads.
+ * <p>
+ * The numbers of a substream depend only on the configuration of the generator it is created from, such as its seed,
+ * and the index of the substream, not on how many numbers have already been drawn. Work that is split into blocks
+ * identified by index therefore gives the same results however the blocks are scheduled.
+ */
+public interface SubstreamRandomNumberGenerator extends BlockRandomNumberGenerator {
+
+  /**
+   * Returns a new generator for the substream starting at a given vector. Quasi-random generators return the
+   * vectors of their sequence starting at that index; pseudo-random generators return an independent stream
+   * identified by the index.
+   * @param firstVector The index of the first vector in the substream, not negative
+   * @return The generator of the substream
+   */
+  BlockRandomNumberGenerator getSubstream(long firstVector);
+
+}
@@ -11,6 +11,7 @@ import static org.testng.AssertJUnit.assertFalse;
 import static org.testng.AssertJUnit.assertTrue;
 
 import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
 
 import org.testng.annotations.Test;
 import org.threeten.bp.LocalDate;
@@ -170,4 +171,54 @@ public class SuperFastCreditCurveBuilderTest extends CreditCurveCalibrationTest
     }
 
   }
+
+  /**
+   * Bulk calibration of many names on the same term structure, warm-started and in parallel
+   */
+  @Test
+  public void bulkCalibrationTest() {
+    final LocalDate tradeDate = LocalDate.of(2013, Month.APRIL, 25);
+
+    final CDSAnalyticFactory baseFactory = new CDSAnalyticFactory();
+    final Period[] tenors = new Period[] {Period.ofMonths(6), Period.ofYears(1), Period.ofYears(3), Period.ofYears(5), Period.ofYears(7), Period.ofYears(10) };
+    final MultiCDSAnalytic multiCDS = baseFactory.makeMultiIMMCDS(tradeDate, tenors);
+    final LocalDate spotDate = addWorkDays(tradeDate.minusDays(1), 3, DEFAULT_CALENDAR);
+    final String[] yieldCurvePoints = new String[] {"1M", "2M", "3M", "6M", "9M", "1Y", "2Y", "3Y", "4Y", "5Y", "6Y", "7Y", "8Y", "9Y", "10Y", "11Y", "12Y", "15Y", "20Y", "25Y", "30Y" };
+    final String[] yieldCurveInstruments = new String[] {"M", "M", "M", "M", "M", "M", "S", "S", "S", "S", "S", "S", "S", "S", "S", "S", "S", "S", "S", "S", "S" };
+    final double[] rates = new double[] {0.00445, 0.009488, 0.012337, 0.017762, 0.01935, 0.020838, 0.01652, 0.02018, 0.023033, 0.02525, 0.02696, 0.02825, 0.02931, 0.03017, 0.03092, 0.0316, 0.03231,
+        0.03367, 0.03419, 0.03411, 0.03412 };
+    final ISDACompliantYieldCurve yc = makeYieldCurve(tradeDate, spotDate, yieldCurvePoints, yieldCurveInstruments, rates, ACT360, D30360, Period.ofYears(1));
+
+    final double[] baseSpreads = new double[] {0.007, 0.008, 0.011, 0.013, 0.015, 0.016 };
+    final int nNames = 3 * CreditCurveCalibrator.BULK_BLOCK_SIZE + 5;
+    final int nCDS = baseSpreads.length;
+    final double[][] spreads = new double[nNames][nCDS];
+    final double[][] puf = new double[nNames][nCDS];
+    for (int i = 0; i < nNames; i++) {
+      for (int j = 0; j < nCDS; j++) {
+        spreads[i][j] = baseSpreads[j] * (1.0 + 0.01 * i) + 1.0e-5 * ((i * 7 + j) % 3);
+      }
+    }
+
+    final SuperFastCreditCurveBuilder builder = new SuperFastCreditCurveBuilder();
+    final ISDACompliantCreditCurve[] curves = builder.calibrateCreditCurves(multiCDS, spreads, yc, puf);
+    assertEquals(nNames, curves.length);
+    final CreditCurveCalibrator calibrator = new CreditCurveCalibrator(multiCDS, yc);
+    for (int i = 0; i < nNames; i++) {
+      final ISDACompliantCreditCurve expected = calibrator.calibrate(spreads[i]);
+      for (int j = 0; j < nCDS; j++) {
+        assertEquals(expected.getZeroRateAtIndex(j), curves[i].getZeroRateAtIndex(j), 1.e-11);
+      }
+    }
+
+    final ForkJoinPool pool = new ForkJoinPool(4);
+    try {
+      final ISDACompliantCreditCurve[] curvesParallel = builder.calibrateCreditCurves(multiCDS, spreads, yc, puf, pool);
+      for (int i = 0; i < nNames; i++) {
+        assertTrue(Arrays.equals(curves[i].getKnotZeroRates(), curvesParallel[i].getKnotZeroRates()));
+      }
+    } finally {
+      pool.shutdown();
+    }
+  }
 }
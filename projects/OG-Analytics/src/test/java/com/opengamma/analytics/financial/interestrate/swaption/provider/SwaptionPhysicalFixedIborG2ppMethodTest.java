@@ -7,6 +7,8 @@ package com.opengamma.analytics.financial.interestrate.swaption.provider;
 
 import static org.testng.AssertJUnit.assertEquals;
 
+import java.util.concurrent.ForkJoinPool;
+
 import org.testng.annotations.Test;
 import org.threeten.bp.Period;
 import org.threeten.bp.ZonedDateTime;
@@ -27,6 +29,7 @@ import com.opengamma.analytics.financial.model.interestrate.TestsDataSetG2pp;
 import com.opengamma.analytics.financial.model.interestrate.definition.G2ppPiecewiseConstantParameters;
 import com.opengamma.analytics.financial.model.option.pricing.analytic.formula.NormalFunctionData;
 import com.opengamma.analytics.financial.model.volatility.NormalImpliedVolatilityFormula;
+import com.opengamma.analytics.financial.montecarlo.provider.DecisionScheduleCalculator;
 import com.opengamma.analytics.financial.montecarlo.provider.G2ppMonteCarloMethod;
 import com.opengamma.analytics.financial.provider.calculator.discounting.ParRateDiscountingCalculator;
 import com.opengamma.analytics.financial.provider.calculator.discounting.PresentValueDiscountingCalculator;
@@ -35,6 +38,7 @@ import com.opengamma.analytics.financial.provider.description.interestrate.G2ppP
 import com.opengamma.analytics.financial.provider.description.interestrate.MulticurveProviderDiscount;
 import com.opengamma.analytics.financial.schedule.ScheduleCalculator;
 import com.opengamma.analytics.math.random.NormalRandomNumberGenerator;
+import com.opengamma.analytics.math.random.SobolNormalRandomNumberGenerator;
 import com.opengamma.financial.convention.calendar.Calendar;
 import com.opengamma.financial.convention.daycount.DayCount;
 import com.opengamma.financial.convention.daycount.DayCounts;
@@ -166,6 +170,27 @@ public class SwaptionPhysicalFixedIborG2ppMethodTest {
     assertEquals("Swaption physical - G2++ - present value - approximation vs Monte Carlo", pvApproximation.getAmount(CUR), pvMC.getAmount(CUR), 2.5E+4);
   }
 
+  @Test
+  /**
+   * Checks that the Monte-Carlo results are the same whether the blocks of paths are simulated sequentially or in parallel.
+   */
+  public void presentValueMonteCarloParallel() {
+    final int nbPath = 12500;
+    final int dimension = 2 * SWAPTION_LONG_PAYER.accept(DecisionScheduleCalculator.getInstance(), MULTICURVES).getDecisionTime().length;
+    final ForkJoinPool pool = new ForkJoinPool(4);
+    try {
+      final G2ppMonteCarloMethod methodSequential = new G2ppMonteCarloMethod(new SobolNormalRandomNumberGenerator(dimension), nbPath);
+      final G2ppMonteCarloMethod methodParallel = new G2ppMonteCarloMethod(new SobolNormalRandomNumberGenerator(dimension), nbPath, pool);
+      final MultipleCurrencyAmount pvSequential = methodSequential.presentValue(SWAPTION_LONG_PAYER, CUR, G2PP_MULTICURVES);
+      final MultipleCurrencyAmount pvParallel = methodParallel.presentValue(SWAPTION_LONG_PAYER, CUR, G2PP_MULTICURVES);
+      assertEquals("Swaption physical - G2++ - Monte Carlo - parallel", pvSequential.getAmount(CUR), pvParallel.getAmount(CUR), 0.0);
+      final MultipleCurrencyAmount pvApproximation = METHOD_G2PP_APPROXIMATION.presentValue(SWAPTION_LONG_PAYER, G2PP_MULTICURVES);
+      assertEquals("Swaption physical - G2++ - Monte Carlo - parallel", pvApproximation.getAmount(CUR), pvParallel.getAmount(CUR), 2.5E+4);
+    } finally {
+      pool.shutdown();
+    }
+  }
+
   @Test(enabled = false)
   /**
    * Test the present value by approximation vs Monte Carlo: convergence.
@@ -8,6 +8,7 @@ package com.opengamma.analytics.financial.interestrate.swaption.provider;
 import static org.testng.AssertJUnit.assertEquals;
 
 import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
 
 import org.testng.annotations.Test;
 import org.threeten.bp.Period;
@@ -50,6 +51,8 @@ import com.opengamma.analytics.financial.provider.sensitivity.parameter.Paramete
 import com.opengamma.analytics.financial.schedule.ScheduleCalculator;
 import com.opengamma.analytics.financial.util.AssertSensitivityObjects;
 import com.opengamma.analytics.math.random.NormalRandomNumberGenerator;
+import com.opengamma.analytics.math.random.SobolNormalRandomNumberGenerator;
+import com.opengamma.analytics.math.random.SplittableNormalRandomNumberGenerator;
 import com.opengamma.analytics.math.statistics.distribution.NormalDistribution;
 import com.opengamma.analytics.math.statistics.distribution.ProbabilityDistribution;
 import com.opengamma.financial.convention.calendar.Calendar;
@@ -271,6 +274,52 @@ public class SwaptionPhysicalFixedIborHullWhiteMethodTest {
     assertEquals("Swaption physical - Hull-White - Monte Carlo - payer/receiver/swap parity", pvReceiverLongMC.getAmount(EUR) + pvPayerShortMC.getAmount(EUR), pvSwap.getAmount(EUR), 1.0E+5);
   }
 
+  @Test
+  /**
+   * Checks that the Monte-Carlo results are the same whether the blocks of paths are simulated sequentially or in parallel.
+   * The blocks of a sequential run draw consecutive points of a Sobol sequence so they match the parallel run only if each block's substream starts where the previous block's numbers end.
+   */
+  public void presentValueMonteCarloParallel() {
+    final ForkJoinPool pool = new ForkJoinPool(4);
+    try {
+      final HullWhiteMonteCarloMethod methodSequential = new HullWhiteMonteCarloMethod(new SobolNormalRandomNumberGenerator(1), NB_PATH);
+      final HullWhiteMonteCarloMethod methodParallel = new HullWhiteMonteCarloMethod(new SobolNormalRandomNumberGenerator(1), NB_PATH, pool);
+      final MultipleCurrencyAmount pvSequential = methodSequential.presentValue(SWAPTION_LONG_PAYER, EUR, HW_MULTICURVES);
+      final MultipleCurrencyAmount pvParallel = methodParallel.presentValue(SWAPTION_LONG_PAYER, EUR, HW_MULTICURVES);
+      assertEquals("Swaption physical - Hull-White - Monte Carlo - parallel", pvSequential.getAmount(EUR), pvParallel.getAmount(EUR), 0.0);
+      final MultipleCurrencyAmount pvExplicit = METHOD_HW.presentValue(SWAPTION_LONG_PAYER, HW_MULTICURVES);
+      assertEquals("Swaption physical - Hull-White - Monte Carlo - parallel", pvExplicit.getAmount(EUR), pvParallel.getAmount(EUR), 1.0E+4);
+      final HullWhiteMonteCarloMethod methodSensiSequential = new HullWhiteMonteCarloMethod(new SobolNormalRandomNumberGenerator(1), NB_PATH);
+      final MultipleCurrencyMulticurveSensitivity pvcsSequential = methodSensiSequential.presentValueCurveSensitivity(SWAPTION_LONG_PAYER, EUR, HW_MULTICURVES);
+      final MultipleCurrencyMulticurveSensitivity pvcsParallel = methodParallel.presentValueCurveSensitivity(SWAPTION_LONG_PAYER, EUR, HW_MULTICURVES);
+      AssertSensitivityObjects.assertEquals("Swaption physical - Hull-White - Monte Carlo - parallel", pvcsSequential, pvcsParallel, 0.0);
+      assertEquals("Swaption physical - Hull-White - Monte Carlo - parallel", (NB_PATH + 999) / 1000 * 2, methodParallel.getBlockStatistics().getBlockCount());
+      assertEquals("Swaption physical - Hull-White - Monte Carlo - parallel", 2L * NB_PATH, methodParallel.getBlockStatistics().getPathCount());
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  @Test
+  /**
+   * Checks that the parallel Monte-Carlo results don't depend on the number of threads.
+   */
+  public void presentValueMonteCarloParallelThreads() {
+    final long seed = 12345;
+    final ForkJoinPool pool1 = new ForkJoinPool(1);
+    final ForkJoinPool pool4 = new ForkJoinPool(4);
+    try {
+      final HullWhiteMonteCarloMethod method1 = new HullWhiteMonteCarloMethod(new SplittableNormalRandomNumberGenerator(0.0, 1.0, seed), NB_PATH, pool1);
+      final HullWhiteMonteCarloMethod method4 = new HullWhiteMonteCarloMethod(new SplittableNormalRandomNumberGenerator(0.0, 1.0, seed), NB_PATH, pool4);
+      final MultipleCurrencyAmount pv1 = method1.presentValue(SWAPTION_LONG_PAYER, EUR, HW_MULTICURVES);
+      final MultipleCurrencyAmount pv4 = method4.presentValue(SWAPTION_LONG_PAYER, EUR, HW_MULTICURVES);
+      assertEquals("Swaption physical - Hull-White - Monte Carlo - parallel", pv1.getAmount(EUR), pv4.getAmount(EUR), 0.0);
+    } finally {
+      pool1.shutdown();
+      pool4.shutdown();
+    }
+  }
+
   @Test
   /**
    * Tests the Hull-White parameters sensitivity for the explicit formula.
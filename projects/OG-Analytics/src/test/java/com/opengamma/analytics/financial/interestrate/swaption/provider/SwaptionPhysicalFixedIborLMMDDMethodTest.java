@@ -8,6 +8,7 @@ package com.opengamma.analytics.financial.interestrate.swaption.provider;
 import static org.testng.AssertJUnit.assertEquals;
 
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 import org.testng.annotations.Test;
 import org.threeten.bp.Period;
@@ -69,6 +70,7 @@ import com.opengamma.analytics.financial.provider.sensitivity.parameter.Paramete
 import com.opengamma.analytics.financial.schedule.ScheduleCalculator;
 import com.opengamma.analytics.financial.util.AssertSensitivityObjects;
 import com.opengamma.analytics.math.random.NormalRandomNumberGenerator;
+import com.opengamma.analytics.math.random.SobolNormalRandomNumberGenerator;
 import com.opengamma.financial.convention.calendar.Calendar;
 import com.opengamma.util.money.Currency;
 import com.opengamma.util.money.MultipleCurrencyAmount;
@@ -173,6 +175,26 @@ public class SwaptionPhysicalFixedIborLMMDDMethodTest {
     assertEquals("Swaption physical - LMM - present value Approximation/Monte Carlo", impliedVolMC, impliedVolApprox, 2.0E-3);
   }
 
+  /**
+   * Checks that the Monte-Carlo results are the same whether the blocks of paths are simulated sequentially or in parallel.
+   * Each path draws one vector per sub-jump, so the blocks of the parallel run must skip all of them.
+   */
+  @Test
+  public void presentValueMCParallel() {
+    final double maxJump = 1.0;
+    final ForkJoinPool pool = new ForkJoinPool(4);
+    try {
+      final LiborMarketModelMonteCarloMethod methodSequential = new LiborMarketModelMonteCarloMethod(new SobolNormalRandomNumberGenerator(PARAMETERS_LMM.getNbFactor()), NB_PATH, maxJump);
+      final LiborMarketModelMonteCarloMethod methodParallel = new LiborMarketModelMonteCarloMethod(new SobolNormalRandomNumberGenerator(PARAMETERS_LMM.getNbFactor()), NB_PATH, maxJump, pool);
+      final MultipleCurrencyAmount pvSequential = methodSequential.presentValue(SWAPTION_PAYER_LONG, EUR, LMM_MULTICURVES);
+      final MultipleCurrencyAmount pvParallel = methodParallel.presentValue(SWAPTION_PAYER_LONG, EUR, LMM_MULTICURVES);
+      assertEquals("Swaption physical - LMM - present value Monte Carlo - parallel", pvSequential.getAmount(EUR), pvParallel.getAmount(EUR), 0.0);
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+
   @Test
   /**
    * Tests long/short parity.
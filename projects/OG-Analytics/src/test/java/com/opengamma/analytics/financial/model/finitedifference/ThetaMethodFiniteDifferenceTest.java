@@ -5,10 +5,17 @@
  */
 package com.opengamma.analytics.financial.model.finitedifference;
 
+import static org.testng.AssertJUnit.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.testng.annotations.Test;
 
+import com.opengamma.analytics.financial.model.finitedifference.applications.InitialConditionsProvider;
+import com.opengamma.analytics.financial.model.finitedifference.applications.PDE1DCoefficientsProvider;
 import com.opengamma.util.monitor.OperationTimer;
 import com.opengamma.util.test.TestGroup;
 
@@ -116,4 +123,61 @@ public class ThetaMethodFiniteDifferenceTest {
     TESTER.testAmericanPrice(SOLVER, timeSteps, priceSteps, lowerMoneyness, upperMoneyness, print);
   }
 
+  /**
+   * Solving with a (re-used) workspace, or several PDEs together, must give exactly the same results as solving each PDE on its own
+   */
+  @Test
+  public void testWorkspaceAndMultiplePDEs() {
+    final PDE1DCoefficientsProvider pdeProvider = new PDE1DCoefficientsProvider();
+    final InitialConditionsProvider initialProvider = new InitialConditionsProvider();
+    final ConvectionDiffusionPDE1DStandardCoefficients coeff = pdeProvider.getBlackScholes(0.03, 0.01, 0.25);
+    final PDEGrid1D grid = new PDEGrid1D(30, 101, 2.0, 0.0, 500.0);
+    final double[] strikes = {60.0, 80.0, 100.0, 120.0, 150.0 };
+    final ThetaMethodFiniteDifference solver = new ThetaMethodFiniteDifference(0.55, true);
+
+    for (final boolean isAmerican : new boolean[] {false, true }) {
+      final List<PDE1DDataBundle<ConvectionDiffusionPDE1DCoefficients>> pdeData = new ArrayList<>();
+      for (final double strike : strikes) {
+        final BoundaryCondition lower = new DirichletBoundaryCondition(strike, 0.0);
+        final BoundaryCondition upper = new NeumannBoundaryCondition(0.0, 500.0, false);
+        if (isAmerican) {
+          pdeData.add(new PDE1DDataBundle<ConvectionDiffusionPDE1DCoefficients>(coeff, initialProvider.getEuropeanPayoff(strike, false), lower, upper,
+              initialProvider.getAmericanEarlyExcise(strike, false), grid));
+        } else {
+          pdeData.add(new PDE1DDataBundle<ConvectionDiffusionPDE1DCoefficients>(coeff, initialProvider.getEuropeanPayoff(strike, false), lower, upper, grid));
+        }
+      }
+
+      final ThetaMethodWorkspace workspace = new ThetaMethodWorkspace();
+      final PDEResults1D[] multiple = solver.solve(pdeData, workspace);
+      assertEquals(strikes.length, multiple.length);
+      for (int k = 0; k < strikes.length; k++) {
+        final PDEFullResults1D expected = (PDEFullResults1D) solver.solve(pdeData.get(k));
+        final PDEFullResults1D single = (PDEFullResults1D) solver.solve(pdeData.get(k), workspace);
+        final PDEFullResults1D fromMultiple = (PDEFullResults1D) multiple[k];
+        for (int j = 0; j < grid.getNumTimeNodes(); j++) {
+          for (int i = 0; i < grid.getNumSpaceNodes(); i++) {
+            assertEquals(expected.getFunctionValue(i, j), single.getFunctionValue(i, j), 0.0);
+            assertEquals(expected.getFunctionValue(i, j), fromMultiple.getFunctionValue(i, j), 0.0);
+          }
+        }
+      }
+    }
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testMultiplePDEsDifferentCoefficients() {
+    final PDE1DCoefficientsProvider pdeProvider = new PDE1DCoefficientsProvider();
+    final InitialConditionsProvider initialProvider = new InitialConditionsProvider();
+    final PDEGrid1D grid = new PDEGrid1D(30, 101, 2.0, 0.0, 500.0);
+    final BoundaryCondition lower = new DirichletBoundaryCondition(100.0, 0.0);
+    final BoundaryCondition upper = new NeumannBoundaryCondition(0.0, 500.0, false);
+    final List<PDE1DDataBundle<ConvectionDiffusionPDE1DCoefficients>> pdeData = new ArrayList<>();
+    pdeData.add(new PDE1DDataBundle<ConvectionDiffusionPDE1DCoefficients>(pdeProvider.getBlackScholes(0.03, 0.01, 0.25),
+        initialProvider.getEuropeanPayoff(100.0, false), lower, upper, grid));
+    pdeData.add(new PDE1DDataBundle<ConvectionDiffusionPDE1DCoefficients>(pdeProvider.getBlackScholes(0.03, 0.01, 0.3),
+        initialProvider.getEuropeanPayoff(100.0, false), lower, upper, grid));
+    SOLVER.solve(pdeData, new ThetaMethodWorkspace());
+  }
+
 }
@@ -11,6 +11,7 @@ import static org.testng.internal.junit.ArrayAsserts.assertArrayEquals;
 
 import org.testng.annotations.Test;
 
+import com.opengamma.analytics.math.curve.ConstantDoublesCurve;
 import com.opengamma.analytics.math.curve.InterpolatedDoublesCurve;
 import com.opengamma.analytics.math.interpolation.Interpolator1D;
 import com.opengamma.analytics.math.interpolation.LinearInterpolator1D;
@@ -85,6 +86,24 @@ public class YieldAndDiscountCurveTest {
     assertEquals(DISCOUNT.getDiscountFactor(1.5), DF.getYValue(1.5), 1e-15);
   }
 
+  @Test
+  public void batchGetters() {
+    final double[] times = {1.0, 1.2, 1.5, 2.0, 2.9, 3.0, 1.1 };
+    final double[] rates = new double[times.length];
+    final double[] dfs = new double[times.length];
+    YIELD.getInterestRates(times, rates);
+    YIELD.getDiscountFactors(times, dfs);
+    for (int loopt = 0; loopt < times.length; loopt++) {
+      assertEquals("YieldCurve: batch rates", YIELD.getInterestRate(times[loopt]), rates[loopt], 1e-15);
+      assertEquals("YieldCurve: batch discount factors", YIELD.getDiscountFactor(times[loopt]), dfs[loopt], 1e-15);
+    }
+    final YieldCurve constant = YieldCurve.from(ConstantDoublesCurve.from(0.02));
+    assertEquals(null, constant.getCompiledCurve());
+    constant.getDiscountFactors(new double[] {0.0, 2.0 }, dfs);
+    assertEquals(1.0, dfs[0], 0.0);
+    assertEquals(Math.exp(-0.04), dfs[1], 1e-15);
+  }
+
   @Test
   public void gettersYieldPeriodic() {
     assertEquals("YieldPeriodicCurve: getter", YIELD_PERIODIC.getCurve(), R);
@@ -0,0 +1,139 @@
+/**
+ * Copyright (C) 2014 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.analytics.financial.model.volatility;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertTrue;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+import org.testng.annotations.Test;
+
+import com.opengamma.util.test.TestGroup;
+
+/**
+ * Test {@link BlackImpliedVolatilityBatchSolver}.
+ */
+@Test(groups = TestGroup.UNIT)
+public class BlackImpliedVolatilityBatchSolverTest {
+
+  private static final double FORWARD = 100.0;
+  private static final double[] STRIKES = {20.0, 50.0, 80.0, 95.0, 100.0, 105.0, 120.0, 150.0, 200.0, 300.0 };
+  private static final double[] EXPIRIES = {0.02, 0.1, 0.5, 1.0, 2.0, 5.0, 10.0 };
+  private static final double[] VOLS = {0.05, 0.1, 0.2, 0.4, 0.8, 1.5 };
+  private static final double DF = 0.95;
+  private static final double TOLERANCE_VOL = 1.0E-9;
+
+  @Test
+  public void roundTrip() {
+    for (final double strike : STRIKES) {
+      for (final double expiry : EXPIRIES) {
+        for (final double vol : VOLS) {
+          for (final boolean isCall : new boolean[] {true, false }) {
+            final double price = BlackFormulaRepository.price(FORWARD, strike, expiry, vol, isCall);
+            final double otmPrice = price - Math.max(0.0, isCall ? FORWARD - strike : strike - FORWARD);
+            if (otmPrice < 1.0E-6 || otmPrice > Math.min(FORWARD, strike) * (1.0 - 1.0E-9)) {
+              continue; // the price does not determine the volatility to the tolerance
+            }
+            final double impliedVol = BlackImpliedVolatilityBatchSolver.impliedVolatility(price, FORWARD, strike, expiry, isCall);
+            assertEquals("K=" + strike + ", T=" + expiry + ", vol=" + vol + ", call=" + isCall, vol, impliedVol, TOLERANCE_VOL * Math.max(1.0, vol));
+          }
+        }
+      }
+    }
+  }
+
+  @Test
+  public void matchesRepository() {
+    final double strike = 110.0;
+    final double expiry = 1.5;
+    final double price = BlackFormulaRepository.price(FORWARD, strike, expiry, 0.27, false);
+    assertEquals(BlackFormulaRepository.impliedVolatility(price, FORWARD, strike, expiry, false),
+        BlackImpliedVolatilityBatchSolver.impliedVolatility(price, FORWARD, strike, expiry, false), 1.0E-8);
+  }
+
+  /**
+   * Checks the number of steps below the inflection point (Halley steps) and above it (Householder steps).
+   */
+  @Test
+  public void iterations() {
+    // strike, volatility, maximum number of steps
+    final double[][] lower = {{80.0, 0.2, 5 }, {120.0, 0.5, 5 }, {120.0, 0.2, 5 } };
+    final double[][] upper = {{80.0, 0.8, 3 }, {120.0, 0.8, 3 }, {105.0, 0.4, 3 } };
+    for (final double[][] cases : new double[][][] {lower, upper }) {
+      for (final double[] c : cases) {
+        for (final boolean isCall : new boolean[] {true, false }) {
+          final double price = BlackFormulaRepository.price(FORWARD, c[0], 1.0, c[1], isCall);
+          final int[] iterations = new int[1];
+          final double impliedVol = BlackImpliedVolatilityBatchSolver.impliedVolatility(price, FORWARD, c[0], 1.0, isCall, iterations);
+          final String message = "K=" + c[0] + ", vol=" + c[1] + ", call=" + isCall + ", steps=" + iterations[0];
+          assertEquals(message, c[1], impliedVol, TOLERANCE_VOL);
+          assertTrue(message, iterations[0] <= c[2]);
+        }
+      }
+    }
+  }
+
+  @Test
+  public void noImpliedVolatility() {
+    // below intrinsic value
+    assertTrue(Double.isNaN(BlackImpliedVolatilityBatchSolver.impliedVolatility(10.0, FORWARD, 80.0, 1.0, true)));
+    // above the upper bound
+    assertTrue(Double.isNaN(BlackImpliedVolatilityBatchSolver.impliedVolatility(101.0, FORWARD, 80.0, 1.0, true)));
+    assertTrue(Double.isNaN(BlackImpliedVolatilityBatchSolver.impliedVolatility(5.0, -FORWARD, 80.0, 1.0, true)));
+    assertTrue(Double.isNaN(BlackImpliedVolatilityBatchSolver.impliedVolatility(5.0, FORWARD, 80.0, 0.0, true)));
+    assertTrue(Double.isNaN(BlackImpliedVolatilityBatchSolver.impliedVolatility(Double.NaN, FORWARD, 80.0, 1.0, true)));
+    // at intrinsic value
+    assertEquals(0.0, BlackImpliedVolatilityBatchSolver.impliedVolatility(0.0, FORWARD, 120.0, 1.0, true), 0.0);
+  }
+
+  @Test
+  public void batch() {
+    final int n = 10000;
+    final double[] forwards = new double[n];
+    final double[] strikes = new double[n];
+    final double[] expiries = new double[n];
+    final double[] dfs = new double[n];
+    final double[] prices = new double[n];
+    final boolean[] isCall = new boolean[n];
+    final double[] vols = new double[n];
+    for (int i = 0; i < n; i++) {
+      forwards[i] = FORWARD;
+      strikes[i] = 80.0 + 45.0 * (i % 97) / 96.0;
+      expiries[i] = 0.5 + 3.0 * (i % 31) / 30.0;
+      dfs[i] = DF;
+      isCall[i] = i % 2 == 0;
+      vols[i] = 0.1 + 0.4 * (i % 13) / 12.0;
+      prices[i] = DF * BlackFormulaRepository.price(forwards[i], strikes[i], expiries[i], vols[i], isCall[i]);
+    }
+    prices[7] = -1.0;
+    final double[] computed = new double[n];
+    BlackImpliedVolatilityBatchSolver.impliedVolatilities(forwards, strikes, expiries, dfs, prices, isCall, computed);
+    for (int i = 0; i < n; i++) {
+      if (i == 7) {
+        assertTrue(Double.isNaN(computed[i]));
+      } else {
+        assertEquals(BlackImpliedVolatilityBatchSolver.impliedVolatility(prices[i] / DF, forwards[i], strikes[i], expiries[i], isCall[i]), computed[i], 0.0);
+        assertEquals(vols[i], computed[i], 1.0E-8);
+      }
+    }
+    final double[] computedParallel = new double[n];
+    final ForkJoinPool pool = new ForkJoinPool(4);
+    try {
+      BlackImpliedVolatilityBatchSolver.impliedVolatilities(forwards, strikes, expiries, dfs, prices, isCall, computedParallel, pool);
+    } finally {
+      pool.shutdown();
+    }
+    assertTrue(Arrays.equals(computed, computedParallel));
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void wrongLength() {
+    BlackImpliedVolatilityBatchSolver.impliedVolatilities(new double[2], new double[2], new double[2], new double[2], new double[1], new boolean[2], new double[2]);
+  }
+
+}
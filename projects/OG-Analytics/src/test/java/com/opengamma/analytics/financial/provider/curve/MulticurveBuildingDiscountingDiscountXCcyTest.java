@@ -9,8 +9,10 @@ import static org.testng.AssertJUnit.assertEquals;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Set;
 
 import org.testng.annotations.BeforeSuite;
 import org.testng.annotations.Test;
@@ -55,6 +57,8 @@ import com.opengamma.analytics.financial.provider.description.interestrate.Multi
 import com.opengamma.analytics.financial.provider.description.interestrate.ParameterProviderInterface;
 import com.opengamma.analytics.financial.provider.description.interestrate.ProviderUtils;
 import com.opengamma.analytics.financial.provider.sensitivity.multicurve.MultipleCurrencyParameterSensitivity;
+import com.opengamma.analytics.financial.provider.sensitivity.multicurve.ParameterSensitivityMulticurveMatrixCalculator;
+import com.opengamma.analytics.financial.provider.sensitivity.multicurve.ParameterSensitivityMulticurveUnderlyingMatrixCalculator;
 import com.opengamma.analytics.financial.provider.sensitivity.parameter.ParameterSensitivityParameterCalculator;
 import com.opengamma.analytics.math.interpolation.CombinedInterpolatorExtrapolatorFactory;
 import com.opengamma.analytics.math.interpolation.Interpolator1D;
@@ -494,6 +498,7 @@ public class MulticurveBuildingDiscountingDiscountXCcyTest {
   private static final MulticurveDiscountBuildingRepository CURVE_BUILDING_REPOSITORY = new MulticurveDiscountBuildingRepository(TOLERANCE_ROOT, TOLERANCE_ROOT, STEP_MAX);
 
   private static final double TOLERANCE_CAL = 1.0E-9;
+  private static final double TOLERANCE_SENSI = 1.0E-10;
 
   @BeforeSuite
   static void initClass() {
@@ -534,6 +539,35 @@ public class MulticurveBuildingDiscountingDiscountXCcyTest {
     }
   } //TODO: test parSpreadMarketQuote
 
+  @Test
+  /**
+   * Checks the sensitivities of all the instruments of a block computed together are the same as the sensitivities computed instrument by instrument.
+   */
+  public void calibrationSensitivities() {
+    final ParameterSensitivityMulticurveUnderlyingMatrixCalculator underlyingCalculator = new ParameterSensitivityMulticurveUnderlyingMatrixCalculator(PSMQCSDC);
+    final ParameterSensitivityMulticurveMatrixCalculator matrixCalculator = new ParameterSensitivityMulticurveMatrixCalculator(PSMQCSDC);
+    for (int loopblock = 0; loopblock < NB_BLOCKS; loopblock++) {
+      final MulticurveProviderDiscount curves = CURVES_PAR_SPREAD_MQ_WITHOUT_TODAY_BLOCK.get(loopblock).getFirst();
+      final Set<String> curvesSet = curves.getAllNames();
+      final List<InstrumentDerivative> instrumentList = new ArrayList<>();
+      for (final InstrumentDefinition<?>[][] unit : DEFINITIONS_UNITS[loopblock]) {
+        for (final InstrumentDerivative[] curveInstruments : convert(unit, false)) {
+          instrumentList.addAll(Arrays.asList(curveInstruments));
+        }
+      }
+      final InstrumentDerivative[] instruments = instrumentList.toArray(new InstrumentDerivative[instrumentList.size()]);
+      final double[][] sensitivities = underlyingCalculator.calculateSensitivities(instruments, curves, curvesSet).getData();
+      assertEquals("Calibration sensitivities: block " + loopblock, instruments.length, sensitivities.length);
+      for (int loopins = 0; loopins < instruments.length; loopins++) {
+        final double[] expected = matrixCalculator.calculateSensitivity(instruments[loopins], curves, curvesSet).getData();
+        assertEquals("Calibration sensitivities: block " + loopblock + " - instrument " + loopins, expected.length, sensitivities[loopins].length);
+        for (int loopp = 0; loopp < expected.length; loopp++) {
+          assertEquals("Calibration sensitivities: block " + loopblock + " - instrument " + loopins, expected[loopp], sensitivities[loopins][loopp], TOLERANCE_SENSI);
+        }
+      }
+    }
+  }
+
   @Test(enabled = true)
   /**
    * Analyzes the shape of the forward curve.
@@ -0,0 +1,164 @@
+/**
+ * Copyright (C) 2014 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.analytics.financial.provider.sensitivity;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.testng.annotations.Test;
+import org.threeten.bp.Period;
+import org.threeten.bp.ZonedDateTime;
+
+import com.opengamma.analytics.financial.instrument.index.GeneratorSwapFixedIbor;
+import com.opengamma.analytics.financial.instrument.index.GeneratorSwapFixedIborMaster;
+import com.opengamma.analytics.financial.instrument.swap.SwapFixedIborDefinition;
+import com.opengamma.analytics.financial.interestrate.InstrumentDerivative;
+import com.opengamma.analytics.financial.interestrate.payments.derivative.Coupon;
+import com.opengamma.analytics.financial.interestrate.swap.derivative.SwapFixedCoupon;
+import com.opengamma.analytics.financial.provider.calculator.discounting.PresentValueCurveSensitivityCompactDiscountingCalculator;
+import com.opengamma.analytics.financial.provider.calculator.discounting.PresentValueCurveSensitivityDiscountingCalculator;
+import com.opengamma.analytics.financial.provider.description.MulticurveProviderDiscountDataSets;
+import com.opengamma.analytics.financial.provider.description.interestrate.MulticurveProviderDiscount;
+import com.opengamma.analytics.financial.provider.sensitivity.multicurve.AnnuallyCompoundedForwardSensitivity;
+import com.opengamma.analytics.financial.provider.sensitivity.multicurve.CompactMulticurveSensitivity;
+import com.opengamma.analytics.financial.provider.sensitivity.multicurve.ForwardSensitivity;
+import com.opengamma.analytics.financial.provider.sensitivity.multicurve.MulticurveSensitivity;
+import com.opengamma.analytics.financial.provider.sensitivity.multicurve.MulticurveSensitivityAccumulator;
+import com.opengamma.analytics.financial.provider.sensitivity.multicurve.MultipleCurrencyMulticurveSensitivity;
+import com.opengamma.analytics.financial.provider.sensitivity.multicurve.SimplyCompoundedForwardSensitivity;
+import com.opengamma.analytics.financial.util.AssertSensitivityObjects;
+import com.opengamma.financial.convention.calendar.Calendar;
+import com.opengamma.util.money.Currency;
+import com.opengamma.util.test.TestGroup;
+import com.opengamma.util.time.DateUtils;
+import com.opengamma.util.tuple.DoublesPair;
+
+/**
+ * Tests related to the compact multi-curve sensitivities and their accumulator.
+ */
+@Test(groups = TestGroup.UNIT)
+public class CompactMulticurveSensitivityTest {
+
+  private static final List<DoublesPair> SENSI_DATA_1 = Arrays.asList(new DoublesPair[] {DoublesPair.of(3d, 30d), DoublesPair.of(1d, 10d), DoublesPair.of(2d, 20d),
+    DoublesPair.of(1d, 5d) });
+  private static final List<DoublesPair> SENSI_DATA_2 = Arrays.asList(new DoublesPair[] {DoublesPair.of(1d, 40d), DoublesPair.of(2.5d, 30d) });
+  private static final List<ForwardSensitivity> SENSI_FWD_1 = new ArrayList<>();
+  static {
+    SENSI_FWD_1.add(new SimplyCompoundedForwardSensitivity(1.00, 1.25, 0.24, 13));
+    SENSI_FWD_1.add(new SimplyCompoundedForwardSensitivity(0.5, 0.75, 0.26, 11));
+    SENSI_FWD_1.add(new SimplyCompoundedForwardSensitivity(0.75, 1.00, 0.26, 12));
+    SENSI_FWD_1.add(new SimplyCompoundedForwardSensitivity(0.5, 0.75, 0.26, 1));
+  }
+  private static final String CURVE_NAME_1 = "A";
+  private static final String CURVE_NAME_2 = "B";
+
+  private static final MulticurveSensitivity SENSI_1;
+  private static final MulticurveSensitivity SENSI_2;
+  static {
+    final Map<String, List<DoublesPair>> dsc1 = new HashMap<>();
+    dsc1.put(CURVE_NAME_1, SENSI_DATA_1);
+    final Map<String, List<ForwardSensitivity>> fwd1 = new HashMap<>();
+    fwd1.put(CURVE_NAME_2, SENSI_FWD_1);
+    SENSI_1 = MulticurveSensitivity.of(dsc1, fwd1);
+    final Map<String, List<DoublesPair>> dsc2 = new HashMap<>();
+    dsc2.put(CURVE_NAME_1, SENSI_DATA_2);
+    dsc2.put(CURVE_NAME_2, SENSI_DATA_2);
+    SENSI_2 = MulticurveSensitivity.ofYieldDiscounting(dsc2);
+  }
+
+  private static final MulticurveProviderDiscount MULTICURVES = MulticurveProviderDiscountDataSets.createMulticurveEurUsd();
+  private static final Calendar NYC = MulticurveProviderDiscountDataSets.getUSDCalendar();
+  private static final GeneratorSwapFixedIbor USD6MLIBOR3M = GeneratorSwapFixedIborMaster.getInstance().getGenerator("USD6MLIBOR3M", NYC);
+  private static final ZonedDateTime SETTLEMENT_DATE = DateUtils.getUTCDate(2012, 5, 17);
+  private static final ZonedDateTime REFERENCE_DATE = DateUtils.getUTCDate(2012, 5, 14);
+  private static final SwapFixedCoupon<Coupon> SWAP_1 = SwapFixedIborDefinition.from(SETTLEMENT_DATE, Period.ofYears(10), USD6MLIBOR3M, 100000000, 0.025, true)
+      .toDerivative(REFERENCE_DATE);
+  private static final SwapFixedCoupon<Coupon> SWAP_2 = SwapFixedIborDefinition.from(SETTLEMENT_DATE, Period.ofYears(5), USD6MLIBOR3M, 50000000, 0.02, false)
+      .toDerivative(REFERENCE_DATE);
+
+  private static final PresentValueCurveSensitivityDiscountingCalculator PVCSDC = PresentValueCurveSensitivityDiscountingCalculator.getInstance();
+  private static final PresentValueCurveSensitivityCompactDiscountingCalculator PVCSCDC = PresentValueCurveSensitivityCompactDiscountingCalculator.getInstance();
+
+  private static final double TOLERANCE = 1.0E-10;
+  private static final double TOLERANCE_PV_DELTA = 1.0E-2;
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void nullSensitivity() {
+    new MulticurveSensitivityAccumulator().add((MulticurveSensitivity) null);
+  }
+
+  @Test
+  public void sortedAndMerged() {
+    final CompactMulticurveSensitivity compact = CompactMulticurveSensitivity.of(SENSI_1);
+    assertTrue("CompactMulticurveSensitivity: times", Arrays.equals(new double[] {1, 2, 3 }, compact.getYieldDiscountingTimes(CURVE_NAME_1)));
+    assertTrue("CompactMulticurveSensitivity: values", Arrays.equals(new double[] {15, 20, 30 }, compact.getYieldDiscountingValues(CURVE_NAME_1)));
+    assertTrue("CompactMulticurveSensitivity: start times", Arrays.equals(new double[] {0.5, 0.75, 1.0 }, compact.getForwardStartTimes(CURVE_NAME_2)));
+    assertTrue("CompactMulticurveSensitivity: end times", Arrays.equals(new double[] {0.75, 1.0, 1.25 }, compact.getForwardEndTimes(CURVE_NAME_2)));
+    assertTrue("CompactMulticurveSensitivity: accrual factors", Arrays.equals(new double[] {0.26, 0.26, 0.24 }, compact.getForwardAccrualFactors(CURVE_NAME_2)));
+    assertTrue("CompactMulticurveSensitivity: values", Arrays.equals(new double[] {12, 12, 13 }, compact.getForwardValues(CURVE_NAME_2)));
+    assertEquals("CompactMulticurveSensitivity: no curve", 0, compact.getYieldDiscountingTimes(CURVE_NAME_2).length);
+  }
+
+  @Test
+  public void roundTrip() {
+    final CompactMulticurveSensitivity compact = CompactMulticurveSensitivity.of(SENSI_1);
+    assertEquals("CompactMulticurveSensitivity: round trip", SENSI_1.cleaned(), compact.toMulticurveSensitivity());
+    assertEquals("CompactMulticurveSensitivity: round trip", compact, CompactMulticurveSensitivity.of(compact.toMulticurveSensitivity()));
+  }
+
+  @Test
+  public void annuallyCompounded() {
+    final List<ForwardSensitivity> fwd = new ArrayList<>();
+    fwd.add(new AnnuallyCompoundedForwardSensitivity(0.5, 0.75, 0.26, 11));
+    fwd.add(new SimplyCompoundedForwardSensitivity(0.5, 0.75, 0.26, 12));
+    final Map<String, List<ForwardSensitivity>> map = new HashMap<>();
+    map.put(CURVE_NAME_2, fwd);
+    final CompactMulticurveSensitivity compact = CompactMulticurveSensitivity.of(MulticurveSensitivity.ofForward(map));
+    assertEquals("CompactMulticurveSensitivity: compounding", 2, compact.getForwardValues(CURVE_NAME_2).length);
+    final List<ForwardSensitivity> converted = compact.toMulticurveSensitivity().getForwardSensitivities().get(CURVE_NAME_2);
+    assertEquals("CompactMulticurveSensitivity: compounding", new SimplyCompoundedForwardSensitivity(0.5, 0.75, 0.26, 12), converted.get(0));
+    assertEquals("CompactMulticurveSensitivity: compounding", new AnnuallyCompoundedForwardSensitivity(0.5, 0.75, 0.26, 11), converted.get(1));
+    assertTrue("CompactMulticurveSensitivity: compounding", converted.get(1) instanceof AnnuallyCompoundedForwardSensitivity);
+  }
+
+  @Test
+  public void plusMultipliedBy() {
+    final CompactMulticurveSensitivity compact1 = CompactMulticurveSensitivity.of(SENSI_1);
+    final CompactMulticurveSensitivity compact2 = CompactMulticurveSensitivity.of(SENSI_2);
+    AssertSensitivityObjects.assertEquals("CompactMulticurveSensitivity: plus", SENSI_1.plus(SENSI_2).cleaned(), compact1.plus(compact2).toMulticurveSensitivity(), TOLERANCE);
+    AssertSensitivityObjects.assertEquals("CompactMulticurveSensitivity: multipliedBy", SENSI_1.multipliedBy(-2.5).cleaned(), compact1.multipliedBy(-2.5)
+        .toMulticurveSensitivity(), TOLERANCE);
+    final MulticurveSensitivityAccumulator accumulator = new MulticurveSensitivityAccumulator();
+    accumulator.add(SENSI_1).add(compact2, 2.0).addYieldDiscounting(CURVE_NAME_1, 0.5, 7.0);
+    accumulator.multiplyBy(0.5);
+    final Map<String, List<DoublesPair>> dsc = new HashMap<>();
+    dsc.put(CURVE_NAME_1, Arrays.asList(DoublesPair.of(0.5, 7.0)));
+    final MulticurveSensitivity expected = SENSI_1.plus(SENSI_2.multipliedBy(2.0)).plus(MulticurveSensitivity.ofYieldDiscounting(dsc)).multipliedBy(0.5).cleaned();
+    AssertSensitivityObjects.assertEquals("MulticurveSensitivityAccumulator", expected, accumulator.toMulticurveSensitivity(), TOLERANCE);
+    final CompactMulticurveSensitivity snapshot = accumulator.toCompactSensitivity();
+    accumulator.clear();
+    AssertSensitivityObjects.assertEquals("MulticurveSensitivityAccumulator: snapshot", expected, snapshot.toMulticurveSensitivity(), TOLERANCE);
+    assertTrue("MulticurveSensitivityAccumulator: clear", accumulator.toCompactSensitivity().getYieldDiscountingCurveNames().isEmpty());
+  }
+
+  @Test
+  public void discountingCalculator() {
+    final MultipleCurrencyMulticurveSensitivity expected = SWAP_1.accept(PVCSDC, MULTICURVES).plus(SWAP_2.accept(PVCSDC, MULTICURVES)).cleaned();
+    final Map<Currency, CompactMulticurveSensitivity> computed = PVCSCDC.presentValueCurveSensitivity(Arrays.<InstrumentDerivative>asList(SWAP_1, SWAP_2), MULTICURVES);
+    assertEquals("PresentValueCurveSensitivityCompactDiscountingCalculator: currencies", expected.getCurrencies(), computed.keySet());
+    for (final Currency ccy : expected.getCurrencies()) {
+      AssertSensitivityObjects.assertEquals("PresentValueCurveSensitivityCompactDiscountingCalculator", expected.getSensitivity(ccy),
+          computed.get(ccy).toMulticurveSensitivity(), TOLERANCE_PV_DELTA);
+    }
+  }
+
+}
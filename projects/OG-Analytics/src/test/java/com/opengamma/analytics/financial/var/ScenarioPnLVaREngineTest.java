@@ -0,0 +1,181 @@
+/**
+ * Copyright (C) 2014 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.analytics.financial.var;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertNull;
+import static org.testng.AssertJUnit.assertTrue;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+import org.testng.annotations.Test;
+
+import com.opengamma.analytics.financial.var.conditional.EmpiricalDistributionConditionalVaRCalculator;
+import com.opengamma.analytics.math.statistics.descriptive.MeanCalculator;
+import com.opengamma.timeseries.DoubleTimeSeries;
+import com.opengamma.timeseries.precise.instant.ImmutableInstantDoubleTimeSeries;
+import com.opengamma.util.test.TestGroup;
+
+/**
+ * Test {@link ScenarioPnLVaREngine}.
+ */
+@Test(groups = TestGroup.UNIT)
+public class ScenarioPnLVaREngineTest {
+  private static final int N_SCENARIOS = 250;
+  private static final int N_POSITIONS = 40;
+  private static final int[] GROUPS = new int[N_POSITIONS];
+  private static final double[][] PNL = new double[N_POSITIONS][N_SCENARIOS];
+  private static final EmpiricalDistributionVaRParameters PARAMETERS = new EmpiricalDistributionVaRParameters(10, 250, 0.99);
+  private static final double TOLERANCE = 1.0E-10;
+
+  static {
+    for (int i = 0; i < N_POSITIONS; i++) {
+      GROUPS[i] = i % 3;
+      for (int j = 0; j < N_SCENARIOS; j++) {
+        PNL[i][j] = Math.sin(0.7 * i + 1.3 * j) * (1 + i % 5) + 0.1 * Math.cos(j);
+      }
+    }
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void wrongNumberOfScenarios() {
+    new ScenarioPnLVaREngine(N_SCENARIOS, GROUPS).setPositionPnL(0, new double[N_SCENARIOS - 1]);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void negativeGroup() {
+    new ScenarioPnLVaREngine(N_SCENARIOS, new int[] {0, -1 });
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void positionOutOfRange() {
+    new ScenarioPnLVaREngine(N_SCENARIOS, GROUPS).setPositionPnL(N_POSITIONS, new double[N_SCENARIOS]);
+  }
+
+  @Test
+  public void aggregation() {
+    final ScenarioPnLVaREngine engine = createEngine();
+    assertEquals(3, engine.getNumberOfGroups());
+    for (int g = 0; g < 3; g++) {
+      assertArrayEquals(sum(g), engine.getGroupPnL(g));
+    }
+    assertArrayEquals(sum(-1), engine.getTotalPnL());
+    final int[] positions = new int[] {1, 4, 7, 30 };
+    final double[] expected = new double[N_SCENARIOS];
+    for (final int position : positions) {
+      for (int j = 0; j < N_SCENARIOS; j++) {
+        expected[j] += PNL[position][j];
+      }
+    }
+    assertArrayEquals(expected, engine.getPnL(positions, null));
+    final ForkJoinPool pool = new ForkJoinPool(4);
+    try {
+      assertTrue(Arrays.equals(engine.getPnL(positions, null), engine.getPnL(positions, pool)));
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  @Test
+  public void incrementalUpdates() {
+    final ScenarioPnLVaREngine engine = createEngine();
+    final double[] newPnL = new double[N_SCENARIOS];
+    for (int j = 0; j < N_SCENARIOS; j++) {
+      newPnL[j] = 2 * Math.cos(0.3 * j);
+    }
+    engine.setPositionPnL(5, newPnL);
+    engine.removePosition(6);
+    assertNull(engine.getPositionPnL(6));
+    engine.setGroup(7, 0);
+    final ScenarioPnLVaREngine expected = new ScenarioPnLVaREngine(N_SCENARIOS, GROUPS);
+    expected.setGroup(7, 0);
+    for (int i = 0; i < N_POSITIONS; i++) {
+      if (i != 6) {
+        expected.setPositionPnL(i, i == 5 ? newPnL : PNL[i]);
+      }
+    }
+    for (int g = 0; g < 3; g++) {
+      assertArrayEquals(expected.getGroupPnL(g), engine.getGroupPnL(g));
+    }
+    assertArrayEquals(expected.getTotalPnL(), engine.getTotalPnL());
+    final double[] updated = engine.getTotalPnL();
+    final ForkJoinPool pool = new ForkJoinPool(4);
+    try {
+      engine.reaggregate(pool);
+    } finally {
+      pool.shutdown();
+    }
+    assertArrayEquals(updated, engine.getTotalPnL());
+  }
+
+  @Test
+  public void riskMeasures() {
+    final ScenarioPnLVaREngine engine = createEngine();
+    final double[] var = new double[3];
+    final double[] es = new double[3];
+    engine.getGroupVaRAndExpectedShortfall(PARAMETERS, var, es, null);
+    final EmpiricalDistributionVaRCalculator varCalculator = new EmpiricalDistributionVaRCalculator();
+    final EmpiricalDistributionConditionalVaRCalculator esCalculator = new EmpiricalDistributionConditionalVaRCalculator(new MeanCalculator());
+    for (int g = 0; g < 3; g++) {
+      final double[] pnl = engine.getGroupPnL(g);
+      assertEquals(varCalculator.evaluate(PARAMETERS, timeSeries(pnl)).getVaRValue(), var[g], TOLERANCE);
+      assertEquals(esCalculator.evaluate(PARAMETERS, timeSeries(pnl)).getVaRValue(), es[g], TOLERANCE);
+      assertEquals(var[g], engine.getGroupVaR(PARAMETERS, g).getVaRValue(), 0);
+      assertEquals(es[g], engine.getGroupExpectedShortfall(PARAMETERS, g).getVaRValue(), 0);
+      assertTrue(es[g] >= var[g]);
+    }
+    assertEquals(varCalculator.evaluate(PARAMETERS, timeSeries(engine.getTotalPnL())).getVaRValue(), engine.getTotalVaR(PARAMETERS).getVaRValue(), TOLERANCE);
+    assertEquals(esCalculator.evaluate(PARAMETERS, timeSeries(engine.getTotalPnL())).getVaRValue(),
+        engine.getTotalExpectedShortfall(PARAMETERS).getVaRValue(), TOLERANCE);
+    final double[] varParallel = new double[3];
+    final double[] esParallel = new double[3];
+    final ForkJoinPool pool = new ForkJoinPool(4);
+    try {
+      engine.getGroupVaRAndExpectedShortfall(PARAMETERS, varParallel, esParallel, pool);
+    } finally {
+      pool.shutdown();
+    }
+    assertTrue(Arrays.equals(var, varParallel));
+    assertTrue(Arrays.equals(es, esParallel));
+  }
+
+  private static ScenarioPnLVaREngine createEngine() {
+    final ScenarioPnLVaREngine engine = new ScenarioPnLVaREngine(N_SCENARIOS, GROUPS);
+    for (int i = 0; i < N_POSITIONS; i++) {
+      engine.setPositionPnL(i, PNL[i]);
+    }
+    return engine;
+  }
+
+  private static double[] sum(final int group) {
+    final double[] res = new double[N_SCENARIOS];
+    for (int i = 0; i < N_POSITIONS; i++) {
+      if (group < 0 || GROUPS[i] == group) {
+        for (int j = 0; j < N_SCENARIOS; j++) {
+          res[j] += PNL[i][j];
+        }
+      }
+    }
+    return res;
+  }
+
+  private static DoubleTimeSeries<?> timeSeries(final double[] pnl) {
+    final long[] t = new long[pnl.length];
+    for (int j = 0; j < pnl.length; j++) {
+      t[j] = j;
+    }
+    return ImmutableInstantDoubleTimeSeries.of(t, Arrays.copyOf(pnl, pnl.length));
+  }
+
+  private static void assertArrayEquals(final double[] expected, final double[] actual) {
+    assertEquals(expected.length, actual.length);
+    for (int j = 0; j < expected.length; j++) {
+      assertEquals(expected[j], actual[j], TOLERANCE);
+    }
+  }
+
+}
@@ -0,0 +1,120 @@
+/**
+ * Copyright (C) 2014 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.analytics.math.interpolation;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertTrue;
+
+import org.testng.annotations.Test;
+
+import com.opengamma.analytics.math.interpolation.data.Interpolator1DDataBundle;
+import com.opengamma.util.test.TestGroup;
+
+/**
+ * Test {@link CompiledInterpolator1D}.
+ */
+@Test(groups = TestGroup.UNIT)
+public class CompiledInterpolator1DTest {
+  private static final double[] X = {0.1, 0.5, 1, 2, 3, 5, 7, 10, 15, 20, 30 };
+  private static final double[] Y = {0.01, 0.012, 0.015, 0.017, 0.02, 0.022, 0.025, 0.026, 0.027, 0.0275, 0.028 };
+  private static final Interpolator1D[] INTERPOLATORS = new Interpolator1D[] {new LinearInterpolator1D(), new NaturalCubicSplineInterpolator1D(),
+    new MonotonicityPreservingCubicSplineInterpolator1D(new PiecewiseCubicHermiteSplineInterpolatorWithSensitivity()), new NaturalSplineInterpolator1D() };
+  private static final double TOLERANCE = 1.0E-12;
+
+  @Test
+  public void interpolation() {
+    for (final Interpolator1D interpolator : INTERPOLATORS) {
+      assertMatches(interpolator, X[0], X[X.length - 1]);
+    }
+  }
+
+  @Test
+  public void extrapolation() {
+    for (final Interpolator1D interpolator : INTERPOLATORS) {
+      assertMatches(new CombinedInterpolatorExtrapolator(interpolator, new FlatExtrapolator1D()), -1, 35);
+      assertMatches(new CombinedInterpolatorExtrapolator(interpolator, new LinearExtrapolator1D(interpolator)), -1, 35);
+    }
+  }
+
+  @Test
+  public void batch() {
+    for (final Interpolator1D interpolator : INTERPOLATORS) {
+      final Interpolator1D combined = new CombinedInterpolatorExtrapolator(interpolator, new LinearExtrapolator1D(interpolator));
+      final CompiledInterpolator1D compiled = CompiledInterpolator1D.of(combined, combined.getDataBundleFromSortedArrays(X, Y));
+      final int n = 500;
+      final double[] x = new double[n];
+      for (int i = 0; i < n; i++) {
+        // increasing then shuffled points, so both the remembered interval and the search are used
+        x[i] = i < n / 2 ? -1 + 36.0 * i / (n / 2) : -1 + 36.0 * ((i * 7919) % n) / n;
+      }
+      final double[] values = new double[n];
+      final double[][] sensitivities = new double[n][X.length];
+      compiled.evaluate(x, values, sensitivities);
+      final double[] valuesOnly = new double[n];
+      compiled.evaluate(x, valuesOnly);
+      final double[] expectedSensitivities = new double[X.length];
+      for (int i = 0; i < n; i++) {
+        assertEquals(compiled.evaluate(x[i]), values[i], 0);
+        assertEquals(values[i], valuesOnly[i], 0);
+        compiled.nodeSensitivities(x[i], expectedSensitivities);
+        for (int j = 0; j < X.length; j++) {
+          assertEquals(expectedSensitivities[j], sensitivities[i][j], 0);
+        }
+      }
+    }
+  }
+
+  @Test
+  public void unsupported() {
+    final Interpolator1D interpolator = new LogLinearInterpolator1D();
+    final Interpolator1DDataBundle data = interpolator.getDataBundleFromSortedArrays(X, Y);
+    assertFalse(CompiledInterpolator1D.isSupported(interpolator, data));
+    assertFalse(CompiledInterpolator1D.isSupported(new CombinedInterpolatorExtrapolator(new LinearInterpolator1D(), new ExponentialExtrapolator1D()), data));
+    assertTrue(CompiledInterpolator1D.isSupported(new LinearInterpolator1D(), data));
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void unsupportedInterpolator() {
+    final Interpolator1D interpolator = new LogLinearInterpolator1D();
+    CompiledInterpolator1D.of(interpolator, interpolator.getDataBundleFromSortedArrays(X, Y));
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void noExtrapolation() {
+    final Interpolator1D interpolator = new LinearInterpolator1D();
+    CompiledInterpolator1D.of(interpolator, interpolator.getDataBundleFromSortedArrays(X, Y)).evaluate(X[X.length - 1] + 1);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void wrongLength() {
+    final Interpolator1D interpolator = new LinearInterpolator1D();
+    CompiledInterpolator1D.of(interpolator, interpolator.getDataBundleFromSortedArrays(X, Y)).evaluate(new double[3], new double[2]);
+  }
+
+  private static void assertMatches(final Interpolator1D interpolator, final double xMin, final double xMax) {
+    final Interpolator1DDataBundle data = interpolator.getDataBundleFromSortedArrays(X, Y);
+    final CompiledInterpolator1D compiled = CompiledInterpolator1D.of(interpolator, data);
+    assertEquals(X.length, compiled.getNumberOfNodes());
+    final double[] sensitivities = new double[X.length];
+    final int n = 1000;
+    for (int i = 0; i <= n; i++) {
+      final double x = xMin + (xMax - xMin) * i / n;
+      final String msg = interpolator + " at " + x;
+      assertEquals(msg, interpolator.interpolate(data, x), compiled.evaluate(x), TOLERANCE);
+      assertEquals(msg, interpolator.firstDerivative(data, x), compiled.firstDerivative(x), TOLERANCE);
+      final double[] expected = interpolator.getNodeSensitivitiesForValue(data, x);
+      compiled.nodeSensitivities(x, sensitivities);
+      for (int j = 0; j < X.length; j++) {
+        assertEquals(msg, expected[j], sensitivities[j], TOLERANCE);
+      }
+    }
+    for (final double x : X) {
+      assertEquals(interpolator.interpolate(data, x), compiled.evaluate(x), TOLERANCE);
+    }
+  }
+
+}
@@ -61,4 +61,34 @@ public class TridiagonalSolverTest {
 
   }
 
+  @Test
+  public void workspaceTest() {
+    final int n = 97;
+    final double[] a = new double[n - 1];
+    final double[] b = new double[n];
+    final double[] c = new double[n - 1];
+    final double[] y = new double[n];
+
+    for (int ii = 0; ii < n; ii++) {
+      b[ii] = RANDOM.nextRandom();
+      y[ii] = RANDOM.nextRandom();
+      if (ii < n - 1) {
+        a[ii] = RANDOM.nextRandom();
+        c[ii] = RANDOM.nextRandom();
+      }
+    }
+
+    final double[] expected = solvTriDag(new TridiagonalMatrix(b, a, c), y);
+    final double[] work = new double[n];
+    final double[] x = new double[n];
+    solvTriDag(b, a, c, y, x, work);
+    //solve in place
+    final double[] yCopy = y.clone();
+    solvTriDag(b, a, c, yCopy, yCopy, work);
+    for (int i = 0; i < n; i++) {
+      assertEquals(expected[i], x[i], 0.0);
+      assertEquals(expected[i], yCopy[i], 0.0);
+    }
+  }
+
 }
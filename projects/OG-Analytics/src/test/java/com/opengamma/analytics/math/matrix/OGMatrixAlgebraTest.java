@@ -123,4 +123,83 @@ public class OGMatrixAlgebraTest {
     AssertMatrix.assertEqualsMatrix(aTaRef, aTa, 1e-15);
   }
 
+  /**
+   * Products large enough to be blocked and calculated in parallel match the textbook triple loop exactly.
+   */
+  @Test
+  public void largeMultiplyTest() {
+    final DoubleMatrix2D a = randomMatrix(150, 300);
+    final DoubleMatrix2D b = randomMatrix(300, 270);
+    final DoubleMatrix2D ab = (DoubleMatrix2D) ALGEBRA.multiply(a, b);
+    assertExactlyEquals(naiveMultiply(a.getData(), b.getData()), ab.getData());
+
+    final DoubleMatrix1D x = new DoubleMatrix1D(randomMatrix(1, 300).getData()[0]);
+    final DoubleMatrix1D ax = (DoubleMatrix1D) ALGEBRA.multiply(a, x);
+    final DoubleMatrix2D xColumn = ALGEBRA.getTranspose(new DoubleMatrix2D(new double[][] {x.getData() }));
+    final double[][] axRef = naiveMultiply(a.getData(), xColumn.getData());
+    for (int i = 0; i < a.getNumberOfRows(); i++) {
+      assertEquals(axRef[i][0], ax.getEntry(i), 0.0);
+    }
+
+    final DoubleMatrix1D xb = (DoubleMatrix1D) ALGEBRA.multiply(x, b);
+    final double[][] xbRef = naiveMultiply(new double[][] {x.getData() }, b.getData());
+    for (int i = 0; i < b.getNumberOfColumns(); i++) {
+      assertEquals(xbRef[0][i], xb.getEntry(i), 0.0);
+    }
+  }
+
+  @Test
+  public void transposeProductsTest() {
+    final OGMatrixAlgebra algebra = MatrixAlgebraFactory.OG_ALGEBRA;
+    for (final int size : new int[] {3, 120 }) {
+      final DoubleMatrix2D a = randomMatrix(size + 7, size);
+      final DoubleMatrix2D b = randomMatrix(size + 7, 2 * size);
+      final DoubleMatrix2D aTb = algebra.matrixTransposeMultiplyMatrix(a, b);
+      assertExactlyEquals(naiveMultiply(algebra.getTranspose(a).getData(), b.getData()), aTb.getData());
+
+      final DoubleMatrix2D c = randomMatrix(size + 3, size);
+      final DoubleMatrix2D aCT = algebra.matrixMultiplyMatrixTranspose(a, c);
+      assertExactlyEquals(naiveMultiply(a.getData(), algebra.getTranspose(c).getData()), aCT.getData());
+    }
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void transposeProductSizeMismatchTest() {
+    MatrixAlgebraFactory.OG_ALGEBRA.matrixTransposeMultiplyMatrix(A, new DoubleMatrix2D(2, 2));
+  }
+
+  private static DoubleMatrix2D randomMatrix(final int rows, final int columns) {
+    final double[][] data = new double[rows][columns];
+    for (int i = 0; i < rows; i++) {
+      for (int j = 0; j < columns; j++) {
+        data[i][j] = RANDOM.nextRandom();
+      }
+    }
+    return new DoubleMatrix2D(data);
+  }
+
+  private static double[][] naiveMultiply(final double[][] a, final double[][] b) {
+    final double[][] res = new double[a.length][b[0].length];
+    for (int i = 0; i < a.length; i++) {
+      for (int j = 0; j < b[0].length; j++) {
+        double sum = 0.0;
+        for (int k = 0; k < b.length; k++) {
+          sum += a[i][k] * b[k][j];
+        }
+        res[i][j] = sum;
+      }
+    }
+    return res;
+  }
+
+  private static void assertExactlyEquals(final double[][] expected, final double[][] actual) {
+    assertEquals(expected.length, actual.length);
+    for (int i = 0; i < expected.length; i++) {
+      assertEquals(expected[i].length, actual[i].length);
+      for (int j = 0; j < expected[i].length; j++) {
+        assertEquals(expected[i][j], actual[i][j], 0.0);
+      }
+    }
+  }
+
 }
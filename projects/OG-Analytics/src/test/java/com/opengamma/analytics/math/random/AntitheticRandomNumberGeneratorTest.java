@@ -0,0 +1,55 @@
+/**
+ * Copyright (C) 2014 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.analytics.math.random;
+
+import static org.testng.AssertJUnit.assertEquals;
+
+import org.testng.annotations.Test;
+
+import com.opengamma.util.test.TestGroup;
+
+/**
+ * Test.
+ */
+@Test(groups = TestGroup.UNIT)
+public class AntitheticRandomNumberGeneratorTest {
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testNullUnderlying() {
+    new AntitheticRandomNumberGenerator(null);
+  }
+
+  @Test
+  public void testBlock() {
+    final int dimension = 4;
+    final int n = 5;
+    final double[] buffer = new double[dimension * n];
+    final AntitheticRandomNumberGenerator generator =
+        new AntitheticRandomNumberGenerator(new SplittableNormalRandomNumberGenerator(9));
+    generator.fillVectors(buffer, dimension, n);
+    final double[] underlying = new double[dimension * 3];
+    new SplittableNormalRandomNumberGenerator(9).fillVectors(underlying, dimension, 3);
+    for (int i = 0; i < n; i++) {
+      for (int j = 0; j < dimension; j++) {
+        final double expected = underlying[(i / 2) * dimension + j];
+        assertEquals(i % 2 == 0 ? expected : -expected, buffer[i * dimension + j], 0);
+      }
+    }
+  }
+
+  @Test
+  public void testVectors() {
+    final AntitheticRandomNumberGenerator generator =
+        new AntitheticRandomNumberGenerator(new SplittableNormalRandomNumberGenerator(9));
+    final double[] first = generator.getVector(3);
+    final double[] second = generator.getVector(3);
+    final double[] third = generator.getVector(3);
+    for (int j = 0; j < 3; j++) {
+      assertEquals(-first[j], second[j], 0);
+    }
+    assertEquals(new SplittableNormalRandomNumberGenerator(9).getVectors(3, 2).get(1)[0], third[0], 0);
+  }
+}
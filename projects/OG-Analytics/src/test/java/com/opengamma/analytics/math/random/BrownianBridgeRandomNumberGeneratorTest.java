@@ -0,0 +1,75 @@
+/**
+ * Copyright (C) 2014 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.analytics.math.random;
+
+import static org.testng.AssertJUnit.assertEquals;
+
+import org.testng.annotations.Test;
+
+import com.opengamma.util.test.TestGroup;
+
+/**
+ * Test.
+ */
+@Test(groups = TestGroup.UNIT)
+public class BrownianBridgeRandomNumberGeneratorTest {
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testNullUnderlying() {
+    new BrownianBridgeRandomNumberGenerator(null, 3);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testWrongDimension() {
+    new BrownianBridgeRandomNumberGenerator(new SplittableNormalRandomNumberGenerator(1), 3).getVector(4);
+  }
+
+  /**
+   * The bridge is an orthogonal transformation whose first input determines the end of the path.
+   */
+  @Test
+  public void testTransformation() {
+    for (final int dimension : new int[] {1, 2, 5, 8, 13 }) {
+      final double[] raw = new double[dimension * 4];
+      new SplittableNormalRandomNumberGenerator(3).fillVectors(raw, dimension, 4);
+      final double[] bridged = new double[dimension * 4];
+      final BlockRandomNumberGenerator bridge =
+          new BrownianBridgeRandomNumberGenerator(new SplittableNormalRandomNumberGenerator(3), dimension);
+      bridge.fillVectors(bridged, dimension, 4);
+      for (int i = 0; i < 4; i++) {
+        double rawSumSq = 0;
+        double bridgedSumSq = 0;
+        double end = 0;
+        for (int j = 0; j < dimension; j++) {
+          rawSumSq += raw[i * dimension + j] * raw[i * dimension + j];
+          bridgedSumSq += bridged[i * dimension + j] * bridged[i * dimension + j];
+          end += bridged[i * dimension + j];
+        }
+        assertEquals(rawSumSq, bridgedSumSq, 1e-10);
+        assertEquals(Math.sqrt(dimension) * raw[i * dimension], end, 1e-12);
+      }
+    }
+  }
+
+  @Test
+  public void testIndependent() {
+    final int dimension = 6;
+    final int n = 100000;
+    final double[] buffer = new double[dimension * n];
+    final BlockRandomNumberGenerator bridge =
+        new BrownianBridgeRandomNumberGenerator(new SplittableNormalRandomNumberGenerator(5), dimension);
+    bridge.fillVectors(buffer, dimension, n);
+    for (int j = 0; j < dimension; j++) {
+      for (int k = 0; k < dimension; k++) {
+        double covariance = 0;
+        for (int i = 0; i < n; i++) {
+          covariance += buffer[i * dimension + j] * buffer[i * dimension + k];
+        }
+        assertEquals(j == k ? 1 : 0, covariance / n, 0.02);
+      }
+    }
+  }
+}
@@ -0,0 +1,55 @@
+/**
+ * Copyright (C) 2014 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.analytics.math.random;
+
+import static org.testng.AssertJUnit.assertEquals;
+
+import org.testng.annotations.Test;
+
+import com.opengamma.analytics.math.statistics.distribution.NormalDistribution;
+import com.opengamma.util.test.TestGroup;
+
+/**
+ * Test.
+ */
+@Test(groups = TestGroup.UNIT)
+public class InverseNormalTest {
+  private static final NormalDistribution NORMAL = new NormalDistribution(0, 1);
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testZero() {
+    InverseNormal.inverseCDF(0);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testOne() {
+    InverseNormal.inverseCDF(1);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testNaN() {
+    InverseNormal.inverseCDF(Double.NaN);
+  }
+
+  @Test
+  public void testValues() {
+    assertEquals(0, InverseNormal.inverseCDF(0.5), 0);
+    assertEquals(-3.090232306167813, InverseNormal.inverseCDF(0.001), 1e-15);
+    assertEquals(-0.5244005127080407, InverseNormal.inverseCDF(0.3), 1e-15);
+    assertEquals(1.439531470938456, InverseNormal.inverseCDF(0.925), 1e-15);
+    assertEquals(-6.361340902404056, InverseNormal.inverseCDF(1e-10), 1e-14);
+    assertEquals(-37.0470962993612, InverseNormal.inverseCDF(1e-300), 1e-12);
+  }
+
+  @Test
+  public void testRoundTrip() {
+    for (int i = 1; i < 1000; i++) {
+      final double p = i / 1000.0;
+      assertEquals(p, NORMAL.getCDF(InverseNormal.inverseCDF(p)), 1e-13);
+      assertEquals(-InverseNormal.inverseCDF(p), InverseNormal.inverseCDF(1 - p), 1e-12);
+    }
+  }
+}
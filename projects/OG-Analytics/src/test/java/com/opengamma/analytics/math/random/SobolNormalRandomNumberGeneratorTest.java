@@ -0,0 +1,93 @@
+/**
+ * Copyright (C) 2014 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.analytics.math.random;
+
+import static org.testng.AssertJUnit.assertEquals;
+
+import java.util.List;
+
+import org.testng.annotations.Test;
+
+import com.opengamma.util.test.TestGroup;
+
+/**
+ * Test.
+ */
+@Test(groups = TestGroup.UNIT)
+public class SobolNormalRandomNumberGeneratorTest {
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testZeroDimension() {
+    new SobolNormalRandomNumberGenerator(0);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testDimensionTooLarge() {
+    new SobolNormalRandomNumberGenerator(SobolNormalRandomNumberGenerator.MAX_DIMENSION + 1);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testWrongDimension() {
+    new SobolNormalRandomNumberGenerator(3).getVector(4);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testShortBuffer() {
+    new SobolNormalRandomNumberGenerator(3).fillVectors(new double[5], 3, 2);
+  }
+
+  /**
+   * The first points of the sequence are (1/2, 1/2, 1/2), (3/4, 1/4, 1/4), (1/4, 3/4, 3/4).
+   */
+  @Test
+  public void testFirstPoints() {
+    final List<double[]> points = new SobolNormalRandomNumberGenerator(3).getVectors(3, 3);
+    final double q = InverseNormal.inverseCDF(0.75);
+    assertVector(new double[] {0, 0, 0 }, points.get(0));
+    assertVector(new double[] {q, -q, -q }, points.get(1));
+    assertVector(new double[] {-q, q, q }, points.get(2));
+  }
+
+  @Test
+  public void testMoments() {
+    final int dimension = SobolNormalRandomNumberGenerator.MAX_DIMENSION;
+    final int n = 1 << 14;
+    final double[] buffer = new double[dimension * n];
+    new SobolNormalRandomNumberGenerator(dimension).fillVectors(buffer, dimension, n);
+    for (int d = 0; d < dimension; d++) {
+      double sum = 0;
+      double sumSq = 0;
+      for (int i = 0; i < n; i++) {
+        final double x = buffer[i * dimension + d];
+        sum += x;
+        sumSq += x * x;
+      }
+      assertEquals(0, sum / n, 1e-3);
+      assertEquals(1, sumSq / n, 1e-2);
+    }
+  }
+
+  @Test
+  public void testSkipTo() {
+    final int dimension = 7;
+    final double[] all = new double[dimension * 100];
+    new SobolNormalRandomNumberGenerator(dimension).fillVectors(all, dimension, 100);
+    final SobolNormalRandomNumberGenerator generator = new SobolNormalRandomNumberGenerator(dimension);
+    generator.skipTo(61);
+    final double[] part = new double[dimension * 40];
+    generator.fillVectors(part, dimension, 40);
+    for (int i = 0; i < part.length; i++) {
+      assertEquals(all[60 * dimension + i], part[i], 0);
+    }
+  }
+
+  private static void assertVector(final double[] expected, final double[] actual) {
+    assertEquals(expected.length, actual.length);
+    for (int i = 0; i < expected.length; i++) {
+      assertEquals(expected[i], actual[i], 0);
+    }
+  }
+}
@@ -0,0 +1,68 @@
+/**
+ * Copyright (C) 2014 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.analytics.math.random;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.testng.annotations.Test;
+
+import com.opengamma.util.test.TestGroup;
+
+/**
+ * Test.
+ */
+@Test(groups = TestGroup.UNIT)
+public class SplittableNormalRandomNumberGeneratorTest {
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testBadSigma() {
+    new SplittableNormalRandomNumberGenerator(0, -1, 1);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testBadN() {
+    new SplittableNormalRandomNumberGenerator(1).getVectors(1, -5);
+  }
+
+  @Test
+  public void testVectors() {
+    final List<double[]> result = new SplittableNormalRandomNumberGenerator(1).getVectors(10, 50);
+    assertEquals(result.size(), 50);
+    for (final double[] d : result) {
+      assertEquals(d.length, 10);
+    }
+  }
+
+  @Test
+  public void testMoments() {
+    final double[] buffer = new double[200000];
+    new SplittableNormalRandomNumberGenerator(2, 3, 42).fillVectors(buffer, 10, 20000);
+    double sum = 0;
+    double sumSq = 0;
+    for (final double x : buffer) {
+      sum += x;
+      sumSq += (x - 2) * (x - 2);
+    }
+    assertEquals(2, sum / buffer.length, 0.03);
+    assertEquals(9, sumSq / buffer.length, 0.1);
+  }
+
+  @Test
+  public void testReproducible() {
+    final SplittableNormalRandomNumberGenerator generator1 = new SplittableNormalRandomNumberGenerator(42);
+    final SplittableNormalRandomNumberGenerator generator2 = new SplittableNormalRandomNumberGenerator(42);
+    assertTrue(Arrays.equals(generator1.getVector(20), generator2.getVector(20)));
+    final SplittableNormalRandomNumberGenerator split1 = generator1.split();
+    final SplittableNormalRandomNumberGenerator split2 = generator2.split();
+    assertTrue(Arrays.equals(split1.getVector(20), split2.getVector(20)));
+    assertFalse(Arrays.equals(split1.getVector(20), generator1.getVector(20)));
+  }
+}
@@ -0,0 +1,239 @@
+/**
+ * Copyright (C) 2014 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.engine.cache;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongCollection;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.objects.Object2LongMap;
+import it.unimi.dsi.fastutil.objects.Object2LongOpenHashMap;
+
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import com.opengamma.OpenGammaRuntimeException;
+import com.opengamma.engine.value.ValueSpecification;
+import com.opengamma.util.ArgumentChecker;
+
+/**
+ * An implementation of {@link IdentifierMap} which allocates identifiers sequentially and holds the mappings in
+ * primitive arrays rather than a pair of hash maps.
+ * <p>
+ * Specifications are found from an open-addressing table of keys with a parallel {@code long[]} of identifiers.
+ * Identifiers are resolved by direct index into a dense array of specifications. Neither direction creates any
+ * per-entry objects, so the map is several times smaller than {@link InMemoryIdentifierMap} and lookups do not box.
+ * <p>
+ * Lookups of existing mappings do not lock. Allocation of new identifiers is serialized; the batch methods take the
+ * lock once for all of the misses in the batch. Like {@link InMemoryIdentifierMap} there is no persistence.
+ */
+public class DenseIdentifierMap implements IdentifierMap {
+
+  private static final int DEFAULT_CAPACITY = 1024;
+
+  /**
+   * The open-addressing table from specification to identifier. A key is published only after its identifier has been
+   * written so a reader seeing the key will see the identifier.
+   */
+  private static final class Table {
+
+    private final AtomicReferenceArray<ValueSpecification> _keys;
+    private final long[] _identifiers;
+    private final int _mask;
+    private final int _threshold;
+
+    private Table(final int capacity) {
+      _keys = new AtomicReferenceArray<ValueSpecification>(capacity);
+      _identifiers = new long[capacity];
+      _mask = capacity - 1;
+      _threshold = capacity >> 1;
+    }
+
+    private static int hash(final ValueSpecification key) {
+      final int h = key.hashCode() * 0x9E3779B9;
+      return h ^ (h >>> 16);
+    }
+
+    private long find(final ValueSpecification key) {
+      int i = hash(key) & _mask;
+      ValueSpecification k;
+      while ((k = _keys.get(i)) != null) {
+        if (k.equals(key)) {
+          return _identifiers[i];
+        }
+        i = (i + 1) & _mask;
+      }
+      return 0L;
+    }
+
+    private void insert(final ValueSpecification key, final long identifier) {
+      int i = hash(key) & _mask;
+      while (_keys.get(i) != null) {
+        i = (i + 1) & _mask;
+      }
+      _identifiers[i] = identifier;
+      _keys.lazySet(i, key);
+    }
+
+    private int capacity() {
+      return _identifiers.length;
+    }
+
+  }
+
+  private volatile Table _table;
+  private volatile AtomicReferenceArray<ValueSpecification> _specifications;
+  private int _size;
+  private long _nextIdentifier = 1L;
+
+  public DenseIdentifierMap() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  /**
+   * Creates a new map.
+   *
+   * @param expectedSize the number of specifications the map is expected to hold
+   */
+  public DenseIdentifierMap(final int expectedSize) {
+    ArgumentChecker.notNegativeOrZero(expectedSize, "expectedSize");
+    int capacity = Integer.highestOneBit(expectedSize) << 2;
+    _table = new Table(capacity);
+    _specifications = new AtomicReferenceArray<ValueSpecification>(expectedSize + 1);
+  }
+
+  /**
+   * Returns the number of identifiers allocated.
+   *
+   * @return the size of the map
+   */
+  public synchronized int size() {
+    return _size;
+  }
+
+  // caller must hold the monitor
+  private long allocate(final ValueSpecification spec) {
+    Table table = _table;
+    long identifier = table.find(spec);
+    if (identifier != 0L) {
+      return identifier;
+    }
+    identifier = _nextIdentifier++;
+    if (identifier > Integer.MAX_VALUE - 1) {
+      throw new OpenGammaRuntimeException("Identifier space exhausted");
+    }
+    AtomicReferenceArray<ValueSpecification> specifications = _specifications;
+    if (identifier >= specifications.length()) {
+      final AtomicReferenceArray<ValueSpecification> newSpecifications = new AtomicReferenceArray<ValueSpecification>(
+          (int) Math.min(Integer.MAX_VALUE, (long) specifications.length() << 1));
+      for (int i = 1; i < identifier; i++) {
+        newSpecifications.lazySet(i, specifications.get(i));
+      }
+      specifications = newSpecifications;
+      _specifications = specifications;
+    }
+    specifications.set((int) identifier, spec);
+    if (++_size > table._threshold) {
+      final Table newTable = new Table(table.capacity() << 1);
+      for (int i = 1; i < identifier; i++) {
+        newTable.insert(specifications.get(i), i);
+      }
+      table = newTable;
+      _table = table;
+    }
+    table.insert(spec, identifier);
+    return identifier;
+  }
+
+  @Override
+  public long getIdentifier(final ValueSpecification spec) {
+    ArgumentChecker.notNull(spec, "spec");
+    final long identifier = _table.find(spec);
+    if (identifier != 0L) {
+      return identifier;
+    }
+    synchronized (this) {
+      return allocate(spec);
+    }
+  }
+
+  /**
+   * Looks up or allocates identifiers for an array of specifications without boxing.
+   *
+   * @param specs the specifications to look up or allocate identifiers for, not null and not containing null
+   * @param identifiers receives the identifier for each specification at the same index, not null
+   */
+  public void getIdentifiers(final ValueSpecification[] specs, final long[] identifiers) {
+    ArgumentChecker.isTrue(identifiers.length >= specs.length, "identifiers array too short");
+    final Table table = _table;
+    int misses = 0;
+    for (int i = 0; i < specs.length; i++) {
+      if ((identifiers[i] = table.find(specs[i])) == 0L) {
+        misses++;
+      }
+    }
+    if (misses > 0) {
+      synchronized (this) {
+        for (int i = 0; i < specs.length; i++) {
+          if (identifiers[i] == 0L) {
+            identifiers[i] = allocate(specs[i]);
+          }
+        }
+      }
+    }
+  }
+
+  @Override
+  public Object2LongMap<ValueSpecification> getIdentifiers(final Collection<ValueSpecification> specs) {
+    final ValueSpecification[] specArray = specs.toArray(new ValueSpecification[specs.size()]);
+    final long[] identifiers = new long[specArray.length];
+    getIdentifiers(specArray, identifiers);
+    final Object2LongMap<ValueSpecification> result = new Object2LongOpenHashMap<ValueSpecification>(specArray.length);
+    for (int i = 0; i < specArray.length; i++) {
+      result.put(specArray[i], identifiers[i]);
+    }
+    return result;
+  }
+
+  @Override
+  public ValueSpecification getValueSpecification(final long identifier) {
+    final AtomicReferenceArray<ValueSpecification> specifications = _specifications;
+    if ((identifier > 0) && (identifier < specifications.length())) {
+      return specifications.get((int) identifier);
+    }
+    return null;
+  }
+
+  /**
+   * Resolves an array of identifiers without boxing.
+   *
+   * @param identifiers the identifiers to look up, not null
+   * @param specs receives the specification for each identifier at the same index, or null if the identifier is not allocated, not null
+   */
+  public void getValueSpecifications(final long[] identifiers, final ValueSpecification[] specs) {
+    ArgumentChecker.isTrue(specs.length >= identifiers.length, "specs array too short");
+    final AtomicReferenceArray<ValueSpecification> specifications = _specifications;
+    final int length = specifications.length();
+    for (int i = 0; i < identifiers.length; i++) {
+      final long identifier = identifiers[i];
+      specs[i] = ((identifier > 0) && (identifier < length)) ? specifications.get((int) identifier) : null;
+    }
+  }
+
+  @Override
+  public Long2ObjectMap<ValueSpecification> getValueSpecifications(final LongCollection identifiers) {
+    final Long2ObjectMap<ValueSpecification> result = new Long2ObjectOpenHashMap<ValueSpecification>(identifiers.size());
+    final AtomicReferenceArray<ValueSpecification> specifications = _specifications;
+    final int length = specifications.length();
+    final LongIterator itr = identifiers.iterator();
+    while (itr.hasNext()) {
+      final long identifier = itr.nextLong();
+      result.put(identifier, ((identifier > 0) && (identifier < length)) ? specifications.get((int) identifier) : null);
+    }
+    return result;
+  }
+
+}
@@ -0,0 +1,249 @@
+/**
+ * Copyright (C) 2014 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.engine.cache;
+
+import it.unimi.dsi.fastutil.longs.Long2LongMap;
+import it.unimi.dsi.fastutil.longs.Long2LongOpenHashMap;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import com.opengamma.engine.cache.OffHeapBinaryDataStoreFactory.Slab;
+import com.opengamma.engine.cache.OffHeapBinaryDataStoreFactory.SpillFile;
+import com.opengamma.util.ArgumentChecker;
+
+/**
+ * An implementation of {@link BinaryDataStore} which holds the values in off-heap slabs allocated by an
+ * {@link OffHeapBinaryDataStoreFactory}.
+ * <p>
+ * Values are appended to the current slab, each prefixed by its length, and located through a primitive map from
+ * identifier to slab index and offset. Nothing about a stored value is visible to the garbage collector other than
+ * the index entry. A store lives for a single cycle and configuration so the slabs are released as a unit when it is
+ * deleted; space taken by overwritten values is only reclaimed by {@link #compact}, which happens automatically once
+ * more than half of the used space, and at least a slab's worth, is dead. Slabs mapped after the direct memory cap is
+ * reached are regions of a single spill file belonging to the store.
+ * <p>
+ * This class is internally synchronized.
+ */
+public class OffHeapBinaryDataStore extends AbstractBinaryDataStore implements BinaryDataStore {
+
+  private static final int LENGTH_SIZE = 4;
+
+  private final OffHeapBinaryDataStoreFactory _factory;
+  private final SpillFile _spillFile;
+  private final ReadWriteLock _lock = new ReentrantReadWriteLock();
+  private final Long2LongMap _index = new Long2LongOpenHashMap();
+  private List<Slab> _slabs = new ArrayList<Slab>();
+  private Slab _current;
+  private long _usedBytes;
+  private long _deadBytes;
+
+  public OffHeapBinaryDataStore(final OffHeapBinaryDataStoreFactory factory) {
+    ArgumentChecker.notNull(factory, "factory");
+    _factory = factory;
+    _spillFile = factory.createSpillFile();
+    _index.defaultReturnValue(-1L);
+  }
+
+  private static long location(final int slab, final int offset) {
+    return ((long) slab << 32) | (offset & 0xFFFFFFFFL);
+  }
+
+  private static int slab(final long location) {
+    return (int) (location >>> 32);
+  }
+
+  private static int offset(final long location) {
+    return (int) location;
+  }
+
+  private byte[] read(final long location) {
+    final ByteBuffer buffer = _slabs.get(slab(location)).getBuffer().duplicate();
+    final int offset = offset(location);
+    final byte[] data = new byte[buffer.getInt(offset)];
+    buffer.position(offset + LENGTH_SIZE);
+    buffer.get(data);
+    return data;
+  }
+
+  private int length(final long location) {
+    return _slabs.get(slab(location)).getBuffer().getInt(offset(location));
+  }
+
+  private long write(final byte[] data) {
+    final int required = data.length + LENGTH_SIZE;
+    if ((_current == null) || (_current.getBuffer().remaining() < required)) {
+      _current = _factory.allocateSlab(required, _spillFile);
+      _slabs.add(_current);
+    }
+    final ByteBuffer buffer = _current.getBuffer();
+    final long location = location(_slabs.size() - 1, buffer.position());
+    buffer.putInt(data.length);
+    buffer.put(data);
+    _usedBytes += required;
+    return location;
+  }
+
+  private void putImpl(final long identifier, final byte[] data) {
+    final long previous = _index.put(identifier, write(data));
+    if (previous != -1L) {
+      _deadBytes += length(previous) + LENGTH_SIZE;
+    }
+  }
+
+  private void compactIfWasteful() {
+    if ((_deadBytes > _factory.getSlabSize()) && (_deadBytes > (_usedBytes >> 1))) {
+      compactImpl();
+    }
+  }
+
+  private void compactImpl() {
+    final List<Slab> oldSlabs = _slabs;
+    final Long2LongMap oldIndex = new Long2LongOpenHashMap(_index);
+    _slabs = new ArrayList<Slab>();
+    _current = null;
+    _usedBytes = 0;
+    _deadBytes = 0;
+    _index.clear();
+    for (Long2LongMap.Entry entry : oldIndex.long2LongEntrySet()) {
+      final ByteBuffer buffer = oldSlabs.get(slab(entry.getLongValue())).getBuffer().duplicate();
+      final int offset = offset(entry.getLongValue());
+      final int required = buffer.getInt(offset) + LENGTH_SIZE;
+      if ((_current == null) || (_current.getBuffer().remaining() < required)) {
+        _current = _factory.allocateSlab(required, _spillFile);
+        _slabs.add(_current);
+      }
+      buffer.position(offset).limit(offset + required);
+      _index.put(entry.getLongKey(), location(_slabs.size() - 1, _current.getBuffer().position()));
+      _current.getBuffer().put(buffer);
+      _usedBytes += required;
+    }
+    for (Slab slab : oldSlabs) {
+      _factory.releaseSlab(slab);
+    }
+  }
+
+  /**
+   * Rewrites the live values into new slabs, releasing the space used by values that have been overwritten.
+   */
+  public void compact() {
+    _lock.writeLock().lock();
+    try {
+      compactImpl();
+    } finally {
+      _lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Returns the number of bytes of off-heap memory currently held by this store.
+   *
+   * @return the allocated size
+   */
+  public long getAllocatedBytes() {
+    _lock.readLock().lock();
+    try {
+      long size = 0;
+      for (Slab slab : _slabs) {
+        size += slab.getCapacity();
+      }
+      return size;
+    } finally {
+      _lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Returns the size of the store's spill file, including regions of released slabs that can be reused.
+   *
+   * @return the spill file size in bytes, zero if the store hasn't needed one
+   */
+  public long getSpillFileBytes() {
+    _lock.readLock().lock();
+    try {
+      return _spillFile.getLength();
+    } finally {
+      _lock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public void delete() {
+    _lock.writeLock().lock();
+    try {
+      for (Slab slab : _slabs) {
+        _factory.releaseSlab(slab);
+      }
+      _slabs.clear();
+      _spillFile.close();
+      _current = null;
+      _index.clear();
+      _usedBytes = 0;
+      _deadBytes = 0;
+    } finally {
+      _lock.writeLock().unlock();
+    }
+  }
+
+  @Override
+  public byte[] get(final long identifier) {
+    _lock.readLock().lock();
+    try {
+      final long location = _index.get(identifier);
+      return (location != -1L) ? read(location) : null;
+    } finally {
+      _lock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public Map<Long, byte[]> get(final Collection<Long> identifiers) {
+    final Map<Long, byte[]> result = new HashMap<Long, byte[]>();
+    _lock.readLock().lock();
+    try {
+      for (Long identifier : identifiers) {
+        final long location = _index.get(identifier.longValue());
+        if (location != -1L) {
+          result.put(identifier, read(location));
+        }
+      }
+    } finally {
+      _lock.readLock().unlock();
+    }
+    return result;
+  }
+
+  @Override
+  public void put(final long identifier, final byte[] data) {
+    _lock.writeLock().lock();
+    try {
+      putImpl(identifier, data);
+      compactIfWasteful();
+    } finally {
+      _lock.writeLock().unlock();
+    }
+  }
+
+  @Override
+  public void put(final Map<Long, byte[]> data) {
+    _lock.writeLock().lock();
+    try {
+      for (Map.Entry<Long, byte[]> entry : data.entrySet()) {
+        putImpl(entry.getKey(), entry.getValue());
+      }
+      compactIfWasteful();
+    } finally {
+      _lock.writeLock().unlock();
+    }
+  }
+
+}
@@ -0,0 +1,287 @@
+/**
+ * Copyright (C) 2014 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.engine.cache;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.opengamma.OpenGammaRuntimeException;
+import com.opengamma.util.ArgumentChecker;
+
+/**
+ * Creates {@link OffHeapBinaryDataStore} instances.
+ * <p>
+ * All stores created by the factory share a single memory cap. Slabs are allocated as direct buffers until the cap is
+ * reached; after that they are memory mapped from a temporary file in the spill directory so that the operating system
+ * can page them out when physical memory is short. Each store has one spill file, created when it first needs one, and
+ * its mapped slabs are regions of that file.
+ * <p>
+ * Released direct slabs of the standard size are kept in a pool shared by all the stores and handed out again before
+ * any new memory is allocated. Pooled slabs still count towards the cap, so the cap bounds the direct memory held by
+ * the stores and the pool together. Larger direct slabs aren't pooled; they stop counting towards the cap when they
+ * are released and their memory is freed when the garbage collector finds them. Released mapped slabs stay mapped and
+ * are reused by the next slab the same store maps that fits in them. The mappings are dropped when the store is
+ * deleted and unmapped when the garbage collector finds them; the spill file is already unlinked so the operating
+ * system reclaims its space then.
+ */
+public class OffHeapBinaryDataStoreFactory implements BinaryDataStoreFactory {
+
+  private static final Logger s_logger = LoggerFactory.getLogger(OffHeapBinaryDataStoreFactory.class);
+
+  /**
+   * The default slab size, 1Mb.
+   */
+  public static final int DEFAULT_SLAB_SIZE = 1 << 20;
+
+  /**
+   * The default cap on direct memory, 256Mb.
+   */
+  public static final long DEFAULT_MAX_DIRECT_MEMORY = 256L << 20;
+
+  /**
+   * A region of off-heap memory owned by a single data store.
+   */
+  /* package */static final class Slab {
+
+    private final ByteBuffer _buffer;
+    /** The file the slab is mapped from, null for a direct slab. */
+    private final SpillFile _spillFile;
+
+    private Slab(final ByteBuffer buffer, final SpillFile spillFile) {
+      _buffer = buffer;
+      _spillFile = spillFile;
+    }
+
+    public ByteBuffer getBuffer() {
+      return _buffer;
+    }
+
+    public int getCapacity() {
+      return _buffer.capacity();
+    }
+
+    public boolean isMapped() {
+      return _spillFile != null;
+    }
+
+  }
+
+  /**
+   * The temporary file holding the mapped slabs of a single store. The file is created when the first slab is mapped and
+   * deleted when the store is. This is only used while holding the owning store's write lock.
+   */
+  /* package */static final class SpillFile {
+
+    private final File _directory;
+    private File _file;
+    private RandomAccessFile _raf;
+    private long _length;
+    /** Released slabs, still mapped, that can be reused by the store. */
+    private final List<Slab> _freeSlabs = new ArrayList<Slab>();
+
+    private SpillFile(final File directory) {
+      _directory = directory;
+    }
+
+    private Slab map(final int minimumSize) throws IOException {
+      final Iterator<Slab> itr = _freeSlabs.iterator();
+      while (itr.hasNext()) {
+        final Slab slab = itr.next();
+        if (slab.getCapacity() >= minimumSize) {
+          itr.remove();
+          slab.getBuffer().clear();
+          return slab;
+        }
+      }
+      if (_raf == null) {
+        _file = File.createTempFile("OffHeapBinaryDataStore-", ".spill", _directory);
+        _raf = new RandomAccessFile(_file, "rw");
+        // Mapping through the open file still works after it is unlinked; the space is reclaimed when it is closed
+        if (_file.delete()) {
+          _file = null;
+        } else {
+          s_logger.debug("Couldn't delete open spill file {}", _file);
+        }
+      }
+      final long offset = _length;
+      _length += minimumSize;
+      _raf.setLength(_length);
+      return new Slab(_raf.getChannel().map(FileChannel.MapMode.READ_WRITE, offset, minimumSize), this);
+    }
+
+    /* package */long getLength() {
+      return _length;
+    }
+
+    private void release(final Slab slab) {
+      _freeSlabs.add(slab);
+    }
+
+    /**
+     * Closes and deletes the file. All slabs mapped from it must have been released.
+     */
+    /* package */void close() {
+      _freeSlabs.clear();
+      _length = 0;
+      if (_raf != null) {
+        try {
+          _raf.close();
+        } catch (IOException e) {
+          s_logger.warn("Couldn't close spill file", e);
+        }
+        _raf = null;
+      }
+      if ((_file != null) && !_file.delete()) {
+        s_logger.warn("Couldn't delete spill file {}", _file);
+        _file.deleteOnExit();
+      }
+      _file = null;
+    }
+
+  }
+
+  private final int _slabSize;
+  private final long _maxDirectMemory;
+  private final File _spillDirectory;
+  /** Direct memory allocated by the factory, including the pool. */
+  private final AtomicLong _directMemory = new AtomicLong();
+  private final AtomicLong _pooledMemory = new AtomicLong();
+  private final AtomicLong _mappedMemory = new AtomicLong();
+  /** Released direct slabs of the standard size. */
+  private final Queue<ByteBuffer> _pool = new ConcurrentLinkedQueue<ByteBuffer>();
+
+  /**
+   * Creates a factory with the default slab size and memory cap, spilling to the system temporary directory.
+   */
+  public OffHeapBinaryDataStoreFactory() {
+    this(DEFAULT_SLAB_SIZE, DEFAULT_MAX_DIRECT_MEMORY, new File(System.getProperty("java.io.tmpdir")));
+  }
+
+  /**
+   * Creates a factory.
+   *
+   * @param slabSize the size of each slab in bytes, values larger than this get a slab of their own
+   * @param maxDirectMemory the maximum number of bytes of direct memory to allocate across all stores before spilling to mapped files
+   * @param spillDirectory the directory to create mapped files in, not null
+   */
+  public OffHeapBinaryDataStoreFactory(final int slabSize, final long maxDirectMemory, final File spillDirectory) {
+    ArgumentChecker.notNull(spillDirectory, "spillDirectory");
+    _slabSize = ArgumentChecker.notNegativeOrZero(slabSize, "slabSize");
+    _maxDirectMemory = ArgumentChecker.notNegative(maxDirectMemory, "maxDirectMemory");
+    _spillDirectory = spillDirectory;
+  }
+
+  public int getSlabSize() {
+    return _slabSize;
+  }
+
+  public long getMaxDirectMemory() {
+    return _maxDirectMemory;
+  }
+
+  public File getSpillDirectory() {
+    return _spillDirectory;
+  }
+
+  /**
+   * Returns the number of bytes of direct memory currently allocated to stores from this factory.
+   *
+   * @return the direct memory in use
+   */
+  public long getDirectMemoryInUse() {
+    return _directMemory.get() - _pooledMemory.get();
+  }
+
+  /**
+   * Returns the number of bytes of direct memory held in the pool of released slabs, waiting to be reused.
+   *
+   * @return the pooled direct memory
+   */
+  public long getPooledDirectMemory() {
+    return _pooledMemory.get();
+  }
+
+  /**
+   * Returns the number of bytes of memory mapped files currently allocated to stores from this factory.
+   *
+   * @return the mapped memory in use
+   */
+  public long getMappedMemoryInUse() {
+    return _mappedMemory.get();
+  }
+
+  /* package */SpillFile createSpillFile() {
+    return new SpillFile(getSpillDirectory());
+  }
+
+  /**
+   * Allocates a slab, reusing a pooled slab if there is one and mapping it from the store's spill file if the direct
+   * memory cap has been reached.
+   *
+   * @param minimumSize the minimum capacity of the slab
+   * @param spillFile the spill file of the store the slab is for, not null
+   * @return the slab, not null
+   */
+  /* package */Slab allocateSlab(final int minimumSize, final SpillFile spillFile) {
+    final int size = Math.max(minimumSize, getSlabSize());
+    if (size == getSlabSize()) {
+      final ByteBuffer pooled = _pool.poll();
+      if (pooled != null) {
+        _pooledMemory.addAndGet(-size);
+        pooled.clear();
+        return new Slab(pooled, null);
+      }
+    }
+    if (_directMemory.addAndGet(size) <= getMaxDirectMemory()) {
+      return new Slab(ByteBuffer.allocateDirect(size), null);
+    }
+    _directMemory.addAndGet(-size);
+    final Slab slab;
+    try {
+      slab = spillFile.map(size);
+    } catch (IOException e) {
+      throw new OpenGammaRuntimeException("Couldn't map " + size + " byte slab in " + getSpillDirectory(), e);
+    }
+    _mappedMemory.addAndGet(slab.getCapacity());
+    return slab;
+  }
+
+  /**
+   * Releases a slab for reuse. The slab, and any buffers derived from it, must not be used afterwards.
+   *
+   * @param slab the slab to release, not null
+   */
+  /* package */void releaseSlab(final Slab slab) {
+    if (slab.isMapped()) {
+      slab._spillFile.release(slab);
+      _mappedMemory.addAndGet(-slab.getCapacity());
+    } else if (slab.getCapacity() == getSlabSize()) {
+      _pooledMemory.addAndGet(slab.getCapacity());
+      _pool.add(slab.getBuffer());
+    } else {
+      // freed when the buffer is garbage collected
+      _directMemory.addAndGet(-slab.getCapacity());
+    }
+  }
+
+  @Override
+  public BinaryDataStore createDataStore(final ViewComputationCacheKey cacheKey) {
+    return new OffHeapBinaryDataStore(this);
+  }
+
+}
@@ -50,6 +50,23 @@ public class RemoteViewComputationCacheSource extends DefaultViewComputationCach
     client.setAsynchronousMessageReceiver(this);
   }
 
+  /**
+   * Creates a client that uses the remote server for identifiers but a different store for shared values. This is used
+   * by calculation nodes co-located with the view process to share values through a {@link SharedMemoryBinaryDataStoreFactory}
+   * instead of the socket.
+   * 
+   * @param client the connection to a {@link ViewComputationCacheServer}
+   * @param privateDataStoreFactory the private data store
+   * @param sharedDataStoreFactory the shared data store
+   * @param fudgeContext the Fudge context the {@link DefaultViewComputationCache} will use for object encoding
+   */
+  public RemoteViewComputationCacheSource(final RemoteCacheClient client,
+      final FudgeMessageStoreFactory privateDataStoreFactory, final FudgeMessageStoreFactory sharedDataStoreFactory,
+      final FudgeContext fudgeContext) {
+    super(createIdentifierMap(client), fudgeContext, privateDataStoreFactory, sharedDataStoreFactory);
+    client.setAsynchronousMessageReceiver(this);
+  }
+
   private static IdentifierMap createIdentifierMap(final RemoteCacheClient client) {
     return new CachingIdentifierMap(new RemoteIdentifierMap(client));
   }
@@ -0,0 +1,275 @@
+/**
+ * Copyright (C) 2014 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.engine.cache;
+
+import it.unimi.dsi.fastutil.longs.Long2LongMap;
+import it.unimi.dsi.fastutil.longs.Long2LongOpenHashMap;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.opengamma.OpenGammaRuntimeException;
+import com.opengamma.util.ArgumentChecker;
+
+/**
+ * An implementation of {@link BinaryDataStore} that shares values between processes on the same host through memory
+ * mapped files in a common directory.
+ * <p>
+ * Each process writing to the store appends to segment files of its own, so there is only ever a single writer for a
+ * segment and the segment index can be published without locking (see {@link SharedMemorySegment}). The values written
+ * by a single put are committed together. Reads consult a
+ * local index of all segments seen so far. On a miss the local index is only updated, which needs the write lock, if a
+ * known segment has new entries or the directory has changed since it was last scanned for new segments.
+ * <p>
+ * The store created by the owning factory, normally the one in the view process, creates the directory and removes it
+ * when it is deleted. Stores in other processes never create the directory, so a store created after the owner has
+ * deleted the directory can't write to it and doesn't leave files behind.
+ * <p>
+ * This class is internally synchronized.
+ */
+public class SharedMemoryBinaryDataStore extends AbstractBinaryDataStore implements BinaryDataStore {
+
+  private static final Logger s_logger = LoggerFactory.getLogger(SharedMemoryBinaryDataStore.class);
+
+  private static final String SEGMENT_PREFIX = "segment-";
+  private static final String SEGMENT_SUFFIX = ".seg";
+  /**
+   * The coarsest resolution of directory modification times, in milliseconds. A directory modified within this time
+   * of the last scan may have changed again without its modification time changing.
+   */
+  private static final long MODIFICATION_TIME_RESOLUTION = 2000;
+
+  private final SharedMemoryBinaryDataStoreFactory _factory;
+  private final File _directory;
+  private final ReadWriteLock _lock = new ReentrantReadWriteLock();
+  private final List<SharedMemorySegment> _segments = new ArrayList<SharedMemorySegment>();
+  private final Set<String> _knownFiles = new HashSet<String>();
+  private final Long2LongMap _index = new Long2LongOpenHashMap();
+  private SharedMemorySegment _writer;
+  private int _writerSegment;
+  /** The modification time of the directory when it was last scanned. */
+  private long _directoryModified = -1;
+  /** The time of the last directory scan. */
+  private long _directoryScanned;
+
+  public SharedMemoryBinaryDataStore(final SharedMemoryBinaryDataStoreFactory factory, final File directory) {
+    ArgumentChecker.notNull(factory, "factory");
+    ArgumentChecker.notNull(directory, "directory");
+    _factory = factory;
+    _directory = directory;
+    _index.defaultReturnValue(-1L);
+    if (factory.isOwner() && !directory.isDirectory() && !directory.mkdirs() && !directory.isDirectory()) {
+      throw new OpenGammaRuntimeException("Couldn't create shared memory directory " + directory);
+    }
+  }
+
+  public File getDirectory() {
+    return _directory;
+  }
+
+  // caller must hold at least the read lock
+  private boolean isRefreshNeeded() {
+    for (SharedMemorySegment segment : _segments) {
+      if (segment.hasNewEntries()) {
+        return true;
+      }
+    }
+    return isScanNeeded(_directory.lastModified());
+  }
+
+  // caller must hold at least the read lock
+  private boolean isScanNeeded(final long directoryModified) {
+    return (directoryModified != _directoryModified) || (_directoryScanned - directoryModified < MODIFICATION_TIME_RESOLUTION);
+  }
+
+  // caller must hold the write lock
+  private void refresh() {
+    for (int i = 0; i < _segments.size(); i++) {
+      _segments.get(i).refresh(_index, i);
+    }
+    final long directoryModified = _directory.lastModified();
+    if (!isScanNeeded(directoryModified)) {
+      return;
+    }
+    // Read the modification time before listing so a file created during the listing causes another scan
+    _directoryModified = directoryModified;
+    _directoryScanned = System.currentTimeMillis();
+    final String[] files = _directory.list();
+    if (files == null) {
+      return;
+    }
+    for (String file : files) {
+      if (file.startsWith(SEGMENT_PREFIX) && file.endsWith(SEGMENT_SUFFIX) && !_knownFiles.contains(file)) {
+        final SharedMemorySegment segment = SharedMemorySegment.open(new File(_directory, file));
+        if (segment != null) {
+          _knownFiles.add(file);
+          _segments.add(segment);
+          segment.refresh(_index, _segments.size() - 1);
+        }
+      }
+    }
+  }
+
+  // caller must hold at least the read lock
+  private byte[] find(final long identifier) {
+    final long location = _index.get(identifier);
+    if (location == -1L) {
+      return null;
+    }
+    return _segments.get(SharedMemorySegment.segment(location)).read(location);
+  }
+
+  // caller must hold the write lock, the value isn't visible until commit() is called
+  private void putImpl(final long identifier, final byte[] data) {
+    if ((_writer == null) || !_writer.append(identifier, data)) {
+      commit();
+      final int dataSize = Math.max(_factory.getSegmentDataSize(), data.length);
+      final long size = SharedMemorySegment.size(_factory.getSegmentIndexCapacity(), dataSize);
+      if (size > Integer.MAX_VALUE) {
+        throw new OpenGammaRuntimeException("Value of " + data.length + " bytes is too large for a shared memory segment");
+      }
+      final File file;
+      try {
+        file = File.createTempFile(SEGMENT_PREFIX, SEGMENT_SUFFIX, _directory);
+      } catch (IOException e) {
+        throw new OpenGammaRuntimeException("Couldn't create shared memory segment in " + _directory, e);
+      }
+      _writer = SharedMemorySegment.create(file, (int) size, _factory.getSegmentIndexCapacity());
+      _knownFiles.add(file.getName());
+      _segments.add(_writer);
+      _writerSegment = _segments.size() - 1;
+      _writer.append(identifier, data);
+    }
+  }
+
+  // caller must hold the write lock
+  private void commit() {
+    if (_writer != null) {
+      _writer.commit();
+      _writer.refresh(_index, _writerSegment);
+    }
+  }
+
+  @Override
+  public byte[] get(final long identifier) {
+    _lock.readLock().lock();
+    try {
+      final byte[] data = find(identifier);
+      if ((data != null) || !isRefreshNeeded()) {
+        return data;
+      }
+    } finally {
+      _lock.readLock().unlock();
+    }
+    _lock.writeLock().lock();
+    try {
+      refresh();
+      return find(identifier);
+    } finally {
+      _lock.writeLock().unlock();
+    }
+  }
+
+  @Override
+  public Map<Long, byte[]> get(final Collection<Long> identifiers) {
+    final Map<Long, byte[]> result = new HashMap<Long, byte[]>();
+    _lock.readLock().lock();
+    try {
+      for (Long identifier : identifiers) {
+        final byte[] data = find(identifier);
+        if (data != null) {
+          result.put(identifier, data);
+        }
+      }
+      if ((result.size() == identifiers.size()) || !isRefreshNeeded()) {
+        return result;
+      }
+    } finally {
+      _lock.readLock().unlock();
+    }
+    _lock.writeLock().lock();
+    try {
+      refresh();
+      for (Long identifier : identifiers) {
+        if (!result.containsKey(identifier)) {
+          final byte[] data = find(identifier);
+          if (data != null) {
+            result.put(identifier, data);
+          }
+        }
+      }
+    } finally {
+      _lock.writeLock().unlock();
+    }
+    return result;
+  }
+
+  @Override
+  public void put(final long identifier, final byte[] data) {
+    _lock.writeLock().lock();
+    try {
+      putImpl(identifier, data);
+      commit();
+    } finally {
+      _lock.writeLock().unlock();
+    }
+  }
+
+  @Override
+  public void put(final Map<Long, byte[]> data) {
+    _lock.writeLock().lock();
+    try {
+      for (Map.Entry<Long, byte[]> entry : data.entrySet()) {
+        putImpl(entry.getKey(), entry.getValue());
+      }
+      commit();
+    } finally {
+      _lock.writeLock().unlock();
+    }
+  }
+
+  @Override
+  public void delete() {
+    _lock.writeLock().lock();
+    try {
+      // The mappings are only released when the buffers are garbage collected. Truncating the files releases the
+      // memory now, the owner does this for every segment as other processes can't know when the cycle is released
+      _segments.clear();
+      _knownFiles.clear();
+      _index.clear();
+      _writer = null;
+      _directoryModified = -1;
+      if (_factory.isOwner()) {
+        final File[] files = _directory.listFiles();
+        if (files != null) {
+          for (File file : files) {
+            if (!SharedMemorySegment.delete(file)) {
+              s_logger.warn("Couldn't delete shared memory segment {}", file);
+            }
+          }
+        }
+        if (!_directory.delete()) {
+          s_logger.warn("Couldn't delete shared memory directory {}", _directory);
+        }
+      }
+    } finally {
+      _lock.writeLock().unlock();
+    }
+  }
+
+}
@@ -0,0 +1,102 @@
+/**
+ * Copyright (C) 2014 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.engine.cache;
+
+import java.io.File;
+
+import com.opengamma.util.ArgumentChecker;
+
+/**
+ * Creates {@link SharedMemoryBinaryDataStore} instances.
+ * <p>
+ * Every process on a host that should share values must use a factory with the same root directory. This should be
+ * on a memory backed file system, for example {@code /dev/shm} on Linux. Exactly one of the processes, normally the
+ * view process hosting the {@link FudgeMessageStoreServer}, should be the owner. That process serves the same values
+ * over the socket connection to calculation nodes on other hosts, while nodes on this host configure a factory that is
+ * not the owner as their shared data store (see {@link RemoteViewComputationCacheSource}) and avoid the socket entirely.
+ */
+public class SharedMemoryBinaryDataStoreFactory implements BinaryDataStoreFactory {
+
+  /**
+   * The default number of values a segment can hold.
+   */
+  public static final int DEFAULT_SEGMENT_INDEX_CAPACITY = 16384;
+
+  /**
+   * The default number of bytes of value data a segment can hold, 16Mb.
+   */
+  public static final int DEFAULT_SEGMENT_DATA_SIZE = 16 << 20;
+
+  private final File _root;
+  private final boolean _owner;
+  private final int _segmentIndexCapacity;
+  private final int _segmentDataSize;
+
+  public SharedMemoryBinaryDataStoreFactory(final File root, final boolean owner) {
+    this(root, owner, DEFAULT_SEGMENT_INDEX_CAPACITY, DEFAULT_SEGMENT_DATA_SIZE);
+  }
+
+  /**
+   * Creates a factory.
+   *
+   * @param root the directory shared by the processes on this host, not null
+   * @param owner true if stores from this factory should remove the shared files when they are deleted
+   * @param segmentIndexCapacity the number of values each segment can hold
+   * @param segmentDataSize the number of bytes of value data each segment can hold, values larger than this get a segment of their own
+   */
+  public SharedMemoryBinaryDataStoreFactory(final File root, final boolean owner, final int segmentIndexCapacity, final int segmentDataSize) {
+    ArgumentChecker.notNull(root, "root");
+    _root = root;
+    _owner = owner;
+    _segmentIndexCapacity = ArgumentChecker.notNegativeOrZero(segmentIndexCapacity, "segmentIndexCapacity");
+    _segmentDataSize = ArgumentChecker.notNegativeOrZero(segmentDataSize, "segmentDataSize");
+  }
+
+  public File getRoot() {
+    return _root;
+  }
+
+  public boolean isOwner() {
+    return _owner;
+  }
+
+  public int getSegmentIndexCapacity() {
+    return _segmentIndexCapacity;
+  }
+
+  public int getSegmentDataSize() {
+    return _segmentDataSize;
+  }
+
+  private static String escape(final String str) {
+    final StringBuilder sb = new StringBuilder(str.length());
+    for (int i = 0; i < str.length(); i++) {
+      final char c = str.charAt(i);
+      if (((c >= 'a') && (c <= 'z')) || ((c >= 'A') && (c <= 'Z')) || ((c >= '0') && (c <= '9')) || (c == '-') || (c == '.')) {
+        sb.append(c);
+      } else {
+        sb.append('_').append(Integer.toHexString(c)).append('_');
+      }
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Returns the directory used for the given cache. Every process will derive the same directory for the same key.
+   *
+   * @param cacheKey the cache key, not null
+   * @return the directory, not null
+   */
+  public File getDirectory(final ViewComputationCacheKey cacheKey) {
+    return new File(getRoot(), escape(cacheKey.getViewCycleId().toString()) + "-" + escape(cacheKey.getCalculationConfigurationName()));
+  }
+
+  @Override
+  public BinaryDataStore createDataStore(final ViewComputationCacheKey cacheKey) {
+    return new SharedMemoryBinaryDataStore(this, getDirectory(cacheKey));
+  }
+
+}
@@ -0,0 +1,263 @@
+/**
+ * Copyright (C) 2014 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.engine.cache;
+
+import it.unimi.dsi.fastutil.longs.Long2LongMap;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.opengamma.OpenGammaRuntimeException;
+
+/**
+ * A memory mapped file holding values written by a single process, readable by any number of processes on the same
+ * host. This is used by {@link SharedMemoryBinaryDataStore}.
+ * <p>
+ * The file starts with a fixed header followed by an index region of {@code (identifier, offset, length)} entries and
+ * then the data region. The writer appends the value bytes and the index entries and then {@link #commit commits}
+ * them by updating the committed entry count in the header, so a reader never needs a lock: it only considers entries
+ * below the count it observes.
+ * <p>
+ * The other processes don't share any Java objects with the writer so the Java memory model doesn't order their
+ * accesses. Before writing the count, or the magic number of a new segment, the writer calls
+ * {@link MappedByteBuffer#force()}. That is a native call, which neither the compiler nor the processor moves the
+ * earlier stores past, so they reach the shared pages before the count does. On a memory backed file system it doesn't
+ * write anything to disk. Several appends are committed together where possible to keep the number of calls down.
+ * Readers load the count before the entries it covers, and processors that order loads, such as x86, don't satisfy
+ * the later loads first.
+ */
+/* package */final class SharedMemorySegment {
+
+  private static final int MAGIC = 0x4F475353;
+  private static final int MAGIC_OFFSET = 0;
+  private static final int INDEX_CAPACITY_OFFSET = 4;
+  private static final int COMMITTED_OFFSET = 8;
+  private static final int HEADER_SIZE = 16;
+  private static final int INDEX_ENTRY_SIZE = 16;
+
+  private static final Logger s_logger = LoggerFactory.getLogger(SharedMemorySegment.class);
+
+  private final File _file;
+  private final MappedByteBuffer _buffer;
+  private final int _indexCapacity;
+  // Writer state
+  private int _entries;
+  private int _committed;
+  private int _writePosition;
+  // Reader state
+  private int _entriesRead;
+
+  private SharedMemorySegment(final File file, final MappedByteBuffer buffer, final int indexCapacity) {
+    _file = file;
+    _buffer = buffer;
+    _indexCapacity = indexCapacity;
+    _writePosition = HEADER_SIZE + indexCapacity * INDEX_ENTRY_SIZE;
+  }
+
+  /**
+   * Creates a new segment for writing.
+   *
+   * @param file the file to create, not null
+   * @param size the total size of the segment in bytes
+   * @param indexCapacity the maximum number of values the segment can hold
+   * @return the segment, not null
+   */
+  public static SharedMemorySegment create(final File file, final int size, final int indexCapacity) {
+    try {
+      final RandomAccessFile raf = new RandomAccessFile(file, "rw");
+      try {
+        raf.setLength(size);
+        final MappedByteBuffer buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+        buffer.putInt(INDEX_CAPACITY_OFFSET, indexCapacity);
+        buffer.putInt(COMMITTED_OFFSET, 0);
+        // The header is complete when a reader sees the magic number
+        buffer.force();
+        buffer.putInt(MAGIC_OFFSET, MAGIC);
+        return new SharedMemorySegment(file, buffer, indexCapacity);
+      } finally {
+        raf.close();
+      }
+    } catch (IOException e) {
+      throw new OpenGammaRuntimeException("Couldn't create shared memory segment " + file, e);
+    }
+  }
+
+  /**
+   * Opens an existing segment for reading.
+   *
+   * @param file the file to open, not null
+   * @return the segment, or null if the file is not (yet) a valid segment
+   */
+  public static SharedMemorySegment open(final File file) {
+    try {
+      final RandomAccessFile raf = new RandomAccessFile(file, "r");
+      try {
+        final long size = raf.length();
+        if (size < HEADER_SIZE) {
+          return null;
+        }
+        final MappedByteBuffer buffer = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, size);
+        if (buffer.getInt(MAGIC_OFFSET) != MAGIC) {
+          return null;
+        }
+        return new SharedMemorySegment(file, buffer, buffer.getInt(INDEX_CAPACITY_OFFSET));
+      } finally {
+        raf.close();
+      }
+    } catch (IOException e) {
+      // The file may have been deleted by the owner releasing the cycle
+      return null;
+    }
+  }
+
+  /**
+   * Deletes a segment file, releasing its memory even if processes still have it mapped. The file is truncated before
+   * it is deleted; otherwise the pages of a file on a memory backed file system stay allocated until every process
+   * mapping it has garbage collected its buffer, which may not happen for a long time. A process that reads the
+   * segment after this gets an error, so this must only be called once no process will read the segment again.
+   *
+   * @param file the segment file, not null
+   * @return true if the file was deleted
+   */
+  public static boolean delete(final File file) {
+    try {
+      final RandomAccessFile raf = new RandomAccessFile(file, "rw");
+      try {
+        raf.setLength(0);
+      } finally {
+        raf.close();
+      }
+    } catch (IOException e) {
+      s_logger.debug("Couldn't truncate shared memory segment {}: {}", file, e.getMessage());
+    }
+    return file.delete();
+  }
+
+  /**
+   * Returns the number of bytes needed for a segment with the given index capacity and data size.
+   *
+   * @param indexCapacity the maximum number of values the segment can hold
+   * @param dataSize the number of bytes of value data the segment can hold
+   * @return the segment size
+   */
+  public static long size(final int indexCapacity, final int dataSize) {
+    return HEADER_SIZE + (long) indexCapacity * INDEX_ENTRY_SIZE + dataSize;
+  }
+
+  public File getFile() {
+    return _file;
+  }
+
+  /**
+   * Appends a value to the segment. Only the process that created the segment may call this. The value isn't visible
+   * to readers until it is {@link #commit committed}.
+   *
+   * @param identifier the value identifier
+   * @param data the value
+   * @return true if the value was written, false if there is not enough space remaining
+   */
+  public boolean append(final long identifier, final byte[] data) {
+    if ((_entries >= _indexCapacity) || (_buffer.capacity() - _writePosition < data.length)) {
+      return false;
+    }
+    final ByteBuffer buffer = _buffer.duplicate();
+    buffer.position(_writePosition);
+    buffer.put(data);
+    final int entry = HEADER_SIZE + _entries * INDEX_ENTRY_SIZE;
+    _buffer.putLong(entry, identifier);
+    _buffer.putInt(entry + 8, _writePosition);
+    _buffer.putInt(entry + 12, data.length);
+    _writePosition += data.length;
+    _entries++;
+    return true;
+  }
+
+  /**
+   * Makes the values appended since the last commit visible to readers. Only the process that created the segment may
+   * call this.
+   */
+  public void commit() {
+    if (_entries == _committed) {
+      return;
+    }
+    // The values and index entries must reach the shared pages before the count that makes them visible
+    _buffer.force();
+    _buffer.putInt(COMMITTED_OFFSET, _entries);
+    _committed = _entries;
+  }
+
+  private int getCommitted() {
+    return _buffer.getInt(COMMITTED_OFFSET);
+  }
+
+  /**
+   * Tests whether entries have been committed since the last {@link #refresh}.
+   *
+   * @return true if there are new entries
+   */
+  public boolean hasNewEntries() {
+    return getCommitted() > _entriesRead;
+  }
+
+  /**
+   * Adds any newly committed index entries to a local index. A new entry replaces any entry already in the index for
+   * the same identifier.
+   *
+   * @param index the local index, receives the identifier mapped to the location as returned by {@link #location}
+   * @param segment the segment number to encode into the locations
+   * @return true if there were new entries, false otherwise
+   */
+  public boolean refresh(final Long2LongMap index, final int segment) {
+    final int committed = getCommitted();
+    if (committed <= _entriesRead) {
+      return false;
+    }
+    for (int i = _entriesRead; i < committed; i++) {
+      final int entry = HEADER_SIZE + i * INDEX_ENTRY_SIZE;
+      index.put(_buffer.getLong(entry), location(segment, i));
+    }
+    _entriesRead = committed;
+    return true;
+  }
+
+  /**
+   * Encodes a segment and entry number into a location.
+   *
+   * @param segment the segment number
+   * @param entry the index entry within the segment
+   * @return the location
+   */
+  public static long location(final int segment, final int entry) {
+    return ((long) segment << 32) | (entry & 0xFFFFFFFFL);
+  }
+
+  public static int segment(final long location) {
+    return (int) (location >>> 32);
+  }
+
+  /**
+   * Reads a value.
+   *
+   * @param location the location as returned by {@link #location}
+   * @return a copy of the value bytes
+   */
+  public byte[] read(final long location) {
+    final int entry = HEADER_SIZE + ((int) location) * INDEX_ENTRY_SIZE;
+    final ByteBuffer buffer = _buffer.duplicate();
+    final byte[] data = new byte[buffer.getInt(entry + 12)];
+    buffer.position(buffer.getInt(entry + 8));
+    buffer.get(data);
+    return data;
+  }
+
+}
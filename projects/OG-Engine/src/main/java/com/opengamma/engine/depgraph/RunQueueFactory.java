@@ -111,4 +111,19 @@ public abstract class RunQueueFactory {
     };
   }
 
+  /**
+   * Creates work-stealing queues with a deque for each graph building thread. Each thread runs the tasks it posts in LIFO order, giving good locality for resolution task continuations, and
+   * steals the oldest task from another thread when it runs out. This avoids the contention on a single shared queue that can limit multi-threaded graph building on hosts with many cores.
+   * 
+   * @return the factory instance
+   */
+  public static RunQueueFactory getWorkStealing() {
+    return new RunQueueFactory() {
+      @Override
+      protected RunQueue createRunQueue() {
+        return new WorkStealingRunQueue();
+      }
+    };
+  }
+
 }
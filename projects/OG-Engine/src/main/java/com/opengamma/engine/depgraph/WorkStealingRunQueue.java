@@ -0,0 +1,108 @@
+/**
+ * Copyright (C) 2014 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.engine.depgraph;
+
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import com.google.common.collect.Iterators;
+
+/**
+ * Run queue implementation with a deque for each thread that uses it. A thread adds tasks to, and takes tasks from, the tail of its own deque
+ * so the continuations it posts are run by the same thread while the related targets and values are still in its cache. When its own deque is
+ * empty a thread steals the oldest task from the head of another thread's deque.
+ * <p>
+ * Graph building threads only contend with each other when stealing, rather than on every add and take as they do with a single shared queue.
+ */
+/* package */final class WorkStealingRunQueue implements RunQueue {
+
+  private static final class Local {
+
+    private final Deque<ContextRunnable> _deque = new ConcurrentLinkedDeque<ContextRunnable>();
+
+    private final int _index;
+
+    private Local(final int index) {
+      _index = index;
+    }
+
+  }
+
+  private final List<Deque<ContextRunnable>> _deques = new CopyOnWriteArrayList<Deque<ContextRunnable>>();
+
+  private final ThreadLocal<Local> _local = new ThreadLocal<Local>() {
+    @Override
+    protected Local initialValue() {
+      synchronized (_deques) {
+        final Local local = new Local(_deques.size());
+        _deques.add(local._deque);
+        return local;
+      }
+    }
+  };
+
+  @Override
+  public boolean isEmpty() {
+    for (Deque<ContextRunnable> deque : _deques) {
+      if (!deque.isEmpty()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public int size() {
+    int size = 0;
+    for (Deque<ContextRunnable> deque : _deques) {
+      size += deque.size();
+    }
+    return size;
+  }
+
+  @Override
+  public Iterator<ContextRunnable> iterator() {
+    final List<Iterator<ContextRunnable>> iterators = new ArrayList<Iterator<ContextRunnable>>(_deques.size());
+    for (Deque<ContextRunnable> deque : _deques) {
+      iterators.add(deque.iterator());
+    }
+    return Iterators.concat(iterators.iterator());
+  }
+
+  @Override
+  public void add(final ContextRunnable runnable) {
+    _local.get()._deque.addLast(runnable);
+  }
+
+  @Override
+  public ContextRunnable take() {
+    final Local local = _local.get();
+    final ContextRunnable runnable = local._deque.pollLast();
+    if (runnable != null) {
+      return runnable;
+    }
+    return steal(local._index);
+  }
+
+  private ContextRunnable steal(final int index) {
+    final Object[] deques = _deques.toArray();
+    // Start with the neighbouring deque so that thieves spread out rather than all hitting the first one
+    for (int i = 1; i < deques.length; i++) {
+      @SuppressWarnings("unchecked")
+      final Deque<ContextRunnable> victim = (Deque<ContextRunnable>) deques[(index + i) % deques.length];
+      final ContextRunnable runnable = victim.pollFirst();
+      if (runnable != null) {
+        return runnable;
+      }
+    }
+    return null;
+  }
+
+}
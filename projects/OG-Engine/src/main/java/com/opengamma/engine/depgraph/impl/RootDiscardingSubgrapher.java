@@ -54,6 +54,33 @@ public abstract class RootDiscardingSubgrapher {
    */
   protected abstract boolean acceptNode(DependencyNode node);
 
+  /**
+   * Combines filters so that a graph can be sub-graphed against all of them in a single pass.
+   * <p>
+   * A node passes the combined filter only if it passes each of the filters. Sub-graphing against the combination gives the same result as sub-graphing against each filter in turn but only
+   * walks the graph once, which matters for the very large graphs of a portfolio view that may need several invalidation passes before an incremental compilation.
+   * 
+   * @param filters the filters to combine, not null and not containing null
+   * @return the combined filter, not null
+   */
+  public static RootDiscardingSubgrapher allOf(final Collection<? extends RootDiscardingSubgrapher> filters) {
+    if (filters.size() == 1) {
+      return filters.iterator().next();
+    }
+    final RootDiscardingSubgrapher[] filterArray = filters.toArray(new RootDiscardingSubgrapher[filters.size()]);
+    return new RootDiscardingSubgrapher() {
+      @Override
+      protected boolean acceptNode(final DependencyNode node) {
+        for (RootDiscardingSubgrapher filter : filterArray) {
+          if (!filter.acceptNode(node)) {
+            return false;
+          }
+        }
+        return true;
+      }
+    };
+  }
+
   private NodeState acceptNode(final DependencyNode node, final Map<DependencyNode, NodeState> accepted) {
     NodeState state = accepted.get(node);
     if (state != null) {
@@ -137,6 +137,27 @@ public class MultipleNodeExecutorFactory extends PlanBasedGraphExecutorFactory i
     return _basePlanner.getMaximumConcurrency();
   }
 
+  /**
+   * Sets whether jobs should be prioritised by their position on the critical path.
+   * 
+   * @param criticalPathScheduling true to prioritise jobs on the critical path
+   * @see MultipleNodeExecutionPlanner#setCriticalPathScheduling
+   */
+  public void setCriticalPathScheduling(final boolean criticalPathScheduling) {
+    _basePlanner.setCriticalPathScheduling(criticalPathScheduling);
+    invalidateCache();
+  }
+
+  /**
+   * Returns whether jobs are prioritised by their position on the critical path.
+   * 
+   * @return true if jobs are prioritised by their position on the critical path
+   * @see MultipleNodeExecutionPlanner#isCriticalPathScheduling
+   */
+  public boolean isCriticalPathScheduling() {
+    return _basePlanner.isCriticalPathScheduling();
+  }
+
   public void setFunctionCosts(final FunctionCosts functionCosts) {
     _basePlanner.setFunctionCosts(functionCosts);
   }
@@ -6,6 +6,8 @@
 package com.opengamma.engine.exec.plan;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -74,6 +76,18 @@ public class ExecutingGraph {
 
   }
 
+  /**
+   * Orders jobs by ascending priority. The executable list is kept in this order so that the highest priority job is at the end.
+   */
+  private static final Comparator<PlannedJob> s_priorityOrder = new Comparator<PlannedJob>() {
+    @Override
+    public int compare(final PlannedJob o1, final PlannedJob o2) {
+      final long p1 = o1.getPriority();
+      final long p2 = o2.getPriority();
+      return (p1 < p2) ? -1 : ((p1 == p2) ? 0 : 1);
+    }
+  };
+
   private final GraphExecutionPlan _plan;
   private final UniqueId _cycleId;
   private final Instant _valuationTime;
@@ -100,6 +114,8 @@ public class ExecutingGraph {
     _valuationTime = valuationTime;
     _resolverVersionCorrection = resolverVersionCorrection;
     _executable = new ArrayList<PlannedJob>(plan.getLeafJobs());
+    // Stable sort; if no priorities were assigned the order is unchanged
+    Collections.sort(_executable, s_priorityOrder);
     _blocked = new HashMap<PlannedJob, BlockedJobInfo>();
     _executing = new HashMap<CalculationJobSpecification, BlockedJobInfo[]>();
   }
@@ -221,9 +237,33 @@ public class ExecutingGraph {
     return actual;
   }
 
+  /**
+   * Adds a job to the executable list, after any jobs of the same or lower priority.
+   * <p>
+   * The caller must already hold the synchronisation lock.
+   * 
+   * @param job the job that is now executable, not null
+   */
+  private void addExecutable(final PlannedJob job) {
+    int low = 0;
+    int high = _executable.size();
+    final long priority = job.getPriority();
+    while (low < high) {
+      final int mid = (low + high) >>> 1;
+      if (_executable.get(mid).getPriority() <= priority) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    _executable.add(low, job);
+  }
+
   /**
    * Returns the next job that can be executed, or null if there are none available for execution.
    * <p>
+   * Of the jobs available, the one with the highest priority is returned. Amongst jobs of equal priority the one that became executable most recently is returned.
+   * <p>
    * A null return may happen if either the graph has completed execution, or there are jobs pending.
    * 
    * @return an executable job, if one is available
@@ -259,7 +299,7 @@ public class ExecutingGraph {
       for (BlockedJobInfo blockedJob : blockedJobs) {
         if (blockedJob.unblock()) {
           final PlannedJob job = blockedJob.getJob();
-          _executable.add(job);
+          addExecutable(job);
           _blocked.remove(job);
         }
       }
@@ -89,6 +89,11 @@ import com.opengamma.engine.view.ExecutionLogMode;
    */
   private long _startTime = -1;
 
+  /**
+   * The estimated cost of the most expensive chain of fragments starting with this one, used to prioritise the critical path.
+   */
+  private long _criticalPathCost = -1;
+
   /**
    * The execution group identifier, written by the graph coloring algorithm. If an output fragment has the same execution identifier then it will be streamed to the same node.
    */
@@ -215,6 +220,28 @@ import com.opengamma.engine.view.ExecutionLogMode;
     return latest;
   }
 
+  /**
+   * Returns the estimated cost of the longest chain of work that starts with this fragment; the cost of this fragment plus the most expensive chain starting at any of its output fragments.
+   * <p>
+   * This must be called before job construction, which discards the output fragment links.
+   * 
+   * @return the estimated critical path cost in nanoseconds
+   */
+  public long getCriticalPathCost() {
+    if (_criticalPathCost >= 0) {
+      return _criticalPathCost;
+    }
+    long longest = 0;
+    for (GraphFragment output : getOutputFragments()) {
+      final long cost = output.getCriticalPathCost();
+      if (cost > longest) {
+        longest = cost;
+      }
+    }
+    _criticalPathCost = getJobCost() + longest;
+    return _criticalPathCost;
+  }
+
   public int getExecutionId() {
     return _executionId;
   }
@@ -466,7 +493,7 @@ import com.opengamma.engine.view.ExecutionLogMode;
     } else {
       dependentJobs = null;
     }
-    return new PlannedJob(getInputFragments().size(), items, hint, tailJobs, dependentJobs);
+    return new PlannedJob(getInputFragments().size(), items, hint, tailJobs, dependentJobs, (_criticalPathCost >= 0) ? _criticalPathCost : 0L);
   }
 
   public PlannedJob getOrCreateJob(final GraphFragmentContext context) {
@@ -54,6 +54,7 @@ public class MultipleNodeExecutionPlanner implements GraphExecutionPlanner {
   private long _maximumJobCost = Long.MAX_VALUE;
   private int _maximumConcurrency = Integer.MAX_VALUE;
   private FunctionCosts _functionCosts = new FunctionCosts();
+  private boolean _criticalPathScheduling;
 
   /**
    * Sets the minimum number of items for each job.
@@ -172,6 +173,28 @@ public class MultipleNodeExecutionPlanner implements GraphExecutionPlanner {
     return _functionCosts;
   }
 
+  /**
+   * Sets whether jobs should be prioritised by their position on the critical path.
+   * <p>
+   * When enabled, each job is given the estimated cost of the longest chain of work starting with it, using the historic function execution times from {@link #getFunctionCosts}. Whenever several
+   * jobs are executable the one heading the longest chain is dispatched first, so that the cycle time is not extended by starting the critical path late.
+   * 
+   * @param criticalPathScheduling true to prioritise jobs on the critical path, false to dispatch them in plan order
+   */
+  public void setCriticalPathScheduling(final boolean criticalPathScheduling) {
+    _criticalPathScheduling = criticalPathScheduling;
+  }
+
+  /**
+   * Returns whether jobs are prioritised by their position on the critical path.
+   * 
+   * @return true if jobs are prioritised by their position on the critical path
+   * @see #setCriticalPathScheduling
+   */
+  public boolean isCriticalPathScheduling() {
+    return _criticalPathScheduling;
+  }
+
   private GraphExecutionPlan createSingleNodePlan(final DependencyGraph graph, final ExecutionLogModeSource logModeSource, final long functionInitializationId,
       final Set<ValueSpecification> sharedValues, final Map<ValueSpecification, FunctionParameters> parameters) {
     return s_smallJobPlanner.createPlan(graph, logModeSource, functionInitializationId, sharedValues, parameters);
@@ -480,6 +503,13 @@ public class MultipleNodeExecutionPlanner implements GraphExecutionPlanner {
     } while (true);
     findTailFragments(allFragments);
     exportPrivateValues(context, allFragments);
+    if (isCriticalPathScheduling()) {
+      long criticalPath = 0;
+      for (GraphFragment fragment : allFragments) {
+        criticalPath = Math.max(criticalPath, fragment.getCriticalPathCost());
+      }
+      s_logger.debug("Estimated critical path cost {}ns for {}", criticalPath, graph);
+    }
     long totalSize = 0;
     long totalInvocationCost = 0;
     long totalDataCost = 0;
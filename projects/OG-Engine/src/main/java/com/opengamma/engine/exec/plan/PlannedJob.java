@@ -29,13 +29,20 @@ public class PlannedJob implements Serializable {
   private final CacheSelectHint _cacheSelectHint;
   private final PlannedJob[] _tails;
   private final PlannedJob[] _dependents;
+  private final long _priority;
 
   public PlannedJob(final int inputJobs, final List<CalculationJobItem> items, final CacheSelectHint cacheSelectHint, final PlannedJob[] tails, final PlannedJob[] dependents) {
+    this(inputJobs, items, cacheSelectHint, tails, dependents, 0L);
+  }
+
+  public PlannedJob(final int inputJobs, final List<CalculationJobItem> items, final CacheSelectHint cacheSelectHint, final PlannedJob[] tails, final PlannedJob[] dependents,
+      final long priority) {
     _inputJobs = inputJobs;
     _items = items;
     _cacheSelectHint = cacheSelectHint;
     _tails = tails;
     _dependents = dependents;
+    _priority = priority;
   }
 
   /**
@@ -85,6 +92,17 @@ public class PlannedJob implements Serializable {
     return _dependents;
   }
 
+  /**
+   * Returns the scheduling priority of the job. When several jobs are executable, those with a higher priority are dispatched first.
+   * <p>
+   * A planner that is aware of the critical path will use the estimated cost, in nanoseconds, of the longest chain of work that starts with this job. Otherwise this is 0.
+   * 
+   * @return the priority
+   */
+  protected long getPriority() {
+    return _priority;
+  }
+
   /**
    * Creates a concrete calculation job that can be executed.
    * <p>
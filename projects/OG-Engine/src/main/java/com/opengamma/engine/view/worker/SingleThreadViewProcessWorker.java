@@ -49,6 +49,9 @@ import com.opengamma.engine.ComputationTarget;
 import com.opengamma.engine.ComputationTargetResolver;
 import com.opengamma.engine.ComputationTargetSpecification;
 import com.opengamma.engine.MemoryUtils;
+import com.opengamma.engine.cache.DefaultViewComputationCacheSource;
+import com.opengamma.engine.cache.IdentifierMap;
+import com.opengamma.engine.cache.ViewComputationCacheSource;
 import com.opengamma.engine.depgraph.DependencyGraph;
 import com.opengamma.engine.depgraph.DependencyGraphExplorer;
 import com.opengamma.engine.depgraph.DependencyNode;
@@ -1276,11 +1279,11 @@ public class SingleThreadViewProcessWorker implements ViewProcessWorker, MarketD
   }
 
   private Map<String, PartiallyCompiledGraph> invalidateMarketDataSourcingNodes(Map<String, PartiallyCompiledGraph> previousGraphs, final CompiledViewDefinitionWithGraphs viewDefinition,
-      final VersionCorrection versionCorrection, final Set<UniqueId> unchangedNodes) {
+      final VersionCorrection versionCorrection, final List<RootDiscardingSubgrapher> filters) {
     final RootDiscardingSubgrapher filter = getInvalidMarketData(previousGraphs, viewDefinition, versionCorrection);
     if (filter != null) {
       previousGraphs = getPreviousGraphs(previousGraphs, viewDefinition);
-      filterPreviousGraphs(previousGraphs, filter, unchangedNodes);
+      filters.add(filter);
     }
     return previousGraphs;
   }
@@ -1346,6 +1349,8 @@ public class SingleThreadViewProcessWorker implements ViewProcessWorker, MarketD
         Set<UniqueId> changedPositions = null;
         Set<UniqueId> unchangedNodes = null;
         ViewCompilationServices compilationServices = null;
+        // Invalidation filters are collected and then applied in a single pass over the previous graphs
+        final List<RootDiscardingSubgrapher> filters = new ArrayList<>();
         if (!_forceGraphRebuild.getAndSet(false)) {
           compiledViewDefinition = getCachedCompiledViewDefinition(valuationTime, versionCorrection);
           boolean marketDataProviderDirty = _marketDataManager.isMarketDataProviderDirty();
@@ -1430,7 +1435,7 @@ public class SingleThreadViewProcessWorker implements ViewProcessWorker, MarketD
                   // Remove any PORTFOLIO nodes and any unmapped PORTFOLIO_NODE nodes with the filter
                   filterPreviousGraphs(previousGraphs, new InvalidPortfolioDependencyNodeFilter(unmapped), null);
                   // Invalidate any dependency graph nodes on the invalid targets
-                  filterPreviousGraphs(previousGraphs, new InvalidTargetDependencyNodeFilter(invalidIdentifiers.keySet()), unchangedNodes);
+                  filters.add(new InvalidTargetDependencyNodeFilter(invalidIdentifiers.keySet()));
                 } else {
                   compiledViewDefinition = compiledViewDefinition.withResolverVersionCorrection(versionCorrection);
                   cacheCompiledViewDefinition(compiledViewDefinition);
@@ -1440,11 +1445,14 @@ public class SingleThreadViewProcessWorker implements ViewProcessWorker, MarketD
                 // Invalidate any dependency graph nodes that use functions that are no longer valid
                 previousGraphs = getPreviousGraphs(previousGraphs, compiledViewDefinition);
                 compilationServices = getProcessContext().asCompilationServices(_marketDataManager.getAvailabilityProvider());
-                filterPreviousGraphs(previousGraphs, new InvalidFunctionDependencyNodeFilter(compilationServices.getFunctionResolver().compile(valuationTime), valuationTime), unchangedNodes);
+                filters.add(new InvalidFunctionDependencyNodeFilter(compilationServices.getFunctionResolver().compile(valuationTime), valuationTime));
               }
               if (marketDataProviderDirty) {
                 // Invalidate any graph nodes that use market data which is no longer valid
-                previousGraphs = invalidateMarketDataSourcingNodes(previousGraphs, compiledViewDefinition, versionCorrection, unchangedNodes);
+                previousGraphs = invalidateMarketDataSourcingNodes(previousGraphs, compiledViewDefinition, versionCorrection, filters);
+              }
+              if (!filters.isEmpty()) {
+                filterPreviousGraphs(previousGraphs, RootDiscardingSubgrapher.allOf(filters), unchangedNodes);
               }
               if (previousGraphs == null) {
                 // Existing cached model is valid (an optimization for the common case of similar, increasing valuation times)
@@ -1481,6 +1489,7 @@ public class SingleThreadViewProcessWorker implements ViewProcessWorker, MarketD
                 .atVersionCorrection(versionCorrection);
             compiledViewDefinition = initialiseMarketDataManipulation(compiledViewDefinition, resolver);
             cacheCompiledViewDefinition(compiledViewDefinition);
+            prefetchIdentifiers(compiledViewDefinition);
           } else {
             return null;
           }
@@ -1658,6 +1667,33 @@ public class SingleThreadViewProcessWorker implements ViewProcessWorker, MarketD
     return cached;
   }
 
+  /**
+   * Allocates computation cache identifiers for every value produced by the compiled graphs in a single batch per
+   * calculation configuration, rather than piecemeal as each job is dispatched to the calculation nodes.
+   * 
+   * @param compiledViewDefinition the newly compiled view definition, not null
+   */
+  private void prefetchIdentifiers(final CompiledViewDefinitionWithGraphs compiledViewDefinition) {
+    final ViewComputationCacheSource cacheSource = getProcessContext().getComputationCacheSource();
+    if (!(cacheSource instanceof DefaultViewComputationCacheSource)) {
+      return;
+    }
+    final IdentifierMap identifierMap = ((DefaultViewComputationCacheSource) cacheSource).getIdentifierMap();
+    for (final DependencyGraphExplorer explorer : compiledViewDefinition.getDependencyGraphExplorers()) {
+      final DependencyGraph graph = explorer.getWholeGraph();
+      final List<ValueSpecification> values = new ArrayList<>(graph.getSize());
+      final Iterator<DependencyNode> itr = graph.nodeIterator();
+      while (itr.hasNext()) {
+        final DependencyNode node = itr.next();
+        final int count = node.getOutputCount();
+        for (int i = 0; i < count; i++) {
+          values.add(node.getOutputValue(i));
+        }
+      }
+      identifierMap.getIdentifiers(values);
+    }
+  }
+
   /**
    * Replaces the cached compiled view definition.
    * <p>
@@ -0,0 +1,378 @@
+/**
+ * Copyright (C) 2014 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.engine.view.worker.cache;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.threeten.bp.Instant;
+
+import com.opengamma.OpenGammaRuntimeException;
+import com.opengamma.core.position.Portfolio;
+import com.opengamma.engine.ComputationTarget;
+import com.opengamma.engine.ComputationTargetResolver;
+import com.opengamma.engine.ComputationTargetSpecification;
+import com.opengamma.engine.depgraph.DependencyGraph;
+import com.opengamma.engine.depgraph.DependencyGraphExplorer;
+import com.opengamma.engine.function.CompiledFunctionService;
+import com.opengamma.engine.function.FunctionDefinition;
+import com.opengamma.engine.function.FunctionRepository;
+import com.opengamma.engine.target.ComputationTargetReference;
+import com.opengamma.engine.target.ComputationTargetType;
+import com.opengamma.engine.view.ViewDefinition;
+import com.opengamma.engine.view.compilation.CompiledViewCalculationConfiguration;
+import com.opengamma.engine.view.compilation.CompiledViewDefinitionWithGraphs;
+import com.opengamma.engine.view.compilation.CompiledViewDefinitionWithGraphsImpl;
+import com.opengamma.id.UniqueId;
+import com.opengamma.id.VersionCorrection;
+import com.opengamma.util.ArgumentChecker;
+import com.opengamma.util.NamedThreadPoolFactory;
+
+/**
+ * A {@link ViewExecutionCache} that also writes compiled view definitions to files in a local directory so that they survive a restart of the
+ * view processor.
+ * <p>
+ * Compiled view definitions are held by an underlying cache and written to disk in the background; only the most recent definition for a key is
+ * written if several are stored in quick succession. On a miss in the underlying cache the file for the key is read. The file records a
+ * fingerprint of the function repository; if this no longer matches, the file is discarded and the view will be compiled from scratch.
+ * Otherwise the graphs are restored against the current function initialization identifier. The restored definition keeps its original
+ * resolver version/correction and validity range, so the worker will check every target resolution against the master change logs and
+ * revalidate the functions used before the first cycle, compiling incrementally only the parts of the graph that are no longer valid.
+ * <p>
+ * Functions are identified in the fingerprint by their unique identifier, class and short name. If function parameters are changed without
+ * changing any of these then the directory must be cleared.
+ */
+public class FileViewExecutionCache implements ViewExecutionCache {
+
+  private static final Logger s_logger = LoggerFactory.getLogger(FileViewExecutionCache.class);
+
+  private static final String FILE_SUFFIX = ".cvd";
+
+  private static final int FORMAT_VERSION = 1;
+
+  private final ViewExecutionCache _underlying;
+
+  private final File _directory;
+
+  private final CompiledFunctionService _functions;
+
+  private final Executor _writer;
+
+  private final ConcurrentMap<ViewExecutionCacheKey, CompiledViewDefinitionWithGraphs> _pendingWrites = new ConcurrentHashMap<ViewExecutionCacheKey, CompiledViewDefinitionWithGraphs>();
+
+  private FunctionRepository _fingerprintRepository;
+
+  private long _fingerprint;
+
+  /**
+   * Creates a new instance, writing files on a background thread.
+   *
+   * @param underlying the cache to hold the compiled view definitions in memory, not null
+   * @param directory the directory to write files to, not null
+   * @param functions the compiled function service, holding the function repository and a computation target resolver, not null
+   */
+  public FileViewExecutionCache(final ViewExecutionCache underlying, final File directory, final CompiledFunctionService functions) {
+    this(underlying, directory, functions, Executors.newSingleThreadExecutor(new NamedThreadPoolFactory("FileViewExecutionCache", true)));
+  }
+
+  /**
+   * Creates a new instance.
+   *
+   * @param underlying the cache to hold the compiled view definitions in memory, not null
+   * @param directory the directory to write files to, not null
+   * @param functions the compiled function service, holding the function repository and a computation target resolver, not null
+   * @param writer the executor to write files with, not null
+   */
+  public FileViewExecutionCache(final ViewExecutionCache underlying, final File directory, final CompiledFunctionService functions, final Executor writer) {
+    ArgumentChecker.notNull(underlying, "underlying");
+    ArgumentChecker.notNull(directory, "directory");
+    ArgumentChecker.notNull(functions, "functions");
+    ArgumentChecker.notNull(writer, "writer");
+    if (!directory.isDirectory() && !directory.mkdirs() && !directory.isDirectory()) {
+      throw new OpenGammaRuntimeException("Couldn't create cache directory " + directory);
+    }
+    _underlying = underlying;
+    _directory = directory;
+    _functions = functions;
+    _writer = writer;
+  }
+
+  public ViewExecutionCache getUnderlying() {
+    return _underlying;
+  }
+
+  public File getDirectory() {
+    return _directory;
+  }
+
+  protected ComputationTargetResolver getTargetResolver() {
+    return _functions.getFunctionCompilationContext().getRawComputationTargetResolver();
+  }
+
+  /**
+   * Returns a fingerprint of the current function repository. Graphs written with one fingerprint can't be restored when the repository has a
+   * different one as the function identifiers in the nodes may now mean something else.
+   *
+   * @return the fingerprint
+   */
+  protected synchronized long getFunctionRepositoryFingerprint() {
+    final FunctionRepository repository = _functions.getFunctionRepository();
+    if (repository != _fingerprintRepository) {
+      final Collection<FunctionDefinition> functions = repository.getAllFunctions();
+      final List<String> identities = new ArrayList<String>(functions.size());
+      for (FunctionDefinition function : functions) {
+        identities.add(function.getUniqueId() + "\u0000" + function.getClass().getName() + "\u0000" + function.getShortName());
+      }
+      Collections.sort(identities);
+      long fingerprint = 1125899906842597L;
+      for (String identity : identities) {
+        for (int i = 0; i < identity.length(); i++) {
+          fingerprint = 31 * fingerprint + identity.charAt(i);
+        }
+        fingerprint = 31 * fingerprint + '\n';
+      }
+      _fingerprint = fingerprint;
+      _fingerprintRepository = repository;
+    }
+    return _fingerprint;
+  }
+
+  /**
+   * Returns the file used for a key. The name is a digest of the serialized key so that it is the same in every process.
+   *
+   * @param key the cache key, not null
+   * @return the file, not null
+   */
+  /* package */File getFile(final ViewExecutionCacheKey key) {
+    try {
+      final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      final ObjectOutputStream out = new ObjectOutputStream(bytes);
+      out.writeObject(key);
+      out.close();
+      final byte[] digest = MessageDigest.getInstance("SHA-1").digest(bytes.toByteArray());
+      final StringBuilder name = new StringBuilder(digest.length * 2 + FILE_SUFFIX.length());
+      for (byte b : digest) {
+        name.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+      }
+      return new File(_directory, name.append(FILE_SUFFIX).toString());
+    } catch (IOException | NoSuchAlgorithmException e) {
+      throw new OpenGammaRuntimeException("Couldn't create file name for " + key, e);
+    }
+  }
+
+  /**
+   * The serialized form of a compiled view definition. The view definition and portfolio are written as identifiers and resolved again when
+   * the file is read.
+   */
+  private static final class Entry implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final VersionCorrection _versionCorrection;
+    private final String _compilationId;
+    private final UniqueId _viewDefinition;
+    private final Collection<DependencyGraph> _graphs;
+    private final Map<ComputationTargetReference, UniqueId> _resolutions;
+    private final UniqueId _portfolio;
+    private final Collection<CompiledViewCalculationConfiguration> _calcConfigs;
+    private final Instant _validFrom;
+    private final Instant _validTo;
+
+    private Entry(final CompiledViewDefinitionWithGraphs viewDef) {
+      _versionCorrection = viewDef.getResolverVersionCorrection();
+      _compilationId = viewDef.getCompilationIdentifier();
+      _viewDefinition = viewDef.getViewDefinition().getUniqueId();
+      final Collection<DependencyGraphExplorer> graphs = viewDef.getDependencyGraphExplorers();
+      _graphs = new ArrayList<DependencyGraph>(graphs.size());
+      for (DependencyGraphExplorer explorer : graphs) {
+        _graphs.add(explorer.getWholeGraph());
+      }
+      _resolutions = viewDef.getResolvedIdentifiers();
+      _portfolio = (viewDef.getPortfolio() != null) ? viewDef.getPortfolio().getUniqueId() : null;
+      _calcConfigs = new ArrayList<CompiledViewCalculationConfiguration>(viewDef.getCompiledCalculationConfigurations());
+      _validFrom = viewDef.getValidFrom();
+      _validTo = viewDef.getValidTo();
+    }
+
+    private CompiledViewDefinitionWithGraphs restore(final ComputationTargetResolver resolver, final long functionInitId) {
+      final ComputationTarget viewDefinition = resolver.resolve(new ComputationTargetSpecification(ComputationTargetType.of(ViewDefinition.class), _viewDefinition),
+          VersionCorrection.LATEST);
+      if (viewDefinition == null) {
+        s_logger.info("View definition {} no longer available", _viewDefinition);
+        return null;
+      }
+      Portfolio portfolio = null;
+      if (_portfolio != null) {
+        final ComputationTarget target = resolver.resolve(new ComputationTargetSpecification(ComputationTargetType.PORTFOLIO, _portfolio), _versionCorrection);
+        if (target == null) {
+          s_logger.info("Portfolio {} no longer available", _portfolio);
+          return null;
+        }
+        portfolio = (Portfolio) target.getValue();
+      }
+      return new CompiledViewDefinitionWithGraphsImpl(_versionCorrection, _compilationId, (ViewDefinition) viewDefinition.getValue(), _graphs, _resolutions, portfolio,
+          functionInitId, _calcConfigs, _validFrom, _validTo);
+    }
+
+  }
+
+  /**
+   * Writes the most recently stored definition for a key to its file.
+   *
+   * @param key the cache key, not null
+   */
+  /* package */void write(final ViewExecutionCacheKey key) {
+    final CompiledViewDefinitionWithGraphs viewDefinition = _pendingWrites.remove(key);
+    if (viewDefinition == null) {
+      // Already written
+      return;
+    }
+    try {
+      final File file = getFile(key);
+      final File temp = File.createTempFile("write", ".tmp", _directory);
+      try {
+        final ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(temp))));
+        try {
+          out.writeInt(FORMAT_VERSION);
+          out.writeLong(getFunctionRepositoryFingerprint());
+          out.writeObject(key);
+          out.writeObject(new Entry(viewDefinition));
+        } finally {
+          out.close();
+        }
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        s_logger.info("Wrote CompiledViewDefinitionWithGraphs for {} to {}", key, file);
+      } finally {
+        if (temp.exists() && !temp.delete()) {
+          s_logger.warn("Couldn't delete {}", temp);
+        }
+      }
+    } catch (IOException | RuntimeException e) {
+      s_logger.warn("Couldn't write CompiledViewDefinitionWithGraphs for {}: {}", key, e.getMessage());
+      s_logger.debug("Caught exception", e);
+    }
+  }
+
+  /**
+   * Reads a definition from the file for a key.
+   *
+   * @param key the cache key, not null
+   * @return the definition, or null if there is no valid file
+   */
+  /* package */CompiledViewDefinitionWithGraphs read(final ViewExecutionCacheKey key) {
+    final File file = getFile(key);
+    if (!file.isFile()) {
+      return null;
+    }
+    final Long functionInitId = _functions.getFunctionCompilationContext().getFunctionInitId();
+    if (functionInitId == null) {
+      s_logger.debug("Functions not initialized; ignoring {}", file);
+      return null;
+    }
+    CompiledViewDefinitionWithGraphs viewDefinition = null;
+    boolean discard = true;
+    try {
+      final ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(new GZIPInputStream(new FileInputStream(file))));
+      try {
+        if (in.readInt() != FORMAT_VERSION) {
+          s_logger.info("Discarding {} written in a different format", file);
+        } else if (in.readLong() != getFunctionRepositoryFingerprint()) {
+          s_logger.info("Discarding {} written for a different function repository", file);
+        } else if (!key.equals(in.readObject())) {
+          s_logger.warn("Ignoring {} written for a different key", file);
+          discard = false;
+        } else {
+          viewDefinition = ((Entry) in.readObject()).restore(getTargetResolver(), functionInitId);
+          discard = viewDefinition == null;
+        }
+      } finally {
+        in.close();
+      }
+    } catch (IOException | ClassNotFoundException | RuntimeException e) {
+      s_logger.warn("Couldn't read CompiledViewDefinitionWithGraphs from {}: {}", file, e.getMessage());
+      s_logger.debug("Caught exception", e);
+    }
+    if (discard && !file.delete()) {
+      s_logger.warn("Couldn't delete {}", file);
+    }
+    return viewDefinition;
+  }
+
+  // ViewExecutionCache
+
+  @Override
+  public CompiledViewDefinitionWithGraphs getCompiledViewDefinitionWithGraphs(final ViewExecutionCacheKey key) {
+    CompiledViewDefinitionWithGraphs viewDefinition = _underlying.getCompiledViewDefinitionWithGraphs(key);
+    if (viewDefinition != null) {
+      return viewDefinition;
+    }
+    viewDefinition = _pendingWrites.get(key);
+    if (viewDefinition != null) {
+      return viewDefinition;
+    }
+    viewDefinition = read(key);
+    if (viewDefinition != null) {
+      s_logger.info("Restored CompiledViewDefinitionWithGraphs for {}", key);
+      _underlying.setCompiledViewDefinitionWithGraphs(key, viewDefinition);
+    } else {
+      s_logger.debug("File cache miss CompiledViewDefinitionWithGraphs for {}", key);
+    }
+    return viewDefinition;
+  }
+
+  @Override
+  public void setCompiledViewDefinitionWithGraphs(final ViewExecutionCacheKey key, final CompiledViewDefinitionWithGraphs viewDefinition) {
+    _underlying.setCompiledViewDefinitionWithGraphs(key, viewDefinition);
+    if (_pendingWrites.put(key, viewDefinition) == null) {
+      _writer.execute(new Runnable() {
+        @Override
+        public void run() {
+          write(key);
+        }
+      });
+    }
+  }
+
+  @Override
+  public void clear() {
+    _underlying.clear();
+    _pendingWrites.clear();
+    final File[] files = _directory.listFiles();
+    if (files != null) {
+      for (File file : files) {
+        if (file.getName().endsWith(FILE_SUFFIX) && !file.delete()) {
+          s_logger.warn("Couldn't delete {}", file);
+        }
+      }
+    }
+  }
+
+}
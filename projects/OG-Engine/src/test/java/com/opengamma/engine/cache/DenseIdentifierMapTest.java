@@ -0,0 +1,50 @@
+/**
+ * Copyright (C) 2014 - present by OpenGamma Inc. and the OpenGamma group of companies
+ * 
+ * Please see distribution for license.
+ */
+package com.opengamma.engine.cache;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertNull;
+
+import org.testng.annotations.Test;
+
+import com.opengamma.engine.value.ValueSpecification;
+import com.opengamma.util.test.TestGroup;
+
+/**
+ * Tests the {@link DenseIdentifierMap} class.
+ */
+@Test(groups = TestGroup.INTEGRATION)
+public class DenseIdentifierMapTest extends AbstractIdentifierMapTest {
+
+  @Override
+  protected IdentifierMap createIdentifierMap(String testName) {
+    return new DenseIdentifierMap(16);
+  }
+
+  @Test
+  public void arrayOperations() {
+    final DenseIdentifierMap idMap = new DenseIdentifierMap(16);
+    final ValueSpecification[] specs = new ValueSpecification[1000];
+    for (int i = 0; i < specs.length; i++) {
+      specs[i] = getValueSpec("value-" + (i % 500));
+    }
+    final long[] identifiers = new long[specs.length];
+    idMap.getIdentifiers(specs, identifiers);
+    assertEquals(500, idMap.size());
+    for (int i = 0; i < 500; i++) {
+      assertEquals(identifiers[i], identifiers[i + 500]);
+      assertEquals(identifiers[i], idMap.getIdentifier(specs[i]));
+    }
+    final ValueSpecification[] resolved = new ValueSpecification[specs.length];
+    idMap.getValueSpecifications(identifiers, resolved);
+    for (int i = 0; i < specs.length; i++) {
+      assertEquals(specs[i], resolved[i]);
+    }
+    assertNull(idMap.getValueSpecification(0L));
+    assertNull(idMap.getValueSpecification(501L));
+  }
+
+}
@@ -0,0 +1,145 @@
+/**
+ * Copyright (C) 2014 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.engine.cache;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.testng.annotations.Test;
+
+import com.opengamma.id.UniqueId;
+import com.opengamma.util.test.TestGroup;
+
+/**
+ * Tests the {@link OffHeapBinaryDataStore} class.
+ */
+@Test(groups = TestGroup.UNIT)
+public class OffHeapBinaryDataStoreTest {
+
+  private static final ViewComputationCacheKey KEY = new ViewComputationCacheKey(UniqueId.of("Test", "Cycle"), "Default");
+
+  private static byte[] data(final int length, final int seed) {
+    final byte[] data = new byte[length];
+    for (int i = 0; i < length; i++) {
+      data[i] = (byte) (seed + i);
+    }
+    return data;
+  }
+
+  private static OffHeapBinaryDataStoreFactory factory(final long maxDirectMemory) {
+    return new OffHeapBinaryDataStoreFactory(1024, maxDirectMemory, new File(System.getProperty("java.io.tmpdir")));
+  }
+
+  public void testPutGet() {
+    final BinaryDataStore store = factory(1 << 20).createDataStore(KEY);
+    for (int i = 0; i < 100; i++) {
+      store.put(i, data(i * 7, i));
+    }
+    for (int i = 0; i < 100; i++) {
+      assertTrue(Arrays.equals(store.get(i), data(i * 7, i)));
+    }
+    assertNull(store.get(100));
+    store.delete();
+    assertNull(store.get(0));
+  }
+
+  public void testBulkPutGet() {
+    final BinaryDataStore store = factory(1 << 20).createDataStore(KEY);
+    final Map<Long, byte[]> values = new HashMap<Long, byte[]>();
+    for (int i = 0; i < 50; i++) {
+      values.put((long) i, data(i, i));
+    }
+    store.put(values);
+    final Map<Long, byte[]> result = store.get(Arrays.asList(0L, 10L, 49L, 50L));
+    assertEquals(result.size(), 3);
+    assertTrue(Arrays.equals(result.get(10L), data(10, 10)));
+    assertTrue(Arrays.equals(result.get(49L), data(49, 49)));
+    store.delete();
+  }
+
+  public void testLargeValue() {
+    final BinaryDataStore store = factory(1 << 20).createDataStore(KEY);
+    store.put(1L, data(10, 1));
+    store.put(2L, data(5000, 2));
+    store.put(3L, data(10, 3));
+    assertTrue(Arrays.equals(store.get(1L), data(10, 1)));
+    assertTrue(Arrays.equals(store.get(2L), data(5000, 2)));
+    assertTrue(Arrays.equals(store.get(3L), data(10, 3)));
+    store.delete();
+  }
+
+  public void testOverwriteAndCompact() {
+    final OffHeapBinaryDataStore store = (OffHeapBinaryDataStore) factory(1 << 20).createDataStore(KEY);
+    for (int j = 0; j < 20; j++) {
+      for (int i = 0; i < 10; i++) {
+        store.put(i, data(100, i + j));
+      }
+    }
+    for (int i = 0; i < 10; i++) {
+      assertTrue(Arrays.equals(store.get(i), data(100, i + 19)));
+    }
+    store.compact();
+    assertEquals(store.getAllocatedBytes(), 2048L);
+    for (int i = 0; i < 10; i++) {
+      assertTrue(Arrays.equals(store.get(i), data(100, i + 19)));
+    }
+    store.delete();
+  }
+
+  public void testSpillToMappedFile() {
+    final OffHeapBinaryDataStoreFactory factory = factory(2048);
+    final BinaryDataStore store = factory.createDataStore(KEY);
+    for (int i = 0; i < 30; i++) {
+      store.put(i, data(200, i));
+    }
+    assertEquals(factory.getDirectMemoryInUse(), 2048L);
+    assertTrue(factory.getMappedMemoryInUse() > 0);
+    for (int i = 0; i < 30; i++) {
+      assertTrue(Arrays.equals(store.get(i), data(200, i)));
+    }
+    store.delete();
+    assertEquals(factory.getDirectMemoryInUse(), 0L);
+    assertEquals(factory.getMappedMemoryInUse(), 0L);
+    // the direct slabs are pooled, a new store uses them before mapping any
+    assertEquals(factory.getPooledDirectMemory(), 2048L);
+    final BinaryDataStore store2 = factory.createDataStore(KEY);
+    store2.put(0, data(200, 0));
+    assertEquals(factory.getDirectMemoryInUse(), 1024L);
+    assertEquals(factory.getPooledDirectMemory(), 1024L);
+    assertEquals(factory.getMappedMemoryInUse(), 0L);
+    assertTrue(Arrays.equals(store2.get(0), data(200, 0)));
+    store2.delete();
+    assertEquals(factory.getPooledDirectMemory(), 2048L);
+  }
+
+  public void testSpillFileRegionsReused() {
+    final OffHeapBinaryDataStoreFactory factory = factory(0);
+    final OffHeapBinaryDataStore store = (OffHeapBinaryDataStore) factory.createDataStore(KEY);
+    for (int j = 0; j < 10; j++) {
+      for (int i = 0; i < 10; i++) {
+        store.put(i, data(200, i + j));
+      }
+      store.compact();
+    }
+    // live values fit in two slabs, compaction needs them twice over and the released regions are reused
+    assertEquals(store.getAllocatedBytes(), 2048L);
+    assertEquals(factory.getMappedMemoryInUse(), 2048L);
+    assertTrue(store.getSpillFileBytes() <= 6144L);
+    for (int i = 0; i < 10; i++) {
+      assertTrue(Arrays.equals(store.get(i), data(200, i + 9)));
+    }
+    store.delete();
+    assertEquals(factory.getMappedMemoryInUse(), 0L);
+    assertEquals(store.getSpillFileBytes(), 0L);
+  }
+
+}
@@ -0,0 +1,156 @@
+/**
+ * Copyright (C) 2014 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.engine.cache;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.commons.io.FileUtils;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.opengamma.OpenGammaRuntimeException;
+import com.opengamma.id.UniqueId;
+import com.opengamma.util.test.TestGroup;
+
+/**
+ * Tests the {@link SharedMemoryBinaryDataStore} class. The separate factories stand in for separate processes.
+ */
+@Test(groups = TestGroup.UNIT, singleThreaded = true)
+public class SharedMemoryBinaryDataStoreTest {
+
+  private static final ViewComputationCacheKey KEY = new ViewComputationCacheKey(UniqueId.of("Test", "Cycle", "1"), "Default");
+
+  private File _root;
+
+  @BeforeMethod
+  public void createRoot() {
+    _root = new File(System.getProperty("java.io.tmpdir"), "SharedMemoryBinaryDataStoreTest-" + System.nanoTime());
+  }
+
+  @AfterMethod
+  public void deleteRoot() throws IOException {
+    FileUtils.deleteDirectory(_root);
+  }
+
+  private static byte[] data(final int length, final int seed) {
+    final byte[] data = new byte[length];
+    for (int i = 0; i < length; i++) {
+      data[i] = (byte) (seed * 31 + i);
+    }
+    return data;
+  }
+
+  public void testOwnValues() {
+    final BinaryDataStore store = new SharedMemoryBinaryDataStoreFactory(_root, true, 8, 1024).createDataStore(KEY);
+    for (int i = 0; i < 50; i++) {
+      store.put(i, data(100, i));
+    }
+    for (int i = 0; i < 50; i++) {
+      assertTrue(Arrays.equals(store.get(i), data(100, i)));
+    }
+    assertNull(store.get(50));
+    store.delete();
+  }
+
+  public void testSharedBetweenProcesses() {
+    final BinaryDataStore owner = new SharedMemoryBinaryDataStoreFactory(_root, true, 8, 1024).createDataStore(KEY);
+    final BinaryDataStore node1 = new SharedMemoryBinaryDataStoreFactory(_root, false, 8, 1024).createDataStore(KEY);
+    final BinaryDataStore node2 = new SharedMemoryBinaryDataStoreFactory(_root, false, 8, 1024).createDataStore(KEY);
+    owner.put(1L, data(10, 1));
+    node1.put(2L, data(20, 2));
+    node2.put(3L, data(5000, 3));
+    for (BinaryDataStore store : Arrays.asList(owner, node1, node2)) {
+      assertTrue(Arrays.equals(store.get(1L), data(10, 1)));
+      assertTrue(Arrays.equals(store.get(2L), data(20, 2)));
+      assertTrue(Arrays.equals(store.get(3L), data(5000, 3)));
+      assertNull(store.get(4L));
+    }
+    node1.put(4L, data(40, 4));
+    final Map<Long, byte[]> values = node2.get(Arrays.asList(1L, 2L, 4L, 5L));
+    assertEquals(values.size(), 3);
+    assertTrue(Arrays.equals(values.get(4L), data(40, 4)));
+    node1.delete();
+    node2.delete();
+    // Nodes don't remove the shared files, the owner does
+    assertTrue(Arrays.equals(owner.get(2L), data(20, 2)));
+    final File directory = ((SharedMemoryBinaryDataStore) owner).getDirectory();
+    assertTrue(directory.isDirectory());
+    owner.delete();
+    assertFalse(directory.exists());
+  }
+
+  public void testBulkPutAcrossSegments() {
+    final BinaryDataStore owner = new SharedMemoryBinaryDataStoreFactory(_root, true, 8, 1024).createDataStore(KEY);
+    final BinaryDataStore node = new SharedMemoryBinaryDataStoreFactory(_root, false, 8, 1024).createDataStore(KEY);
+    final Map<Long, byte[]> values = new HashMap<Long, byte[]>();
+    for (int i = 0; i < 30; i++) {
+      values.put((long) i, data(100, i));
+    }
+    // the values fill several segments, each is committed before the next is started
+    node.put(values);
+    for (BinaryDataStore store : Arrays.asList(owner, node)) {
+      for (int i = 0; i < 30; i++) {
+        assertTrue(Arrays.equals(store.get(i), data(100, i)));
+      }
+    }
+    final File directory = ((SharedMemoryBinaryDataStore) owner).getDirectory();
+    assertTrue(directory.list().length > 1);
+    node.delete();
+    owner.delete();
+    assertFalse(directory.exists());
+  }
+
+  public void testReplacedValue() {
+    final BinaryDataStore owner = new SharedMemoryBinaryDataStoreFactory(_root, true, 8, 1024).createDataStore(KEY);
+    final BinaryDataStore node = new SharedMemoryBinaryDataStoreFactory(_root, false, 8, 1024).createDataStore(KEY);
+    owner.put(1L, data(10, 1));
+    owner.put(1L, data(10, 2));
+    assertTrue(Arrays.equals(owner.get(1L), data(10, 2)));
+    assertTrue(Arrays.equals(node.get(1L), data(10, 2)));
+    node.delete();
+    owner.delete();
+  }
+
+  public void testNodeAfterOwnerDeleted() {
+    final BinaryDataStore owner = new SharedMemoryBinaryDataStoreFactory(_root, true, 8, 1024).createDataStore(KEY);
+    final File directory = ((SharedMemoryBinaryDataStore) owner).getDirectory();
+    owner.put(1L, data(10, 1));
+    owner.delete();
+    assertFalse(directory.exists());
+    final BinaryDataStore node = new SharedMemoryBinaryDataStoreFactory(_root, false, 8, 1024).createDataStore(KEY);
+    assertNull(node.get(1L));
+    try {
+      node.put(2L, data(10, 2));
+      fail();
+    } catch (OpenGammaRuntimeException e) {
+      // expected, the cycle has been released
+    }
+    assertFalse(directory.exists());
+    node.delete();
+  }
+
+  public void testDistinctCaches() {
+    final SharedMemoryBinaryDataStoreFactory factory = new SharedMemoryBinaryDataStoreFactory(_root, true);
+    final BinaryDataStore store1 = factory.createDataStore(KEY);
+    final BinaryDataStore store2 = factory.createDataStore(new ViewComputationCacheKey(KEY.getViewCycleId(), "Other"));
+    store1.put(1L, data(10, 1));
+    assertNull(store2.get(1L));
+    store1.delete();
+    store2.delete();
+  }
+
+}
@@ -11,6 +11,7 @@ import static org.testng.Assert.assertSame;
 import static org.testng.Assert.assertTrue;
 
 import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.Callable;
 import java.util.concurrent.CyclicBarrier;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -188,4 +189,29 @@ public class RunQueueTest {
     testLIFO(RunQueueFactory.getOrdered());
   }
 
+  public void testWorkStealingRunQueue() throws Exception {
+    testSpeed(RunQueueFactory.getWorkStealing());
+    testLIFO(RunQueueFactory.getWorkStealing());
+    // Another thread steals the oldest task
+    final RunQueue queue = RunQueueFactory.getWorkStealing().createRunQueue();
+    final ContextRunnable r1 = runnable();
+    final ContextRunnable r2 = runnable();
+    final ContextRunnable r3 = runnable();
+    queue.add(r1);
+    queue.add(r2);
+    queue.add(r3);
+    final Callable<ContextRunnable> take = new Callable<ContextRunnable>() {
+      @Override
+      public ContextRunnable call() {
+        return queue.take();
+      }
+    };
+    assertSame(_executor.submit(take).get(), r1);
+    assertEquals(queue.size(), 2);
+    assertSame(queue.take(), r3);
+    assertSame(_executor.submit(take).get(), r2);
+    assertTrue(queue.isEmpty());
+    assertEquals(_executor.submit(take).get(), null);
+  }
+
 }
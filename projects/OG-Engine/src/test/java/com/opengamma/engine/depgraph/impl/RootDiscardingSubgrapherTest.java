@@ -9,6 +9,7 @@ import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertNull;
 import static org.testng.Assert.assertSame;
 
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Set;
 
@@ -219,4 +220,16 @@ public class RootDiscardingSubgrapherTest {
     assertEquals(missing, ImmutableSet.of(req(7), req(8)));
   }
 
+  public void testAllOf() {
+    final RootDiscardingSubgrapher filter = RootDiscardingSubgrapher.allOf(Arrays.asList(new InvalidTargetDependencyNodeFilter(ImmutableSet.of(id(3))),
+        new InvalidTargetDependencyNodeFilter(ImmutableSet.of(id(8)))));
+    final Set<ValueRequirement> missing = new HashSet<ValueRequirement>();
+    final DependencyGraph graph = largeGraph();
+    assertEquals(filter.subGraph(graph, missing).getSize(), 4);
+    assertEquals(missing, ImmutableSet.of(req(7), req(8)));
+    missing.clear();
+    assertEquals(filter.subGraph(DependencyGraphImpl.getRootNodes(graph), graph.getTerminalOutputs(), missing).size(), 2);
+    assertEquals(missing, ImmutableSet.of(req(7), req(8)));
+  }
+
 }
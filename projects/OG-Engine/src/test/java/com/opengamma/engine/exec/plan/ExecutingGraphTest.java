@@ -136,4 +136,28 @@ public class ExecutingGraphTest {
     assertNull(executing.nextExecutableJob());
     assertTrue(executing.isFinished());
   }
+
+  public void priorityTest() {
+    final PlannedJob job4 = new PlannedJob(3, createJobItems(4), CacheSelectHint.allShared(), null, null, 5L);
+    final PlannedJob job1 = new PlannedJob(0, createJobItems(1), CacheSelectHint.allShared(), null, new PlannedJob[] {job4 }, 10L);
+    final PlannedJob job2 = new PlannedJob(0, createJobItems(2), CacheSelectHint.allShared(), null, new PlannedJob[] {job4 }, 30L);
+    final PlannedJob job3 = new PlannedJob(0, createJobItems(3), CacheSelectHint.allShared(), null, new PlannedJob[] {job4 }, 20L);
+    final GraphExecutionPlan plan = new GraphExecutionPlan("Default", 0, Arrays.asList(job1, job2, job3), 0, 4d, 4d, 4d);
+    final ExecutingGraph executing = new ExecutingGraph(plan, UniqueId.of("Cycle", "Test"), Instant.now(), VersionCorrection.LATEST);
+    // Most expensive chain first
+    final CalculationJob job2c = executing.nextExecutableJob();
+    assertJob(job2c, 2);
+    final CalculationJob job3c = executing.nextExecutableJob();
+    assertJob(job3c, 3);
+    final CalculationJob job1c = executing.nextExecutableJob();
+    assertJob(job1c, 1);
+    assertNull(executing.nextExecutableJob());
+    executing.jobCompleted(job1c.getSpecification());
+    executing.jobCompleted(job2c.getSpecification());
+    assertNull(executing.nextExecutableJob());
+    executing.jobCompleted(job3c.getSpecification());
+    assertJob(executing.nextExecutableJob(), 4);
+    assertNull(executing.nextExecutableJob());
+  }
+
 }
@@ -0,0 +1,188 @@
+/**
+ * Copyright (C) 2014 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.engine.view.worker.cache;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+import org.apache.commons.io.FileUtils;
+import org.mockito.Mockito;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import org.threeten.bp.Instant;
+
+import com.google.common.collect.ImmutableMap;
+import com.opengamma.core.position.Portfolio;
+import com.opengamma.core.position.impl.SimplePortfolio;
+import com.opengamma.engine.ComputationTarget;
+import com.opengamma.engine.ComputationTargetResolver;
+import com.opengamma.engine.ComputationTargetSpecification;
+import com.opengamma.engine.depgraph.DependencyGraph;
+import com.opengamma.engine.depgraph.builder.TestDependencyGraphBuilder;
+import com.opengamma.engine.depgraph.builder.TestDependencyGraphBuilder.NodeBuilder;
+import com.opengamma.engine.function.CompiledFunctionService;
+import com.opengamma.engine.function.FunctionCompilationContext;
+import com.opengamma.engine.function.FunctionDefinition;
+import com.opengamma.engine.function.InMemoryFunctionRepository;
+import com.opengamma.engine.target.ComputationTargetReference;
+import com.opengamma.engine.target.ComputationTargetRequirement;
+import com.opengamma.engine.target.ComputationTargetType;
+import com.opengamma.engine.view.ViewCalculationConfiguration;
+import com.opengamma.engine.view.ViewDefinition;
+import com.opengamma.engine.view.compilation.CompiledViewCalculationConfiguration;
+import com.opengamma.engine.view.compilation.CompiledViewCalculationConfigurationImpl;
+import com.opengamma.engine.view.compilation.CompiledViewDefinitionWithGraphs;
+import com.opengamma.engine.view.compilation.CompiledViewDefinitionWithGraphsImpl;
+import com.opengamma.id.ExternalId;
+import com.opengamma.id.UniqueId;
+import com.opengamma.id.VersionCorrection;
+import com.opengamma.util.test.TestGroup;
+
+/**
+ * Tests the {@link FileViewExecutionCache} class.
+ */
+@Test(groups = TestGroup.UNIT, singleThreaded = true)
+public class FileViewExecutionCacheTest {
+
+  private static final Executor SYNCHRONOUS = new Executor() {
+    @Override
+    public void execute(final Runnable command) {
+      command.run();
+    }
+  };
+
+  private final Instant _now = Instant.now();
+  private final ViewExecutionCacheKey _key = new ViewExecutionCacheKey(UniqueId.of("Key", "1"), "Foo", "No-op");
+  private File _directory;
+
+  @BeforeMethod
+  public void createDirectory() {
+    _directory = new File(System.getProperty("java.io.tmpdir"), "FileViewExecutionCacheTest-" + System.nanoTime());
+  }
+
+  @AfterMethod
+  public void deleteDirectory() throws IOException {
+    FileUtils.deleteDirectory(_directory);
+  }
+
+  private Portfolio createPortfolio() {
+    return new SimplePortfolio(UniqueId.of("Portfolio", "0", "V"), "Portfolio");
+  }
+
+  private ViewDefinition createViewDefinition() {
+    final ViewDefinition viewDefinition = new ViewDefinition("TestView", UniqueId.of("Portfolio", "0"), "TestUser");
+    viewDefinition.setUniqueId(UniqueId.of("View", "0", "V"));
+    return viewDefinition;
+  }
+
+  private DependencyGraph createDependencyGraph() {
+    final TestDependencyGraphBuilder gb = new TestDependencyGraphBuilder("Default");
+    final NodeBuilder n1 = gb.addNode("Foo", ComputationTargetSpecification.NULL);
+    n1.addTerminalOutput("Foo");
+    final NodeBuilder n2 = gb.addNode("Bar", ComputationTargetSpecification.NULL);
+    n1.addInput(n2.addOutput("Bar"));
+    return gb.buildGraph();
+  }
+
+  private CompiledViewDefinitionWithGraphs createCompiledViewDefinitionWithGraphs() {
+    final ViewDefinition viewDefinition = createViewDefinition();
+    viewDefinition.addViewCalculationConfiguration(new ViewCalculationConfiguration(viewDefinition, "Default"));
+    final DependencyGraph graph = createDependencyGraph();
+    final Collection<DependencyGraph> graphs = Collections.singleton(graph);
+    final Collection<CompiledViewCalculationConfiguration> calcConfigs = Collections.<CompiledViewCalculationConfiguration>singleton(CompiledViewCalculationConfigurationImpl.of(graph));
+    final Map<ComputationTargetReference, UniqueId> resolutions = ImmutableMap.<ComputationTargetReference, UniqueId>of(new ComputationTargetRequirement(ComputationTargetType.SECURITY,
+        ExternalId.of("Security", "Foo")), UniqueId.of("Sec", "0"));
+    return new CompiledViewDefinitionWithGraphsImpl(VersionCorrection.of(_now, _now), "", viewDefinition, graphs, resolutions, createPortfolio(), 0, calcConfigs, null, null);
+  }
+
+  private FunctionDefinition createFunction(final String uniqueId) {
+    final FunctionDefinition function = Mockito.mock(FunctionDefinition.class);
+    Mockito.when(function.getUniqueId()).thenReturn(uniqueId);
+    Mockito.when(function.getShortName()).thenReturn(uniqueId);
+    return function;
+  }
+
+  private CompiledFunctionService createFunctions(final long functionInitId, final String... functionIds) {
+    final ComputationTargetResolver targetResolver = Mockito.mock(ComputationTargetResolver.class);
+    Mockito.when(targetResolver.resolve(new ComputationTargetSpecification(ComputationTargetType.PORTFOLIO, UniqueId.of("Portfolio", "0", "V")), VersionCorrection.of(_now, _now)))
+        .thenReturn(new ComputationTarget(ComputationTargetType.PORTFOLIO, createPortfolio()));
+    Mockito.when(targetResolver.resolve(new ComputationTargetSpecification(ComputationTargetType.of(ViewDefinition.class), UniqueId.of("View", "0", "V")), VersionCorrection.LATEST))
+        .thenReturn(new ComputationTarget(ComputationTargetType.of(ViewDefinition.class), createViewDefinition()));
+    final FunctionCompilationContext context = new FunctionCompilationContext();
+    context.setRawComputationTargetResolver(targetResolver);
+    context.setFunctionInitId(functionInitId);
+    final InMemoryFunctionRepository repository = new InMemoryFunctionRepository();
+    for (String functionId : functionIds) {
+      repository.addFunction(createFunction(functionId));
+    }
+    final CompiledFunctionService functions = Mockito.mock(CompiledFunctionService.class);
+    Mockito.when(functions.getFunctionCompilationContext()).thenReturn(context);
+    Mockito.when(functions.getFunctionRepository()).thenReturn(repository);
+    return functions;
+  }
+
+  private FileViewExecutionCache createCache(final CompiledFunctionService functions) {
+    return new FileViewExecutionCache(new InMemoryViewExecutionCache(), _directory, functions, SYNCHRONOUS);
+  }
+
+  public void testMiss() {
+    final FileViewExecutionCache cache = createCache(createFunctions(1L, "Foo", "Bar"));
+    assertNull(cache.getCompiledViewDefinitionWithGraphs(_key));
+  }
+
+  public void testUnderlyingHit() {
+    final FileViewExecutionCache cache = createCache(createFunctions(1L, "Foo", "Bar"));
+    final CompiledViewDefinitionWithGraphs object = createCompiledViewDefinitionWithGraphs();
+    cache.setCompiledViewDefinitionWithGraphs(_key, object);
+    assertSame(cache.getCompiledViewDefinitionWithGraphs(_key), object);
+    assertTrue(cache.getFile(_key).isFile());
+  }
+
+  public void testRestart() {
+    final CompiledViewDefinitionWithGraphs object = createCompiledViewDefinitionWithGraphs();
+    createCache(createFunctions(1L, "Foo", "Bar")).setCompiledViewDefinitionWithGraphs(_key, object);
+    // A new cache on the same directory stands in for the restarted process
+    final FileViewExecutionCache cache = createCache(createFunctions(2L, "Bar", "Foo"));
+    final CompiledViewDefinitionWithGraphs restored = cache.getCompiledViewDefinitionWithGraphs(_key);
+    assertNotNull(restored);
+    assertEquals(((CompiledViewDefinitionWithGraphsImpl) restored).getFunctionInitId(), 2L);
+    assertEquals(restored.getCompiledCalculationConfigurations(), object.getCompiledCalculationConfigurations());
+    assertEquals(restored.getPortfolio(), object.getPortfolio());
+    assertEquals(restored.getResolvedIdentifiers(), object.getResolvedIdentifiers());
+    assertEquals(restored.getResolverVersionCorrection(), object.getResolverVersionCorrection());
+    assertEquals(restored.getDependencyGraphExplorer("Default").getWholeGraph().getSize(), 2);
+    // Now held by the underlying cache
+    assertSame(cache.getCompiledViewDefinitionWithGraphs(_key), restored);
+  }
+
+  public void testFunctionRepositoryChanged() {
+    createCache(createFunctions(1L, "Foo", "Bar")).setCompiledViewDefinitionWithGraphs(_key, createCompiledViewDefinitionWithGraphs());
+    final FileViewExecutionCache cache = createCache(createFunctions(2L, "Foo", "Bar", "Cow"));
+    assertNull(cache.getCompiledViewDefinitionWithGraphs(_key));
+    assertFalse(cache.getFile(_key).exists());
+  }
+
+  public void testClear() {
+    final FileViewExecutionCache cache = createCache(createFunctions(1L, "Foo", "Bar"));
+    cache.setCompiledViewDefinitionWithGraphs(_key, createCompiledViewDefinitionWithGraphs());
+    cache.clear();
+    assertFalse(cache.getFile(_key).exists());
+    assertNull(cache.getCompiledViewDefinitionWithGraphs(_key));
+  }
+
+}
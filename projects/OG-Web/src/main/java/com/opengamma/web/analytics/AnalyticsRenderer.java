@@ -45,7 +45,9 @@ import com.opengamma.web.analytics.formatting.TypeFormatter;
                                             cacheResult.getAggregatedExecutionLog(),
                                             cacheResult.isUpdated(),
                                             columnType,
-                                            inlineKey, format);
+                                            inlineKey,
+                                            format,
+                                            cacheResult.getVersion());
     } else {
       Collection<Object> emptyHistory = cache.emptyHistory(columnType);
       return ResultsCell.empty(emptyHistory, columnType);
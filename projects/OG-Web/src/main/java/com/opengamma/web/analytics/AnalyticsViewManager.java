@@ -189,8 +189,8 @@ public class AnalyticsViewManager {
     ErrorManager errorManager = new ErrorManager(errorId);
     AnalyticsView view = new SimpleAnalyticsView(aggregatedViewDef.getUniqueId(), primitivesOnly, versionCorrection, viewId, portfolioGridId, primitivesGridId, _targetResolver, _functions,
         viewportListener, _blotterColumnMapper, portfolioSupplier, entityExtractor, request.showBlotterColumns(), errorManager);
-    AnalyticsView lockingView = new LockingAnalyticsView(view);
-    AnalyticsView notifyingView = new NotifyingAnalyticsView(lockingView, clientConnection);
+    AnalyticsView concurrentView = new ConcurrentAnalyticsView(view);
+    AnalyticsView notifyingView = new NotifyingAnalyticsView(concurrentView, clientConnection);
     AnalyticsView timingView = new TimingAnalyticsView(notifyingView);
     AnalyticsView catchingView = new CatchingAnalyticsView(timingView, errorManager, clientConnection);
     AutoCloseable securityListener = new MasterNotificationListener<>(_securityMaster, catchingView);
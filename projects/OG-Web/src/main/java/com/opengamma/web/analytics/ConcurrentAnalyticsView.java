@@ -0,0 +1,498 @@
+/**
+ * Copyright (C) 2014 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.web.analytics;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.opengamma.DataNotFoundException;
+import com.opengamma.core.position.Portfolio;
+import com.opengamma.engine.value.ValueRequirement;
+import com.opengamma.engine.view.ViewResultModel;
+import com.opengamma.engine.view.compilation.CompiledViewDefinition;
+import com.opengamma.engine.view.cycle.ViewCycle;
+import com.opengamma.id.UniqueId;
+import com.opengamma.util.ArgumentChecker;
+import com.opengamma.web.analytics.formatting.TypeFormatter.Format;
+
+/**
+ * Wraps another {@link AnalyticsView} and protects it from concurrent access without blocking readers of grid
+ * structures and viewport data while the view is being updated.
+ * <p>
+ * The methods that can mutate the state of the underlying view are locked with a write lock. When a mutating
+ * method completes, the grid structures and viewport data of every grid and viewport are published as an immutable
+ * snapshot. The getters for structures and data read the latest snapshot without locking, so a client can keep
+ * browsing the previous results while a large calculation cycle is being processed and the new results and
+ * structure become visible all at once. Requests for anything that isn't in the snapshot, and the getters for other
+ * state, fall back to calling the underlying view with a read lock.
+ * <p>
+ * This relies on the grid structures and viewport results returned by the underlying view being immutable, they
+ * are replaced rather than modified when the view is updated.
+ * @see com.opengamma.web.analytics Package concurrency notes
+ */
+/* package */ class ConcurrentAnalyticsView implements AnalyticsView {
+
+  private final AnalyticsView _delegate;
+  private final ReadWriteLock _lock = new ReentrantReadWriteLock();
+
+  /** The open dependency graphs, only accessed with the write lock held. */
+  private final Set<Key> _graphKeys = Sets.newHashSet();
+  /** The viewports of all grids, only accessed with the write lock held. */
+  private final Set<Key> _viewportKeys = Sets.newHashSet();
+
+  /** Structures and data published by the last mutating method. */
+  private volatile Snapshot _snapshot = Snapshot.EMPTY;
+
+  /**
+   * @param delegate The delegate view (presumably not a thread safe implementation)
+   */
+  /* package */ ConcurrentAnalyticsView(AnalyticsView delegate) {
+    ArgumentChecker.notNull(delegate, "delegate");
+    _delegate = delegate;
+  }
+
+  @Override
+  public List<String> updateStructure(CompiledViewDefinition compiledViewDefinition, Portfolio portfolio) {
+    try {
+      _lock.writeLock().lock();
+      List<String> ids = _delegate.updateStructure(compiledViewDefinition, portfolio);
+      publishSnapshot();
+      return ids;
+    } finally {
+      _lock.writeLock().unlock();
+    }
+  }
+
+  @Override
+  public String viewCompilationFailed(Throwable t) {
+    try {
+      _lock.writeLock().lock();
+      return _delegate.viewCompilationFailed(t);
+    } finally {
+      _lock.writeLock().unlock();
+    }
+  }
+
+  @Override
+  public List<String> updateResults(ViewResultModel results, ViewCycle viewCycle) {
+    try {
+      _lock.writeLock().lock();
+      List<String> ids = _delegate.updateResults(results, viewCycle);
+      publishSnapshot();
+      return ids;
+    } finally {
+      _lock.writeLock().unlock();
+    }
+  }
+
+  @Override
+  public GridStructure getGridStructure(GridType gridType, int viewportId) {
+    Map<Key, GridStructure> structures = _snapshot._structures;
+    Key key = Key.viewport(gridType, viewportId);
+    if (structures.containsKey(key)) {
+      return structures.get(key);
+    }
+    try {
+      _lock.readLock().lock();
+      return _delegate.getGridStructure(gridType, viewportId);
+    } finally {
+      _lock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public GridStructure getInitialGridStructure(GridType gridType) {
+    Map<Key, GridStructure> structures = _snapshot._structures;
+    Key key = Key.grid(gridType);
+    if (structures.containsKey(key)) {
+      return structures.get(key);
+    }
+    try {
+      _lock.readLock().lock();
+      return _delegate.getInitialGridStructure(gridType);
+    } finally {
+      _lock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public boolean createViewport(int requestId, GridType gridType, int viewportId, String callbackId, String structureCallbackId, ViewportDefinition viewportDefinition) {
+    try {
+      _lock.writeLock().lock();
+      boolean hasData = _delegate.createViewport(requestId, gridType, viewportId, callbackId, structureCallbackId, viewportDefinition);
+      _viewportKeys.add(Key.viewport(gridType, viewportId));
+      publishSnapshot();
+      return hasData;
+    } finally {
+      _lock.writeLock().unlock();
+    }
+  }
+
+  @Override
+  public String updateViewport(GridType gridType, int viewportId, ViewportDefinition viewportDefinition) {
+    try {
+      _lock.writeLock().lock();
+      String callbackId = _delegate.updateViewport(gridType, viewportId, viewportDefinition);
+      publishSnapshot();
+      return callbackId;
+    } finally {
+      _lock.writeLock().unlock();
+    }
+  }
+
+  @Override
+  public void deleteViewport(GridType gridType, int viewportId) {
+    try {
+      _lock.writeLock().lock();
+      _delegate.deleteViewport(gridType, viewportId);
+      _viewportKeys.remove(Key.viewport(gridType, viewportId));
+      publishSnapshot();
+    } finally {
+      _lock.writeLock().unlock();
+    }
+  }
+
+  @Override
+  public ViewportResults getData(GridType gridType, int viewportId) {
+    Map<Key, ViewportResults> data = _snapshot._data;
+    Key key = Key.viewport(gridType, viewportId);
+    if (data.containsKey(key)) {
+      return data.get(key);
+    }
+    try {
+      _lock.readLock().lock();
+      return _delegate.getData(gridType, viewportId);
+    } finally {
+      _lock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public void openDependencyGraph(int requestId, GridType gridType, int graphId, String callbackId, int row, int col) {
+    try {
+      _lock.writeLock().lock();
+      _delegate.openDependencyGraph(requestId, gridType, graphId, callbackId, row, col);
+      _graphKeys.add(Key.graph(gridType, graphId));
+      publishSnapshot();
+    } finally {
+      _lock.writeLock().unlock();
+    }
+  }
+
+  @Override
+  public void openDependencyGraph(int requestId,
+                                  GridType gridType,
+                                  int graphId,
+                                  String callbackId,
+                                  String calcConfigName,
+                                  ValueRequirement valueRequirement) {
+    try {
+      _lock.writeLock().lock();
+      _delegate.openDependencyGraph(requestId, gridType, graphId, callbackId, calcConfigName, valueRequirement);
+      _graphKeys.add(Key.graph(gridType, graphId));
+      publishSnapshot();
+    } finally {
+      _lock.writeLock().unlock();
+    }
+  }
+
+  @Override
+  public void closeDependencyGraph(GridType gridType, int graphId) {
+    try {
+      _lock.writeLock().lock();
+      _delegate.closeDependencyGraph(gridType, graphId);
+      Key graphKey = Key.graph(gridType, graphId);
+      _graphKeys.remove(graphKey);
+      for (Iterator<Key> it = _viewportKeys.iterator(); it.hasNext(); ) {
+        if (it.next().isInGrid(graphKey)) {
+          it.remove();
+        }
+      }
+      publishSnapshot();
+    } finally {
+      _lock.writeLock().unlock();
+    }
+  }
+
+  @Override
+  public GridStructure getGridStructure(GridType gridType, int graphId, int viewportId) {
+    Map<Key, GridStructure> structures = _snapshot._structures;
+    Key key = Key.viewport(gridType, graphId, viewportId);
+    if (structures.containsKey(key)) {
+      return structures.get(key);
+    }
+    try {
+      _lock.readLock().lock();
+      return _delegate.getGridStructure(gridType, graphId, viewportId);
+    } finally {
+      _lock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public GridStructure getInitialGridStructure(GridType gridType, int graphId) {
+    Map<Key, GridStructure> structures = _snapshot._structures;
+    Key key = Key.graph(gridType, graphId);
+    if (structures.containsKey(key)) {
+      return structures.get(key);
+    }
+    try {
+      _lock.readLock().lock();
+      return _delegate.getInitialGridStructure(gridType, graphId);
+    } finally {
+      _lock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public boolean createViewport(int requestId, GridType gridType, int graphId, int viewportId, String callbackId, String structureCallbackId, ViewportDefinition viewportDefinition) {
+    try {
+      _lock.writeLock().lock();
+      boolean hasData = _delegate.createViewport(requestId, gridType, graphId, viewportId, callbackId, structureCallbackId, viewportDefinition);
+      _viewportKeys.add(Key.viewport(gridType, graphId, viewportId));
+      publishSnapshot();
+      return hasData;
+    } finally {
+      _lock.writeLock().unlock();
+    }
+  }
+
+  @Override
+  public String updateViewport(GridType gridType, int graphId, int viewportId, ViewportDefinition viewportDefinition) {
+    try {
+      _lock.writeLock().lock();
+      String callbackId = _delegate.updateViewport(gridType, graphId, viewportId, viewportDefinition);
+      publishSnapshot();
+      return callbackId;
+    } finally {
+      _lock.writeLock().unlock();
+    }
+  }
+
+  @Override
+  public void deleteViewport(GridType gridType, int graphId, int viewportId) {
+    try {
+      _lock.writeLock().lock();
+      _delegate.deleteViewport(gridType, graphId, viewportId);
+      _viewportKeys.remove(Key.viewport(gridType, graphId, viewportId));
+      publishSnapshot();
+    } finally {
+      _lock.writeLock().unlock();
+    }
+  }
+
+  @Override
+  public ViewportResults getData(GridType gridType, int graphId, int viewportId) {
+    Map<Key, ViewportResults> data = _snapshot._data;
+    Key key = Key.viewport(gridType, graphId, viewportId);
+    if (data.containsKey(key)) {
+      return data.get(key);
+    }
+    try {
+      _lock.readLock().lock();
+      return _delegate.getData(gridType, graphId, viewportId);
+    } finally {
+      _lock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public List<String> entityChanged(MasterChangeNotification<?> notification) {
+    try {
+      _lock.writeLock().lock();
+      List<String> ids = _delegate.entityChanged(notification);
+      publishSnapshot();
+      return ids;
+    } finally {
+      _lock.writeLock().unlock();
+    }
+  }
+
+  @Override
+  public List<String> portfolioChanged() {
+    try {
+      _lock.writeLock().lock();
+      List<String> ids = _delegate.portfolioChanged();
+      publishSnapshot();
+      return ids;
+    } finally {
+      _lock.writeLock().unlock();
+    }
+  }
+
+  @Override
+  public ViewportResults getAllGridData(GridType gridType, Format format) {
+    try {
+      _lock.readLock().lock();
+      return _delegate.getAllGridData(gridType, format);
+    } finally {
+      _lock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public UniqueId getViewDefinitionId() {
+    try {
+      _lock.readLock().lock();
+      return _delegate.getViewDefinitionId();
+    } finally {
+      _lock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public List<ErrorInfo> getErrors() {
+    try {
+      _lock.readLock().lock();
+      return _delegate.getErrors();
+    } finally {
+      _lock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public void deleteError(long id) {
+    try {
+      _lock.writeLock().lock();
+      _delegate.deleteError(id);
+    } finally {
+      _lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Reads the structures and data from the delegate and publishes them for readers. Must be called with the
+   * write lock held.
+   */
+  private void publishSnapshot() {
+    Map<Key, GridStructure> structures = Maps.newHashMap();
+    Map<Key, ViewportResults> data = Maps.newHashMap();
+    for (GridType gridType : GridType.values()) {
+      structures.put(Key.grid(gridType), _delegate.getInitialGridStructure(gridType));
+    }
+    // graphs and viewports can disappear when the structure changes, they are dropped from the snapshot and
+    // requests for them are passed to the delegate which fails in the usual way
+    for (Iterator<Key> it = _graphKeys.iterator(); it.hasNext(); ) {
+      Key key = it.next();
+      try {
+        structures.put(key, _delegate.getInitialGridStructure(key._gridType, key._graphId));
+      } catch (DataNotFoundException e) {
+        it.remove();
+      }
+    }
+    for (Iterator<Key> it = _viewportKeys.iterator(); it.hasNext(); ) {
+      Key key = it.next();
+      try {
+        if (key._graphId == Key.NONE) {
+          structures.put(key, _delegate.getGridStructure(key._gridType, key._viewportId));
+          data.put(key, _delegate.getData(key._gridType, key._viewportId));
+        } else {
+          structures.put(key, _delegate.getGridStructure(key._gridType, key._graphId, key._viewportId));
+          data.put(key, _delegate.getData(key._gridType, key._graphId, key._viewportId));
+        }
+      } catch (DataNotFoundException e) {
+        it.remove();
+      }
+    }
+    _snapshot = new Snapshot(structures, data);
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Immutable set of grid structures and viewport data published for readers.
+   */
+  private static final class Snapshot {
+
+    private static final Snapshot EMPTY =
+        new Snapshot(Collections.<Key, GridStructure>emptyMap(), Collections.<Key, ViewportResults>emptyMap());
+
+    /** Structures of grids, dependency graphs and viewports. */
+    private final Map<Key, GridStructure> _structures;
+    /** Data for viewports, values can be null if a viewport doesn't have any data yet. */
+    private final Map<Key, ViewportResults> _data;
+
+    private Snapshot(Map<Key, GridStructure> structures, Map<Key, ViewportResults> data) {
+      _structures = Collections.unmodifiableMap(structures);
+      _data = Collections.unmodifiableMap(data);
+    }
+  }
+
+  /**
+   * Immutable key identifying a grid, a dependency graph or a viewport.
+   */
+  private static final class Key {
+
+    /** Value of the graph or viewport ID for keys that don't refer to a dependency graph or viewport. */
+    private static final int NONE = -1;
+
+    private final GridType _gridType;
+    private final int _graphId;
+    private final int _viewportId;
+
+    private Key(GridType gridType, int graphId, int viewportId) {
+      ArgumentChecker.notNull(gridType, "gridType");
+      _gridType = gridType;
+      _graphId = graphId;
+      _viewportId = viewportId;
+    }
+
+    private static Key grid(GridType gridType) {
+      return new Key(gridType, NONE, NONE);
+    }
+
+    private static Key graph(GridType gridType, int graphId) {
+      return new Key(gridType, graphId, NONE);
+    }
+
+    private static Key viewport(GridType gridType, int viewportId) {
+      return new Key(gridType, NONE, viewportId);
+    }
+
+    private static Key viewport(GridType gridType, int graphId, int viewportId) {
+      return new Key(gridType, graphId, viewportId);
+    }
+
+    /**
+     * @param gridKey Key of a grid or dependency graph
+     * @return true if this is the key of a viewport in the grid or dependency graph
+     */
+    private boolean isInGrid(Key gridKey) {
+      return _gridType == gridKey._gridType && _graphId == gridKey._graphId && _viewportId != NONE;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      Key key = (Key) o;
+      return _gridType == key._gridType && _graphId == key._graphId && _viewportId == key._viewportId;
+    }
+
+    @Override
+    public int hashCode() {
+      int result = _gridType.hashCode();
+      result = 31 * result + _graphId;
+      result = 31 * result + _viewportId;
+      return result;
+    }
+
+    @Override
+    public String toString() {
+      return "Key [_gridType=" + _gridType + ", _graphId=" + _graphId + ", _viewportId=" + _viewportId + "]";
+    }
+  }
+}
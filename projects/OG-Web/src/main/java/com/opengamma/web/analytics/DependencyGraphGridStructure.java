@@ -122,7 +122,10 @@ public class DependencyGraphGridStructure implements GridStructure {
     ViewportResults newResults = new ViewportResults(results,
                                                      viewportDefinition,
                                                      _columnGroups,
-                                                     cache.getLastCalculationDuration(), cache.getValuationTime());
+                                                     cache.getLastCalculationDuration(),
+                                                     cache.getValuationTime(),
+                                                     cache.getCycle(),
+                                                     previousResults);
     Viewport.State state;
     if (previousResults != null && results.equals(previousResults.getResults())) {
       state = Viewport.State.STALE_DATA;
@@ -274,7 +277,15 @@ public class DependencyGraphGridStructure implements GridStructure {
           Collection<Object> history = cacheResult.getHistory();
           Object value = cacheResult.getValue();
           AggregatedExecutionLog executionLog = cacheResult.getAggregatedExecutionLog();
-          return ResultsCell.forCalculatedValue(value, valueSpec, history, executionLog, cacheResult.isUpdated(), columnType, format);
+          return ResultsCell.forCalculatedValue(value,
+                                                valueSpec,
+                                                history,
+                                                executionLog,
+                                                cacheResult.isUpdated(),
+                                                columnType,
+                                                null,
+                                                format,
+                                                cacheResult.getVersion());
         case FUNCTION_NAME_COL:
           String fnName = _fnNames.get(rowIndex);
           return ResultsCell.forStaticValue(fnName, columnType, format);
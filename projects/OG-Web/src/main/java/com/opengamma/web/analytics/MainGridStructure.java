@@ -160,8 +160,18 @@ import com.opengamma.util.tuple.Pairs;
     return "MainGridStructure [_columnGroups=" + _columnGroups + "]";
   }
 
+  /**
+   * Builds the results for a viewport.
+   *
+   * @param viewportDefinition Defines the viewport
+   * @param cache Cache of results for the grid
+   * @param previousResults The viewport's results before the latest update, possibly null. Used to decide which
+   * cells have changed since the previous results
+   * @return The results for the cells in the viewport and the new viewport state
+   */
   public Pair<ViewportResults, Viewport.State> createResults(ViewportDefinition viewportDefinition,
-                                                                    ResultsCache cache) {
+                                                             ResultsCache cache,
+                                                             ViewportResults previousResults) {
     boolean updated = false;
     boolean hasData = false;
     List<ResultsCell> results = Lists.newArrayList();
@@ -185,7 +195,10 @@ import com.opengamma.util.tuple.Pairs;
     ViewportResults viewportResults = new ViewportResults(results,
                                                           viewportDefinition,
                                                           _columnGroups,
-                                                          cache.getLastCalculationDuration(), cache.getValuationTime());
+                                                          cache.getLastCalculationDuration(),
+                                                          cache.getValuationTime(),
+                                                          cache.getCycle(),
+                                                          previousResults);
     return Pairs.of(viewportResults, state);
   }
 
@@ -42,7 +42,7 @@ import com.opengamma.util.tuple.Pair;
    * @param cache The latest results
    */
   /* package */ void updateResults(ResultsCache cache) {
-    Pair<ViewportResults, State> resultsAndState = getGridStructure().createResults(getDefinition() , cache);
+    Pair<ViewportResults, State> resultsAndState = getGridStructure().createResults(getDefinition(), cache, _latestResults);
     _latestResults = resultsAndState.getFirst();
     _state = resultsAndState.getSecond();
   }
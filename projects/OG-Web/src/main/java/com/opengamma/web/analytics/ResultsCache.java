@@ -12,13 +12,13 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
-import org.apache.commons.collections.buffer.CircularFifoBuffer;
 import org.threeten.bp.Duration;
 import org.threeten.bp.Instant;
 
+import com.google.common.base.Objects;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Maps;
-import com.google.common.collect.Sets;
 import com.opengamma.engine.value.ComputedValueResult;
 import com.opengamma.engine.value.ValueSpecification;
 import com.opengamma.engine.view.AggregatedExecutionLog;
@@ -35,6 +35,9 @@ import com.opengamma.util.money.CurrencyAmount;
  * set of results is a full set and subsequent results are deltas. This cache maintains a full set of results
  * which includes every target that has ever had a value calculated. It also keeps track of which values were
  * updated in the previous calculation cycle.</p>
+ * <p>Each item has a version, the ID of the update that last changed its value. Recalculating an item without
+ * changing its value doesn't change its version, so users of the cache can skip items that haven't changed
+ * since a version they have already seen.</p>
  * <p>This class isn't thread safe.</p>
  */
 /* package */ class ResultsCache {
@@ -60,6 +63,15 @@ import com.opengamma.util.money.CurrencyAmount;
   /** ID that's incremented each time results are received, used for keeping track of which items were updated. */
   private long _lastUpdateId;
 
+  /**
+   * The number of main grid calculation cycles whose results have been received. Each item's history contains
+   * one value per cycle, the history of items that weren't updated by a cycle is brought up to date when the item is
+   * next updated rather than when the cycle's results arrive. Reads add the missing values to the copy they return.
+   * If an item's value doesn't change its history only grows by repeating the value, so a client that has the
+   * item's history for an earlier cycle can bring it up to date itself.
+   */
+  private long _cycle;
+
   /** Duration of the last calculation cycle. */
   private Duration _lastCalculationDuration = Duration.ZERO;
   /** Last valuation time */
@@ -72,19 +84,12 @@ import com.opengamma.util.money.CurrencyAmount;
   /* package */ void put(ViewResultModel results) {
     ArgumentChecker.notNull(results, "results");
     _lastUpdateId++;
+    _cycle++;
     _lastCalculationDuration = results.getCalculationDuration();
     _valuationTime = results.getViewCycleExecutionOptions().getValuationTime();
     List<ViewResultEntry> allResults = results.getAllResults();
-    Set<ResultKey> updatedKeys = Sets.newHashSet();
     for (ViewResultEntry result : allResults) {
       put(result.getCalculationConfiguration(), result.getComputedValue());
-      updatedKeys.add(new ResultKey(result.getCalculationConfiguration(), result.getComputedValue().getSpecification()));
-    }
-    // duplicate the last history item for anything that hasn't changed this cycle
-    for (Map.Entry<ResultKey, CacheItem> entry : _results.entrySet()) {
-      if (entry.getValue().getHistory() != null && !updatedKeys.contains(entry.getKey())) {
-        entry.getValue().valueUnchanged();
-      }
     }
   }
 
@@ -113,9 +118,9 @@ import com.opengamma.util.money.CurrencyAmount;
     ResultKey key = new ResultKey(calcConfigName, spec);
     CacheItem cacheResult = _results.get(key);
     if (cacheResult == null) {
-      _results.put(key, new CacheItem(value, result.getAggregatedExecutionLog(), _lastUpdateId));
+      _results.put(key, new CacheItem(value, result.getAggregatedExecutionLog(), _lastUpdateId, _cycle));
     } else {
-      cacheResult.setLatestValue(value, result.getAggregatedExecutionLog(), _lastUpdateId);
+      cacheResult.setLatestValue(value, result.getAggregatedExecutionLog(), _lastUpdateId, _cycle);
     }
   }
 
@@ -146,9 +151,9 @@ import com.opengamma.util.money.CurrencyAmount;
     ObjectId id = entity.getUniqueId().getObjectId();
     CacheItem cacheResult = _entities.get(id);
     if (cacheResult == null) {
-      _entities.put(id, new CacheItem(entity, null, _lastUpdateId));
+      _entities.put(id, new CacheItem(entity, null, _lastUpdateId, _cycle));
     } else {
-      cacheResult.setLatestValue(entity, null, _lastUpdateId);
+      cacheResult.setLatestValue(entity, null, _lastUpdateId, _cycle);
     }
   }
 
@@ -157,7 +162,7 @@ import com.opengamma.util.money.CurrencyAmount;
     if (item != null) {
       // flag whether this result was updated by the last set of results that were put into the cache
       boolean updatedByLastResults = (item.getLastUpdateId() == _lastUpdateId);
-      return Result.forValue(item.getValue(), null, null, updatedByLastResults);
+      return Result.forValue(item.getValue(), null, null, updatedByLastResults, item.getVersion());
     } else {
       return s_emptyResult;
     }
@@ -177,7 +182,11 @@ import com.opengamma.util.money.CurrencyAmount;
     if (item != null) {
       // flag whether this result was updated by the last set of results that were put into the cache
       boolean updatedByLastResults = (item.getLastUpdateId() == _lastUpdateId);
-      return Result.forValue(item.getValue(), item.getHistory(), item.getAggregatedExecutionLog(), updatedByLastResults);
+      return Result.forValue(item.getValue(),
+                             item.getHistory(_cycle),
+                             item.getAggregatedExecutionLog(),
+                             updatedByLastResults,
+                             item.getVersion());
     } else {
       if (s_historyTypes.contains(columnType)) {
         return s_emptyResultWithHistory;
@@ -187,6 +196,21 @@ import com.opengamma.util.money.CurrencyAmount;
     }
   }
 
+  /**
+   * @return ID of the last set of results put into the cache, no item in the cache has a later version
+   */
+  /* package */ long getLastUpdateId() {
+    return _lastUpdateId;
+  }
+
+  /**
+   * @return The number of main grid calculation cycles whose results have been received, the history of every
+   * item is up to date for this cycle
+   */
+  /* package */ long getCycle() {
+    return _cycle;
+  }
+
   /**
    * @return Duration of the last calculation cycle
    */
@@ -226,12 +250,18 @@ import com.opengamma.util.money.CurrencyAmount;
     private final Collection<Object> _history;
     private final boolean _updated;
     private final AggregatedExecutionLog _aggregatedExecutionLog;
+    private final long _version;
 
-    private Result(Object value, Collection<Object> history, AggregatedExecutionLog aggregatedExecutionLog, boolean updated) {
+    private Result(Object value,
+                   Collection<Object> history,
+                   AggregatedExecutionLog aggregatedExecutionLog,
+                   boolean updated,
+                   long version) {
       _value = value;
       _history = history;
       _aggregatedExecutionLog = aggregatedExecutionLog;
       _updated = updated;
+      _version = version;
     }
 
     /**
@@ -256,26 +286,35 @@ import com.opengamma.util.money.CurrencyAmount;
       return _updated;
     }
 
+    /**
+     * @return ID of the update that last changed the value or its execution log, zero if no value has ever been
+     * calculated for the requirement
+     */
+    /* package */ long getVersion() {
+      return _version;
+    }
+
     private static Result forValue(Object value,
                                    Collection<Object> history,
                                    AggregatedExecutionLog aggregatedExecutionLog,
-                                   boolean updated) {
+                                   boolean updated,
+                                   long version) {
       ArgumentChecker.notNull(value, "value");
-      return new Result(value, history, aggregatedExecutionLog, updated);
+      return new Result(value, history, aggregatedExecutionLog, updated, version);
     }
 
     /**
      * @return A result with no value and no history, for value requirements that never have history
      */
     private static Result empty() {
-      return new Result(null, null, null, false);
+      return new Result(null, null, null, false, 0);
     }
 
     /**
      * @return A result with no value and empty history, for value requirements that can have history
      */
     private static Result emptyWithHistory() {
-      return new Result(null, Collections.emptyList(), null, false);
+      return new Result(null, Collections.emptyList(), null, false, 0);
     }
 
     /* package */ AggregatedExecutionLog getAggregatedExecutionLog() {
@@ -288,13 +327,18 @@ import com.opengamma.util.money.CurrencyAmount;
    */
   private static final class CacheItem {
 
-    private Collection<Object> _history;
+    private History _history;
+    /** Copy of the history returned by the last read, reused until the item's version or the cycle changes. */
+    private volatile HistoryList _historyList;
     private Object _latestValue;
     private long _lastUpdateId = -1;
+    private long _version;
+    /** The cycle of the latest value in the history. */
+    private long _historyCycle;
     private AggregatedExecutionLog _aggregatedExecutionLog;
 
-    private CacheItem(Object value, AggregatedExecutionLog executionLog, long lastUpdateId) {
-      setLatestValue(value, executionLog, lastUpdateId);
+    private CacheItem(Object value, AggregatedExecutionLog executionLog, long lastUpdateId, long cycle) {
+      setLatestValue(value, executionLog, lastUpdateId, cycle);
     }
 
     /**
@@ -302,10 +346,18 @@ import com.opengamma.util.money.CurrencyAmount;
      * @param latestValue The value
      * @param executionLog The execution log associated generated when calculating the value
      * @param lastUpdateId ID of the set of results that calculated it
+     * @param cycle The calculation cycle that calculated it
      */
-    @SuppressWarnings("unchecked")
-    private void setLatestValue(Object latestValue, AggregatedExecutionLog executionLog, long lastUpdateId) {
+    private void setLatestValue(Object latestValue, AggregatedExecutionLog executionLog, long lastUpdateId, long cycle) {
       ArgumentChecker.notNull(latestValue, "latestValue");
+      if (_history != null) {
+        // the value didn't change in the cycles since the last update, the history needs an entry for each of them
+        padHistory(cycle - 1);
+      }
+      // the version only changes if the value did, recalculating the same value doesn't make existing copies stale
+      if (!latestValue.equals(_latestValue) || !Objects.equal(executionLog, _aggregatedExecutionLog)) {
+        _version = lastUpdateId;
+      }
       _latestValue = latestValue;
       _lastUpdateId = lastUpdateId;
       _aggregatedExecutionLog = executionLog;
@@ -314,23 +366,43 @@ import com.opengamma.util.money.CurrencyAmount;
       // sentinel types aren't in s_historyTypes) and then when a valid value arrives the type can be checked and
       // history created if required
       if (_history == null && s_historyTypes.contains(latestValue.getClass())) {
-        _history = new CircularFifoBuffer(MAX_HISTORY_SIZE);
+        _history = new History();
       }
       if (_history != null) {
-        _history.add(latestValue);
+        if (cycle == _historyCycle && !_history.isEmpty()) {
+          // dependency graph results for the latest cycle, the history already has a value for this cycle
+          _history.replaceLast(latestValue);
+        } else {
+          _history.add(latestValue);
+        }
       }
+      _historyCycle = cycle;
     }
 
     private Object getValue() {
       return _latestValue;
     }
 
-    /* package */ Collection<Object> getHistory() {
-      if (_history != null) {
-        return Collections.unmodifiableCollection(_history);
-      } else {
+    /**
+     * @param cycle The latest calculation cycle
+     * @return The history including a value for every cycle up to and including {@code cycle}, null if history
+     * isn't stored for the item
+     */
+    private Collection<Object> getHistory(long cycle) {
+      if (_history == null) {
         return null;
       }
+      // the history only changes without changing the version when a cycle repeats the latest value, so the
+      // copy for the same version and cycle is always the same. concurrent readers may both build it, which is
+      // harmless because the list is immutable and the field is only a cache
+      HistoryList historyList = _historyList;
+      if (historyList == null || historyList._version != _version || historyList._cycle != cycle) {
+        // this is called when reading so mustn't modify the history, the missing values are only added to the copy
+        int missingCount = (int) Math.max(0, Math.min(cycle - _historyCycle, MAX_HISTORY_SIZE));
+        historyList = new HistoryList(_version, cycle, _history.toList(missingCount, _latestValue));
+        _historyList = historyList;
+      }
+      return historyList._values;
     }
 
     /**
@@ -341,16 +413,112 @@ import com.opengamma.util.money.CurrencyAmount;
       return _lastUpdateId;
     }
 
+    /**
+     * @return ID of the set of results that last changed the value or execution log of this item.
+     */
+    private long getVersion() {
+      return _version;
+    }
+
     private AggregatedExecutionLog getAggregatedExecutionLog() {
       return _aggregatedExecutionLog;
     }
 
     /**
-     * Invoked when a calculation cycle completes and doesn't update the value for an item. The latest value is
-     * inserted into the history again to ensure the history is up to date.
+     * Inserts the latest value into the history once for each cycle that completed without updating the item.
+     * This ensures the history is up to date without having to visit every item at the end of every cycle.
+     * @param cycle The cycle up to which the history should be filled
+     */
+    private void padHistory(long cycle) {
+      long missingCount = Math.min(cycle - _historyCycle, MAX_HISTORY_SIZE);
+      for (long i = 0; i < missingCount; i++) {
+        _history.add(_latestValue);
+      }
+      _historyCycle = Math.max(_historyCycle, cycle);
+    }
+  }
+
+  /**
+   * Fixed size history of the values of an item, once it's full adding a value discards the oldest. Doubles are
+   * stored in a primitive array to avoid keeping a boxed value for each entry. If a value of any other type is added
+   * the existing values are boxed and all values are stored as objects from then on.
+   */
+  private static final class History {
+
+    private double[] _doubles = new double[MAX_HISTORY_SIZE];
+    private Object[] _objects;
+    /** Index of the oldest value. */
+    private int _start;
+    private int _size;
+
+    private boolean isEmpty() {
+      return _size == 0;
+    }
+
+    /**
+     * Replaces the newest value.
+     * @param value The value
      */
-    private void valueUnchanged() {
-      _history.add(_latestValue);
+    private void replaceLast(Object value) {
+      _size--;
+      add(value);
+    }
+
+    private void add(Object value) {
+      if (_objects == null && !(value instanceof Double)) {
+        _objects = new Object[MAX_HISTORY_SIZE];
+        for (int i = 0; i < _size; i++) {
+          int index = (_start + i) % MAX_HISTORY_SIZE;
+          _objects[index] = _doubles[index];
+        }
+        _doubles = null;
+      }
+      int index = (_start + _size) % MAX_HISTORY_SIZE;
+      if (_objects == null) {
+        _doubles[index] = (Double) value;
+      } else {
+        _objects[index] = value;
+      }
+      if (_size < MAX_HISTORY_SIZE) {
+        _size++;
+      } else {
+        _start = (_start + 1) % MAX_HISTORY_SIZE;
+      }
+    }
+
+    /**
+     * Returns a copy of the values as if a value had been added a number of times, without modifying the history.
+     * @param paddingCount The number of times to add the value, not greater than the maximum history size
+     * @param paddingValue The value
+     * @return A copy of the values, oldest first
+     */
+    private List<Object> toList(int paddingCount, Object paddingValue) {
+      int keepCount = Math.min(_size, MAX_HISTORY_SIZE - paddingCount);
+      Object[] values = new Object[keepCount + paddingCount];
+      for (int i = 0; i < keepCount; i++) {
+        int index = (_start + _size - keepCount + i) % MAX_HISTORY_SIZE;
+        values[i] = _objects == null ? _doubles[index] : _objects[index];
+      }
+      for (int i = keepCount; i < values.length; i++) {
+        values[i] = paddingValue;
+      }
+      return ImmutableList.copyOf(values);
+    }
+  }
+
+  /**
+   * Immutable copy of an item's history for a version of the item and a calculation cycle.
+   */
+  private static final class HistoryList {
+
+    private final long _version;
+    private final long _cycle;
+    private final List<Object> _values;
+
+    private HistoryList(long version, long cycle, List<Object> values) {
+      _version = version;
+      _cycle = cycle;
+      _values = values;
     }
   }
 
@@ -7,6 +7,7 @@ package com.opengamma.web.analytics;
 
 import java.util.Collection;
 
+import com.google.common.base.Objects;
 import com.opengamma.engine.calcnode.MissingValue;
 import com.opengamma.engine.value.ValueSpecification;
 import com.opengamma.engine.view.AggregatedExecutionLog;
@@ -17,6 +18,9 @@ import com.opengamma.web.analytics.formatting.TypeFormatter;
  */
 /* package */ final class ResultsCell {
 
+  /** Version of cells whose value doesn't come from a versioned item in the results cache. */
+  /* package */ static final long NO_VERSION = -1;
+
   private final Object _value;
   private final ValueSpecification _valueSpecification;
   private final Collection<Object> _history;
@@ -25,6 +29,7 @@ import com.opengamma.web.analytics.formatting.TypeFormatter;
   private final Class<?> _type;
   private final Object _inlineKey;
   private final TypeFormatter.Format _format;
+  private final long _version;
 
   private ResultsCell(Object value,
                       ValueSpecification valueSpecification,
@@ -33,7 +38,8 @@ import com.opengamma.web.analytics.formatting.TypeFormatter;
                       boolean updated,
                       Class<?> type,
                       Object inlineKey,
-                      TypeFormatter.Format format) {
+                      TypeFormatter.Format format,
+                      long version) {
     _value = value;
     _valueSpecification = valueSpecification;
     _history = history;
@@ -42,6 +48,7 @@ import com.opengamma.web.analytics.formatting.TypeFormatter;
     _type = type;
     _inlineKey = inlineKey;
     _format = format;
+    _version = version;
   }
 
   /**
@@ -52,7 +59,7 @@ import com.opengamma.web.analytics.formatting.TypeFormatter;
    * @return A cell for displaying the value
    */
   /* package */ static ResultsCell forStaticValue(Object value, Class<?> type, TypeFormatter.Format format, boolean updated) {
-    return new ResultsCell(value, null, null, null, updated, type, null, format);
+    return new ResultsCell(value, null, null, null, updated, type, null, format, NO_VERSION);
   }
 
   // TODO is this version still required? or should all callers be specifying whether the value was updated?
@@ -82,7 +89,7 @@ import com.opengamma.web.analytics.formatting.TypeFormatter;
                                                       boolean updated,
                                                       Class<?> type,
                                                       TypeFormatter.Format format) {
-    return new ResultsCell(value, valueSpecification, history, executionLog, updated, type, null, format);
+    return new ResultsCell(value, valueSpecification, history, executionLog, updated, type, null, format, NO_VERSION);
   }
 
   /* package */ static ResultsCell forCalculatedValue(Object value,
@@ -93,7 +100,29 @@ import com.opengamma.web.analytics.formatting.TypeFormatter;
                                                       Class<?> type,
                                                       Object inlineKey,
                                                       TypeFormatter.Format format) {
-    return new ResultsCell(value, valueSpecification, history, executionLog, updated, type, inlineKey, format);
+    return forCalculatedValue(value, valueSpecification, history, executionLog, updated, type, inlineKey, format, NO_VERSION);
+  }
+
+  /**
+   * Factory method that creates a grid cell for displaying a calculated value from the results cache.
+   * @param value The value
+   * @param valueSpecification The value's specification
+   * @param history The value's history
+   * @param updated true if the value was updated in the last calculation cycle
+   * @param type TODO remove this parameter
+   * @param version The version of the value in the results cache, see {@link ResultsCache.Result#getVersion()}
+   * @return A cell for displaying the value
+   */
+  /* package */ static ResultsCell forCalculatedValue(Object value,
+                                                      ValueSpecification valueSpecification,
+                                                      Collection<Object> history,
+                                                      AggregatedExecutionLog executionLog,
+                                                      boolean updated,
+                                                      Class<?> type,
+                                                      Object inlineKey,
+                                                      TypeFormatter.Format format,
+                                                      long version) {
+    return new ResultsCell(value, valueSpecification, history, executionLog, updated, type, inlineKey, format, version);
   }
 
   /**
@@ -104,7 +133,7 @@ import com.opengamma.web.analytics.formatting.TypeFormatter;
    * @param type TODO remove
    */
   /* package */ static ResultsCell empty(Collection<Object> emptyHistory, Class<?> type) {
-    return new ResultsCell(null, null, emptyHistory, null, false, type, null, TypeFormatter.Format.CELL);
+    return new ResultsCell(null, null, emptyHistory, null, false, type, null, TypeFormatter.Format.CELL, NO_VERSION);
   }
 
   /**
@@ -155,6 +184,37 @@ import com.opengamma.web.analytics.formatting.TypeFormatter;
     return _format;
   }
 
+  /**
+   * @return The version of the cell's value in the results cache, {@link #NO_VERSION} if the value doesn't
+   * come from the cache
+   */
+  /* package */ long getVersion() {
+    return _version;
+  }
+
+  /**
+   * Returns true if this cell would be displayed the same as another cell, ignoring the history which changes every
+   * cycle. If both cells come from the results cache their versions are compared instead of their values, which
+   * avoids comparing large values that haven't been recalculated.
+   * @param other Another cell, possibly null
+   * @return true if the other cell has the same value, specification, execution log and format
+   */
+  /* package */ boolean hasSameValue(ResultsCell other) {
+    if (other == null) {
+      return false;
+    }
+    if (!Objects.equal(_valueSpecification, other._valueSpecification) ||
+        !Objects.equal(_inlineKey, other._inlineKey) ||
+        _format != other._format ||
+        _type != other._type) {
+      return false;
+    }
+    if (_version != NO_VERSION && other._version != NO_VERSION) {
+      return _version == other._version;
+    }
+    return Objects.equal(_value, other._value) && Objects.equal(_executionLog, other._executionLog);
+  }
+
   @Override
   public boolean equals(Object o) {
     if (this == o) {
@@ -43,6 +43,7 @@ import com.opengamma.web.analytics.formatting.TypeFormatter;
  * be called by multiple concurrent threads.
  * 
  * @see LockingAnalyticsView
+ * @see ConcurrentAnalyticsView
  * @see com.opengamma.web.analytics Package concurrency notes
  */
 /* package */class SimpleAnalyticsView implements AnalyticsView {
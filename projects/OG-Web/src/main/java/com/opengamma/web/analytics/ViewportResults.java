@@ -6,6 +6,7 @@
 package com.opengamma.web.analytics;
 
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.commons.lang.builder.EqualsBuilder;
 import org.apache.commons.lang.builder.HashCodeBuilder;
@@ -17,9 +18,22 @@ import com.opengamma.util.ArgumentChecker;
 
 /**
  * Set of calculation results for displaying in the viewport of a grid of analytics data.
+ * <p>
+ * Each set of results has a data version and each cell has the data version of the results in which it last
+ * changed. A client that already has the results with a particular data version can request the results
+ * {@link #since(long) since} that version and only the cells that have changed are sent.
+ * <p>
+ * The history of a cell can grow without the cell changing, by repeating the cell's value once for every
+ * calculation cycle. The results include the {@link #getCycle() cycle} of their history so the client can bring
+ * the history of the cells it already has up to date.
  */
 public class ViewportResults {
 
+  /** Source of data versions, shared by all viewports so versions from different viewports can never be confused. */
+  private static final AtomicLong s_dataVersions = new AtomicLong();
+  /** Base version of results that contain every cell. */
+  private static final long ALL_CELLS = -1;
+
   /** The result values by row. */
   private final List<ResultsCell> _allResults;
   /** The grid columns. */
@@ -30,6 +44,14 @@ public class ViewportResults {
   private final Duration _calculationDuration;
   /** The time at which these results became available. */
   private final Instant _valuationTime;
+  /** The data version of these results. */
+  private final long _dataVersion;
+  /** The data version in which each cell last changed, in the same order as the cells. */
+  private final long[] _cellVersions;
+  /** The calculation cycle of the cells' history. */
+  private final long _cycle;
+  /** Only cells that changed after this data version are sent to the client, {@link #ALL_CELLS} to send all cells. */
+  private final long _baseVersion;
 
   /**
    * @param allResults Cells in the viewport containing the data, history and the value specification. The outer
@@ -41,6 +63,25 @@ public class ViewportResults {
                                 ViewportDefinition viewportDefinition,
                                 GridColumnGroups columns,
                                 Duration calculationDuration, Instant valuationTime) {
+    this(allResults, viewportDefinition, columns, calculationDuration, valuationTime, 0, null);
+  }
+
+  /**
+   * @param allResults Cells in the viewport containing the data, history and the value specification. The outer
+   * list contains the data by rows and the inner lists contain the data for each row
+   * @param viewportDefinition Definition of the rows and columns in the viewport
+   * @param columns The columns in the viewport's grid
+   * @param cycle The calculation cycle of the cells' history, see {@link ResultsCache#getCycle()}
+   * @param previousResults The previous results for the same viewport, possibly null. Cells whose values are the same
+   * as in the previous results keep their previous versions
+   */
+  /* package */ ViewportResults(List<ResultsCell> allResults,
+                                ViewportDefinition viewportDefinition,
+                                GridColumnGroups columns,
+                                Duration calculationDuration,
+                                Instant valuationTime,
+                                long cycle,
+                                ViewportResults previousResults) {
     ArgumentChecker.notNull(allResults, "allResults");
     ArgumentChecker.notNull(columns, "columns");
     ArgumentChecker.notNull(viewportDefinition, "viewportDefinition");
@@ -51,6 +92,44 @@ public class ViewportResults {
     _columns = columns;
     _calculationDuration = calculationDuration;
     _valuationTime = valuationTime;
+    _cycle = cycle;
+    _dataVersion = s_dataVersions.incrementAndGet();
+    _cellVersions = new long[allResults.size()];
+    _baseVersion = ALL_CELLS;
+    // if the viewport has changed the client can't use any of the cells it already has
+    boolean sameCells = previousResults != null &&
+        previousResults.getVersion() == viewportDefinition.getVersion() &&
+        previousResults._allResults.size() == allResults.size();
+    for (int i = 0; i < _cellVersions.length; i++) {
+      if (sameCells && allResults.get(i).hasSameValue(previousResults._allResults.get(i))) {
+        _cellVersions[i] = previousResults._cellVersions[i];
+      } else {
+        _cellVersions[i] = _dataVersion;
+      }
+    }
+  }
+
+  private ViewportResults(ViewportResults results, long baseVersion) {
+    _allResults = results._allResults;
+    _viewportDefinition = results._viewportDefinition;
+    _columns = results._columns;
+    _calculationDuration = results._calculationDuration;
+    _valuationTime = results._valuationTime;
+    _cycle = results._cycle;
+    _dataVersion = results._dataVersion;
+    _cellVersions = results._cellVersions;
+    _baseVersion = baseVersion;
+  }
+
+  /**
+   * Returns a copy of these results that only includes the cells that changed after a data version. The client
+   * passes the data version of the latest results it has received so it's only sent the cells that have changed.
+   * @param baseVersion The data version of results the client already has
+   * @return A copy of the results that only includes cells that have changed since the base version
+   */
+  public ViewportResults since(long baseVersion) {
+    ArgumentChecker.notNegative(baseVersion, "baseVersion");
+    return new ViewportResults(this, baseVersion);
   }
 
   /**
@@ -69,6 +148,43 @@ public class ViewportResults {
     return _viewportDefinition.getVersion();
   }
 
+  /**
+   * @return The version of the data in these results, increases every time a viewport's results are updated
+   */
+  public long getDataVersion() {
+    return _dataVersion;
+  }
+
+  /**
+   * @return The calculation cycle of the cells' history. A cell whose value hasn't changed since earlier results
+   * has the history from those results followed by its value once for each cycle after theirs
+   */
+  /* package */ long getCycle() {
+    return _cycle;
+  }
+
+  /**
+   * @return true if only the cells that changed after the {@link #getBaseVersion() base version} should be sent
+   */
+  /* package */ boolean isDelta() {
+    return _baseVersion != ALL_CELLS;
+  }
+
+  /**
+   * @return The data version of results the client already has, only cells that changed after it are sent
+   */
+  /* package */ long getBaseVersion() {
+    return _baseVersion;
+  }
+
+  /**
+   * @param index The index of a cell in the {@link #getResults() results}
+   * @return The data version of the results in which the cell last changed
+   */
+  /* package */ long getCellVersion(int index) {
+    return _cellVersions[index];
+  }
+
   /**
    * @return The duration of the last calculation cycle.
    */
@@ -38,10 +38,20 @@ import com.opengamma.web.server.conversion.DoubleValueOptionalDecimalPlaceFormat
 
 /**
  * Creates a JSON/CSV object from an instance of {@link ViewportResults}.
+ * <p>
+ * If the results are a {@link ViewportResults#since(long) delta} the JSON only contains the cells that changed after
+ * the base version. Each cell includes its index in the viewport and the cells that aren't included are unchanged.
+ * The JSON always includes the calculation cycle of the history. The history of an unchanged cell grows by
+ * repeating its value once for every cycle, so the client adds the last value of the history it has for the cell
+ * once for each cycle since its previous results, keeping at most 20 values.
  */
 public class ViewportResultsJsonCsvWriter {
 
   private static final String VERSION = "version";
+  private static final String DATA_VERSION = "dataVersion";
+  private static final String CYCLE = "cycle";
+  private static final String BASE_VERSION = "since";
+  private static final String INDEX = "i";
   private static final String VALUE = "v";
   private static final String HISTORY = "h";
   private static final String TYPE = "t";
@@ -117,8 +127,15 @@ public class ViewportResultsJsonCsvWriter {
   // TODO use a Freemarker template - will that perform well enough?
   public String getJson(ViewportResults viewportResults) {
     List<ResultsCell> viewportCells = viewportResults.getResults();
-    List<Object> results = Lists.newArrayListWithCapacity(viewportCells.size());
-    for (ResultsCell cell : viewportCells) {
+    boolean delta = viewportResults.isDelta();
+    long baseVersion = viewportResults.getBaseVersion();
+    List<Object> results = Lists.newArrayListWithCapacity(delta ? 0 : viewportCells.size());
+    for (int i = 0; i < viewportCells.size(); i++) {
+      ResultsCell cell = viewportCells.get(i);
+      // the client already has cells that haven't changed since its version, there's no need to format them
+      if (delta && viewportResults.getCellVersion(i) <= baseVersion) {
+        continue;
+      }
       Object cellValue = cell.getValue();
       ValueSpecification cellValueSpec = cell.getValueSpecification();
       Object formattedValue = _formatter.format(cellValue, cellValueSpec, cell.getFormat(), cell.getInlineKey());
@@ -130,6 +147,9 @@ public class ViewportResultsJsonCsvWriter {
       LogLevel logLevel = maxLogLevel(executionLog);
 
       valueMap.put(VALUE, formattedValue);
+      if (delta) {
+        valueMap.put(INDEX, i);
+      }
       if (columnFormat == UNKNOWN) {
         // if the the column type isn't known then send the type with the value
         valueMap.put(TYPE, _formatter.getDataTypeForValue(cellValue, cellValueSpec).name());
@@ -152,10 +172,16 @@ public class ViewportResultsJsonCsvWriter {
       results.add(valueMap);
     }
     String duration = _durationFormatter.format(new BigDecimal(viewportResults.getCalculationDuration().toMillis()));
-    ImmutableMap<String, Object> resultsMap = ImmutableMap.of(VERSION, viewportResults.getVersion(),
-                                                              CALCULATION_DURATION, duration,
-                                                              DATA, results);
-    return new JSONObject(resultsMap).toString();
+    ImmutableMap.Builder<String, Object> resultsMap = ImmutableMap.builder();
+    resultsMap.put(VERSION, viewportResults.getVersion());
+    resultsMap.put(DATA_VERSION, viewportResults.getDataVersion());
+    resultsMap.put(CYCLE, viewportResults.getCycle());
+    if (delta) {
+      resultsMap.put(BASE_VERSION, baseVersion);
+    }
+    resultsMap.put(CALCULATION_DURATION, duration);
+    resultsMap.put(DATA, results);
+    return new JSONObject(resultsMap.build()).toString();
   }
 
   private static boolean isError(Object value) {
@@ -23,5 +23,9 @@
  * everything below it in the hierarchy are not. Threads that mutate the state must have exclusive access,
  * multiple reader threads can access the structure concurrently. {@link LockingAnalyticsView} is an
  * {@link AnalyticsView} implementation that decorates {@link SimpleAnalyticsView} and enforces this model.</p>
+ * <p>With a single lock, processing a large set of results blocks every client reading data from the view.
+ * {@link ConcurrentAnalyticsView} also enforces the model but publishes the grid structures and viewport data as
+ * an immutable snapshot after each update. Clients read the snapshot without locking and see the previous results
+ * until the update is complete. This is the implementation used by {@link AnalyticsViewManager}.</p>
  */
 package com.opengamma.web.analytics;
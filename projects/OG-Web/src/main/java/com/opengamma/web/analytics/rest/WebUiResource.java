@@ -20,6 +20,7 @@ import javax.ws.rs.PUT;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.UriBuilder;
@@ -255,8 +256,9 @@ public class WebUiResource {
   @GET
   public ViewportResults getViewportData(@PathParam("viewId") String viewId,
                                          @PathParam("gridType") String gridType,
-                                         @PathParam("viewportId") int viewportId) {
-    return _viewManager.getView(viewId).getData(gridType(gridType), viewportId);
+                                         @PathParam("viewportId") int viewportId,
+                                         @QueryParam("since") Long since) {
+    return since(_viewManager.getView(viewId).getData(gridType(gridType), viewportId), since);
   }
 
   @Path("{viewId}/{gridType}/viewports/{viewportId}")
@@ -371,8 +373,9 @@ public class WebUiResource {
   public ViewportResults getDependencyGraphViewportData(@PathParam("viewId") String viewId,
                                                         @PathParam("gridType") String gridType,
                                                         @PathParam("depgraphId") int depgraphId,
-                                                        @PathParam("viewportId") int viewportId) {
-    return _viewManager.getView(viewId).getData(gridType(gridType), depgraphId, viewportId);
+                                                        @PathParam("viewportId") int viewportId,
+                                                        @QueryParam("since") Long since) {
+    return since(_viewManager.getView(viewId).getData(gridType(gridType), depgraphId, viewportId), since);
   }
 
   @Path("{viewId}/{gridType}/depgraphs/{depgraphId}/viewports/{viewportId}")
@@ -442,6 +445,20 @@ public class WebUiResource {
     }
   }
 
+  /**
+   * @param results A viewport's results, possibly null
+   * @param since The data version of the client's copy of the results, null if it doesn't have a copy
+   * @return The results including only the cells that have changed since the client's version, null if the
+   * results are null
+   */
+  private static ViewportResults since(ViewportResults results, Long since) {
+    if (results == null || since == null) {
+      return results;
+    } else {
+      return results.since(since);
+    }
+  }
+
   private static AnalyticsView.GridType gridType(String gridType) {
     return AnalyticsView.GridType.valueOf(gridType.toUpperCase());
   }
@@ -0,0 +1,113 @@
+/**
+ * Copyright (C) 2014 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.web.analytics;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.testng.AssertJUnit.assertSame;
+import static org.testng.AssertJUnit.assertTrue;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.testng.annotations.Test;
+
+import com.opengamma.DataNotFoundException;
+import com.opengamma.engine.view.ViewResultModel;
+import com.opengamma.engine.view.cycle.ViewCycle;
+import com.opengamma.util.test.TestGroup;
+import com.opengamma.web.analytics.AnalyticsView.GridType;
+
+/**
+ * Test.
+ */
+@Test(groups = TestGroup.UNIT)
+public class ConcurrentAnalyticsViewTest {
+
+  private static final ViewportDefinition VIEWPORT_DEF = ViewportDefinition.createEmpty(0);
+
+  /**
+   * checks the data from the previous update can be read while an update is in progress and the data from the
+   * update is visible when it completes
+   */
+  @Test
+  public void readDuringUpdate() throws InterruptedException {
+    final AnalyticsView delegate = mock(AnalyticsView.class);
+    final GridStructure structure = mock(GridStructure.class);
+    final ViewportResults results1 = mock(ViewportResults.class);
+    final ViewportResults results2 = mock(ViewportResults.class);
+    final CountDownLatch updateStarted = new CountDownLatch(1);
+    final CountDownLatch finishUpdate = new CountDownLatch(1);
+    final AtomicReference<ViewportResults> latestResults = new AtomicReference<>(results1);
+    when(delegate.getGridStructure(GridType.PORTFOLIO, 1)).thenReturn(structure);
+    when(delegate.getData(GridType.PORTFOLIO, 1)).thenAnswer(new Answer<ViewportResults>() {
+      @Override
+      public ViewportResults answer(InvocationOnMock invocation) throws Throwable {
+        return latestResults.get();
+      }
+    });
+    when(delegate.updateResults(any(ViewResultModel.class), any(ViewCycle.class))).thenAnswer(new Answer<List<String>>() {
+      @Override
+      public List<String> answer(InvocationOnMock invocation) throws Throwable {
+        updateStarted.countDown();
+        finishUpdate.await();
+        latestResults.set(results2);
+        return Collections.emptyList();
+      }
+    });
+    final ConcurrentAnalyticsView view = new ConcurrentAnalyticsView(delegate);
+    view.createViewport(0, GridType.PORTFOLIO, 1, "callbackId", "structureCallbackId", VIEWPORT_DEF);
+
+    Thread updateThread = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        view.updateResults(mock(ViewResultModel.class), mock(ViewCycle.class));
+      }
+    });
+    updateThread.start();
+    assertTrue(updateStarted.await(10, TimeUnit.SECONDS));
+    // the update thread is holding the write lock, this would block if the data wasn't in the snapshot
+    assertSame(results1, view.getData(GridType.PORTFOLIO, 1));
+    assertSame(structure, view.getGridStructure(GridType.PORTFOLIO, 1));
+    finishUpdate.countDown();
+    updateThread.join(10000);
+    assertSame(results2, view.getData(GridType.PORTFOLIO, 1));
+  }
+
+  @Test(expectedExceptions = DataNotFoundException.class)
+  public void deletedViewport() {
+    AnalyticsView delegate = mock(AnalyticsView.class);
+    ViewportResults results = mock(ViewportResults.class);
+    // the view reads the data when the viewport is created, it isn't in the delegate after it's deleted
+    when(delegate.getData(GridType.PORTFOLIO, 1))
+        .thenReturn(results)
+        .thenThrow(new DataNotFoundException("No viewport"));
+    ConcurrentAnalyticsView view = new ConcurrentAnalyticsView(delegate);
+    view.createViewport(0, GridType.PORTFOLIO, 1, "callbackId", "structureCallbackId", VIEWPORT_DEF);
+    view.deleteViewport(GridType.PORTFOLIO, 1);
+    view.getData(GridType.PORTFOLIO, 1);
+  }
+
+  @Test(expectedExceptions = DataNotFoundException.class)
+  public void closedDependencyGraph() {
+    AnalyticsView delegate = mock(AnalyticsView.class);
+    ViewportResults results = mock(ViewportResults.class);
+    when(delegate.getData(GridType.PRIMITIVES, 2, 1))
+        .thenReturn(results)
+        .thenThrow(new DataNotFoundException("No dependency graph"));
+    ConcurrentAnalyticsView view = new ConcurrentAnalyticsView(delegate);
+    view.openDependencyGraph(0, GridType.PRIMITIVES, 2, "callbackId", 0, 0);
+    view.createViewport(0, GridType.PRIMITIVES, 2, 1, "callbackId", "structureCallbackId", VIEWPORT_DEF);
+    view.closeDependencyGraph(GridType.PRIMITIVES, 2);
+    view.getData(GridType.PRIMITIVES, 2, 1);
+  }
+}
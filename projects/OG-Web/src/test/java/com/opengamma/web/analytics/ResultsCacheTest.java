@@ -9,14 +9,17 @@ import static org.testng.AssertJUnit.assertEquals;
 import static org.testng.AssertJUnit.assertFalse;
 import static org.testng.AssertJUnit.assertNotNull;
 import static org.testng.AssertJUnit.assertNull;
+import static org.testng.AssertJUnit.assertSame;
 import static org.testng.AssertJUnit.assertTrue;
 
 import java.util.ArrayList;
 import java.util.List;
 
 import org.testng.annotations.Test;
+import org.threeten.bp.Duration;
 import org.threeten.bp.Instant;
 
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
 import com.opengamma.engine.ComputationTargetSpecification;
 import com.opengamma.engine.cache.MissingOutput;
@@ -140,4 +143,121 @@ public class ResultsCacheTest {
     assertEquals(1d, history.get(0));
     assertEquals(MissingOutput.EVALUATION_ERROR, history.get(1));
   }
+
+  @Test
+  public void versions() {
+    final ResultsCache cache = new ResultsCache();
+    assertEquals(0, cache.getResult(CALC_CONFIG, _spec1, Double.class).getVersion());
+    cache.put(results(_spec1, 1d, _spec2, 1d));
+    final long version1 = cache.getResult(CALC_CONFIG, _spec1, Double.class).getVersion();
+    assertEquals(cache.getLastUpdateId(), version1);
+
+    // spec1 is recalculated with the same value, spec2 changes
+    cache.put(results(_spec1, 1d, _spec2, 2d));
+    final ResultsCache.Result result1 = cache.getResult(CALC_CONFIG, _spec1, Double.class);
+    final ResultsCache.Result result2 = cache.getResult(CALC_CONFIG, _spec2, Double.class);
+    assertTrue(result1.isUpdated());
+    assertEquals(version1, result1.getVersion());
+    assertEquals(cache.getLastUpdateId(), result2.getVersion());
+  }
+
+  @Test
+  public void historyOfUnchangedValues() {
+    final ResultsCache cache = new ResultsCache();
+    cache.put(results(_spec1, 1d, _spec2, 1d));
+    cache.put(results(_spec1, 2d));
+    cache.put(results(_spec1, 3d));
+    // spec2 wasn't updated by the last two cycles, its value is repeated in the history for each of them
+    assertEquals(Lists.<Object>newArrayList(1d, 1d, 1d),
+                 Lists.newArrayList(cache.getResult(CALC_CONFIG, _spec2, Double.class).getHistory()));
+    cache.put(results(_spec2, 4d));
+    assertEquals(Lists.<Object>newArrayList(1d, 1d, 1d, 4d),
+                 Lists.newArrayList(cache.getResult(CALC_CONFIG, _spec2, Double.class).getHistory()));
+    assertEquals(Lists.<Object>newArrayList(1d, 2d, 3d, 3d),
+                 Lists.newArrayList(cache.getResult(CALC_CONFIG, _spec1, Double.class).getHistory()));
+  }
+
+  @Test
+  public void historySize() {
+    final ResultsCache cache = new ResultsCache();
+    for (int i = 0; i < 25; i++) {
+      cache.put(results(_spec1, (double) i));
+    }
+    final List<Object> history = Lists.newArrayList(cache.getResult(CALC_CONFIG, _spec1, Double.class).getHistory());
+    assertEquals(20, history.size());
+    assertEquals(5d, history.get(0));
+    assertEquals(24d, history.get(19));
+
+    // the history still contains the doubles after a value of a different type is added
+    cache.put(results(_spec1, MissingOutput.EVALUATION_ERROR));
+    final List<Object> history2 = Lists.newArrayList(cache.getResult(CALC_CONFIG, _spec1, Double.class).getHistory());
+    assertEquals(20, history2.size());
+    assertEquals(6d, history2.get(0));
+    assertEquals(24d, history2.get(18));
+    assertEquals(MissingOutput.EVALUATION_ERROR, history2.get(19));
+  }
+
+  @Test
+  public void historyOfUnchangedValuesAfterHistoryIsFull() {
+    final ResultsCache cache = new ResultsCache();
+    for (int i = 0; i < 25; i++) {
+      cache.put(results(_spec1, (double) i, _spec2, (double) i));
+    }
+    for (int i = 0; i < 3; i++) {
+      cache.put(results(_spec1, 0d));
+    }
+    final List<Object> expected = Lists.newArrayList();
+    for (int i = 8; i < 25; i++) {
+      expected.add((double) i);
+    }
+    expected.add(24d);
+    expected.add(24d);
+    expected.add(24d);
+    // reading the history doesn't change it so reading it again gives the same values
+    assertEquals(expected, Lists.newArrayList(cache.getResult(CALC_CONFIG, _spec2, Double.class).getHistory()));
+    assertEquals(expected, Lists.newArrayList(cache.getResult(CALC_CONFIG, _spec2, Double.class).getHistory()));
+    cache.put(results(_spec2, 25d));
+    expected.remove(0);
+    expected.add(25d);
+    assertEquals(expected, Lists.newArrayList(cache.getResult(CALC_CONFIG, _spec2, Double.class).getHistory()));
+  }
+
+  @Test
+  public void historyReusedUntilCycleChanges() {
+    final ResultsCache cache = new ResultsCache();
+    cache.put(results(_spec1, 1d, _spec2, 1d));
+    final Object history1 = cache.getResult(CALC_CONFIG, _spec1, Double.class).getHistory();
+    assertSame(history1, cache.getResult(CALC_CONFIG, _spec1, Double.class).getHistory());
+    // spec1 isn't updated but its history has grown
+    cache.put(results(_spec2, 2d));
+    final Object history2 = cache.getResult(CALC_CONFIG, _spec1, Double.class).getHistory();
+    assertFalse(history1 == history2);
+    assertEquals(Lists.<Object>newArrayList(1d, 1d), Lists.newArrayList((Iterable<?>) history2));
+    assertSame(history2, cache.getResult(CALC_CONFIG, _spec1, Double.class).getHistory());
+  }
+
+  @Test
+  public void dependencyGraphResultsInSameCycle() {
+    final ResultsCache cache = new ResultsCache();
+    cache.put(results(_spec1, 1d));
+    // dependency graph results for the same cycle don't add another value to the history
+    cache.put(CALC_CONFIG,
+              ImmutableMap.of(_spec1, new ComputedValueResult(_spec1, 1d, AggregatedExecutionLog.EMPTY)),
+              Duration.ZERO);
+    assertEquals(Lists.<Object>newArrayList(1d),
+                 Lists.newArrayList(cache.getResult(CALC_CONFIG, _spec1, Double.class).getHistory()));
+    cache.put(results(_spec1, 2d));
+    assertEquals(Lists.<Object>newArrayList(1d, 2d),
+                 Lists.newArrayList(cache.getResult(CALC_CONFIG, _spec1, Double.class).getHistory()));
+  }
+
+  private static InMemoryViewComputationResultModel results(final Object... specsAndValues) {
+    final InMemoryViewComputationResultModel results = new InMemoryViewComputationResultModel();
+    results.setViewCycleExecutionOptions(ViewCycleExecutionOptions.builder().setValuationTime(Instant.now()).create());
+    for (int i = 0; i < specsAndValues.length; i += 2) {
+      final ValueSpecification spec = (ValueSpecification) specsAndValues[i];
+      results.addValue(CALC_CONFIG, new ComputedValueResult(spec, specsAndValues[i + 1], AggregatedExecutionLog.EMPTY));
+    }
+    return results;
+  }
 }
@@ -5,10 +5,12 @@
  */
 package com.opengamma.web.analytics;
 
+import static org.testng.AssertJUnit.assertEquals;
 import static org.testng.AssertJUnit.assertTrue;
 
 import java.util.List;
 
+import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 import org.testng.annotations.Test;
@@ -68,8 +70,8 @@ public class ViewportResultsJsonCsvWriterTest {
     List<ResultsCell> results = createResults("val", null, String.class);
     ViewportResults viewportResults = new ViewportResults(results, _viewportDefinition, createColumns(String.class), DURATION, CALC_TIME);
     String json = _writer.getJson(viewportResults);
-    String expectedJson = "{\"version\":0, \"calculationDuration\":\"1,234\", \"data\":[{\"v\":\"val\"}]}";
-    assertTrue(JsonTestUtils.equal(new JSONObject(expectedJson), new JSONObject(json)));
+    String expectedJson = "{\"version\":0, \"cycle\":0, \"calculationDuration\":\"1,234\", \"data\":[{\"v\":\"val\"}]}";
+    assertTrue(JsonTestUtils.equal(new JSONObject(expectedJson), parse(json)));
   }
 
   @Test
@@ -77,8 +79,8 @@ public class ViewportResultsJsonCsvWriterTest {
     List<ResultsCell> results = createResults(3d, ImmutableList.<Object>of(1d, 2d, 3d), Double.class);
     ViewportResults viewportResults = new ViewportResults(results, _viewportDefinition, createColumns(Double.class), DURATION, CALC_TIME);
     String json = _writer.getJson(viewportResults);
-    String expectedJson = "{\"version\":0, \"calculationDuration\":\"1,234\", \"data\":[{\"v\":\"3.0\",\"h\":[1,2,3]}]}";
-    assertTrue(JsonTestUtils.equal(new JSONObject(expectedJson), new JSONObject(json)));
+    String expectedJson = "{\"version\":0, \"cycle\":0, \"calculationDuration\":\"1,234\", \"data\":[{\"v\":\"3.0\",\"h\":[1,2,3]}]}";
+    assertTrue(JsonTestUtils.equal(new JSONObject(expectedJson), parse(json)));
   }
 
   @Test
@@ -86,8 +88,8 @@ public class ViewportResultsJsonCsvWriterTest {
     List<ResultsCell> results = createResults(3d, null, null);
     ViewportResults viewportResults = new ViewportResults(results, _viewportDefinition, createColumns(null), DURATION, CALC_TIME);
     String json = _writer.getJson(viewportResults);
-    String expectedJson = "{\"version\":0, \"calculationDuration\":\"1,234\", \"data\":[{\"v\":\"3.0\",\"t\":\"DOUBLE\"}]}";
-    assertTrue(JsonTestUtils.equal(new JSONObject(expectedJson), new JSONObject(json)));
+    String expectedJson = "{\"version\":0, \"cycle\":0, \"calculationDuration\":\"1,234\", \"data\":[{\"v\":\"3.0\",\"t\":\"DOUBLE\"}]}";
+    assertTrue(JsonTestUtils.equal(new JSONObject(expectedJson), parse(json)));
   }
 
   @Test
@@ -95,8 +97,8 @@ public class ViewportResultsJsonCsvWriterTest {
     List<ResultsCell> results = createResults(null, null, null);
     ViewportResults viewportResults = new ViewportResults(results, _viewportDefinition, createColumns(null), DURATION, CALC_TIME);
     String json = _writer.getJson(viewportResults);
-    String expectedJson = "{\"version\":0, \"calculationDuration\":\"1,234\", \"data\":[{\"v\":\"\",\"t\":\"STRING\"}]}";
-    assertTrue(JsonTestUtils.equal(new JSONObject(expectedJson), new JSONObject(json)));
+    String expectedJson = "{\"version\":0, \"cycle\":0, \"calculationDuration\":\"1,234\", \"data\":[{\"v\":\"\",\"t\":\"STRING\"}]}";
+    assertTrue(JsonTestUtils.equal(new JSONObject(expectedJson), parse(json)));
   }
 
   @Test
@@ -104,8 +106,8 @@ public class ViewportResultsJsonCsvWriterTest {
     List<ResultsCell> results = createResults(3d, ImmutableList.<Object>of(1d, 2d, 3d), null);
     ViewportResults viewportResults = new ViewportResults(results, _viewportDefinition, createColumns(null), DURATION, CALC_TIME);
     String json = _writer.getJson(viewportResults);
-    String expectedJson = "{\"version\":0, \"calculationDuration\":\"1,234\", \"data\":[{\"v\":\"3.0\",\"t\":\"DOUBLE\",\"h\":[1,2,3]}]}";
-    assertTrue(JsonTestUtils.equal(new JSONObject(expectedJson), new JSONObject(json)));
+    String expectedJson = "{\"version\":0, \"cycle\":0, \"calculationDuration\":\"1,234\", \"data\":[{\"v\":\"3.0\",\"t\":\"DOUBLE\",\"h\":[1,2,3]}]}";
+    assertTrue(JsonTestUtils.equal(new JSONObject(expectedJson), parse(json)));
   }
 
   @Test
@@ -113,8 +115,8 @@ public class ViewportResultsJsonCsvWriterTest {
     List<ResultsCell> results = createResults(MissingOutput.EVALUATION_ERROR, null, String.class);
     ViewportResults viewportResults = new ViewportResults(results, _viewportDefinition, createColumns(String.class), DURATION, CALC_TIME);
     String json = _writer.getJson(viewportResults);
-    String expectedJson = "{\"version\":0, \"calculationDuration\":\"1,234\", \"data\":[{\"v\":\"Evaluation error\", \"error\":true}]}";
-    assertTrue(JsonTestUtils.equal(new JSONObject(expectedJson), new JSONObject(json)));
+    String expectedJson = "{\"version\":0, \"cycle\":0, \"calculationDuration\":\"1,234\", \"data\":[{\"v\":\"Evaluation error\", \"error\":true}]}";
+    assertTrue(JsonTestUtils.equal(new JSONObject(expectedJson), parse(json)));
   }
 
   @Test
@@ -123,8 +125,8 @@ public class ViewportResultsJsonCsvWriterTest {
     List<ResultsCell> results = createResults(MissingOutput.EVALUATION_ERROR, history, Double.class);
     ViewportResults viewportResults = new ViewportResults(results, _viewportDefinition, createColumns(Double.class), DURATION, CALC_TIME);
     String json = _writer.getJson(viewportResults);
-    String expectedJson = "{\"version\":0, \"calculationDuration\":\"1,234\", \"data\":[{\"v\":\"Evaluation error\", \"h\":[1,2,null], \"error\":true}]}";
-    assertTrue(JsonTestUtils.equal(new JSONObject(expectedJson), new JSONObject(json)));
+    String expectedJson = "{\"version\":0, \"cycle\":0, \"calculationDuration\":\"1,234\", \"data\":[{\"v\":\"Evaluation error\", \"h\":[1,2,null], \"error\":true}]}";
+    assertTrue(JsonTestUtils.equal(new JSONObject(expectedJson), parse(json)));
   }
 
   @Test
@@ -133,8 +135,80 @@ public class ViewportResultsJsonCsvWriterTest {
     List<ResultsCell> results = createResults(3d, history, Double.class);
     ViewportResults viewportResults = new ViewportResults(results, _viewportDefinition, createColumns(Double.class), DURATION, CALC_TIME);
     String json = _writer.getJson(viewportResults);
-    String expectedJson = "{\"version\":0, \"calculationDuration\":\"1,234\", \"data\":[{\"v\":\"3.0\",\"h\":[1,null,3]}]}";
-    assertTrue(JsonTestUtils.equal(new JSONObject(expectedJson), new JSONObject(json)));
+    String expectedJson = "{\"version\":0, \"cycle\":0, \"calculationDuration\":\"1,234\", \"data\":[{\"v\":\"3.0\",\"h\":[1,null,3]}]}";
+    assertTrue(JsonTestUtils.equal(new JSONObject(expectedJson), parse(json)));
+  }
+
+  @Test
+  public void delta() throws JSONException {
+    GridColumnGroups columns = createColumns(Double.class);
+    ViewportResults results1 = new ViewportResults(ImmutableList.of(cell(1d, 1), cell(2d, 1)),
+                                                   _viewportDefinition, columns, DURATION, CALC_TIME, 0, null);
+    // the first cell is recalculated with a new value, the second cell hasn't changed
+    ViewportResults results2 = new ViewportResults(ImmutableList.of(cell(3d, 2), cell(2d, 1)),
+                                                   _viewportDefinition, columns, DURATION, CALC_TIME, 0, results1);
+    assertTrue(results2.getDataVersion() > results1.getDataVersion());
+
+    JSONObject json = new JSONObject(_writer.getJson(results2.since(results1.getDataVersion())));
+    assertEquals(results2.getDataVersion(), json.getLong("dataVersion"));
+    assertEquals(results1.getDataVersion(), json.getLong("since"));
+    String expectedData = "[{\"v\":\"3.0\",\"i\":0}]";
+    assertTrue(JsonTestUtils.equal(new JSONArray(expectedData), json.getJSONArray("data")));
+
+    // the client has the latest version so there's nothing to send
+    JSONObject upToDate = new JSONObject(_writer.getJson(results2.since(results2.getDataVersion())));
+    assertEquals(0, upToDate.getJSONArray("data").length());
+
+    // the client has never seen the first results so it needs both cells
+    JSONObject outOfDate = new JSONObject(_writer.getJson(results2.since(results1.getDataVersion() - 1)));
+    assertEquals(2, outOfDate.getJSONArray("data").length());
+  }
+
+  @Test
+  public void deltaWithHistory() throws JSONException {
+    GridColumnGroups columns = createColumns(Double.class);
+    ResultsCell cell1 = ResultsCell.forCalculatedValue(1d, _valueSpec, ImmutableList.<Object>of(1d), null, false, Double.class,
+                                                       null, TypeFormatter.Format.CELL, 1);
+    ResultsCell cell2 = ResultsCell.forCalculatedValue(1d, _valueSpec, ImmutableList.<Object>of(1d, 1d), null, false, Double.class,
+                                                       null, TypeFormatter.Format.CELL, 1);
+    ViewportResults results1 = new ViewportResults(ImmutableList.of(cell1), _viewportDefinition, columns, DURATION, CALC_TIME, 1, null);
+    ViewportResults results2 = new ViewportResults(ImmutableList.of(cell2), _viewportDefinition, columns, DURATION, CALC_TIME, 2, results1);
+    // the value hasn't changed so the cell isn't sent, the client pads its history using the cycle
+    JSONObject json = new JSONObject(_writer.getJson(results2.since(results1.getDataVersion())));
+    assertEquals(2, json.getLong("cycle"));
+    assertEquals(0, json.getJSONArray("data").length());
+  }
+
+  @Test
+  public void deltaAfterViewportChange() throws JSONException {
+    GridColumnGroups columns = createColumns(Double.class);
+    ViewportDefinition viewportDefinition2 = ViewportDefinition.create(1,
+                                                                       ImmutableList.of(0),
+                                                                       ImmutableList.of(0),
+                                                                       ImmutableList.<GridCell>of(),
+                                                                       TypeFormatter.Format.CELL,
+                                                                       false);
+    ViewportResults results1 = new ViewportResults(ImmutableList.of(cell(1d, 1)),
+                                                   _viewportDefinition, columns, DURATION, CALC_TIME, 0, null);
+    ViewportResults results2 = new ViewportResults(ImmutableList.of(cell(1d, 1)),
+                                                   viewportDefinition2, columns, DURATION, CALC_TIME, 0, results1);
+    // the cells might be for different grid positions so they are all sent even if the values haven't changed
+    JSONObject json = new JSONObject(_writer.getJson(results2.since(results1.getDataVersion())));
+    assertEquals(1, json.getJSONArray("data").length());
+  }
+
+  private ResultsCell cell(double value, long version) {
+    return ResultsCell.forCalculatedValue(value, _valueSpec, null, null, false, Double.class, null, TypeFormatter.Format.CELL, version);
+  }
+
+  /**
+   * Parses JSON results and removes the data version which depends on the order the tests run in.
+   */
+  private static JSONObject parse(String json) throws JSONException {
+    JSONObject jsonObject = new JSONObject(json);
+    assertTrue(jsonObject.has("dataVersion"));
+    jsonObject.remove("dataVersion");
+    return jsonObject;
   }
 
   private static class TestCellRenderer implements GridColumn.CellRenderer {
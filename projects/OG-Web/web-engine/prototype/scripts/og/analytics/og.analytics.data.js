@@ -58,7 +58,8 @@ $.register_module({
                 subscribed = false, ROOT = 'rootNode', SETS = 'columnSets',
                 ROWS = 'rowCount', CALC = 'calculationDuration', grid_type = null, depgraph = !!source.depgraph,
                 loading_viewport_id = false, fixed_set = {portfolio: 'Portfolio', primitives: 'Primitives'},
-                bypass_types = config.bypass, structure_promise;
+                bypass_types = config.bypass, structure_promise, cells = null, data_version = null,
+                cycle = null, HISTORY_SIZE = 20;
             data.viewport_id = null;
             var data_handler = (function () {
                 var timeout = null, rate = 500, last = +new Date(), current, delta;
@@ -67,10 +68,43 @@ $.register_module({
                         return og.dev.warn(data.prefix + (result && result.message || 'reset connection'));
                     }
                     if (result.data && result.data.version === viewport_version) {
-                        fire('data', result.data.data);
+                        if (!merge(result.data)) {// the delta can't be applied, the next request gets all the cells
+                            cells = data_version = null;
+                            return;
+                        }
+                        fire('data', cells);
                         fire('cycle', {duration: result.data[CALC]});
                     }
                 };
+                /**
+                 * the history of a cell that hasn't changed grows by repeating its latest value once per cycle
+                 */
+                var pad = function (cell, count) {
+                    var history = cell.h.slice(), last = history[history.length - 1];
+                    while (count--) {history.push(last);}
+                    return $.extend({}, cell, {h: history.slice(-HISTORY_SIZE)});
+                };
+                /**
+                 * results requested with a data version only contain the cells that changed after it, each with its
+                 * index in the viewport. they can only be applied to cells at least as recent as that version
+                 */
+                var merge = function (results) {
+                    var since = results.since, missed;
+                    if (since === void 0) {
+                        cells = results.data;
+                    } else if (cells && since <= data_version && results.dataVersion >= data_version) {
+                        missed = Math.min(results.cycle - cycle, HISTORY_SIZE);
+                        cells = cells.map(function (cell) {
+                            return missed > 0 && cell.h && cell.h.length ? pad(cell, missed) : cell;
+                        });
+                        results.data.forEach(function (cell) {cells[cell.i] = cell;});
+                    } else {
+                        return false;
+                    }
+                    data_version = results.dataVersion;
+                    cycle = results.cycle;
+                    return true;
+                };
                 return function (result) {
                     clearTimeout(timeout);
                     if (!view_id) {// connection is dead
@@ -92,7 +126,7 @@ $.register_module({
                 // if we have a viewport id already just GET the data
                 if (data.viewport_id) {
                     viewports.get({view_id: view_id, grid_type: grid_type, graph_id: graph_id, update: data_setup,
-                        viewport_id: data.viewport_id }).pipe(data_handler);
+                        viewport_id: data.viewport_id, since: data_version }).pipe(data_handler);
                 } else {
                     // PUT the structure of the viewport, returns the viewport id and set the version as the promise id
                     (promise = viewports.put({view_id: view_id, grid_type: grid_type, graph_id: graph_id,
@@ -107,6 +141,7 @@ $.register_module({
                         }
                         data.viewport_id = result.meta.id;
                         viewport_version = promise.id;
+                        cells = data_version = null; // the cells of a new viewport all have to be fetched
                         //return a dry run
                         return viewports.get({ view_id: view_id, grid_type: grid_type, graph_id: graph_id, dry: true,
                             viewport_id: data.viewport_id, update: data_setup });
@@ -379,6 +414,7 @@ $.register_module({
                         }
                     });
                     viewport_version = promise.id;
+                    cells = data_version = null; // the cells of a new viewport all have to be fetched
                 } catch (error) {
                     fire('fatal', data.prefix + error.message);
                 }
@@ -167,6 +167,8 @@ $.register_module({
                             method[2] = config.grid_type;
                             method[4] = config.graph_id;
                             method.push(config.viewport_id);
+                            // only the cells that changed after this data version are sent
+                            if (typeof config.since === 'number') data.since = config.since;
                             return api.request(method, {data: data, meta: meta});
                         },
                         put: function (config) {
@@ -275,6 +277,8 @@ $.register_module({
                         method[1] = config.view_id;
                         method[2] = config.grid_type;
                         method.push(config.viewport_id);
+                        // only the cells that changed after this data version are sent
+                        if (typeof config.since === 'number') data.since = config.since;
                         return api.request(method, {data: data, meta: meta});
                     },
                     put: function (config) {
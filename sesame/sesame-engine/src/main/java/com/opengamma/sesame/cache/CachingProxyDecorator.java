@@ -40,6 +40,7 @@ public class CachingProxyDecorator extends NodeDecorator {
 
   private final ExecutingMethodsThreadLocal _executingMethods;
   private final CacheProvider _cacheProvider;
+  private final SingleFlightLoader _loader;
 
   /**
    * Constructs an instance for throwaway uses where the cache doesn't need to be invalidated (e.g. tools)
@@ -55,8 +56,21 @@ public class CachingProxyDecorator extends NodeDecorator {
    * @param executingMethods records the currently executing methods and allows cache entries to be removed when
    */
   public CachingProxyDecorator(CacheProvider cacheProvider, ExecutingMethodsThreadLocal executingMethods) {
+    this(cacheProvider, executingMethods, new SingleFlightLoader());
+  }
+
+  /**
+   * @param cacheProvider provider of a cache used to store the calculated values
+   * @param executingMethods records the currently executing methods and allows cache entries to be removed when
+   * @param loader ensures only one thread at a time requests the value for a key, should be shared by everything
+   *   using the same caches
+   */
+  public CachingProxyDecorator(CacheProvider cacheProvider,
+                               ExecutingMethodsThreadLocal executingMethods,
+                               SingleFlightLoader loader) {
     _cacheProvider = cacheProvider;
     _executingMethods = ArgumentChecker.notNull(executingMethods, "executingMethods");
+    _loader = ArgumentChecker.notNull(loader, "loader");
   }
 
   @Override
@@ -77,7 +91,8 @@ public class CachingProxyDecorator extends NodeDecorator {
         EngineUtils.hasMethodAnnotation(implementationType, Cacheable.class)) {
       Set<Class<?>> subtreeTypes = subtreeImplementationTypes(node);
       CachingHandlerFactory handlerFactory =
-          new CachingHandlerFactory(implementationType, interfaceType, _cacheProvider, _executingMethods, subtreeTypes);
+          new CachingHandlerFactory(implementationType, interfaceType, _cacheProvider, _executingMethods,
+                                    _loader, subtreeTypes);
       return createProxyNode(node, interfaceType, implementationType, handlerFactory);
     }
     return node;
@@ -119,13 +134,16 @@ public class CachingProxyDecorator extends NodeDecorator {
     private final ExecutingMethodsThreadLocal _executingMethods;
     private final Set<Class<?>> _subtreeTypes;
     private final CacheProvider _cacheProvider;
+    private final SingleFlightLoader _loader;
 
     private CachingHandlerFactory(Class<?> implementationType,
                                   Class<?> interfaceType,
                                   CacheProvider cacheProvider,
                                   ExecutingMethodsThreadLocal executingMethods,
+                                  SingleFlightLoader loader,
                                   Set<Class<?>> subtreeTypes) {
       _cacheProvider = ArgumentChecker.notNull(cacheProvider, "cacheProvider");
+      _loader = ArgumentChecker.notNull(loader, "loader");
       _executingMethods = ArgumentChecker.notNull(executingMethods, "executingMethods");
       _subtreeTypes = ArgumentChecker.notNull(subtreeTypes, "subtreeTypes");
       _implementationType = ArgumentChecker.notNull(implementationType, "implementationType");
@@ -155,7 +173,8 @@ public class CachingProxyDecorator extends NodeDecorator {
           }
         }
       }
-      return new Handler(delegate, cachedMethods, _cacheProvider, _executingMethods, _subtreeTypes, functionIdProvider);
+      return new Handler(delegate, cachedMethods, _cacheProvider, _executingMethods, _loader, _subtreeTypes,
+                         functionIdProvider);
     }
 
     @Override
@@ -184,8 +203,8 @@ public class CachingProxyDecorator extends NodeDecorator {
    * If the cache contains an element that corresponds to the method and arguments it's returned and the underlying
    * object isn't called.
    * If the cache doesn't contain an element the underlying object is called and the cache is populated.
-   * The values in the cache are futures. This allows multiple threads to request the same value and for all of
-   * them to block while the first thread calculates it.
+   * Values are requested through a {@link SingleFlightLoader}. This allows multiple threads to request the same
+   * value and for all of them to wait while the first thread calculates it.
    * This is package scoped for testing.
    */
   /* package */ static final class Handler extends AbstractProxyInvocationHandler {
@@ -194,6 +213,7 @@ public class CachingProxyDecorator extends NodeDecorator {
     private final Set<Method> _cachedMethods;
     private final CacheProvider _cacheProvider;
     private final ExecutingMethodsThreadLocal _executingMethods;
+    private final SingleFlightLoader _loader;
     private final Set<Class<?>> _subtreeTypes;
     private final FunctionId _functionId;
 
@@ -201,9 +221,11 @@ public class CachingProxyDecorator extends NodeDecorator {
                     Set<Method> cachedMethods,
                     CacheProvider cacheProvider,
                     ExecutingMethodsThreadLocal executingMethods,
+                    SingleFlightLoader loader,
                     Set<Class<?>> subtreeTypes,
                     FunctionIdProvider functionIdProvider) {
       super(delegate);
+      _loader = ArgumentChecker.notNull(loader, "loader");
       _subtreeTypes = ArgumentChecker.notNull(subtreeTypes, "subtreeTypes");
       _cacheProvider = ArgumentChecker.notNull(cacheProvider, "cache");
       _executingMethods = ArgumentChecker.notNull(executingMethods, "executingMethods");
@@ -234,10 +256,26 @@ public class CachingProxyDecorator extends NodeDecorator {
         Object[] keyArgs = getArgumentsForCacheKey(args);
         // create a key representing the method call - the receiver's ID, the method and its arguments
         MethodInvocationKey key = new MethodInvocationKey(_functionId, method, keyArgs);
-        // create a task to calculate the value if it's not in the cache - calls the underlying method
-        CallableMethod calculationTask = new CallableMethod(key, method, args);
-        // get the value from the cache - if it's not already present it's calculated
-        return _cacheProvider.get().get(key, calculationTask);
+        ScenarioMemo.RecordingMarketDataBundle bundle = ScenarioMemo.recordingBundle(keyArgs);
+
+        if (bundle == null) {
+          // create a task to calculate the value if it's not in the cache - calls the underlying method
+          CallableMethod calculationTask = new CallableMethod(key, method, args, null, null);
+          // get the value from the cache - if it's not already present it's calculated
+          return _loader.get(_cacheProvider.get(), key, calculationTask);
+        }
+        // running scenarios - use the result from another scenario if the call read the same market data
+        ScenarioMemo memo = bundle.getMemo();
+        MethodInvocationKey memoKey = memo.memoKey(_functionId, method, keyArgs);
+        ScenarioMemo.MemoEntry entry = memo.lookup(memoKey, bundle);
+
+        if (entry != null) {
+          return entry.getValue();
+        }
+        CallableMethod calculationTask = new CallableMethod(key, method, args, bundle, memoKey);
+        Object value = _loader.get(_cacheProvider.get(), key, calculationTask);
+        memo.returned(bundle, key);
+        return value;
       } else {
         // the method isn't annotated with @Cacheable, call it
         try {
@@ -293,15 +331,41 @@ public class CachingProxyDecorator extends NodeDecorator {
       private final MethodInvocationKey _key;
       private final Method _method;
       private final Object[] _args;
+      /** Records the market data read by the call when running scenarios, null otherwise. */
+      private final ScenarioMemo.RecordingMarketDataBundle _bundle;
+      private final MethodInvocationKey _memoKey;
 
-      public CallableMethod(MethodInvocationKey key, Method method, Object[] args) {
+      public CallableMethod(MethodInvocationKey key,
+                            Method method,
+                            Object[] args,
+                            ScenarioMemo.RecordingMarketDataBundle bundle,
+                            MethodInvocationKey memoKey) {
         _key = key;
         _method = method;
         _args = args;
+        _bundle = bundle;
+        _memoKey = memoKey;
       }
 
       @Override
       public Object call() throws Exception {
+        if (_bundle == null) {
+          return invoke();
+        }
+        ScenarioMemo memo = _bundle.getMemo();
+        memo.startCall();
+        Object value;
+        try {
+          value = invoke();
+        } catch (Exception | Error e) {
+          memo.abortCall();
+          throw e;
+        }
+        memo.endCall(_bundle, _key, _memoKey, value);
+        return value;
+      }
+
+      private Object invoke() throws Exception {
         try {
           _executingMethods.push(_key);
           return _method.invoke(_delegate, _args);
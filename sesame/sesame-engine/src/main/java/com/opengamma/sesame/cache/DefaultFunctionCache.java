@@ -17,24 +17,40 @@ import com.opengamma.util.ArgumentChecker;
  * If the user clears the cache, a new cache is created and the existing cache is discarded at the end of the
  * calculation cycle. Therefore the cache is looked up every time it is used to ensure this class always
  * uses the current cache.
+ * <p>
+ * Values are requested through a {@link SingleFlightLoader} so each value is only calculated by one thread
+ * and any others requesting it wait for that thread.
  */
 public class DefaultFunctionCache implements FunctionCache {
 
   /** Provides the cache. The cache is looked up every time it is used. */
   private final CacheProvider _cacheProvider;
 
+  /** Ensures only one thread at a time requests the value for a key. */
+  private final SingleFlightLoader _loader;
+
   /**
    * @param cacheProvider provides the cache. The cache is looked up every time it is used
    */
   public DefaultFunctionCache(CacheProvider cacheProvider) {
+    this(cacheProvider, new SingleFlightLoader());
+  }
+
+  /**
+   * @param cacheProvider provides the cache. The cache is looked up every time it is used
+   * @param loader ensures only one thread at a time requests the value for a key, should be shared by everything
+   *   using the same caches
+   */
+  public DefaultFunctionCache(CacheProvider cacheProvider, SingleFlightLoader loader) {
     _cacheProvider = ArgumentChecker.notNull(cacheProvider, "cacheProvider");
+    _loader = ArgumentChecker.notNull(loader, "loader");
   }
 
   @SuppressWarnings("unchecked")
   @Override
   public <T> T get(CacheKey key, Callable<T> valueSupplier) {
     try {
-      return (T) _cacheProvider.get().get(key, valueSupplier);
+      return (T) _loader.get(_cacheProvider.get(), key, valueSupplier);
     } catch (ExecutionException e) {
       throw new OpenGammaRuntimeException("Failed to create value for cache", e);
     }
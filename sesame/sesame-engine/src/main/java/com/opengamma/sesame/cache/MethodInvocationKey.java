@@ -27,6 +27,20 @@ public class MethodInvocationKey {
     _args = args;
   }
 
+  /**
+   * @return the ID of the function whose method was invoked
+   */
+  /* package */ FunctionId getFunctionId() {
+    return _functionId;
+  }
+
+  /**
+   * @return the method that was invoked
+   */
+  /* package */ Method getMethod() {
+    return _method;
+  }
+
   @Override
   public int hashCode() {
     return Objects.hash(_functionId, _method, Arrays.deepHashCode(_args));
@@ -0,0 +1,503 @@
+/**
+ * Copyright (C) 2014 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.sesame.cache;
+
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.threeten.bp.LocalDate;
+import org.threeten.bp.ZonedDateTime;
+
+import com.opengamma.sesame.Environment;
+import com.opengamma.sesame.function.scenarios.FilteredScenarioDefinition;
+import com.opengamma.sesame.graph.FunctionId;
+import com.opengamma.sesame.marketdata.MarketDataBundle;
+import com.opengamma.sesame.marketdata.MarketDataId;
+import com.opengamma.timeseries.date.DateTimeSeries;
+import com.opengamma.util.ArgumentChecker;
+import com.opengamma.util.result.Result;
+import com.opengamma.util.time.LocalDateRange;
+
+/**
+ * Shares the results of cacheable function calls between the scenarios of a scenario run.
+ * <p>
+ * The market data for each scenario is wrapped in a bundle created by {@link #wrap(MarketDataBundle)} which records the
+ * market data read by each cacheable call (including the data read by the calls it makes). When a cacheable call is
+ * made in a scenario, the results of the same call in earlier scenarios are checked: if every item of market data the
+ * earlier call read has the same value in this scenario, its result is returned without calling the function. So a
+ * curve that no perturbation touched is built once for the whole run rather than once per scenario.
+ * <p>
+ * The check is on the data that was actually read, so it is safe whatever the perturbations are. It relies on
+ * functions reading their market data through the bundle in their {@link Environment}; data that reaches a function
+ * in other ways (e.g. from a {@link FunctionCache} entry keyed without the market data) is assumed to be the same
+ * in every scenario.
+ * <p>
+ * Only {@link #MAX_RESULTS_PER_CALL} different results are kept for each call. A call whose inputs differ in every
+ * scenario is calculated as usual once that limit is reached, so it only costs a few failed checks.
+ * <p>
+ * A memo is used for one scenario run and then discarded. It is thread safe. The memo only refers to the market
+ * data of a scenario through the values its calls read, so a scenario's data can be garbage collected when the
+ * scenario completes. The results it keeps, and the values they read, are held until the run ends.
+ * <p>
+ * Only the results of calls made by other cacheable calls are kept. The outermost calls are made by the engine, usually
+ * one output function call for each item in the portfolio, so keeping their results would make the memo grow with
+ * the outputs of the run. Their results are calculated in each scenario from the shared results of the calls they make.
+ */
+public final class ScenarioMemo {
+
+  /** The maximum number of different results kept for a call. */
+  public static final int MAX_RESULTS_PER_CALL = 4;
+
+  /** The results of the calls, keyed by the call with the scenario's market data removed. */
+  private final ConcurrentMap<MethodInvocationKey, List<MemoEntry>> _entries = new ConcurrentHashMap<>();
+
+  /** The market data read by the cacheable calls executing on the current thread, innermost last. */
+  private final ThreadLocal<LinkedList<Reads>> _executing = new ThreadLocal<LinkedList<Reads>>() {
+    @Override
+    protected LinkedList<Reads> initialValue() {
+      return new LinkedList<>();
+    }
+  };
+
+  private final AtomicLong _hits = new AtomicLong();
+  private final AtomicLong _misses = new AtomicLong();
+
+  /**
+   * Wraps the market data of a scenario so the data read by the functions is recorded in this memo.
+   *
+   * @param bundle the market data of a scenario
+   * @return a bundle providing the same data which records the data read by the functions
+   */
+  public MarketDataBundle wrap(MarketDataBundle bundle) {
+    ArgumentChecker.notNull(bundle, "bundle");
+    ConcurrentMap<MethodInvocationKey, Map<MarketDataRead, Result<?>>> readsByKey = new ConcurrentHashMap<>();
+    return new RecordingMarketDataBundle(this, readsByKey, bundle, bundle, null, null);
+  }
+
+  /**
+   * @return the number of calls whose result was shared from another scenario
+   */
+  public long getHits() {
+    return _hits.get();
+  }
+
+  /**
+   * @return the number of calls that were not shared from another scenario
+   */
+  public long getMisses() {
+    return _misses.get();
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * Returns the bundle recording market data for this memo if a call's arguments contain one.
+   *
+   * @param args the arguments of a cacheable call
+   * @return the recording bundle in the environment in the arguments, null if there isn't one
+   */
+  /* package */ static RecordingMarketDataBundle recordingBundle(Object[] args) {
+    if (args == null || args.length == 0 || !(args[0] instanceof Environment)) {
+      return null;
+    }
+    MarketDataBundle bundle = ((Environment) args[0]).getMarketDataBundle();
+    return bundle instanceof RecordingMarketDataBundle ? (RecordingMarketDataBundle) bundle : null;
+  }
+
+  /**
+   * Creates the key for a call that is the same in every scenario, replacing the environment with a key made of the
+   * parts of the environment other than the scenario's market data.
+   *
+   * @param functionId the ID of the function
+   * @param method the method called
+   * @param keyArgs the arguments used in the cache key, the first of which is an environment containing a recording bundle
+   * @return the key for the call in this memo
+   */
+  /* package */ MethodInvocationKey memoKey(FunctionId functionId, Method method, Object[] keyArgs) {
+    Environment env = (Environment) keyArgs[0];
+    RecordingMarketDataBundle bundle = (RecordingMarketDataBundle) env.getMarketDataBundle();
+    Object[] memoArgs = keyArgs.clone();
+    memoArgs[0] = new EnvironmentKey(env.getValuationTime(), env.getScenarioDefinition(), bundle._time, bundle._date);
+    return new MethodInvocationKey(functionId, method, memoArgs);
+  }
+
+  /**
+   * Returns the result of a call from an earlier scenario if the data it read is the same in the current scenario.
+   * The data read by the call is added to the data read by the calling function.
+   *
+   * @param memoKey the key for the call in this memo
+   * @param bundle the market data of the current scenario
+   * @return the shared result, null if there isn't one
+   */
+  /* package */ MemoEntry lookup(MethodInvocationKey memoKey, RecordingMarketDataBundle bundle) {
+    List<MemoEntry> entries = _entries.get(memoKey);
+
+    if (entries != null) {
+      for (MemoEntry entry : entries) {
+        if (bundle.matches(entry._reads)) {
+          _hits.incrementAndGet();
+          recordReads(entry._reads);
+          return entry;
+        }
+      }
+    }
+    _misses.incrementAndGet();
+    return null;
+  }
+
+  /**
+   * Starts recording the market data read by a call on the current thread.
+   */
+  /* package */ void startCall() {
+    _executing.get().addLast(new Reads());
+  }
+
+  /**
+   * Stops recording the market data read by a call on the current thread. If all the data read by the call is known
+   * and the call was made by another cacheable call, its result is stored for sharing with other scenarios.
+   *
+   * @param bundle the market data of the scenario in which the call was made
+   * @param cacheKey the cache key of the call
+   * @param memoKey the key for the call in this memo
+   * @param value the result of the call
+   */
+  /* package */ void endCall(RecordingMarketDataBundle bundle,
+                             MethodInvocationKey cacheKey,
+                             MethodInvocationKey memoKey,
+                             Object value) {
+    LinkedList<Reads> executing = _executing.get();
+    Reads reads = executing.removeLast();
+
+    if (!reads._complete) {
+      return;
+    }
+    Map<MarketDataRead, Result<?>> values = reads._values;
+    bundle._readsByKey.put(cacheKey, values);
+
+    // an outermost call is made by the engine, usually an output function for one item in the portfolio, and it
+    // isn't worth keeping its result because it doesn't save the cost of the shared calls it made
+    if (executing.isEmpty()) {
+      return;
+    }
+    List<MemoEntry> entries = _entries.get(memoKey);
+
+    if (entries == null) {
+      List<MemoEntry> newEntries = new CopyOnWriteArrayList<>();
+      entries = _entries.putIfAbsent(memoKey, newEntries);
+      if (entries == null) {
+        entries = newEntries;
+      }
+    }
+    // this can go over the limit if several threads add at once, which does no harm
+    if (entries.size() < MAX_RESULTS_PER_CALL) {
+      entries.add(new MemoEntry(values, value));
+    }
+  }
+
+  /**
+   * Stops recording the market data read by a call on the current thread when the call fails. The data read by the
+   * calling function is unknown because it may have handled the failure, so its result won't be shared.
+   */
+  /* package */ void abortCall() {
+    LinkedList<Reads> executing = _executing.get();
+    executing.removeLast();
+    Reads reads = executing.peekLast();
+
+    if (reads != null) {
+      reads._complete = false;
+    }
+  }
+
+  /**
+   * Adds the market data read by a call to the data read by the calling function, after the call's value has been
+   * returned from the cache. If the value was calculated without recording its market data, the data read by the
+   * calling function is unknown and its result won't be shared.
+   *
+   * @param bundle the market data of the scenario in which the call was made
+   * @param cacheKey the cache key of the call
+   */
+  /* package */ void returned(RecordingMarketDataBundle bundle, MethodInvocationKey cacheKey) {
+    Map<MarketDataRead, Result<?>> values = bundle._readsByKey.get(cacheKey);
+
+    if (values == null) {
+      Reads reads = _executing.get().peekLast();
+      if (reads != null) {
+        reads._complete = false;
+      }
+    } else {
+      recordReads(values);
+    }
+  }
+
+  private void recordReads(Map<MarketDataRead, Result<?>> values) {
+    Reads reads = _executing.get().peekLast();
+
+    if (reads != null) {
+      reads._values.putAll(values);
+    }
+  }
+
+  private void recordRead(MarketDataRead read, Result<?> value) {
+    Reads reads = _executing.get().peekLast();
+
+    if (reads != null) {
+      reads._values.put(read, value);
+    }
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * A result of a call and the market data it read.
+   */
+  /* package */ static final class MemoEntry {
+
+    private final Map<MarketDataRead, Result<?>> _reads;
+    private final Object _value;
+
+    private MemoEntry(Map<MarketDataRead, Result<?>> reads, Object value) {
+      _reads = reads;
+      _value = value;
+    }
+
+    /* package */ Object getValue() {
+      return _value;
+    }
+  }
+
+  /**
+   * The market data read by a call that is executing.
+   */
+  private static final class Reads {
+
+    private final Map<MarketDataRead, Result<?>> _values = new HashMap<>();
+
+    /** False if the call used a value whose market data is unknown. */
+    private boolean _complete = true;
+  }
+
+  /**
+   * Identifies an item of market data read from a bundle.
+   */
+  private static final class MarketDataRead {
+
+    private final MarketDataId<?> _id;
+    private final Class<?> _dataType;
+    private final ZonedDateTime _time;
+    private final LocalDate _date;
+    private final LocalDateRange _dateRange;
+
+    private MarketDataRead(MarketDataId<?> id, Class<?> dataType, ZonedDateTime time, LocalDate date, LocalDateRange dateRange) {
+      _id = id;
+      _dataType = dataType;
+      _time = time;
+      _date = date;
+      _dateRange = dateRange;
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(_id, _dataType, _time, _date, _dateRange);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (obj == null || getClass() != obj.getClass()) {
+        return false;
+      }
+      MarketDataRead other = (MarketDataRead) obj;
+      return
+          Objects.equals(_id, other._id) &&
+          Objects.equals(_dataType, other._dataType) &&
+          Objects.equals(_time, other._time) &&
+          Objects.equals(_date, other._date) &&
+          Objects.equals(_dateRange, other._dateRange);
+    }
+  }
+
+  /**
+   * Market data bundle for a scenario that records the data read through it in the memo.
+   * <p>
+   * Bundles for different scenarios are only equal if the underlying bundles are equal, so the engine cache
+   * keeps the results for different scenarios apart.
+   */
+  /* package */ static final class RecordingMarketDataBundle implements MarketDataBundle {
+
+    private final ScenarioMemo _memo;
+    /** The market data read by each call calculated in the scenario, keyed by the cache key of the call. */
+    private final ConcurrentMap<MethodInvocationKey, Map<MarketDataRead, Result<?>>> _readsByKey;
+    /** The scenario's data at the valuation time, used to look up data read at any time. */
+    private final MarketDataBundle _root;
+    private final MarketDataBundle _delegate;
+    private final ZonedDateTime _time;
+    private final LocalDate _date;
+
+    private RecordingMarketDataBundle(ScenarioMemo memo,
+                                      ConcurrentMap<MethodInvocationKey, Map<MarketDataRead, Result<?>>> readsByKey,
+                                      MarketDataBundle root,
+                                      MarketDataBundle delegate,
+                                      ZonedDateTime time,
+                                      LocalDate date) {
+      _memo = memo;
+      _readsByKey = readsByKey;
+      _root = root;
+      _delegate = delegate;
+      _time = time;
+      _date = date;
+    }
+
+    /* package */ ScenarioMemo getMemo() {
+      return _memo;
+    }
+
+    @Override
+    public <T, I extends MarketDataId<T>> Result<T> get(I id, Class<T> dataType) {
+      Result<T> result = _delegate.get(id, dataType);
+      _memo.recordRead(new MarketDataRead(id, dataType, _time, _date, null), result);
+      return result;
+    }
+
+    @Override
+    public <T, I extends MarketDataId<T>> Result<DateTimeSeries<LocalDate, T>> get(I id,
+                                                                                  Class<T> dataType,
+                                                                                  LocalDateRange dateRange) {
+      Result<DateTimeSeries<LocalDate, T>> result = _delegate.get(id, dataType, dateRange);
+      _memo.recordRead(new MarketDataRead(id, dataType, null, null, dateRange), result);
+      return result;
+    }
+
+    @Override
+    public MarketDataBundle withTime(ZonedDateTime time) {
+      return new RecordingMarketDataBundle(_memo, _readsByKey, _root, _delegate.withTime(time), time, null);
+    }
+
+    @Override
+    public MarketDataBundle withDate(LocalDate date) {
+      return new RecordingMarketDataBundle(_memo, _readsByKey, _root, _delegate.withDate(date), null, date);
+    }
+
+    /**
+     * Checks whether market data read in another scenario has the same values in this scenario.
+     *
+     * @param reads the data read in the other scenario and its values
+     * @return true if all the data has the same values in this scenario
+     */
+    private boolean matches(Map<MarketDataRead, Result<?>> reads) {
+      for (Map.Entry<MarketDataRead, Result<?>> entry : reads.entrySet()) {
+        Result<?> value = read(entry.getKey());
+        Result<?> expected = entry.getValue();
+        if (value != expected && !value.equals(expected)) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Result<?> read(MarketDataRead read) {
+      MarketDataId<Object> id = (MarketDataId<Object>) read._id;
+      Class<Object> dataType = (Class<Object>) read._dataType;
+
+      if (read._dateRange != null) {
+        return _root.get(id, dataType, read._dateRange);
+      }
+      MarketDataBundle bundle;
+      if (read._time != null) {
+        bundle = _root.withTime(read._time);
+      } else if (read._date != null) {
+        bundle = _root.withDate(read._date);
+      } else {
+        bundle = _root;
+      }
+      return bundle.get(id, dataType);
+    }
+
+    @Override
+    public int hashCode() {
+      return _delegate.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (obj == null || getClass() != obj.getClass()) {
+        return false;
+      }
+      RecordingMarketDataBundle other = (RecordingMarketDataBundle) obj;
+      return _memo == other._memo && _delegate.equals(other._delegate);
+    }
+
+    @Override
+    public String toString() {
+      return "RecordingMarketDataBundle [_delegate=" + _delegate + "]";
+    }
+  }
+
+  /**
+   * Replaces the environment in the memo keys. It contains the parts of the environment that are the same in every
+   * scenario and can change the result of a call: the valuation time, the scenario definition and the time or date
+   * the market data bundle was moved to by {@link MarketDataBundle#withTime} or {@link MarketDataBundle#withDate}.
+   */
+  private static final class EnvironmentKey {
+
+    private final ZonedDateTime _valuationTime;
+    private final FilteredScenarioDefinition _scenarioDefinition;
+    private final ZonedDateTime _marketDataTime;
+    private final LocalDate _marketDataDate;
+
+    private EnvironmentKey(ZonedDateTime valuationTime,
+                           FilteredScenarioDefinition scenarioDefinition,
+                           ZonedDateTime marketDataTime,
+                           LocalDate marketDataDate) {
+      _valuationTime = valuationTime;
+      _scenarioDefinition = scenarioDefinition;
+      _marketDataTime = marketDataTime;
+      _marketDataDate = marketDataDate;
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(_valuationTime, _scenarioDefinition, _marketDataTime, _marketDataDate);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (obj == null || getClass() != obj.getClass()) {
+        return false;
+      }
+      EnvironmentKey other = (EnvironmentKey) obj;
+      return
+          Objects.equals(_valuationTime, other._valuationTime) &&
+          Objects.equals(_scenarioDefinition, other._scenarioDefinition) &&
+          Objects.equals(_marketDataTime, other._marketDataTime) &&
+          Objects.equals(_marketDataDate, other._marketDataDate);
+    }
+
+    @Override
+    public String toString() {
+      return "EnvironmentKey [" +
+          "_valuationTime=" + _valuationTime +
+          ", _scenarioDefinition=" + _scenarioDefinition +
+          ", _marketDataTime=" + _marketDataTime +
+          ", _marketDataDate=" + _marketDataDate +
+          "]";
+    }
+  }
+}
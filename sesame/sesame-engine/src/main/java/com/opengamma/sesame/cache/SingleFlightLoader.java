@@ -0,0 +1,315 @@
+/**
+ * Copyright (C) 2014 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.sesame.cache;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.cache.Cache;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.Uninterruptibles;
+import com.opengamma.sesame.graph.FunctionId;
+import com.opengamma.util.ArgumentChecker;
+
+/**
+ * Looks up values in the engine cache, making sure exactly one thread calculates the value for a key at a time.
+ * <p>
+ * The first thread to ask for a key looks it up in the cache, calculating the value if it isn't there. Any other
+ * thread asking for the same key in the same cache while that is happening waits on the first thread's future
+ * rather than making its own request to the cache. At the start of a cycle hundreds of cells can ask for the
+ * same value, for example a multicurve bundle, and all but one of them will wait for it.
+ * <p>
+ * A thread that asks for a key it is already calculating would wait for itself forever. This is reported by
+ * throwing {@code IllegalStateException}, as the Guava cache does for a recursive load.
+ * <p>
+ * Counts of the hits, misses and coalesced requests are kept over all keys. A request is coalesced if it waited
+ * for a value being looked up or calculated by another thread. Counts are also kept for each function and method
+ * whose results are cached, i.e. for each key that is a {@link MethodInvocationKey}. They aren't kept for the keys
+ * themselves, the keys can reference large objects such as the environment and its market data, which mustn't
+ * outlive the cache entry.
+ * <p>
+ * A loader should be shared by everything that uses the same caches, so one is created by the
+ * view factory and shared by all its views.
+ */
+public final class SingleFlightLoader {
+
+  /** Lookups in progress, keyed by the cache and the key within that cache. */
+  private final ConcurrentMap<InFlightKey, InFlight> _inFlight = new ConcurrentHashMap<>();
+
+  /** Counts over all keys. */
+  private final Counts _totals = new Counts();
+
+  /** Counts for each function and method, for keys that are method invocations. */
+  private final ConcurrentMap<FunctionMethod, Counts> _methodCounts = new ConcurrentHashMap<>();
+
+  /**
+   * Returns the value for a key from a cache, calculating it by invoking the supplier if no value is available.
+   * <p>
+   * This has the same contract as {@link Cache#get(Object, Callable)}, including the exceptions thrown if the
+   * supplier fails. If another thread is already requesting the same key from the same cache this waits for its
+   * value, or rethrows its exception, instead of requesting it again.
+   *
+   * @param cache the cache, not null
+   * @param key the key that uniquely identifies the value in the cache
+   * @param valueSupplier calculates and returns a value if there isn't one available in the cache
+   * @return a value from the cache for the key, created by calling the supplier if it isn't available
+   * @throws ExecutionException if the supplier throws a checked exception
+   * @throws com.google.common.util.concurrent.UncheckedExecutionException if the supplier throws an
+   *   unchecked exception
+   * @throws com.google.common.util.concurrent.ExecutionError if the supplier throws an error
+   * @throws IllegalStateException if the current thread is already calculating the value for the key
+   */
+  public Object get(Cache<Object, Object> cache, Object key, final Callable<?> valueSupplier) throws ExecutionException {
+    InFlightKey inFlightKey = new InFlightKey(cache, key);
+    InFlight inFlight = new InFlight();
+    InFlight existing = _inFlight.putIfAbsent(inFlightKey, inFlight);
+    Counts methodCounts = methodCounts(key);
+
+    if (existing != null) {
+      if (existing._thread == Thread.currentThread()) {
+        throw new IllegalStateException("Recursive request for cache key " + key);
+      }
+      _totals._coalesced.incrementAndGet();
+      if (methodCounts != null) {
+        methodCounts._coalesced.incrementAndGet();
+      }
+      return await(existing);
+    }
+    final boolean[] calculated = new boolean[1];
+    try {
+      Object value = cache.get(key, new Callable<Object>() {
+        @Override
+        public Object call() throws Exception {
+          calculated[0] = true;
+          return valueSupplier.call();
+        }
+      });
+      if (calculated[0]) {
+        _totals._misses.incrementAndGet();
+        if (methodCounts != null) {
+          methodCounts._misses.incrementAndGet();
+        }
+      } else {
+        _totals._hits.incrementAndGet();
+        if (methodCounts != null) {
+          methodCounts._hits.incrementAndGet();
+        }
+      }
+      inFlight._future.set(value);
+      return value;
+    } catch (ExecutionException | RuntimeException | Error e) {
+      // the waiting threads rethrow the same exception, see await()
+      inFlight._future.setException(e);
+      throw e;
+    } finally {
+      _inFlight.remove(inFlightKey, inFlight);
+    }
+  }
+
+  /**
+   * @return the counts over all keys
+   */
+  public Counts getTotals() {
+    return _totals;
+  }
+
+  /**
+   * Returns the counts for each function and method whose results are cached. The keys describe the method and
+   * the ID of the function, for example
+   * {@code FXForwardCalculatorFn.generateCalculator(Environment, FXForwardSecurity) FunctionId [_id=3]}.
+   *
+   * @return the counts for each function and method, sorted by description
+   */
+  public Map<String, Counts> getCountsByMethod() {
+    Map<String, Counts> counts = new TreeMap<>();
+
+    for (Map.Entry<FunctionMethod, Counts> entry : _methodCounts.entrySet()) {
+      counts.put(entry.getKey().toString(), entry.getValue());
+    }
+    return counts;
+  }
+
+  /**
+   * Resets the totals and the counts for each method.
+   */
+  public void clearCounts() {
+    _totals._hits.set(0);
+    _totals._misses.set(0);
+    _totals._coalesced.set(0);
+    _methodCounts.clear();
+  }
+
+  /**
+   * Returns the counts for the function and method in a key, null if the key isn't a method invocation.
+   */
+  private Counts methodCounts(Object key) {
+    if (!(key instanceof MethodInvocationKey)) {
+      return null;
+    }
+    MethodInvocationKey invocationKey = (MethodInvocationKey) key;
+    FunctionMethod functionMethod = new FunctionMethod(invocationKey.getFunctionId(), invocationKey.getMethod());
+    Counts counts = _methodCounts.get(functionMethod);
+
+    if (counts == null) {
+      Counts newCounts = new Counts();
+      counts = _methodCounts.putIfAbsent(functionMethod, newCounts);
+      if (counts == null) {
+        counts = newCounts;
+      }
+    }
+    return counts;
+  }
+
+  private static Object await(InFlight inFlight) throws ExecutionException {
+    try {
+      return Uninterruptibles.getUninterruptibly(inFlight._future);
+    } catch (ExecutionException e) {
+      // the future holds the exception thrown by the cache in the thread that made the request
+      Throwable cause = e.getCause();
+
+      if (cause instanceof ExecutionException) {
+        throw (ExecutionException) cause;
+      } else if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      } else {
+        throw (Error) cause;
+      }
+    }
+  }
+
+  /**
+   * Hit, miss and coalesced counts over a set of keys.
+   */
+  public static final class Counts {
+
+    private final AtomicLong _hits = new AtomicLong();
+    private final AtomicLong _misses = new AtomicLong();
+    private final AtomicLong _coalesced = new AtomicLong();
+
+    private Counts() {
+    }
+
+    /**
+     * @return the number of requests that found a value in the cache
+     */
+    public long getHits() {
+      return _hits.get();
+    }
+
+    /**
+     * @return the number of requests that calculated a value
+     */
+    public long getMisses() {
+      return _misses.get();
+    }
+
+    /**
+     * @return the number of requests that waited for the value from another thread's request
+     */
+    public long getCoalesced() {
+      return _coalesced.get();
+    }
+
+    @Override
+    public String toString() {
+      return "Counts [_hits=" + _hits + ", _misses=" + _misses + ", _coalesced=" + _coalesced + "]";
+    }
+  }
+
+  /**
+   * A function and one of its methods whose results are cached. This doesn't reference the arguments of the calls.
+   */
+  private static final class FunctionMethod {
+
+    private final FunctionId _functionId;
+    private final Method _method;
+
+    private FunctionMethod(FunctionId functionId, Method method) {
+      _functionId = functionId;
+      _method = method;
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(_functionId, _method);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (!(obj instanceof FunctionMethod)) {
+        return false;
+      }
+      FunctionMethod other = (FunctionMethod) obj;
+      return Objects.equals(_functionId, other._functionId) && _method.equals(other._method);
+    }
+
+    @Override
+    public String toString() {
+      StringBuilder builder = new StringBuilder();
+      builder.append(_method.getDeclaringClass().getSimpleName()).append('.').append(_method.getName()).append('(');
+      Class<?>[] parameterTypes = _method.getParameterTypes();
+
+      for (int i = 0; i < parameterTypes.length; i++) {
+        if (i > 0) {
+          builder.append(", ");
+        }
+        builder.append(parameterTypes[i].getSimpleName());
+      }
+      return builder.append(") ").append(_functionId).toString();
+    }
+  }
+
+  /**
+   * A request in progress, the thread making it and a future for its value.
+   */
+  private static final class InFlight {
+
+    private final Thread _thread = Thread.currentThread();
+    private final SettableFuture<Object> _future = SettableFuture.create();
+  }
+
+  /**
+   * Key for a request in progress. Caches are compared by identity so requests against a cache that has been
+   * replaced are never coalesced with requests against its replacement.
+   */
+  private static final class InFlightKey {
+
+    private final Cache<Object, Object> _cache;
+    private final Object _key;
+
+    private InFlightKey(Cache<Object, Object> cache, Object key) {
+      _cache = ArgumentChecker.notNull(cache, "cache");
+      _key = ArgumentChecker.notNull(key, "key");
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * System.identityHashCode(_cache) + _key.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (!(obj instanceof InFlightKey)) {
+        return false;
+      }
+      InFlightKey other = (InFlightKey) obj;
+      return _cache == other._cache && _key.equals(other._key);
+    }
+  }
+}
@@ -0,0 +1,62 @@
+/**
+ * Copyright (C) 2014 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.sesame.engine;
+
+/**
+ * Constants defining the binary format written by {@link ColumnarResultsWriter} and read by
+ * {@link ColumnarResultsReader}.
+ * <p>
+ * A file contains a header, a sequence of blocks, each holding one set of {@link Results}, and a footer indexing
+ * the blocks. All numbers are big-endian.
+ * <pre>
+ * file:    int MAGIC, int VERSION, block*, footer, long footerOffset, int MAGIC
+ * footer:  int blockCount, (long blockOffset, long blockLength, string blockName)*
+ * block:   int rowCount, int columnCount, long dictionaryOffset,
+ *          int[rowCount] input, int[columnCount] columnName, long[columnCount] columnOffset,
+ *          column*, dictionary
+ * column:  byte type, byte[rowCount] kind, values, int[rowCount] failureStatus, int[rowCount] failureMessage
+ * values:  TYPE_DOUBLE          double[rowCount]
+ *          TYPE_CURRENCY_AMOUNT int[rowCount] currency, double[rowCount] amount
+ *          TYPE_STRING          int[rowCount] string
+ * dictionary: int stringCount, long[stringCount] stringOffset, (int byteCount, byte[byteCount] UTF-8)*
+ * string (footer only): int byteCount, byte[byteCount] UTF-8
+ * </pre>
+ * Offsets in a block are relative to the start of the block. Strings in a block are stored once in the block's
+ * dictionary and referred to by their index, -1 is used where there is no string.
+ */
+final class ColumnarResultsFormat {
+
+  /** Identifies the file format, "OGCR". */
+  static final int MAGIC = 0x4F474352;
+  /** The version of the format. */
+  static final int VERSION = 1;
+  /** The size of the file header. */
+  static final int HEADER_SIZE = 8;
+  /** The size of the file trailer. */
+  static final int TRAILER_SIZE = 12;
+  /** The size of the fixed fields at the start of a block. */
+  static final int BLOCK_HEADER_SIZE = 16;
+
+  /** Column type of successful values that are numbers. */
+  static final byte TYPE_DOUBLE = 1;
+  /** Column type of successful values that are currency amounts. */
+  static final byte TYPE_CURRENCY_AMOUNT = 2;
+  /** Column type of successful values of any other type, stored as strings. */
+  static final byte TYPE_STRING = 3;
+
+  /** Kind of a cell with no result. */
+  static final byte KIND_MISSING = 0;
+  /** Kind of a cell with a successful result. */
+  static final byte KIND_SUCCESS = 1;
+  /** Kind of a cell with a failure result. */
+  static final byte KIND_FAILURE = 2;
+
+  /** Index used in place of a dictionary index where there is no string. */
+  static final int NO_STRING = -1;
+
+  private ColumnarResultsFormat() {
+  }
+}
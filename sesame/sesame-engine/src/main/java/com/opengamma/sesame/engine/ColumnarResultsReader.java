@@ -0,0 +1,401 @@
+/**
+ * Copyright (C) 2014 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.sesame.engine;
+
+import static com.opengamma.sesame.engine.ColumnarResultsFormat.BLOCK_HEADER_SIZE;
+import static com.opengamma.sesame.engine.ColumnarResultsFormat.HEADER_SIZE;
+import static com.opengamma.sesame.engine.ColumnarResultsFormat.KIND_FAILURE;
+import static com.opengamma.sesame.engine.ColumnarResultsFormat.KIND_MISSING;
+import static com.opengamma.sesame.engine.ColumnarResultsFormat.MAGIC;
+import static com.opengamma.sesame.engine.ColumnarResultsFormat.NO_STRING;
+import static com.opengamma.sesame.engine.ColumnarResultsFormat.TRAILER_SIZE;
+import static com.opengamma.sesame.engine.ColumnarResultsFormat.TYPE_CURRENCY_AMOUNT;
+import static com.opengamma.sesame.engine.ColumnarResultsFormat.TYPE_DOUBLE;
+import static com.opengamma.sesame.engine.ColumnarResultsFormat.VERSION;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.threeten.bp.Instant;
+
+import com.opengamma.OpenGammaRuntimeException;
+import com.opengamma.util.ArgumentChecker;
+import com.opengamma.util.money.Currency;
+import com.opengamma.util.money.CurrencyAmount;
+import com.opengamma.util.result.FailureStatus;
+import com.opengamma.util.result.Result;
+
+/**
+ * Reads results written by {@link ColumnarResultsWriter}.
+ * <p>
+ * The file is memory mapped one block at a time when a block is first used, and individual cells are decoded
+ * when they are requested, so any cell can be read without reading the rest of the file. Only the index of
+ * the blocks is read when the reader is created.
+ * <p>
+ * Values are returned as they are stored: numbers as {@code Double}, currency amounts as {@link CurrencyAmount}
+ * and all other values as strings. Failures are returned with their status and message.
+ * <p>
+ * This class is thread safe.
+ */
+public class ColumnarResultsReader implements Closeable {
+
+  private final FileChannel _channel;
+  private final List<String> _blockNames;
+  private final Map<String, Integer> _blockIndices = new HashMap<>();
+  private final long[] _blockOffsets;
+  private final long[] _blockLengths;
+  /** The blocks that have been mapped, created when they are first used. */
+  private final Block[] _blocks;
+
+  /**
+   * Opens a file of results and reads the index of the blocks.
+   *
+   * @param path the location of the file
+   */
+  public ColumnarResultsReader(Path path) {
+    ArgumentChecker.notNull(path, "path");
+    try {
+      _channel = FileChannel.open(path, StandardOpenOption.READ);
+    } catch (IOException e) {
+      throw new OpenGammaRuntimeException("Error whilst opening results file " + path, e);
+    }
+    try {
+      long size = _channel.size();
+
+      if (size < HEADER_SIZE + TRAILER_SIZE) {
+        throw new IllegalArgumentException("File " + path + " is incomplete or doesn't contain columnar results");
+      }
+      ByteBuffer header = read(0, HEADER_SIZE);
+
+      if (header.getInt(0) != MAGIC) {
+        throw new IllegalArgumentException("File " + path + " doesn't contain results in columnar format");
+      }
+      if (header.getInt(4) != VERSION) {
+        throw new IllegalArgumentException("Unsupported version " + header.getInt(4) + " of file " + path);
+      }
+      ByteBuffer trailer = read(size - TRAILER_SIZE, TRAILER_SIZE);
+
+      if (trailer.getInt(8) != MAGIC) {
+        throw new IllegalArgumentException("File " + path + " is incomplete, the writer wasn't closed");
+      }
+      long footerOffset = trailer.getLong(0);
+      ByteBuffer footer = read(footerOffset, (int) (size - TRAILER_SIZE - footerOffset));
+      int blockCount = footer.getInt();
+      _blockNames = new ArrayList<>(blockCount);
+      _blockOffsets = new long[blockCount];
+      _blockLengths = new long[blockCount];
+      _blocks = new Block[blockCount];
+
+      for (int i = 0; i < blockCount; i++) {
+        _blockOffsets[i] = footer.getLong();
+        _blockLengths[i] = footer.getLong();
+        byte[] name = new byte[footer.getInt()];
+        footer.get(name);
+        String blockName = new String(name, StandardCharsets.UTF_8);
+        _blockNames.add(blockName);
+        _blockIndices.put(blockName, i);
+      }
+    } catch (IOException | RuntimeException e) {
+      closeQuietly();
+      if (e instanceof IllegalArgumentException) {
+        throw (IllegalArgumentException) e;
+      }
+      throw new OpenGammaRuntimeException("Error whilst reading results file " + path, e);
+    }
+  }
+
+  private ByteBuffer read(long position, int length) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(length);
+
+    while (buffer.hasRemaining()) {
+      if (_channel.read(buffer, position + buffer.position()) < 0) {
+        throw new IOException("Unexpected end of file");
+      }
+    }
+    buffer.flip();
+    return buffer;
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * @return the number of blocks in the file
+   */
+  public int getBlockCount() {
+    return _blockNames.size();
+  }
+
+  /**
+   * @return the names of the blocks in the file, in the order they were written
+   */
+  public List<String> getBlockNames() {
+    return _blockNames;
+  }
+
+  /**
+   * Returns the index of a block given its name.
+   *
+   * @param blockName the name of the block, e.g. a scenario name
+   * @return the index of the block
+   * @throws IllegalArgumentException if there is no block with the name
+   */
+  public int getBlockIndex(String blockName) {
+    Integer index = _blockIndices.get(blockName);
+    if (index == null) {
+      throw new IllegalArgumentException("No block found named " + blockName);
+    }
+    return index;
+  }
+
+  /**
+   * @param blockIndex the index of the block
+   * @return the number of rows in the block
+   */
+  public int getRowCount(int blockIndex) {
+    return block(blockIndex)._rowCount;
+  }
+
+  /**
+   * @param blockIndex the index of the block
+   * @return the names of the columns in the block
+   */
+  public List<String> getColumnNames(int blockIndex) {
+    Block block = block(blockIndex);
+    List<String> columnNames = new ArrayList<>(block._columnCount);
+
+    for (int columnIndex = 0; columnIndex < block._columnCount; columnIndex++) {
+      columnNames.add(block.columnName(columnIndex));
+    }
+    return columnNames;
+  }
+
+  /**
+   * Returns the input of a row, as the string written by the writer.
+   *
+   * @param blockIndex the index of the block
+   * @param rowIndex the index of the row
+   * @return the string form of the row's input
+   */
+  public String getInput(int blockIndex, int rowIndex) {
+    Block block = block(blockIndex);
+    return block.string(block._buffer.getInt(BLOCK_HEADER_SIZE + 4 * block.checkRow(rowIndex)));
+  }
+
+  /**
+   * Returns the result in a cell.
+   *
+   * @param blockIndex the index of the block
+   * @param rowIndex the index of the row
+   * @param columnIndex the index of the column
+   * @return the result in the cell, null if there is no result
+   */
+  public Result<?> get(int blockIndex, int rowIndex, int columnIndex) {
+    return block(blockIndex).result(rowIndex, columnIndex);
+  }
+
+  /**
+   * Returns the numeric value of a cell without creating a result. The amount of a currency amount is returned.
+   *
+   * @param blockIndex the index of the block
+   * @param rowIndex the index of the row
+   * @param columnIndex the index of the column
+   * @return the value in the cell, NaN if the cell doesn't contain a successful numeric result
+   */
+  public double getDouble(int blockIndex, int rowIndex, int columnIndex) {
+    return block(blockIndex).doubleValue(rowIndex, columnIndex);
+  }
+
+  /**
+   * Reads all the results in a block. The row inputs are the strings written by the writer.
+   *
+   * @param blockIndex the index of the block
+   * @return the results in the block
+   */
+  public Results getResults(int blockIndex) {
+    Block block = block(blockIndex);
+    List<String> inputs = new ArrayList<>(block._rowCount);
+
+    for (int rowIndex = 0; rowIndex < block._rowCount; rowIndex++) {
+      inputs.add(getInput(blockIndex, rowIndex));
+    }
+    ResultBuilder builder = Results.builder(inputs, getColumnNames(blockIndex));
+
+    for (int rowIndex = 0; rowIndex < block._rowCount; rowIndex++) {
+      for (int columnIndex = 0; columnIndex < block._columnCount; columnIndex++) {
+        Result<?> result = block.result(rowIndex, columnIndex);
+        if (result != null) {
+          builder.add(rowIndex, columnIndex, result, null);
+        }
+      }
+    }
+    long now = System.nanoTime();
+    return builder.build(Instant.now(), now, now, now);
+  }
+
+  @Override
+  public void close() {
+    try {
+      _channel.close();
+    } catch (IOException e) {
+      throw new OpenGammaRuntimeException("Error whilst closing results file", e);
+    }
+  }
+
+  private void closeQuietly() {
+    try {
+      _channel.close();
+    } catch (IOException e) {
+      // ignore, there is already an error being reported
+    }
+  }
+
+  private Block block(int blockIndex) {
+    if (blockIndex < 0 || blockIndex >= _blocks.length) {
+      throw new IndexOutOfBoundsException("Index " + blockIndex + " is out of bounds. block count = " + _blocks.length);
+    }
+    synchronized (_blocks) {
+      Block block = _blocks[blockIndex];
+
+      if (block == null) {
+        try {
+          long offset = _blockOffsets[blockIndex];
+          ByteBuffer buffer = _channel.map(FileChannel.MapMode.READ_ONLY, offset, _blockLengths[blockIndex]);
+          block = new Block(buffer);
+        } catch (IOException e) {
+          throw new OpenGammaRuntimeException("Error whilst mapping results file", e);
+        }
+        _blocks[blockIndex] = block;
+      }
+      return block;
+    }
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * A block of results mapped into memory. Only the absolute get methods of the buffer are used so it can be
+   * shared between threads.
+   */
+  private static final class Block {
+
+    private final ByteBuffer _buffer;
+    private final int _rowCount;
+    private final int _columnCount;
+    private final long _dictionaryOffset;
+    /** The decoded strings from the dictionary, decoded when they are first used. */
+    private final String[] _strings;
+
+    private Block(ByteBuffer buffer) {
+      _buffer = buffer;
+      _rowCount = buffer.getInt(0);
+      _columnCount = buffer.getInt(4);
+      _dictionaryOffset = buffer.getLong(8);
+      _strings = new String[buffer.getInt((int) _dictionaryOffset)];
+    }
+
+    private int checkRow(int rowIndex) {
+      if (rowIndex < 0 || rowIndex >= _rowCount) {
+        throw new IndexOutOfBoundsException("Index " + rowIndex + " is out of bounds. row count = " + _rowCount);
+      }
+      return rowIndex;
+    }
+
+    private int columnOffset(int columnIndex) {
+      if (columnIndex < 0 || columnIndex >= _columnCount) {
+        throw new IndexOutOfBoundsException("Index " + columnIndex + " is out of bounds. column count = " +
+                                                _columnCount);
+      }
+      return (int) _buffer.getLong(BLOCK_HEADER_SIZE + 4 * _rowCount + 4 * _columnCount + 8 * columnIndex);
+    }
+
+    private String columnName(int columnIndex) {
+      columnOffset(columnIndex);
+      return string(_buffer.getInt(BLOCK_HEADER_SIZE + 4 * _rowCount + 4 * columnIndex));
+    }
+
+    private Result<?> result(int rowIndex, int columnIndex) {
+      checkRow(rowIndex);
+      int columnOffset = columnOffset(columnIndex);
+      byte type = _buffer.get(columnOffset);
+      byte kind = _buffer.get(columnOffset + 1 + rowIndex);
+      int valuesOffset = columnOffset + 1 + _rowCount;
+
+      if (kind == KIND_MISSING) {
+        return null;
+      }
+      if (kind == KIND_FAILURE) {
+        int failuresOffset = valuesOffset + valuesLength(type);
+        FailureStatus status = FailureStatus.valueOf(string(_buffer.getInt(failuresOffset + 4 * rowIndex)));
+        String message = string(_buffer.getInt(failuresOffset + 4 * _rowCount + 4 * rowIndex));
+        return Result.failure(status, "{}", message);
+      }
+      switch (type) {
+        case TYPE_DOUBLE:
+          return Result.success(_buffer.getDouble(valuesOffset + 8 * rowIndex));
+        case TYPE_CURRENCY_AMOUNT:
+          Currency currency = Currency.of(string(_buffer.getInt(valuesOffset + 4 * rowIndex)));
+          double amount = _buffer.getDouble(valuesOffset + 4 * _rowCount + 8 * rowIndex);
+          return Result.success(CurrencyAmount.of(currency, amount));
+        default:
+          return Result.success(string(_buffer.getInt(valuesOffset + 4 * rowIndex)));
+      }
+    }
+
+    private double doubleValue(int rowIndex, int columnIndex) {
+      checkRow(rowIndex);
+      int columnOffset = columnOffset(columnIndex);
+      byte type = _buffer.get(columnOffset);
+      int valuesOffset = columnOffset + 1 + _rowCount;
+
+      // values that aren't successful are stored as NaN
+      switch (type) {
+        case TYPE_DOUBLE:
+          return _buffer.getDouble(valuesOffset + 8 * rowIndex);
+        case TYPE_CURRENCY_AMOUNT:
+          return _buffer.getDouble(valuesOffset + 4 * _rowCount + 8 * rowIndex);
+        default:
+          return Double.NaN;
+      }
+    }
+
+    private int valuesLength(byte type) {
+      switch (type) {
+        case TYPE_DOUBLE:
+          return 8 * _rowCount;
+        case TYPE_CURRENCY_AMOUNT:
+          return 12 * _rowCount;
+        default:
+          return 4 * _rowCount;
+      }
+    }
+
+    private String string(int index) {
+      if (index == NO_STRING) {
+        return null;
+      }
+      // racing threads can both decode a string, which does no harm
+      String str = _strings[index];
+
+      if (str == null) {
+        int offset = (int) _buffer.getLong((int) _dictionaryOffset + 4 + 8 * index);
+        byte[] bytes = new byte[_buffer.getInt(offset)];
+        ByteBuffer duplicate = _buffer.duplicate();
+        duplicate.position(offset + 4);
+        duplicate.get(bytes);
+        str = new String(bytes, StandardCharsets.UTF_8);
+        _strings[index] = str;
+      }
+      return str;
+    }
+  }
+}
@@ -0,0 +1,316 @@
+/**
+ * Copyright (C) 2014 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.sesame.engine;
+
+import static com.opengamma.sesame.engine.ColumnarResultsFormat.BLOCK_HEADER_SIZE;
+import static com.opengamma.sesame.engine.ColumnarResultsFormat.KIND_FAILURE;
+import static com.opengamma.sesame.engine.ColumnarResultsFormat.KIND_MISSING;
+import static com.opengamma.sesame.engine.ColumnarResultsFormat.KIND_SUCCESS;
+import static com.opengamma.sesame.engine.ColumnarResultsFormat.MAGIC;
+import static com.opengamma.sesame.engine.ColumnarResultsFormat.NO_STRING;
+import static com.opengamma.sesame.engine.ColumnarResultsFormat.TYPE_CURRENCY_AMOUNT;
+import static com.opengamma.sesame.engine.ColumnarResultsFormat.TYPE_DOUBLE;
+import static com.opengamma.sesame.engine.ColumnarResultsFormat.TYPE_STRING;
+import static com.opengamma.sesame.engine.ColumnarResultsFormat.VERSION;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.opengamma.OpenGammaRuntimeException;
+import com.opengamma.util.ArgumentChecker;
+import com.opengamma.util.money.CurrencyAmount;
+import com.opengamma.util.result.FailureStatus;
+import com.opengamma.util.result.Result;
+import com.opengamma.util.result.ResultStatus;
+
+/**
+ * Writes {@link Results} to a stream in a columnar binary format which can be read by {@link ColumnarResultsReader}.
+ * <p>
+ * Each set of results is written as a named block as soon as it is passed to the writer, so the results of a long
+ * run can be written as they become available and don't have to be kept in memory. In particular the writer
+ * can be passed to the engine as the listener for a scenario run, which writes one block per scenario.
+ * The index of the blocks is written when the writer is closed.
+ * <p>
+ * Within a block the values of each column are stored together. Successful results that are numbers or
+ * {@link CurrencyAmount}s are stored as arrays of primitives, other values are stored as strings. Failures are
+ * stored as their status and message. Strings, including the row inputs, are stored once per block and referred
+ * to by index. Results that aren't in the portfolio and call graphs aren't written.
+ * <p>
+ * This class isn't thread safe.
+ */
+public class ColumnarResultsWriter implements ScenarioResultsListener, Closeable {
+
+  private final DataOutputStream _out;
+  private final List<String> _blockNames = new ArrayList<>();
+  private final List<Long> _blockOffsets = new ArrayList<>();
+  private final List<Long> _blockLengths = new ArrayList<>();
+  private long _position;
+  private boolean _closed;
+
+  /**
+   * Creates a writer and writes the file header to the stream.
+   *
+   * @param outputStream the stream to write the results to, closed when the writer is closed
+   */
+  public ColumnarResultsWriter(OutputStream outputStream) {
+    ArgumentChecker.notNull(outputStream, "outputStream");
+    _out = new DataOutputStream(new BufferedOutputStream(outputStream));
+    try {
+      _out.writeInt(MAGIC);
+      _out.writeInt(VERSION);
+    } catch (IOException e) {
+      throw new OpenGammaRuntimeException("Error whilst writing results", e);
+    }
+    _position = ColumnarResultsFormat.HEADER_SIZE;
+  }
+
+  /**
+   * Writes a scenario's results as a block named after the scenario.
+   *
+   * @param scenarioName the name of the scenario
+   * @param results the calculation results for the scenario
+   */
+  @Override
+  public void scenarioCompleted(String scenarioName, Results results) {
+    write(scenarioName, results);
+  }
+
+  /**
+   * Writes a set of results as a block in the file.
+   *
+   * @param blockName the name of the block, used to look up the results when they are read
+   * @param results the results to write
+   */
+  public void write(String blockName, Results results) {
+    ArgumentChecker.notNull(blockName, "blockName");
+    ArgumentChecker.notNull(results, "results");
+
+    if (_closed) {
+      throw new IllegalStateException("The writer is closed");
+    }
+    byte[] block = encodeBlock(results);
+    try {
+      _out.write(block);
+    } catch (IOException e) {
+      throw new OpenGammaRuntimeException("Error whilst writing results", e);
+    }
+    _blockNames.add(blockName);
+    _blockOffsets.add(_position);
+    _blockLengths.add((long) block.length);
+    _position += block.length;
+  }
+
+  /**
+   * Writes the index of the blocks and closes the stream.
+   */
+  @Override
+  public void close() {
+    if (_closed) {
+      return;
+    }
+    _closed = true;
+    try {
+      long footerOffset = _position;
+      _out.writeInt(_blockNames.size());
+
+      for (int i = 0; i < _blockNames.size(); i++) {
+        _out.writeLong(_blockOffsets.get(i));
+        _out.writeLong(_blockLengths.get(i));
+        byte[] name = _blockNames.get(i).getBytes(StandardCharsets.UTF_8);
+        _out.writeInt(name.length);
+        _out.write(name);
+      }
+      _out.writeLong(footerOffset);
+      _out.writeInt(MAGIC);
+      _out.close();
+    } catch (IOException e) {
+      throw new OpenGammaRuntimeException("Error whilst writing results", e);
+    }
+  }
+
+  /**
+   * Encodes a set of results as a block.
+   */
+  private static byte[] encodeBlock(Results results) {
+    List<ResultRow> rows = results.getRows();
+    List<String> columnNames = results.getColumnNames();
+    int rowCount = rows.size();
+    int columnCount = columnNames.size();
+    Dictionary dictionary = new Dictionary();
+    // the columns are encoded first so the dictionary contains all the strings before it is written
+    ByteArrayOutputStream columnBytes = new ByteArrayOutputStream();
+    long[] columnOffsets = new long[columnCount];
+    long columnsStart = BLOCK_HEADER_SIZE + 4L * rowCount + 12L * columnCount;
+
+    try {
+      DataOutputStream columnOut = new DataOutputStream(columnBytes);
+
+      for (int columnIndex = 0; columnIndex < columnCount; columnIndex++) {
+        columnOffsets[columnIndex] = columnsStart + columnOut.size();
+        writeColumn(columnOut, rows, columnIndex, dictionary);
+      }
+      columnOut.flush();
+
+      ByteArrayOutputStream blockBytes = new ByteArrayOutputStream();
+      DataOutputStream blockOut = new DataOutputStream(blockBytes);
+      blockOut.writeInt(rowCount);
+      blockOut.writeInt(columnCount);
+      blockOut.writeLong(columnsStart + columnBytes.size());
+
+      for (ResultRow row : rows) {
+        blockOut.writeInt(dictionary.index(String.valueOf(row.getInput())));
+      }
+      for (String columnName : columnNames) {
+        blockOut.writeInt(dictionary.index(columnName));
+      }
+      for (long columnOffset : columnOffsets) {
+        blockOut.writeLong(columnOffset);
+      }
+      columnBytes.writeTo(blockOut);
+      dictionary.write(blockOut);
+      blockOut.flush();
+      return blockBytes.toByteArray();
+    } catch (IOException e) {
+      // this shouldn't happen when writing to a byte array
+      throw new OpenGammaRuntimeException("Error whilst encoding results", e);
+    }
+  }
+
+  private static void writeColumn(DataOutputStream out,
+                                  List<ResultRow> rows,
+                                  int columnIndex,
+                                  Dictionary dictionary) throws IOException {
+    int rowCount = rows.size();
+    Result<?>[] results = new Result<?>[rowCount];
+
+    for (int rowIndex = 0; rowIndex < rowCount; rowIndex++) {
+      List<ResultItem> items = rows.get(rowIndex).getItems();
+      results[rowIndex] = columnIndex < items.size() ? items.get(columnIndex).getResult() : null;
+    }
+    byte type = columnType(results);
+    out.writeByte(type);
+
+    for (Result<?> result : results) {
+      if (result == null) {
+        out.writeByte(KIND_MISSING);
+      } else {
+        out.writeByte(result.isSuccess() ? KIND_SUCCESS : KIND_FAILURE);
+      }
+    }
+    switch (type) {
+      case TYPE_DOUBLE:
+        for (Result<?> result : results) {
+          out.writeDouble(isSuccess(result) ? ((Number) result.getValue()).doubleValue() : Double.NaN);
+        }
+        break;
+      case TYPE_CURRENCY_AMOUNT:
+        for (Result<?> result : results) {
+          String currency = isSuccess(result) ? ((CurrencyAmount) result.getValue()).getCurrency().getCode() : null;
+          out.writeInt(dictionary.index(currency));
+        }
+        for (Result<?> result : results) {
+          out.writeDouble(isSuccess(result) ? ((CurrencyAmount) result.getValue()).getAmount() : Double.NaN);
+        }
+        break;
+      default:
+        for (Result<?> result : results) {
+          out.writeInt(dictionary.index(isSuccess(result) ? String.valueOf(result.getValue()) : null));
+        }
+        break;
+    }
+    for (Result<?> result : results) {
+      out.writeInt(dictionary.index(isFailure(result) ? failureStatus(result).name() : null));
+    }
+    for (Result<?> result : results) {
+      out.writeInt(dictionary.index(isFailure(result) ? result.getFailureMessage() : null));
+    }
+  }
+
+  /**
+   * Returns the type of a column, chosen so all the successful values in the column can be stored.
+   */
+  private static byte columnType(Result<?>[] results) {
+    boolean allNumbers = true;
+    boolean allAmounts = true;
+
+    for (Result<?> result : results) {
+      if (isSuccess(result)) {
+        Object value = result.getValue();
+        allNumbers &= value instanceof Number;
+        allAmounts &= value instanceof CurrencyAmount;
+      }
+    }
+    if (allNumbers) {
+      return TYPE_DOUBLE;
+    } else if (allAmounts) {
+      return TYPE_CURRENCY_AMOUNT;
+    } else {
+      return TYPE_STRING;
+    }
+  }
+
+  private static FailureStatus failureStatus(Result<?> result) {
+    ResultStatus status = result.getStatus();
+    return status instanceof FailureStatus ? (FailureStatus) status : FailureStatus.ERROR;
+  }
+
+  private static boolean isSuccess(Result<?> result) {
+    return result != null && result.isSuccess();
+  }
+
+  private static boolean isFailure(Result<?> result) {
+    return result != null && !result.isSuccess();
+  }
+
+  //-------------------------------------------------------------------------
+  /**
+   * The strings in a block, each stored once and referred to by its index.
+   */
+  private static final class Dictionary {
+
+    private final Map<String, Integer> _indices = new HashMap<>();
+    private final List<byte[]> _strings = new ArrayList<>();
+
+    private int index(String str) {
+      if (str == null) {
+        return NO_STRING;
+      }
+      Integer index = _indices.get(str);
+
+      if (index == null) {
+        index = _strings.size();
+        _indices.put(str, index);
+        _strings.add(str.getBytes(StandardCharsets.UTF_8));
+      }
+      return index;
+    }
+
+    private void write(DataOutputStream out) throws IOException {
+      int count = _strings.size();
+      out.writeInt(count);
+      // the offsets are relative to the start of the block, the dictionary starts at the current position
+      long offset = out.size() + 8L * count;
+
+      for (byte[] str : _strings) {
+        out.writeLong(offset);
+        offset += 4 + str.length;
+      }
+      for (byte[] str : _strings) {
+        out.writeInt(str.length);
+        out.write(str);
+      }
+    }
+  }
+}
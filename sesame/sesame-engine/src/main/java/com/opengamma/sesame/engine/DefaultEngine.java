@@ -12,18 +12,24 @@ import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.threeten.bp.ZonedDateTime;
 
 import com.google.common.base.Function;
+import com.google.common.cache.Cache;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.AsyncFunction;
+import com.google.common.util.concurrent.FutureCallback;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.ListeningExecutorService;
 import com.google.common.util.concurrent.MoreExecutors;
 import com.opengamma.OpenGammaRuntimeException;
 import com.opengamma.engine.marketdata.spec.MarketDataSpecification;
+import com.opengamma.sesame.cache.ScenarioMemo;
 import com.opengamma.sesame.config.EngineUtils;
 import com.opengamma.sesame.config.ViewConfig;
 import com.opengamma.sesame.marketdata.MapScenarioMarketDataEnvironment;
@@ -77,6 +83,55 @@ public class DefaultEngine implements Engine {
     return view.run(calculationArguments, marketData, portfolio);
   }
 
+  @Override
+  public List<Results> runViews(
+      List<ViewConfig> viewConfigs,
+      CalculationArguments calculationArguments,
+      MarketDataEnvironment marketData,
+      List<?> portfolio) {
+
+    try {
+      return Futures.allAsList(runViewsAsync(viewConfigs, calculationArguments, marketData, portfolio)).get();
+    } catch (InterruptedException | ExecutionException e) {
+      // this will only happen if there's a bug in the engine, all exceptions should be caught and converted to results
+      throw new OpenGammaRuntimeException("Failed to run views", e);
+    }
+  }
+
+  /**
+   * Creates a set of views and starts running them concurrently in a single calculation cycle, returning
+   * a future for the results of each view.
+   * <p>
+   * All the views use the same cache for the cycle so values calculated by one view are available to the others.
+   * Each view starts running as soon as it has been created so its results can be available before the
+   * later views have been created. Callers that want to handle each view's results as soon as they are
+   * available should add a listener to its future.
+   *
+   * @param viewConfigs configuration defining the views that will perform the calculations
+   * @param calculationArguments options used when performing calculations
+   * @param marketData market data to be used in the calculations
+   * @param portfolio the trades, securities (or anything else) that are the inputs to the calculations
+   * @return futures for the calculation results of each view, in the same order as {@code viewConfigs}
+   */
+  public List<ListenableFuture<Results>> runViewsAsync(
+      List<ViewConfig> viewConfigs,
+      CalculationArguments calculationArguments,
+      MarketDataEnvironment marketData,
+      List<?> portfolio) {
+
+    ArgumentChecker.notNull(viewConfigs, "viewConfigs");
+    Set<Class<?>> inputTypes = EngineUtils.getInputTypes(portfolio);
+    // the cache is fetched once so every view in the batch sees the same values, even if it's cleared part way through
+    Cache<Object, Object> cycleCache = _viewFactory.getCache();
+    List<ListenableFuture<Results>> resultFutures = Lists.newArrayListWithExpectedSize(viewConfigs.size());
+
+    for (ViewConfig viewConfig : viewConfigs) {
+      View view = _viewFactory.createView(viewConfig, inputTypes);
+      resultFutures.add(view.runAsync(calculationArguments, marketData, portfolio, cycleCache));
+    }
+    return resultFutures;
+  }
+
   @Override
   public ScenarioResults runScenarios(
       ViewConfig viewConfig,
@@ -87,10 +142,12 @@ public class DefaultEngine implements Engine {
     // the outer set is the cycles, the list holds the perturbations to apply in that cycle
     View view = _viewFactory.createView(viewConfig, EngineUtils.getInputTypes(portfolio));
     List<ListenableFuture<Pair<String, Results>>> resultFutures = new ArrayList<>();
+    // shares the results of function calls between scenarios if the calls read the same market data in each scenario
+    ScenarioMemo memo = new ScenarioMemo();
 
     for (Map.Entry<String, MarketDataEnvironment> entry : scenarioMarketData.getData().entrySet()) {
       String scenarioName = entry.getKey();
-      MarketDataEnvironment marketData = entry.getValue();
+      MarketDataEnvironment marketData = new ScenarioMemoMarketDataEnvironment(entry.getValue(), memo);
 
       // start running the view and return a future of the results
       ListenableFuture<Results> resultsFuture = view.runAsync(calculationArguments, marketData, portfolio);
@@ -110,6 +167,76 @@ public class DefaultEngine implements Engine {
     }
   }
 
+  @Override
+  public void runScenarios(
+      ViewConfig viewConfig,
+      ScenarioMarketDataEnvironment scenarioMarketData,
+      CalculationArguments calculationArguments,
+      List<?> portfolio,
+      ScenarioResultsListener listener,
+      int maxConcurrentScenarios) {
+
+    View view = _viewFactory.createView(viewConfig, EngineUtils.getInputTypes(portfolio));
+    final List<String> scenarioNames = new ArrayList<>(scenarioMarketData.getData().keySet());
+    final List<MarketDataEnvironment> marketData = new ArrayList<>(scenarioMarketData.getData().values());
+
+    // the market data is already built so its future is complete
+    Function<Integer, ListenableFuture<MarketDataEnvironment>> marketDataFutures =
+        new Function<Integer, ListenableFuture<MarketDataEnvironment>>() {
+          @Override
+          public ListenableFuture<MarketDataEnvironment> apply(Integer scenarioIndex) {
+            return Futures.immediateFuture(marketData.get(scenarioIndex));
+          }
+        };
+    streamScenarios(
+        view,
+        scenarioNames,
+        marketDataFutures,
+        calculationArguments,
+        portfolio,
+        listener,
+        maxConcurrentScenarios);
+  }
+
+  @Override
+  public void runScenarios(
+      ViewConfig viewConfig,
+      final MarketDataEnvironment baseData,
+      ScenarioDefinition scenarioDefinition,
+      CalculationArguments calculationArguments,
+      List<?> portfolio,
+      ScenarioResultsListener listener,
+      int maxConcurrentScenarios) {
+
+    View view = _viewFactory.createView(viewConfig, EngineUtils.getInputTypes(portfolio));
+    final Set<MarketDataRequirement> requirements = view.gatherRequirements(baseData, calculationArguments, portfolio);
+    final List<SingleScenarioDefinition> scenarios = scenarioDefinition.getScenarios();
+    final MarketDataSpecification marketDataSpecification = calculationArguments.getMarketDataSpecification();
+    final ZonedDateTime valuationTime = calculationArguments.getValuationTime();
+    List<String> scenarioNames = Lists.newArrayListWithExpectedSize(scenarios.size());
+
+    for (int i = 0; i < scenarios.size(); i++) {
+      scenarioNames.add(scenarioName(i));
+    }
+    // the market data for each scenario is only built when there is room for the scenario to run
+    Function<Integer, ListenableFuture<MarketDataEnvironment>> marketDataFutures =
+        new Function<Integer, ListenableFuture<MarketDataEnvironment>>() {
+          @Override
+          public ListenableFuture<MarketDataEnvironment> apply(Integer scenarioIndex) {
+            SingleScenarioDefinition scenario = scenarios.get(scenarioIndex);
+            return marketDataFuture(baseData, requirements, scenario, marketDataSpecification, valuationTime);
+          }
+        };
+    streamScenarios(
+        view,
+        scenarioNames,
+        marketDataFutures,
+        calculationArguments,
+        portfolio,
+        listener,
+        maxConcurrentScenarios);
+  }
+
   @Override
   public MarketDataEnvironment buildMarketData(
       ViewConfig viewConfig,
@@ -166,6 +293,73 @@ public class DefaultEngine implements Engine {
     }
   }
 
+  /**
+   * Runs a view once for each scenario, passing the results of each scenario to a listener as it completes,
+   * with at most {@code maxConcurrentScenarios} scenarios in progress at once. Blocks until all the scenarios
+   * have completed.
+   * <p>
+   * A scenario is only started when there is room for it, so the market data and results of at most
+   * {@code maxConcurrentScenarios} scenarios are referenced by the engine at any time. The listener is called
+   * from one thread at a time.
+   * <p>
+   * The exception is the {@link ScenarioMemo} shared by the scenarios. It keeps up to
+   * {@link ScenarioMemo#MAX_RESULTS_PER_CALL} results of every cacheable call made by another cacheable call, and the
+   * market data values the calls read, until all the scenarios have completed. The results of the output functions
+   * called by the engine aren't kept. Its size depends on the number of different calls, not on
+   * {@code maxConcurrentScenarios}.
+   *
+   * @param view the view that performs the calculations
+   * @param scenarioNames the names of the scenarios
+   * @param marketDataFutures returns a future for the market data of the scenario with a given index
+   * @param calculationArguments options used when performing calculations
+   * @param portfolio the items in the portfolio
+   * @param listener receives the results of each scenario as it completes
+   * @param maxConcurrentScenarios the maximum number of scenarios in progress at the same time
+   */
+  private void streamScenarios(
+      final View view,
+      List<String> scenarioNames,
+      Function<Integer, ListenableFuture<MarketDataEnvironment>> marketDataFutures,
+      final CalculationArguments calculationArguments,
+      final List<?> portfolio,
+      ScenarioResultsListener listener,
+      int maxConcurrentScenarios) {
+
+    ArgumentChecker.notNull(listener, "listener");
+    ArgumentChecker.notNegativeOrZero(maxConcurrentScenarios, "maxConcurrentScenarios");
+    // shares the results of function calls between scenarios if the calls read the same market data in each scenario
+    final ScenarioMemo memo = new ScenarioMemo();
+    // a permit is held by each scenario from the time it is started until the listener has received its results
+    Semaphore permits = new Semaphore(maxConcurrentScenarios);
+    // the first failure, the remaining scenarios aren't started if there is one
+    AtomicReference<Throwable> failure = new AtomicReference<>();
+
+    try {
+      for (int i = 0; i < scenarioNames.size() && failure.get() == null; i++) {
+        permits.acquire();
+        ListenableFuture<Results> resultsFuture = Futures.transform(
+            marketDataFutures.apply(i),
+            new AsyncFunction<MarketDataEnvironment, Results>() {
+              @Override
+              public ListenableFuture<Results> apply(MarketDataEnvironment marketData) {
+                MarketDataEnvironment scenarioData = new ScenarioMemoMarketDataEnvironment(marketData, memo);
+                return view.runAsync(calculationArguments, scenarioData, portfolio);
+              }
+            });
+        Futures.addCallback(resultsFuture, new ScenarioCallback(scenarioNames.get(i), listener, permits, failure));
+      }
+      // wait for the scenarios that are still running
+      permits.acquire(maxConcurrentScenarios);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new OpenGammaRuntimeException("Interrupted while running scenarios", e);
+    }
+    if (failure.get() != null) {
+      // this will only happen if there's a bug in the engine or the listener fails
+      throw new OpenGammaRuntimeException("Failed to run scenarios", failure.get());
+    }
+  }
+
   /**
    * Builds the market data for a set of scenarios given the market data for each of the individual scenarios.
    *
@@ -174,17 +368,24 @@ public class DefaultEngine implements Engine {
    */
   private ScenarioMarketDataEnvironment buildScenarioData(List<MarketDataEnvironment> marketDataList) {
     ImmutableMap.Builder<String, MarketDataEnvironment> builder = ImmutableMap.builder();
-    int scenarioIndex = 1;
 
-    for (MarketDataEnvironment marketData : marketDataList) {
-      // TODO a better way to name scenarios
-      String scenarioName = Integer.toString(scenarioIndex);
-      scenarioIndex++;
-      builder.put(scenarioName, marketData);
+    for (int i = 0; i < marketDataList.size(); i++) {
+      builder.put(scenarioName(i), marketDataList.get(i));
     }
     return new MapScenarioMarketDataEnvironment(builder.build());
   }
 
+  /**
+   * Returns the name of a scenario built from a scenario definition.
+   *
+   * @param scenarioIndex the index of the scenario in the definition
+   * @return the name of the scenario
+   */
+  private static String scenarioName(int scenarioIndex) {
+    // TODO a better way to name scenarios
+    return Integer.toString(scenarioIndex + 1);
+  }
+
   /**
    * Wraps a future so its return value includes the name of the scenario that produced its results.
    *
@@ -258,6 +459,48 @@ public class DefaultEngine implements Engine {
         });
   }
 
+  /**
+   * Passes the results of a scenario to the listener and releases the scenario's permit so another scenario can start.
+   */
+  private static final class ScenarioCallback implements FutureCallback<Results> {
+
+    private final String _scenarioName;
+    private final ScenarioResultsListener _listener;
+    private final Semaphore _permits;
+    private final AtomicReference<Throwable> _failure;
+
+    private ScenarioCallback(String scenarioName,
+                             ScenarioResultsListener listener,
+                             Semaphore permits,
+                             AtomicReference<Throwable> failure) {
+      _scenarioName = scenarioName;
+      _listener = listener;
+      _permits = permits;
+      _failure = failure;
+    }
+
+    @Override
+    public void onSuccess(Results results) {
+      try {
+        // listeners don't need to be thread safe
+        synchronized (_listener) {
+          _listener.scenarioCompleted(_scenarioName, results);
+        }
+      } catch (Throwable t) {
+        // errors are caught too, otherwise the future's executor swallows them and the run appears to succeed
+        _failure.compareAndSet(null, t);
+      } finally {
+        _permits.release();
+      }
+    }
+
+    @Override
+    public void onFailure(Throwable t) {
+      _failure.compareAndSet(null, t);
+      _permits.release();
+    }
+  }
+
   //--------------------------------------------------------------------------------------------------------------------
   // Everything below here is temporary and intended to ease migration from 2.8 to 2.9.
   // It will be removed in 2.10 or 3.0 at the latest
@@ -24,8 +24,8 @@ import com.opengamma.sesame.marketdata.scenarios.ScenarioDefinition;
  * Market data is built by {@link #buildMarketData} (for a single scenario) and {@link #buildScenarioMarketData}
  * (for multiple scenarios).
  * <p>
- * Calculations are performed by {@link #runView} (for a single scenario)
- * and {@link #runScenarios} (for multiple scenarios).
+ * Calculations are performed by {@link #runView} (for a single scenario), {@link #runViews}
+ * (for multiple views sharing a single scenario) and {@link #runScenarios} (for multiple scenarios).
  */
 public interface Engine {
 
@@ -88,6 +88,28 @@ public interface Engine {
       MarketDataEnvironment marketData,
       List<?> portfolio);
 
+  /**
+   * Creates a set of views and runs them concurrently in a single calculation cycle.
+   * <p>
+   * All the views use the same cache for the cycle so values calculated by one view, for example curves
+   * and FX matrices, are available to the others. If two views request the same value at the same time
+   * it is only calculated once.
+   * <p>
+   * The valuation time in the market data is ignored, the valuation time from
+   * {@code calculationArguments} is used. This will change in v3.0.
+   *
+   * @param viewConfigs configuration defining the views that will perform the calculations
+   * @param calculationArguments options used when performing calculations
+   * @param marketData market data to be used in the calculations
+   * @param portfolio the trades, securities (or anything else) that are the inputs to the calculations
+   * @return the calculation results for each view, in the same order as {@code viewConfigs}
+   */
+  List<Results> runViews(
+      List<ViewConfig> viewConfigs,
+      CalculationArguments calculationArguments,
+      MarketDataEnvironment marketData,
+      List<?> portfolio);
+
   /**
    * Performs the calculations defined in a view multiple times, using data from a different scenario each time.
    * <p>
@@ -106,6 +128,72 @@ public interface Engine {
       CalculationArguments calculationArguments,
       List<?> portfolio);
 
+  /**
+   * Performs the calculations defined in a view multiple times, using data from a different scenario each time,
+   * and passes the results of each scenario to a listener as soon as the scenario completes.
+   * <p>
+   * Unlike {@link #runScenarios(ViewConfig, ScenarioMarketDataEnvironment, CalculationArguments, List)} the results
+   * of the scenarios aren't collected and at most {@code maxConcurrentScenarios} scenarios are calculated at once,
+   * so the memory needed for the results is bounded by the number of concurrent scenarios rather than the total
+   * number. This method blocks until every scenario has completed and the listener has been notified.
+   * <p>
+   * Function results shared between scenarios are kept until the end of the run, see
+   * {@link com.opengamma.sesame.cache.ScenarioMemo}. That memory grows with the number of different function calls
+   * made by the output functions, not the number of concurrent scenarios.
+   * <p>
+   * The valuation time in the market data is ignored, the valuation time from {@code calculationArguments} is used.
+   * This will change in v3.0.
+   *
+   * @param viewConfig configuration of the view that performs the calculations
+   * @param marketData the market data used in the calculations
+   * @param calculationArguments options used when performing calculations
+   * @param portfolio the items in the portfolio
+   * @param listener receives the results of each scenario as it completes
+   * @param maxConcurrentScenarios the maximum number of scenarios calculated at the same time
+   */
+  void runScenarios(
+      ViewConfig viewConfig,
+      ScenarioMarketDataEnvironment marketData,
+      CalculationArguments calculationArguments,
+      List<?> portfolio,
+      ScenarioResultsListener listener,
+      int maxConcurrentScenarios);
+
+  /**
+   * Builds the market data for a set of scenarios and performs the calculations defined in a view using the data
+   * for each scenario, passing the results of each scenario to a listener as soon as the scenario completes.
+   * <p>
+   * The market data for a scenario is only built when the scenario is about to be calculated and at most
+   * {@code maxConcurrentScenarios} scenarios are calculated at once, so the memory needed for the market data
+   * and results is bounded by the number of concurrent scenarios rather than the total number. This method blocks
+   * until every scenario has completed and the listener has been notified. The scenarios are named in the same
+   * way as in {@link #buildScenarioMarketData(ViewConfig, MarketDataEnvironment, ScenarioDefinition,
+   * CalculationArguments, List)}.
+   * <p>
+   * Function results shared between scenarios are kept until the end of the run, see
+   * {@link com.opengamma.sesame.cache.ScenarioMemo}. That memory grows with the number of different function calls
+   * made by the output functions, not the number of concurrent scenarios.
+   * <p>
+   * The valuation time in the base data is ignored, the valuation time from
+   * {@code calculationArguments} is used for all scenarios. This will change in v3.0.
+   *
+   * @param viewConfig configuration of the view that performs the calculations
+   * @param baseData the base market data used to derive the data for each scenario
+   * @param scenarioDefinition defines how the market data for each scenario is derived from the base data
+   * @param calculationArguments options used when performing calculations
+   * @param portfolio the items in the portfolio
+   * @param listener receives the results of each scenario as it completes
+   * @param maxConcurrentScenarios the maximum number of scenarios built and calculated at the same time
+   */
+  void runScenarios(
+      ViewConfig viewConfig,
+      MarketDataEnvironment baseData,
+      ScenarioDefinition scenarioDefinition,
+      CalculationArguments calculationArguments,
+      List<?> portfolio,
+      ScenarioResultsListener listener,
+      int maxConcurrentScenarios);
+
   /**
    * Builds the market data required for performing calculations over a portfolio for a set of scenarios.
    * If the calculations require any data not provided in the {@code suppliedData} it is built by the
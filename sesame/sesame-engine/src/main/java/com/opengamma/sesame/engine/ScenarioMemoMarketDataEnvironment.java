@@ -0,0 +1,62 @@
+/**
+ * Copyright (C) 2014 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.sesame.engine;
+
+import java.util.Map;
+
+import org.threeten.bp.LocalDate;
+import org.threeten.bp.ZonedDateTime;
+
+import com.opengamma.sesame.cache.ScenarioMemo;
+import com.opengamma.sesame.marketdata.MarketDataBundle;
+import com.opengamma.sesame.marketdata.MarketDataEnvironment;
+import com.opengamma.sesame.marketdata.MarketDataEnvironmentBuilder;
+import com.opengamma.sesame.marketdata.MarketDataId;
+import com.opengamma.sesame.marketdata.SingleValueRequirement;
+import com.opengamma.timeseries.date.DateTimeSeries;
+import com.opengamma.util.ArgumentChecker;
+
+/**
+ * Market data environment for one scenario in a scenario run whose bundle records the data read by the functions
+ * in a {@link ScenarioMemo}, allowing results to be shared between scenarios.
+ * <p>
+ * All methods apart from {@link #toBundle()} delegate to the scenario's environment.
+ */
+class ScenarioMemoMarketDataEnvironment implements MarketDataEnvironment {
+
+  private final MarketDataEnvironment _delegate;
+  private final ScenarioMemo _memo;
+
+  ScenarioMemoMarketDataEnvironment(MarketDataEnvironment delegate, ScenarioMemo memo) {
+    _delegate = ArgumentChecker.notNull(delegate, "delegate");
+    _memo = ArgumentChecker.notNull(memo, "memo");
+  }
+
+  @Override
+  public Map<SingleValueRequirement, Object> getData() {
+    return _delegate.getData();
+  }
+
+  @Override
+  public Map<MarketDataId<?>, DateTimeSeries<LocalDate, ?>> getTimeSeries() {
+    return _delegate.getTimeSeries();
+  }
+
+  @Override
+  public ZonedDateTime getValuationTime() {
+    return _delegate.getValuationTime();
+  }
+
+  @Override
+  public MarketDataEnvironmentBuilder toBuilder() {
+    return _delegate.toBuilder();
+  }
+
+  @Override
+  public MarketDataBundle toBundle() {
+    return _memo.wrap(_delegate.toBundle());
+  }
+}
@@ -0,0 +1,447 @@
+/**
+ * Copyright (C) 2014 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.sesame.engine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.google.common.collect.ImmutableList;
+import com.opengamma.util.ArgumentChecker;
+import com.opengamma.util.money.CurrencyAmount;
+import com.opengamma.util.result.Result;
+
+/**
+ * Listener that reduces the results of a scenario run to statistics for each cell as each scenario completes,
+ * so the results of the individual scenarios don't have to be kept.
+ * <p>
+ * The count, sum, mean, minimum and maximum of each cell across the scenarios are available. These are updated as
+ * each scenario arrives and take a few values per cell, whatever the number of scenarios.
+ * <p>
+ * Quantiles are available for the levels passed to the constructor. By default they are estimated as each scenario
+ * arrives using the P&sup2; algorithm (Jain and Chlamtac, 1985), which keeps five markers for each quantile of each
+ * cell. The memory used is O(levels &times; cells) whatever the number of scenarios. The estimates are exact for up to
+ * five scenarios and for the levels 0 and 1; for other levels their accuracy improves with the number of scenarios.
+ * <p>
+ * Exact quantiles are available from an aggregator created by {@link #withExactQuantiles(double...)}. They need the
+ * value of every cell in every scenario. These are kept in one {@code double[cells]} per scenario, so the memory used
+ * is O(scenarios &times; cells): 8 bytes per cell per scenario, e.g. 8GB for 10,000 scenarios of 100,000 cells. Only
+ * use exact quantiles when that fits in memory.
+ * <p>
+ * Only numeric results are included, i.e. successful results whose value is a {@link Number} or
+ * {@link CurrencyAmount}. Cells whose result is a failure or another type are left out of the statistics for the
+ * scenario and the count for the cell is not incremented.
+ * <p>
+ * Every scenario must have the same rows and columns. This class isn't thread safe but the engine only calls a
+ * listener from one thread at a time.
+ */
+public final class ScenarioResultsAggregator implements ScenarioResultsListener {
+
+  /** The number of markers used to estimate each quantile. */
+  private static final int MARKERS = 5;
+
+  /** The quantile levels, in ascending order. */
+  private final double[] _quantileLevels;
+
+  /** Whether the quantiles are calculated from the value of every cell in every scenario. */
+  private final boolean _exactQuantiles;
+
+  /** The values of the cells in each scenario, only kept for exact quantiles. */
+  private final List<double[]> _scenarioValues = new ArrayList<>();
+
+  private List<String> _columnNames;
+  private List<Object> _inputs;
+  private int _scenarioCount;
+
+  // the statistics are indexed by row * column count + column
+  private int[] _counts;
+  private double[] _sums;
+  private double[] _mins;
+  private double[] _maxs;
+
+  // the markers for estimating the quantiles, indexed by (cell * level count + level) * MARKERS + marker
+  // the first values of a cell are kept in the heights until there are enough to place the markers
+  private double[] _markerHeights;
+  private int[] _markerPositions;
+
+  /**
+   * Creates an aggregator which estimates the quantiles, see the class documentation.
+   *
+   * @param quantileLevels the levels of the quantiles to estimate for each cell, each between 0 and 1
+   */
+  public ScenarioResultsAggregator(double... quantileLevels) {
+    this(false, quantileLevels);
+  }
+
+  private ScenarioResultsAggregator(boolean exactQuantiles, double[] quantileLevels) {
+    ArgumentChecker.notNull(quantileLevels, "quantileLevels");
+    _exactQuantiles = exactQuantiles;
+    _quantileLevels = quantileLevels.clone();
+    Arrays.sort(_quantileLevels);
+
+    for (double level : _quantileLevels) {
+      ArgumentChecker.isTrue(level >= 0 && level <= 1, "Quantile levels must be between 0 and 1, {} is invalid",
+                             level);
+    }
+  }
+
+  /**
+   * Creates an aggregator which calculates exact quantiles. The value of every cell in every scenario is kept,
+   * see the class documentation.
+   *
+   * @param quantileLevels the levels of the quantiles to calculate for each cell, each between 0 and 1
+   * @return an aggregator which calculates exact quantiles
+   */
+  public static ScenarioResultsAggregator withExactQuantiles(double... quantileLevels) {
+    return new ScenarioResultsAggregator(true, quantileLevels);
+  }
+
+  @Override
+  public void scenarioCompleted(String scenarioName, Results results) {
+    ArgumentChecker.notNull(results, "results");
+    List<ResultRow> rows = results.getRows();
+
+    if (_columnNames == null) {
+      initialize(results);
+    } else if (!_columnNames.equals(results.getColumnNames()) || rows.size() != _inputs.size()) {
+      throw new IllegalArgumentException("The results for scenario " + scenarioName + " have different rows or " +
+                                             "columns from the earlier scenarios");
+    }
+    int columnCount = _columnNames.size();
+    double[] values = null;
+
+    if (_exactQuantiles && _quantileLevels.length > 0) {
+      values = new double[_counts.length];
+      Arrays.fill(values, Double.NaN);
+    }
+
+    for (int rowIndex = 0; rowIndex < rows.size(); rowIndex++) {
+      List<ResultItem> items = rows.get(rowIndex).getItems();
+
+      for (int columnIndex = 0; columnIndex < items.size(); columnIndex++) {
+        int cell = rowIndex * columnCount + columnIndex;
+        double value = numericValue(items.get(columnIndex).getResult());
+
+        if (values != null) {
+          values[cell] = value;
+        }
+        if (!Double.isNaN(value)) {
+          _counts[cell]++;
+          _sums[cell] += value;
+          _mins[cell] = Math.min(_mins[cell], value);
+          _maxs[cell] = Math.max(_maxs[cell], value);
+
+          if (_markerHeights != null) {
+            addToEstimates(cell, value);
+          }
+        }
+      }
+    }
+    if (values != null) {
+      _scenarioValues.add(values);
+    }
+    _scenarioCount++;
+  }
+
+  private void initialize(Results results) {
+    _columnNames = ImmutableList.copyOf(results.getColumnNames());
+    List<Object> inputs = new ArrayList<>(results.getRows().size());
+
+    for (ResultRow row : results.getRows()) {
+      inputs.add(row.getInput());
+    }
+    _inputs = inputs;
+    int cellCount = _inputs.size() * _columnNames.size();
+    _counts = new int[cellCount];
+    _sums = new double[cellCount];
+    _mins = new double[cellCount];
+    _maxs = new double[cellCount];
+    Arrays.fill(_mins, Double.POSITIVE_INFINITY);
+    Arrays.fill(_maxs, Double.NEGATIVE_INFINITY);
+
+    if (!_exactQuantiles && _quantileLevels.length > 0) {
+      _markerHeights = new double[cellCount * _quantileLevels.length * MARKERS];
+      _markerPositions = new int[cellCount * _quantileLevels.length * MARKERS];
+    }
+  }
+
+  /**
+   * Adds a value of a cell to the estimates of its quantiles. The cell's count must already include the value.
+   */
+  private void addToEstimates(int cell, double value) {
+    int count = _counts[cell];
+
+    for (int level = 0; level < _quantileLevels.length; level++) {
+      int offset = (cell * _quantileLevels.length + level) * MARKERS;
+
+      if (count <= MARKERS) {
+        _markerHeights[offset + count - 1] = value;
+
+        if (count == MARKERS) {
+          Arrays.sort(_markerHeights, offset, offset + MARKERS);
+          for (int i = 0; i < MARKERS; i++) {
+            _markerPositions[offset + i] = i + 1;
+          }
+        }
+      } else {
+        updateMarkers(offset, _quantileLevels[level], count, value);
+      }
+    }
+  }
+
+  /**
+   * Moves the markers for a quantile to take account of a new value, using the P&sup2; algorithm. The heights of the
+   * outer markers are the minimum and maximum. The other markers are moved towards their desired positions, adjusting
+   * their heights with a piecewise-parabolic formula, or linearly if that would put them out of order.
+   *
+   * @param offset the index of the first marker
+   * @param level the level of the quantile
+   * @param count the number of values including the new value
+   * @param value the new value
+   */
+  private void updateMarkers(int offset, double level, int count, double value) {
+    double[] heights = _markerHeights;
+    int[] positions = _markerPositions;
+    // the index of the marker below the value
+    int marker = 0;
+
+    if (value < heights[offset]) {
+      heights[offset] = value;
+    } else if (value > heights[offset + MARKERS - 1]) {
+      heights[offset + MARKERS - 1] = value;
+      marker = MARKERS - 2;
+    } else {
+      while (marker < MARKERS - 2 && value >= heights[offset + marker + 1]) {
+        marker++;
+      }
+    }
+    for (int i = marker + 1; i < MARKERS; i++) {
+      positions[offset + i]++;
+    }
+    for (int i = 1; i < MARKERS - 1; i++) {
+      int j = offset + i;
+      double difference = desiredPosition(i, level, count) - positions[j];
+
+      if ((difference >= 1 && positions[j + 1] - positions[j] > 1) ||
+          (difference <= -1 && positions[j - 1] - positions[j] < -1)) {
+        int step = difference > 0 ? 1 : -1;
+        double height = parabolicHeight(j, step);
+
+        if (heights[j - 1] < height && height < heights[j + 1]) {
+          heights[j] = height;
+        } else {
+          heights[j] += step * (heights[j + step] - heights[j]) / (positions[j + step] - positions[j]);
+        }
+        positions[j] += step;
+      }
+    }
+  }
+
+  private double parabolicHeight(int j, int step) {
+    double[] heights = _markerHeights;
+    int[] positions = _markerPositions;
+    double below = positions[j] - positions[j - 1];
+    double above = positions[j + 1] - positions[j];
+    return heights[j] + step / (below + above) *
+        ((below + step) * (heights[j + 1] - heights[j]) / above +
+            (above - step) * (heights[j] - heights[j - 1]) / below);
+  }
+
+  /**
+   * Returns the desired position of a marker, starting from 1, when a number of values have been added.
+   */
+  private static double desiredPosition(int marker, double level, int count) {
+    switch (marker) {
+      case 1:
+        return 1 + (count - 1) * level / 2;
+      case 2:
+        return 1 + (count - 1) * level;
+      case 3:
+        return 1 + (count - 1) * (1 + level) / 2;
+      default:
+        throw new IllegalArgumentException("No desired position for marker " + marker);
+    }
+  }
+
+  /**
+   * Returns the value of a result as a double, or NaN if the result isn't a successful numeric result.
+   */
+  private static double numericValue(Result<?> result) {
+    if (result == null || !result.isSuccess()) {
+      return Double.NaN;
+    }
+    Object value = result.getValue();
+
+    if (value instanceof Number) {
+      return ((Number) value).doubleValue();
+    } else if (value instanceof CurrencyAmount) {
+      return ((CurrencyAmount) value).getAmount();
+    } else {
+      return Double.NaN;
+    }
+  }
+
+  /**
+   * @return the number of scenarios whose results have been received
+   */
+  public int getScenarioCount() {
+    return _scenarioCount;
+  }
+
+  /**
+   * @return the names of the columns in the results, empty if no results have been received
+   */
+  public List<String> getColumnNames() {
+    return _columnNames == null ? ImmutableList.<String>of() : _columnNames;
+  }
+
+  /**
+   * @return the inputs in each row of the results, empty if no results have been received
+   */
+  public List<Object> getInputs() {
+    return _inputs == null ? ImmutableList.of() : ImmutableList.copyOf(_inputs);
+  }
+
+  /**
+   * Returns the number of scenarios in which a cell had a numeric value.
+   *
+   * @param rowIndex the index of the row
+   * @param columnIndex the index of the column
+   * @return the number of scenarios in which the cell had a numeric value
+   */
+  public int getCount(int rowIndex, int columnIndex) {
+    return _counts[cellIndex(rowIndex, columnIndex)];
+  }
+
+  /**
+   * Returns the sum of the values of a cell across the scenarios.
+   *
+   * @param rowIndex the index of the row
+   * @param columnIndex the index of the column
+   * @return the sum of the values of the cell across the scenarios
+   */
+  public double getSum(int rowIndex, int columnIndex) {
+    return _sums[cellIndex(rowIndex, columnIndex)];
+  }
+
+  /**
+   * Returns the mean of the values of a cell across the scenarios.
+   *
+   * @param rowIndex the index of the row
+   * @param columnIndex the index of the column
+   * @return the mean of the values of the cell across the scenarios, NaN if the cell never had a numeric value
+   */
+  public double getMean(int rowIndex, int columnIndex) {
+    int cell = cellIndex(rowIndex, columnIndex);
+    return _counts[cell] == 0 ? Double.NaN : _sums[cell] / _counts[cell];
+  }
+
+  /**
+   * Returns the minimum value of a cell across the scenarios.
+   *
+   * @param rowIndex the index of the row
+   * @param columnIndex the index of the column
+   * @return the minimum value of the cell across the scenarios, NaN if the cell never had a numeric value
+   */
+  public double getMin(int rowIndex, int columnIndex) {
+    int cell = cellIndex(rowIndex, columnIndex);
+    return _counts[cell] == 0 ? Double.NaN : _mins[cell];
+  }
+
+  /**
+   * Returns the maximum value of a cell across the scenarios.
+   *
+   * @param rowIndex the index of the row
+   * @param columnIndex the index of the column
+   * @return the maximum value of the cell across the scenarios, NaN if the cell never had a numeric value
+   */
+  public double getMax(int rowIndex, int columnIndex) {
+    int cell = cellIndex(rowIndex, columnIndex);
+    return _counts[cell] == 0 ? Double.NaN : _maxs[cell];
+  }
+
+  /**
+   * Returns a quantile of the values of a cell across the scenarios. This is the smallest value for which the
+   * proportion of the values less than or equal to it is at least the level. Unless the aggregator was created by
+   * {@link #withExactQuantiles(double...)} this is an estimate, see the class documentation. For exact quantiles the
+   * cell's values are copied and sorted on each call.
+   *
+   * @param rowIndex the index of the row
+   * @param columnIndex the index of the column
+   * @param level the level of the quantile, must be one of the levels passed to the constructor
+   * @return the quantile of the values of the cell across the scenarios, NaN if the cell never had a numeric value
+   */
+  public double getQuantile(int rowIndex, int columnIndex, double level) {
+    int levelIndex = Arrays.binarySearch(_quantileLevels, level);
+
+    if (levelIndex < 0) {
+      throw new IllegalArgumentException("Quantile level " + level + " wasn't specified when the aggregator was created");
+    }
+    int cell = cellIndex(rowIndex, columnIndex);
+    int count = _counts[cell];
+
+    if (count == 0) {
+      return Double.NaN;
+    }
+    if (!_exactQuantiles) {
+      return estimatedQuantile(cell, levelIndex, count);
+    }
+    double[] values = new double[count];
+    int i = 0;
+
+    for (double[] scenarioValues : _scenarioValues) {
+      double value = scenarioValues[cell];
+      if (!Double.isNaN(value)) {
+        values[i++] = value;
+      }
+    }
+    Arrays.sort(values);
+    return quantile(values, level);
+  }
+
+  private double estimatedQuantile(int cell, int levelIndex, int count) {
+    double level = _quantileLevels[levelIndex];
+
+    if (level == 0) {
+      return _mins[cell];
+    }
+    if (level == 1) {
+      return _maxs[cell];
+    }
+    int offset = (cell * _quantileLevels.length + levelIndex) * MARKERS;
+
+    if (count <= MARKERS) {
+      // the values are still in the marker heights
+      double[] values = Arrays.copyOfRange(_markerHeights, offset, offset + count);
+      Arrays.sort(values);
+      return quantile(values, level);
+    }
+    return _markerHeights[offset + MARKERS / 2];
+  }
+
+  /**
+   * Returns the smallest of a set of sorted values for which the proportion of the values less than or equal to it
+   * is at least the level.
+   */
+  private static double quantile(double[] sortedValues, double level) {
+    int index = (int) Math.ceil(level * sortedValues.length) - 1;
+    return sortedValues[Math.max(index, 0)];
+  }
+
+  private int cellIndex(int rowIndex, int columnIndex) {
+    if (_columnNames == null) {
+      throw new IllegalStateException("No results have been received");
+    }
+    if (rowIndex < 0 || rowIndex >= _inputs.size()) {
+      throw new IndexOutOfBoundsException("Index " + rowIndex + " is out of bounds. row count = " + _inputs.size());
+    }
+    if (columnIndex < 0 || columnIndex >= _columnNames.size()) {
+      throw new IndexOutOfBoundsException("Index " + columnIndex + " is out of bounds. column count = " +
+                                              _columnNames.size());
+    }
+    return rowIndex * _columnNames.size() + columnIndex;
+  }
+}
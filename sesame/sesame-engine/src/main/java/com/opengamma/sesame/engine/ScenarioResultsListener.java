@@ -0,0 +1,28 @@
+/**
+ * Copyright (C) 2014 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.sesame.engine;
+
+/**
+ * Receives the results of each scenario in a scenario run as soon as the scenario completes.
+ * <p>
+ * The engine only calls a listener from one thread at a time so implementations don't need to be thread safe.
+ * The engine keeps no reference to the results once the listener returns, so a listener that writes the results
+ * somewhere or reduces them (e.g. {@link ScenarioResultsAggregator}) allows the results to be garbage collected.
+ *
+ * @see Engine#runScenarios(com.opengamma.sesame.config.ViewConfig,
+ *      com.opengamma.sesame.marketdata.ScenarioMarketDataEnvironment, CalculationArguments, java.util.List,
+ *      ScenarioResultsListener, int)
+ */
+public interface ScenarioResultsListener {
+
+  /**
+   * Invoked when the calculations for a scenario have completed. The scenarios can complete in any order.
+   *
+   * @param scenarioName the name of the scenario
+   * @param results the calculation results for the scenario
+   */
+  void scenarioCompleted(String scenarioName, Results results);
+}
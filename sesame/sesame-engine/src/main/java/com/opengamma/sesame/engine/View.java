@@ -49,6 +49,7 @@ import com.opengamma.sesame.cache.CachingProxyDecorator;
 import com.opengamma.sesame.cache.DefaultFunctionCache;
 import com.opengamma.sesame.cache.ExecutingMethodsThreadLocal;
 import com.opengamma.sesame.cache.FunctionCache;
+import com.opengamma.sesame.cache.SingleFlightLoader;
 import com.opengamma.sesame.config.FunctionArguments;
 import com.opengamma.sesame.config.FunctionModelConfig;
 import com.opengamma.sesame.config.NonPortfolioOutput;
@@ -144,6 +145,7 @@ public class View {
        CacheProvider cacheFactory,
        CacheBuilder<Object, Object> cacheBuilder,
        CacheInvalidator cacheInvalidator,
+       SingleFlightLoader cacheLoader,
        Optional<MetricRegistry> metricRegistry) {
 
     // Provider that supplies the cache to the caching decorators
@@ -154,7 +156,8 @@ public class View {
         return _cacheThreadLocal.get();
       }
     };
-    FunctionCache cache = new DefaultFunctionCache(cacheProvider);
+    ArgumentChecker.notNull(cacheLoader, "cacheLoader");
+    FunctionCache cache = new DefaultFunctionCache(cacheProvider, cacheLoader);
     _cacheBuilder = ArgumentChecker.notNull(cacheBuilder, "cacheBuilder");
     _cachingEnabled = services.contains(FunctionService.CACHING);
     _cacheInvalidator = ArgumentChecker.notNull(cacheInvalidator, "cacheInvalidator");
@@ -168,7 +171,7 @@ public class View {
 
     ExecutingMethodsThreadLocal executingMethods = new ExecutingMethodsThreadLocal();
 
-    NodeDecorator decorator = createNodeDecorator(services, cacheProvider, executingMethods);
+    NodeDecorator decorator = createNodeDecorator(services, cacheProvider, executingMethods, cacheLoader);
 
     s_logger.debug("building graph model");
     GraphBuilder graphBuilder = new GraphBuilder(availableOutputs,
@@ -184,7 +187,8 @@ public class View {
 
   private NodeDecorator createNodeDecorator(EnumSet<FunctionService> services,
                                             CacheProvider cacheProvider,
-                                            ExecutingMethodsThreadLocal executingMethods) {
+                                            ExecutingMethodsThreadLocal executingMethods,
+                                            SingleFlightLoader cacheLoader) {
 
     ImmutableList.Builder<NodeDecorator> decorators = new ImmutableList.Builder<>();
 
@@ -205,7 +209,7 @@ public class View {
     // expensive calculations are not performed more
     // frequently than they need to be
     if (services.contains(FunctionService.CACHING)) {
-      decorators.add(new CachingProxyDecorator(cacheProvider, executingMethods));
+      decorators.add(new CachingProxyDecorator(cacheProvider, executingMethods, cacheLoader));
     }
 
     // Metrics records time taken to execute each function. This
@@ -312,6 +316,27 @@ public class View {
   public ListenableFuture<Results> runAsync(CalculationArguments calculationArguments,
                                             MarketDataEnvironment marketData,
                                             final List<?> inputs) {
+    return runAsync(calculationArguments, marketData, inputs, _cacheFactory.get());
+  }
+
+  /**
+   * Runs a single calculation cycle asynchronously using a cache supplied by the caller.
+   * <p>
+   * This allows several views to run concurrently against the same cache, even if the cache in the
+   * view factory is cleared after some of them have started. The cache is ignored if caching is
+   * not enabled for this view.
+   *
+   * @param calculationArguments settings for running the calculations
+   * @param marketData market data used by the calculations
+   * @param inputs the inputs to the calculation, e.g. trades, positions, securities
+   * @param cycleCache the cache used for the duration of the cycle
+   * @return a future representing the calculation results
+   * @throws IllegalStateException if ThreadLocalServiceContext not set
+   */
+  /* package */ ListenableFuture<Results> runAsync(CalculationArguments calculationArguments,
+                                                   MarketDataEnvironment marketData,
+                                                   final List<?> inputs,
+                                                   Cache<Object, Object> cycleCache) {
     ArgumentChecker.notNull(calculationArguments, "calculationArguments");
     final Instant start = Instant.now();
     final long startInitialization = System.nanoTime();
@@ -333,7 +358,7 @@ public class View {
      * the caching proxy to retrieve it. The tasks that perform the calculations set the thread local with
      * the cycle's cache before executing the calculations and clearing the thread local afterwards.
      */
-    Cache<Object, Object> cache = getCache();
+    Cache<Object, Object> cache = _cachingEnabled ? cycleCache : new NoOpCache();
     VersionCorrectionProvider vcProvider = getVersionCorrectionProvider(calculationArguments);
     ServiceContext originalContext = getThreadLocalServiceContext();
     ServiceContext context = originalContext.with(VersionCorrectionProvider.class, vcProvider);
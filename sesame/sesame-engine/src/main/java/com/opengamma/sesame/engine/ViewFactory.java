@@ -7,6 +7,7 @@
 package com.opengamma.sesame.engine;
 
 import java.util.EnumSet;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.atomic.AtomicReference;
@@ -24,6 +25,7 @@ import com.opengamma.core.position.PositionOrTrade;
 import com.opengamma.core.security.Security;
 import com.opengamma.sesame.cache.CacheInvalidator;
 import com.opengamma.sesame.cache.CacheProvider;
+import com.opengamma.sesame.cache.SingleFlightLoader;
 import com.opengamma.sesame.config.FunctionModelConfig;
 import com.opengamma.sesame.config.ViewConfig;
 import com.opengamma.sesame.function.AvailableImplementations;
@@ -78,6 +80,9 @@ public class ViewFactory implements ViewFactoryMonitor {
   private final ComponentMap _componentMap;
   private final CacheInvalidator _cacheInvalidator;
 
+  /** Shared by all views so requests for the same value from different views are coalesced. */
+  private final SingleFlightLoader _cacheLoader = new SingleFlightLoader();
+
   public ViewFactory(ExecutorService executor,
                      ComponentMap componentMap,
                      AvailableOutputs availableOutputs,
@@ -149,7 +154,17 @@ public class ViewFactory implements ViewFactoryMonitor {
   public View createView(ViewConfig viewConfig, EnumSet<FunctionService> services, Set<Class<?>> inputTypes) {
     return new View(viewConfig, _executor, _defaultConfig, _functionBuilder, services,
                     _componentMap, inputTypes, _availableOutputs, _availableImplementations,
-                    _cacheProvider, _cacheBuilder, _cacheInvalidator, _metricRegistry);
+                    _cacheProvider, _cacheBuilder, _cacheInvalidator, _cacheLoader, _metricRegistry);
+  }
+
+  /**
+   * Returns the current cache. Views created by this factory that run using the returned cache share
+   * their cached values even if {@link #clearCache()} is called while they are running.
+   *
+   * @return the current cache
+   */
+  /* package */ Cache<Object, Object> getCache() {
+    return _cacheProvider.get();
   }
 
   /**
@@ -169,5 +184,36 @@ public class ViewFactory implements ViewFactoryMonitor {
       s_logger.info("Clearing metrics");
       _metricRegistry.get().removeMatching(MetricFilter.ALL);
     }
+    _cacheLoader.clearCounts();
+  }
+
+  /**
+   * Returns the loader used by all views created by this factory to request values from the cache.
+   * It provides hit, miss and coalesced counts for all the cache keys and for each cached function method.
+   *
+   * @return the loader used by all views to request values from the cache
+   */
+  public SingleFlightLoader getCacheLoader() {
+    return _cacheLoader;
+  }
+
+  @Override
+  public long getCacheHits() {
+    return _cacheLoader.getTotals().getHits();
+  }
+
+  @Override
+  public long getCacheMisses() {
+    return _cacheLoader.getTotals().getMisses();
+  }
+
+  @Override
+  public long getCoalescedCacheRequests() {
+    return _cacheLoader.getTotals().getCoalesced();
+  }
+
+  @Override
+  public Map<String, SingleFlightLoader.Counts> getCacheCountsByMethod() {
+    return _cacheLoader.getCountsByMethod();
   }
 }
@@ -5,8 +5,12 @@
  */
 package com.opengamma.sesame.engine;
 
+import java.util.Map;
+
 import javax.management.MXBean;
 
+import com.opengamma.sesame.cache.SingleFlightLoader;
+
 /**
  * MBean interface for exposing engine operations via JMX.
  */
@@ -26,4 +30,27 @@ public interface ViewFactoryMonitor {
    * Discards all entries from the metrics registry.
    */
   void clearMetrics();
+
+  /**
+   * @return the number of requests for cached values that found the value in the cache
+   */
+  long getCacheHits();
+
+  /**
+   * @return the number of requests for cached values that calculated the value
+   */
+  long getCacheMisses();
+
+  /**
+   * @return the number of requests for cached values that waited for a value requested by another thread
+   */
+  long getCoalescedCacheRequests();
+
+  /**
+   * Returns the hit, miss and coalesced counts for each cached function method, keyed by a description of the
+   * method and the ID of the function.
+   *
+   * @return the counts of requests for cached values for each function method
+   */
+  Map<String, SingleFlightLoader.Counts> getCacheCountsByMethod();
 }
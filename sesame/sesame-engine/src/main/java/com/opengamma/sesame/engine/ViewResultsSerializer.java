@@ -28,6 +28,16 @@ import com.opengamma.util.xml.FormattingXmlStreamWriter;
  */
 public class ViewResultsSerializer {
 
+  /**
+   * The name of the block containing the results in the columnar format.
+   */
+  public static final String COLUMNAR_BLOCK_NAME = "results";
+
+  /**
+   * The results of the view.
+   */
+  private final Results _results;
+
   /**
    * The inputs used for the view.
    */
@@ -44,7 +54,7 @@ public class ViewResultsSerializer {
    * @param results the view inputs to create a serializer for
    */
   public ViewResultsSerializer(Results results) {
-    ArgumentChecker.notNull(results, "results");
+    _results = ArgumentChecker.notNull(results, "results");
     _viewInputs = results.getViewInputs();
     _viewOutputs = ViewOutputs.builder()
         .columnNames(results.getColumnNames())
@@ -71,6 +81,20 @@ public class ViewResultsSerializer {
     serialize(outputStream, _viewOutputs);
   }
 
+  /**
+   * Serialize the view outputs to the specified output stream in the columnar binary format,
+   * which is much smaller and quicker to write and read than XML. The results are written in a
+   * block named {@link #COLUMNAR_BLOCK_NAME} and can be read with a {@link ColumnarResultsReader}.
+   * Non-portfolio results and call graphs are not included.
+   *
+   * @param outputStream the output stream to serialize to
+   */
+  public void serializeViewOutputsColumnar(OutputStream outputStream) {
+    try (ColumnarResultsWriter writer = new ColumnarResultsWriter(outputStream)) {
+      writer.write(COLUMNAR_BLOCK_NAME, _results);
+    }
+  }
+
   private void serialize(OutputStream outputStream, Object object) {
     try (Writer writer = new OutputStreamWriter(outputStream)) {
       FudgeContext ctx = OpenGammaFudgeContext.getInstance();
@@ -0,0 +1,402 @@
+/**
+ * Copyright (C) 2014 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.sesame.cache;
+
+import static com.opengamma.sesame.config.ConfigBuilder.config;
+import static com.opengamma.sesame.config.ConfigBuilder.configureView;
+import static com.opengamma.sesame.config.ConfigBuilder.implementations;
+import static com.opengamma.sesame.config.ConfigBuilder.nonPortfolioOutput;
+import static com.opengamma.sesame.config.ConfigBuilder.output;
+import static org.mockito.Mockito.mock;
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertTrue;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import org.threeten.bp.LocalDate;
+import org.threeten.bp.ZonedDateTime;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.opengamma.id.ExternalIdBundle;
+import com.opengamma.service.ServiceContext;
+import com.opengamma.service.ThreadLocalServiceContext;
+import com.opengamma.sesame.DirectExecutorService;
+import com.opengamma.sesame.EngineTestUtils;
+import com.opengamma.sesame.Environment;
+import com.opengamma.sesame.SimpleEnvironment;
+import com.opengamma.sesame.config.EngineUtils;
+import com.opengamma.sesame.config.FunctionModelConfig;
+import com.opengamma.sesame.config.ViewConfig;
+import com.opengamma.sesame.engine.CalculationArguments;
+import com.opengamma.sesame.engine.ComponentMap;
+import com.opengamma.sesame.engine.DefaultEngine;
+import com.opengamma.sesame.engine.FunctionService;
+import com.opengamma.sesame.engine.Results;
+import com.opengamma.sesame.engine.ViewFactory;
+import com.opengamma.sesame.function.AvailableImplementationsImpl;
+import com.opengamma.sesame.function.AvailableOutputs;
+import com.opengamma.sesame.function.AvailableOutputsImpl;
+import com.opengamma.sesame.function.FunctionMetadata;
+import com.opengamma.sesame.function.Output;
+import com.opengamma.sesame.graph.FunctionBuilder;
+import com.opengamma.sesame.graph.FunctionModel;
+import com.opengamma.sesame.marketdata.MapScenarioMarketDataEnvironment;
+import com.opengamma.sesame.marketdata.MarketDataBundle;
+import com.opengamma.sesame.marketdata.MarketDataEnvironment;
+import com.opengamma.sesame.marketdata.MarketDataEnvironmentBuilder;
+import com.opengamma.sesame.marketdata.RawId;
+import com.opengamma.sesame.marketdata.builders.MarketDataEnvironmentFactory;
+import com.opengamma.timeseries.date.DateTimeSeries;
+import com.opengamma.timeseries.date.localdate.ImmutableLocalDateDoubleTimeSeries;
+import com.opengamma.util.result.Result;
+import com.opengamma.util.test.TestGroup;
+import com.opengamma.util.time.LocalDateRange;
+
+@Test(groups = TestGroup.UNIT)
+public class ScenarioMemoTest {
+
+  private static final Set<Class<?>> NO_COMPONENTS = ComponentMap.EMPTY.getComponentTypes();
+  private static final ZonedDateTime VALUATION_TIME = ZonedDateTime.now();
+  private static final RawId<Double> USD_RATE = RawId.of(ExternalIdBundle.of("TEST", "USD"));
+  private static final RawId<Double> EUR_RATE = RawId.of(ExternalIdBundle.of("TEST", "EUR"));
+  private static final LocalDate HISTORY_DATE = VALUATION_TIME.toLocalDate().minusDays(10);
+  private static final ZonedDateTime HISTORY_TIME = VALUATION_TIME.minusDays(5);
+  private static final LocalDateRange HISTORY_RANGE =
+      LocalDateRange.of(HISTORY_DATE.minusDays(10), HISTORY_DATE, true);
+
+  @BeforeMethod
+  public void setUp() {
+    ThreadLocalServiceContext.init(ServiceContext.of(ImmutableMap.<Class<?>, Object>of()));
+  }
+
+  /** calls that read the same data in different scenarios are only calculated once, outermost calls aren't kept */
+  @Test
+  public void shareUnperturbedCalls() {
+    PvFn fn = createFunction();
+    ScenarioMemo memo = new ScenarioMemo();
+    Environment base = environment(memo, 0.01, 0.02);
+    Environment eurShifted = environment(memo, 0.01, 0.03);
+    Environment eurShiftedAgain = environment(memo, 0.01, 0.03);
+    RateImpl.s_calls.set(0);
+    PvImpl.s_calls.set(0);
+
+    assertEquals(1d, fn.pv(base, USD_RATE).getValue(), 1e-12);
+    assertEquals(2d, fn.pv(base, EUR_RATE).getValue(), 1e-12);
+    assertEquals(2, RateImpl.s_calls.get());
+    assertEquals(2, PvImpl.s_calls.get());
+
+    // the USD rate is the same so it isn't calculated again, the EUR rate is different
+    // the PV calls are made by the caller rather than another cacheable call so their results aren't kept
+    assertEquals(1d, fn.pv(eurShifted, USD_RATE).getValue(), 1e-12);
+    assertEquals(3d, fn.pv(eurShifted, EUR_RATE).getValue(), 1e-12);
+    assertEquals(3, RateImpl.s_calls.get());
+    assertEquals(4, PvImpl.s_calls.get());
+
+    // all the data is the same as in the previous scenario
+    assertEquals(1d, fn.pv(eurShiftedAgain, USD_RATE).getValue(), 1e-12);
+    assertEquals(3d, fn.pv(eurShiftedAgain, EUR_RATE).getValue(), 1e-12);
+    assertEquals(3, RateImpl.s_calls.get());
+    assertEquals(6, PvImpl.s_calls.get());
+    assertEquals(3, memo.getHits());
+  }
+
+  /** without a memo every scenario is calculated */
+  @Test
+  public void noMemo() {
+    PvFn fn = createFunction();
+    RateImpl.s_calls.set(0);
+    fn.pv(new SimpleEnvironment(VALUATION_TIME, marketData(0.01, 0.02).toBundle()), USD_RATE);
+    fn.pv(new SimpleEnvironment(VALUATION_TIME, marketData(0.01, 0.03).toBundle()), USD_RATE);
+    assertEquals(2, RateImpl.s_calls.get());
+  }
+
+  /** results are not shared between memos, i.e. between scenario runs */
+  @Test
+  public void separateMemos() {
+    PvFn fn = createFunction();
+    RateImpl.s_calls.set(0);
+    fn.pv(environment(new ScenarioMemo(), 0.01, 0.02), USD_RATE);
+    fn.pv(environment(new ScenarioMemo(), 0.01, 0.02), USD_RATE);
+    assertEquals(2, RateImpl.s_calls.get());
+  }
+
+  /** a call isn't shared if a call it made failed, because the data read by the failed call is unknown */
+  @Test
+  public void nestedFailureNotShared() {
+    FunctionModelConfig config =
+        config(implementations(SafePvFn.class, SafePvImpl.class, StrictRateFn.class, StrictRateImpl.class));
+    SafePvFn fn = build(SafePvFn.class, config);
+    ScenarioMemo memo = new ScenarioMemo();
+    MarketDataEnvironment noEurRate = new MarketDataEnvironmentBuilder()
+        .add(USD_RATE, 0.01)
+        .valuationTime(VALUATION_TIME)
+        .build();
+    Environment missingData = new SimpleEnvironment(VALUATION_TIME, memo.wrap(noEurRate.toBundle()));
+
+    // the rate function throws and the PV function returns a failure, which mustn't be shared
+    assertFalse(fn.pv(missingData, EUR_RATE).isSuccess());
+    Result<Double> result = fn.pv(environment(memo, 0.01, 0.03), EUR_RATE);
+    assertTrue(result.isSuccess());
+    assertEquals(3d, result.getValue(), 1e-12);
+    assertEquals(0, memo.getHits());
+  }
+
+  /** data read at other times and dates and time series are compared between scenarios */
+  @Test
+  public void historicalData() {
+    FunctionModelConfig config =
+        config(implementations(HistoryPvFn.class, HistoryPvImpl.class, HistoryFn.class, HistoryImpl.class));
+    HistoryPvFn fn = build(HistoryPvFn.class, config);
+    ScenarioMemo memo = new ScenarioMemo();
+    HistoryImpl.s_calls.set(0);
+
+    assertEquals(6d, fn.total(historyEnvironment(memo, 1, 2, 3), USD_RATE).getValue(), 1e-12);
+    assertEquals(6d, fn.total(historyEnvironment(memo, 1, 2, 3), USD_RATE).getValue(), 1e-12);
+    assertEquals(1, HistoryImpl.s_calls.get());
+
+    // each of the items read by the function is different in one scenario
+    assertEquals(14d, fn.total(historyEnvironment(memo, 9, 2, 3), USD_RATE).getValue(), 1e-12);
+    assertEquals(13d, fn.total(historyEnvironment(memo, 1, 9, 3), USD_RATE).getValue(), 1e-12);
+    assertEquals(12d, fn.total(historyEnvironment(memo, 1, 2, 9), USD_RATE).getValue(), 1e-12);
+    assertEquals(4, HistoryImpl.s_calls.get());
+    assertEquals(1, memo.getHits());
+  }
+
+  /** the engine shares results between the scenarios of a run */
+  @Test
+  public void engineScenarioRun() {
+    ViewConfig viewConfig =
+        configureView(
+            "Scenario memo",
+            nonPortfolioOutput(
+                "USD PV",
+                output(
+                    "USD PV",
+                    config(implementations(UsdPvFn.class, UsdPvImpl.class, RateFn.class, RateImpl.class)))));
+    AvailableOutputs availableOutputs = new AvailableOutputsImpl();
+    availableOutputs.register(UsdPvFn.class);
+    ViewFactory viewFactory = new ViewFactory(new DirectExecutorService(),
+                                              ComponentMap.EMPTY,
+                                              availableOutputs,
+                                              new AvailableImplementationsImpl(),
+                                              FunctionModelConfig.EMPTY,
+                                              FunctionService.DEFAULT_SERVICES,
+                                              EngineTestUtils.createCacheBuilder(),
+                                              new NoOpCacheInvalidator(),
+                                              Optional.<MetricRegistry>absent());
+    DefaultEngine engine =
+        new DefaultEngine(viewFactory, mock(MarketDataEnvironmentFactory.class), new DirectExecutorService());
+    MapScenarioMarketDataEnvironment scenarioData = new MapScenarioMarketDataEnvironment(
+        ImmutableMap.of(
+            "base", marketData(0.01, 0.02),
+            "eurShifted", marketData(0.01, 0.03),
+            "usdShifted", marketData(0.02, 0.02)));
+    CalculationArguments calculationArguments = CalculationArguments.builder().valuationTime(VALUATION_TIME).build();
+    RateImpl.s_calls.set(0);
+
+    Map<String, Results> results =
+        engine.runScenarios(viewConfig, scenarioData, calculationArguments, ImmutableList.of()).getResults();
+    assertEquals(1d, (Double) results.get("base").get("USD PV").getResult().getValue(), 1e-12);
+    assertEquals(1d, (Double) results.get("eurShifted").get("USD PV").getResult().getValue(), 1e-12);
+    assertEquals(2d, (Double) results.get("usdShifted").get("USD PV").getResult().getValue(), 1e-12);
+    // the USD rate isn't perturbed in the EUR scenario so the rate from the base scenario is used
+    assertEquals(2, RateImpl.s_calls.get());
+  }
+
+  private PvFn createFunction() {
+    FunctionModelConfig config = config(implementations(PvFn.class, PvImpl.class, RateFn.class, RateImpl.class));
+    CachingProxyDecorator cachingDecorator = new CachingProxyDecorator(EngineTestUtils.createCacheProvider());
+    FunctionMetadata metadata = EngineUtils.createMetadata(PvFn.class, "pv");
+    FunctionModel functionModel = FunctionModel.forFunction(metadata, config, NO_COMPONENTS, cachingDecorator);
+    return (PvFn) functionModel.build(new FunctionBuilder(), ComponentMap.EMPTY).getReceiver();
+  }
+
+  private static <T> T build(Class<T> type, FunctionModelConfig config) {
+    CachingProxyDecorator cachingDecorator = new CachingProxyDecorator(EngineTestUtils.createCacheProvider());
+    FunctionMetadata metadata = EngineUtils.createMetadata(type, type.getDeclaredMethods()[0].getName());
+    FunctionModel functionModel = FunctionModel.forFunction(metadata, config, NO_COMPONENTS, cachingDecorator);
+    return type.cast(functionModel.build(new FunctionBuilder(), ComponentMap.EMPTY).getReceiver());
+  }
+
+  private static Environment historyEnvironment(ScenarioMemo memo,
+                                                double dateValue,
+                                                double timeValue,
+                                                double seriesValue) {
+    MarketDataEnvironment marketData = new MarketDataEnvironmentBuilder()
+        .add(USD_RATE, dateValue, HISTORY_DATE)
+        .add(USD_RATE, timeValue, HISTORY_TIME)
+        .add(USD_RATE, ImmutableLocalDateDoubleTimeSeries.of(HISTORY_DATE, seriesValue))
+        .valuationTime(VALUATION_TIME)
+        .build();
+    return new SimpleEnvironment(VALUATION_TIME, memo.wrap(marketData.toBundle()));
+  }
+
+  private static Environment environment(ScenarioMemo memo, double usdRate, double eurRate) {
+    return new SimpleEnvironment(VALUATION_TIME, memo.wrap(marketData(usdRate, eurRate).toBundle()));
+  }
+
+  private static MarketDataEnvironment marketData(double usdRate, double eurRate) {
+    return new MarketDataEnvironmentBuilder()
+        .add(USD_RATE, usdRate)
+        .add(EUR_RATE, eurRate)
+        .valuationTime(VALUATION_TIME)
+        .build();
+  }
+
+  /* package */ interface PvFn {
+
+    @Cacheable
+    @Output("PV")
+    Result<Double> pv(Environment env, RawId<Double> rateId);
+  }
+
+  public static class PvImpl implements PvFn {
+
+    private static final AtomicInteger s_calls = new AtomicInteger();
+
+    private final RateFn _rateFn;
+
+    public PvImpl(RateFn rateFn) {
+      _rateFn = rateFn;
+    }
+
+    @Override
+    public Result<Double> pv(Environment env, RawId<Double> rateId) {
+      s_calls.incrementAndGet();
+      return Result.success(_rateFn.rate(env, rateId).getValue() * 100);
+    }
+  }
+
+  /* package */ interface RateFn {
+
+    @Cacheable
+    Result<Double> rate(Environment env, RawId<Double> rateId);
+  }
+
+  public static class RateImpl implements RateFn {
+
+    private static final AtomicInteger s_calls = new AtomicInteger();
+
+    @Override
+    public Result<Double> rate(Environment env, RawId<Double> rateId) {
+      s_calls.incrementAndGet();
+      return env.getMarketDataBundle().get(rateId, Double.class);
+    }
+  }
+
+  public interface UsdPvFn {
+
+    @Cacheable
+    @Output("USD PV")
+    Result<Double> usdPv(Environment env);
+  }
+
+  public static class UsdPvImpl implements UsdPvFn {
+
+    private final RateFn _rateFn;
+
+    public UsdPvImpl(RateFn rateFn) {
+      _rateFn = rateFn;
+    }
+
+    @Override
+    public Result<Double> usdPv(Environment env) {
+      return Result.success(_rateFn.rate(env, USD_RATE).getValue() * 100);
+    }
+  }
+
+  /* package */ interface SafePvFn {
+
+    @Cacheable
+    Result<Double> pv(Environment env, RawId<Double> rateId);
+  }
+
+  public static class SafePvImpl implements SafePvFn {
+
+    private final StrictRateFn _rateFn;
+
+    public SafePvImpl(StrictRateFn rateFn) {
+      _rateFn = rateFn;
+    }
+
+    @Override
+    public Result<Double> pv(Environment env, RawId<Double> rateId) {
+      try {
+        return Result.success(_rateFn.rate(env, rateId) * 100);
+      } catch (RuntimeException e) {
+        return Result.failure(e);
+      }
+    }
+  }
+
+  /* package */ interface StrictRateFn {
+
+    @Cacheable
+    double rate(Environment env, RawId<Double> rateId);
+  }
+
+  public static class StrictRateImpl implements StrictRateFn {
+
+    @Override
+    public double rate(Environment env, RawId<Double> rateId) {
+      Result<Double> result = env.getMarketDataBundle().get(rateId, Double.class);
+
+      if (!result.isSuccess()) {
+        throw new IllegalStateException("No rate for " + rateId);
+      }
+      return result.getValue();
+    }
+  }
+
+  /* package */ interface HistoryPvFn {
+
+    @Cacheable
+    Result<Double> total(Environment env, RawId<Double> id);
+  }
+
+  public static class HistoryPvImpl implements HistoryPvFn {
+
+    private final HistoryFn _historyFn;
+
+    public HistoryPvImpl(HistoryFn historyFn) {
+      _historyFn = historyFn;
+    }
+
+    @Override
+    public Result<Double> total(Environment env, RawId<Double> id) {
+      return _historyFn.total(env, id);
+    }
+  }
+
+  /* package */ interface HistoryFn {
+
+    @Cacheable
+    Result<Double> total(Environment env, RawId<Double> id);
+  }
+
+  public static class HistoryImpl implements HistoryFn {
+
+    private static final AtomicInteger s_calls = new AtomicInteger();
+
+    @Override
+    public Result<Double> total(Environment env, RawId<Double> id) {
+      s_calls.incrementAndGet();
+      MarketDataBundle bundle = env.getMarketDataBundle();
+      double dateValue = bundle.withDate(HISTORY_DATE).get(id, Double.class).getValue();
+      double timeValue = bundle.withTime(HISTORY_TIME).get(id, Double.class).getValue();
+      DateTimeSeries<LocalDate, Double> series = bundle.get(id, Double.class, HISTORY_RANGE).getValue();
+      return Result.success(dateValue + timeValue + series.getLatestValue());
+    }
+  }
+}
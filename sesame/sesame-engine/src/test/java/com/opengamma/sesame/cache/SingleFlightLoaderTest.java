@@ -0,0 +1,183 @@
+/**
+ * Copyright (C) 2014 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.sesame.cache;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertSame;
+import static org.testng.AssertJUnit.fail;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.annotations.Test;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.opengamma.sesame.graph.FunctionId;
+import com.opengamma.util.test.TestGroup;
+
+@Test(groups = TestGroup.UNIT)
+public class SingleFlightLoaderTest {
+
+  /** check the first request calculates the value and later ones find it in the cache */
+  @Test
+  public void missThenHit() throws Exception {
+    SingleFlightLoader loader = new SingleFlightLoader();
+    Cache<Object, Object> cache = CacheBuilder.newBuilder().build();
+    CountingCallable callable = new CountingCallable();
+
+    Object value = loader.get(cache, "key", callable);
+    assertSame(value, loader.get(cache, "key", callable));
+    assertSame(value, cache.getIfPresent("key"));
+    assertEquals(1, callable._calls.get());
+    assertEquals(1, loader.getTotals().getMisses());
+    assertEquals(1, loader.getTotals().getHits());
+    assertEquals(0, loader.getTotals().getCoalesced());
+  }
+
+  /** check a thread requesting a value that another thread is calculating waits for it */
+  @Test
+  public void coalesced() throws Exception {
+    final SingleFlightLoader loader = new SingleFlightLoader();
+    final Cache<Object, Object> cache = CacheBuilder.newBuilder().build();
+    final CountDownLatch started = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    final CountingCallable callable = new CountingCallable() {
+      @Override
+      public Object call() throws Exception {
+        started.countDown();
+        release.await();
+        return super.call();
+      }
+    };
+    Callable<Object> request = new Callable<Object>() {
+      @Override
+      public Object call() throws Exception {
+        return loader.get(cache, "key", callable);
+      }
+    };
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      Future<Object> first = executor.submit(request);
+      started.await();
+      Future<Object> second = executor.submit(request);
+      // the count is incremented before the second thread starts waiting
+      while (loader.getTotals().getCoalesced() == 0) {
+        Thread.sleep(1);
+      }
+      release.countDown();
+      assertSame(first.get(), second.get());
+      assertEquals(1, callable._calls.get());
+      assertEquals(1, loader.getTotals().getMisses());
+      assertEquals(1, loader.getTotals().getCoalesced());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /** check a failure is reported and the value is calculated again next time */
+  @Test
+  public void failure() throws Exception {
+    SingleFlightLoader loader = new SingleFlightLoader();
+    Cache<Object, Object> cache = CacheBuilder.newBuilder().build();
+    try {
+      loader.get(cache, "key", new Callable<Object>() {
+        @Override
+        public Object call() {
+          throw new IllegalArgumentException();
+        }
+      });
+      fail();
+    } catch (UncheckedExecutionException e) {
+      assertEquals(IllegalArgumentException.class, e.getCause().getClass());
+    }
+    CountingCallable callable = new CountingCallable();
+    loader.get(cache, "key", callable);
+    assertEquals(1, callable._calls.get());
+  }
+
+  /** check a thread requesting a value it is already calculating fails instead of waiting for itself */
+  @Test
+  public void recursive() throws Exception {
+    final SingleFlightLoader loader = new SingleFlightLoader();
+    final Cache<Object, Object> cache = CacheBuilder.newBuilder().build();
+    try {
+      loader.get(cache, "key", new Callable<Object>() {
+        @Override
+        public Object call() throws Exception {
+          return loader.get(cache, "key", new CountingCallable());
+        }
+      });
+      fail();
+    } catch (UncheckedExecutionException e) {
+      assertEquals(IllegalStateException.class, e.getCause().getClass());
+    }
+  }
+
+  /** check requests for the same key in different caches aren't coalesced */
+  @Test
+  public void differentCaches() throws Exception {
+    final SingleFlightLoader loader = new SingleFlightLoader();
+    final Cache<Object, Object> cache2 = CacheBuilder.newBuilder().build();
+    final CountingCallable callable = new CountingCallable();
+    Object value = loader.get(CacheBuilder.newBuilder().build(), "key", new Callable<Object>() {
+      @Override
+      public Object call() throws Exception {
+        return loader.get(cache2, "key", callable);
+      }
+    });
+    assertSame(value, cache2.getIfPresent("key"));
+    assertEquals(2, loader.getTotals().getMisses());
+  }
+
+  /** check counts are kept for each function and method, but not for keys that aren't method invocations */
+  @Test
+  public void countsByMethod() throws Exception {
+    SingleFlightLoader loader = new SingleFlightLoader();
+    Cache<Object, Object> cache = CacheBuilder.newBuilder().build();
+    Method method = Object.class.getMethod("toString");
+    MethodInvocationKey key1 = new MethodInvocationKey(FunctionId.of(1), method, new Object[]{"a"});
+    MethodInvocationKey key2 = new MethodInvocationKey(FunctionId.of(1), method, new Object[]{"b"});
+    MethodInvocationKey key3 = new MethodInvocationKey(FunctionId.of(2), method, new Object[]{"a"});
+
+    loader.get(cache, key1, new CountingCallable());
+    loader.get(cache, key1, new CountingCallable());
+    loader.get(cache, key2, new CountingCallable());
+    loader.get(cache, key3, new CountingCallable());
+    loader.get(cache, "key", new CountingCallable());
+
+    Map<String, SingleFlightLoader.Counts> counts = loader.getCountsByMethod();
+    assertEquals(2, counts.size());
+    SingleFlightLoader.Counts function1Counts = counts.get("Object.toString() FunctionId [_id=1]");
+    assertEquals(2, function1Counts.getMisses());
+    assertEquals(1, function1Counts.getHits());
+    SingleFlightLoader.Counts function2Counts = counts.get("Object.toString() FunctionId [_id=2]");
+    assertEquals(1, function2Counts.getMisses());
+    assertEquals(0, function2Counts.getHits());
+    assertEquals(4, loader.getTotals().getMisses());
+
+    loader.clearCounts();
+    assertEquals(0, loader.getCountsByMethod().size());
+  }
+
+  private static class CountingCallable implements Callable<Object> {
+
+    private final AtomicInteger _calls = new AtomicInteger();
+
+    @Override
+    public Object call() throws Exception {
+      _calls.incrementAndGet();
+      return new Object();
+    }
+  }
+}
@@ -0,0 +1,131 @@
+/**
+ * Copyright (C) 2014 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.sesame.engine;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertNull;
+import static org.testng.AssertJUnit.assertTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.testng.annotations.Test;
+import org.threeten.bp.Instant;
+
+import com.google.common.collect.ImmutableList;
+import com.opengamma.util.money.Currency;
+import com.opengamma.util.money.CurrencyAmount;
+import com.opengamma.util.result.FailureStatus;
+import com.opengamma.util.result.Result;
+import com.opengamma.util.test.TestGroup;
+
+@Test(groups = TestGroup.UNIT)
+public class ColumnarResultsTest {
+
+  @Test
+  public void roundTrip() throws IOException {
+    Path path = Files.createTempFile("results", ".ogcr");
+    try {
+      try (OutputStream out = Files.newOutputStream(path);
+           ColumnarResultsWriter writer = new ColumnarResultsWriter(out)) {
+        writer.scenarioCompleted("base", results(1));
+        writer.scenarioCompleted("shifted", results(2));
+      }
+      try (ColumnarResultsReader reader = new ColumnarResultsReader(path)) {
+        assertEquals(ImmutableList.of("base", "shifted"), reader.getBlockNames());
+        int block = reader.getBlockIndex("shifted");
+        assertEquals(1, block);
+        assertEquals(3, reader.getRowCount(block));
+        assertEquals(ImmutableList.of("PV", "Amount", "Description"), reader.getColumnNames(block));
+        assertEquals("trade2", reader.getInput(block, 1));
+
+        // doubles
+        assertEquals(Result.success(40d), reader.get(block, 1, 0));
+        assertEquals(40d, reader.getDouble(block, 1, 0), 0);
+        assertEquals(FailureStatus.MISSING_DATA, reader.get(block, 2, 0).getStatus());
+        assertEquals("no data for trade3", reader.get(block, 2, 0).getFailureMessage());
+        assertTrue(Double.isNaN(reader.getDouble(block, 2, 0)));
+
+        // currency amounts
+        assertEquals(Result.success(CurrencyAmount.of(Currency.EUR, -3)), reader.get(block, 1, 1));
+        assertEquals(-3d, reader.getDouble(block, 1, 1), 0);
+
+        // strings
+        assertEquals(Result.success("desc {}"), reader.get(block, 0, 2));
+        assertTrue(Double.isNaN(reader.getDouble(block, 0, 2)));
+        assertNull(reader.get(block, 2, 2));
+
+        // the first block is independent of the second
+        assertEquals(20d, reader.getDouble(0, 1, 0), 0);
+      }
+    } finally {
+      Files.delete(path);
+    }
+  }
+
+  @Test
+  public void readResults() throws IOException {
+    Path path = Files.createTempFile("results", ".ogcr");
+    try {
+      try (OutputStream out = Files.newOutputStream(path)) {
+        new ViewResultsSerializer(results(1)).serializeViewOutputsColumnar(out);
+      }
+      try (ColumnarResultsReader reader = new ColumnarResultsReader(path)) {
+        Results results = reader.getResults(reader.getBlockIndex(ViewResultsSerializer.COLUMNAR_BLOCK_NAME));
+        assertEquals(ImmutableList.of("PV", "Amount", "Description"), results.getColumnNames());
+        assertEquals(3, results.getRows().size());
+        assertEquals("trade1", results.get(0).getInput());
+        assertEquals(20d, results.get(1, 0).getResult().getValue());
+        assertEquals(CurrencyAmount.of(Currency.USD, -3), results.get(2, 1).getResult().getValue());
+        assertFalse(results.get(2, 0).getResult().isSuccess());
+      }
+    } finally {
+      Files.delete(path);
+    }
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void incompleteFile() throws IOException {
+    Path path = Files.createTempFile("results", ".ogcr");
+    try {
+      try (OutputStream out = Files.newOutputStream(path)) {
+        // the writer isn't closed so the index isn't written
+        new ColumnarResultsWriter(out).write("base", results(1));
+        out.flush();
+      }
+      new ColumnarResultsReader(path);
+    } finally {
+      Files.delete(path);
+    }
+  }
+
+  /**
+   * Creates results with three rows and columns containing doubles, currency amounts and strings.
+   * The last row has a failure in the first column and no result in the last column.
+   */
+  private static Results results(int scenario) {
+    ImmutableList<String> inputs = ImmutableList.of("trade1", "trade2", "trade3");
+    ResultBuilder builder = new ResultBuilder(inputs, ImmutableList.of("PV", "Amount", "Description"));
+
+    for (int row = 0; row < 3; row++) {
+      if (row == 2) {
+        builder.add(row, 0, Result.failure(FailureStatus.MISSING_DATA, "no data for {}", inputs.get(row)), null);
+      } else {
+        builder.add(row, 0, Result.success(10d * scenario * (row + 1)), null);
+      }
+      Currency currency = row == 1 ? Currency.EUR : Currency.USD;
+      builder.add(row, 1, Result.success(CurrencyAmount.of(currency, -scenario - row)), null);
+
+      if (row != 2) {
+        builder.add(row, 2, Result.success("desc {}"), null);
+      }
+    }
+    return builder.build(Instant.EPOCH, 0, 0, 0);
+  }
+}
@@ -0,0 +1,234 @@
+/**
+ * Copyright (C) 2014 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.sesame.engine;
+
+import static com.opengamma.sesame.config.ConfigBuilder.configureView;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertSame;
+import static org.testng.AssertJUnit.assertTrue;
+import static org.testng.AssertJUnit.fail;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.opengamma.OpenGammaRuntimeException;
+import com.opengamma.sesame.config.ViewConfig;
+import com.opengamma.sesame.marketdata.MapScenarioMarketDataEnvironment;
+import com.opengamma.sesame.marketdata.MarketDataEnvironment;
+import com.opengamma.sesame.marketdata.ScenarioMarketDataEnvironment;
+import com.opengamma.sesame.marketdata.builders.MarketDataEnvironmentFactory;
+import com.opengamma.util.test.TestGroup;
+
+/**
+ * Tests {@link DefaultEngine} passing scenario results to a listener, using a fake view.
+ */
+@Test(groups = TestGroup.UNIT)
+public class DefaultEngineStreamingTest {
+
+  private static final int SCENARIO_COUNT = 20;
+  private static final int MAX_CONCURRENT_SCENARIOS = 3;
+  private static final ViewConfig VIEW_CONFIG = configureView("view");
+  private static final RuntimeException FAILURE = new IllegalStateException("scenario failed");
+
+  private ListeningExecutorService _executor;
+
+  @BeforeMethod
+  public void setUp() {
+    _executor = MoreExecutors.listeningDecorator(Executors.newFixedThreadPool(8));
+  }
+
+  @AfterMethod
+  public void tearDown() {
+    _executor.shutdownNow();
+  }
+
+  /**
+   * checks no more than the maximum number of scenarios run at once and every scenario's results reach the listener
+   */
+  @Test
+  public void concurrentScenarios() {
+    FakeView view = new FakeView(-1);
+    RecordingListener listener = new RecordingListener();
+    engine(view).runScenarios(
+        VIEW_CONFIG,
+        scenarioData(),
+        CalculationArguments.builder().build(),
+        Collections.emptyList(),
+        listener,
+        MAX_CONCURRENT_SCENARIOS);
+
+    assertEquals(SCENARIO_COUNT, listener._results.size());
+    assertTrue(view._maxRunning.get() <= MAX_CONCURRENT_SCENARIOS);
+    // the view takes long enough that the scenarios overlap
+    assertTrue(view._maxRunning.get() > 1);
+    assertEquals(1, listener._maxCalling.get());
+  }
+
+  /**
+   * checks a scenario that fails stops the run and its exception is thrown
+   */
+  @Test
+  public void failedScenario() {
+    FakeView view = new FakeView(5);
+    try {
+      engine(view).runScenarios(
+          VIEW_CONFIG,
+          scenarioData(),
+          CalculationArguments.builder().build(),
+          Collections.emptyList(),
+          new RecordingListener(),
+          MAX_CONCURRENT_SCENARIOS);
+      fail();
+    } catch (OpenGammaRuntimeException e) {
+      assertSame(FAILURE, e.getCause());
+    }
+    // the scenarios after the failure aren't started
+    assertTrue(view._started.get() < SCENARIO_COUNT);
+  }
+
+  /**
+   * checks an error thrown by the listener is thrown from the engine
+   */
+  @Test
+  public void failedListener() {
+    final AssertionError error = new AssertionError();
+    ScenarioResultsListener listener = new ScenarioResultsListener() {
+      @Override
+      public void scenarioCompleted(String scenarioName, Results results) {
+        throw error;
+      }
+    };
+    try {
+      engine(new FakeView(-1)).runScenarios(
+          VIEW_CONFIG,
+          scenarioData(),
+          CalculationArguments.builder().build(),
+          Collections.emptyList(),
+          listener,
+          MAX_CONCURRENT_SCENARIOS);
+      fail();
+    } catch (OpenGammaRuntimeException e) {
+      assertSame(error, e.getCause());
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private DefaultEngine engine(final FakeView view) {
+    View mockView = mock(View.class);
+    when(mockView.runAsync(any(CalculationArguments.class),
+                           any(MarketDataEnvironment.class),
+                           any(List.class))).thenAnswer(new Answer<ListenableFuture<Results>>() {
+      @Override
+      public ListenableFuture<Results> answer(InvocationOnMock invocation) throws Throwable {
+        return view.runAsync();
+      }
+    });
+    ViewFactory viewFactory = mock(ViewFactory.class);
+    when(viewFactory.createView(any(ViewConfig.class), any(Set.class))).thenReturn(mockView);
+    return new DefaultEngine(viewFactory, mock(MarketDataEnvironmentFactory.class), _executor);
+  }
+
+  private static ScenarioMarketDataEnvironment scenarioData() {
+    ImmutableMap.Builder<String, MarketDataEnvironment> builder = ImmutableMap.builder();
+
+    for (int i = 0; i < SCENARIO_COUNT; i++) {
+      builder.put(Integer.toString(i), mock(MarketDataEnvironment.class));
+    }
+    return new MapScenarioMarketDataEnvironment(builder.build());
+  }
+
+  /**
+   * Runs each scenario as a task that takes a few milliseconds, recording how many run at once.
+   */
+  private final class FakeView {
+
+    private final AtomicInteger _started = new AtomicInteger();
+    private final AtomicInteger _running = new AtomicInteger();
+    private final AtomicInteger _maxRunning = new AtomicInteger();
+    /** The index of the scenario that fails, -1 if they all succeed. */
+    private final int _failingScenario;
+
+    private FakeView(int failingScenario) {
+      _failingScenario = failingScenario;
+    }
+
+    private ListenableFuture<Results> runAsync() {
+      final int scenario = _started.getAndIncrement();
+
+      if (scenario == _failingScenario) {
+        return Futures.immediateFailedFuture(FAILURE);
+      }
+      return _executor.submit(new Callable<Results>() {
+        @Override
+        public Results call() throws Exception {
+          int running = _running.incrementAndGet();
+          updateMax(_maxRunning, running);
+          try {
+            Thread.sleep(10);
+          } finally {
+            _running.decrementAndGet();
+          }
+          return new Results(ImmutableList.<String>of(),
+                             ImmutableList.<ResultRow>of(),
+                             Collections.<String, ResultItem>emptyMap(),
+                             false,
+                             mock(ViewTimer.class));
+        }
+      });
+    }
+  }
+
+  /**
+   * Records the results passed to it and how many threads called it at once.
+   */
+  private static final class RecordingListener implements ScenarioResultsListener {
+
+    private final ConcurrentHashMap<String, Results> _results = new ConcurrentHashMap<>();
+    private final AtomicInteger _calling = new AtomicInteger();
+    private final AtomicInteger _maxCalling = new AtomicInteger();
+
+    @Override
+    public void scenarioCompleted(String scenarioName, Results results) {
+      updateMax(_maxCalling, _calling.incrementAndGet());
+      try {
+        Thread.sleep(2);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      } finally {
+        _calling.decrementAndGet();
+      }
+      _results.put(scenarioName, results);
+    }
+  }
+
+  private static void updateMax(AtomicInteger max, int value) {
+    int current = max.get();
+
+    while (value > current && !max.compareAndSet(current, value)) {
+      current = max.get();
+    }
+  }
+}
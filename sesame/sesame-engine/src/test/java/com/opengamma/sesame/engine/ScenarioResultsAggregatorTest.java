@@ -0,0 +1,153 @@
+/**
+ * Copyright (C) 2014 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.sesame.engine;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.testng.annotations.Test;
+import org.threeten.bp.Instant;
+
+import com.google.common.collect.ImmutableList;
+import com.opengamma.util.money.Currency;
+import com.opengamma.util.money.CurrencyAmount;
+import com.opengamma.util.result.FailureStatus;
+import com.opengamma.util.result.Result;
+import com.opengamma.util.test.TestGroup;
+
+@Test(groups = TestGroup.UNIT)
+public class ScenarioResultsAggregatorTest {
+
+  private static final double DELTA = 1e-12;
+
+  @Test
+  public void statistics() {
+    ScenarioResultsAggregator aggregator = ScenarioResultsAggregator.withExactQuantiles(0.5, 0.95);
+
+    for (int i = 1; i <= 20; i++) {
+      aggregator.scenarioCompleted(Integer.toString(i), results(i, CurrencyAmount.of(Currency.USD, -i)));
+    }
+    assertEquals(20, aggregator.getScenarioCount());
+    assertEquals(ImmutableList.of("col1", "col2"), aggregator.getColumnNames());
+    assertEquals(ImmutableList.of("input1", "input2"), aggregator.getInputs());
+
+    assertEquals(20, aggregator.getCount(0, 0));
+    assertEquals(210d, aggregator.getSum(0, 0), DELTA);
+    assertEquals(10.5, aggregator.getMean(0, 0), DELTA);
+    assertEquals(1d, aggregator.getMin(0, 0), DELTA);
+    assertEquals(20d, aggregator.getMax(0, 0), DELTA);
+    assertEquals(10d, aggregator.getQuantile(0, 0, 0.5), DELTA);
+    assertEquals(19d, aggregator.getQuantile(0, 0, 0.95), DELTA);
+
+    assertEquals(-210d, aggregator.getSum(0, 1), DELTA);
+    assertEquals(-20d, aggregator.getMin(0, 1), DELTA);
+    assertEquals(-2d, aggregator.getQuantile(0, 1, 0.95), DELTA);
+
+    // the failures aren't included
+    assertEquals(10, aggregator.getCount(1, 0));
+    assertEquals(110d, aggregator.getSum(1, 0), DELTA);
+    assertEquals(2d, aggregator.getMin(1, 0), DELTA);
+    assertEquals(10d, aggregator.getQuantile(1, 0, 0.5), DELTA);
+
+    // non-numeric values aren't included
+    assertEquals(0, aggregator.getCount(1, 1));
+    assertTrue(Double.isNaN(aggregator.getMean(1, 1)));
+    assertTrue(Double.isNaN(aggregator.getQuantile(1, 1, 0.5)));
+  }
+
+  @Test
+  public void estimatedQuantiles() {
+    ScenarioResultsAggregator aggregator = new ScenarioResultsAggregator(0, 0.05, 0.5, 0.99, 1);
+    List<Integer> scenarios = new ArrayList<>();
+
+    for (int i = 1; i <= 1000; i++) {
+      scenarios.add(i);
+    }
+    Collections.shuffle(scenarios, new Random(1));
+
+    for (int i = 0; i < 5; i++) {
+      aggregator.scenarioCompleted(Integer.toString(i), results(scenarios.get(i), 1d));
+    }
+    // the estimates are exact until there are more values than markers
+    int[] firstValues = {scenarios.get(0), scenarios.get(1), scenarios.get(2), scenarios.get(3), scenarios.get(4)};
+    Arrays.sort(firstValues);
+    assertEquals((double) firstValues[0], aggregator.getQuantile(0, 0, 0.05), DELTA);
+    assertEquals((double) firstValues[2], aggregator.getQuantile(0, 0, 0.5), DELTA);
+    assertEquals((double) firstValues[4], aggregator.getQuantile(0, 0, 0.99), DELTA);
+
+    for (int i = 5; i < scenarios.size(); i++) {
+      aggregator.scenarioCompleted(Integer.toString(i), results(scenarios.get(i), 1d));
+    }
+    assertEquals(1d, aggregator.getQuantile(0, 0, 0), DELTA);
+    assertEquals(50d, aggregator.getQuantile(0, 0, 0.05), 10);
+    assertEquals(500d, aggregator.getQuantile(0, 0, 0.5), 10);
+    assertEquals(990d, aggregator.getQuantile(0, 0, 0.99), 10);
+    assertEquals(1000d, aggregator.getQuantile(0, 0, 1), DELTA);
+    assertEquals(1d, aggregator.getQuantile(0, 1, 0.5), DELTA);
+  }
+
+  @Test
+  public void noQuantiles() {
+    ScenarioResultsAggregator aggregator = new ScenarioResultsAggregator();
+    aggregator.scenarioCompleted("1", results(1, 2d));
+    aggregator.scenarioCompleted("2", results(3, 4d));
+    assertEquals(2d, aggregator.getMean(0, 0), DELTA);
+    assertEquals(3d, aggregator.getMean(0, 1), DELTA);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void unknownQuantileLevel() {
+    ScenarioResultsAggregator aggregator = new ScenarioResultsAggregator(0.5);
+    aggregator.scenarioCompleted("1", results(1, 2d));
+    aggregator.getQuantile(0, 0, 0.99);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void invalidQuantileLevel() {
+    new ScenarioResultsAggregator(1.5);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void differentColumns() {
+    ScenarioResultsAggregator aggregator = new ScenarioResultsAggregator();
+    aggregator.scenarioCompleted("1", results(1, 2d));
+    ResultBuilder builder = new ResultBuilder(ImmutableList.of("input1", "input2"), ImmutableList.of("col1", "col3"));
+    builder.add(0, 0, Result.success(1d), null);
+    builder.add(0, 1, Result.success(1d), null);
+    builder.add(1, 0, Result.success(1d), null);
+    builder.add(1, 1, Result.success(1d), null);
+    aggregator.scenarioCompleted("2", builder.build(Instant.EPOCH, 0, 0, 0));
+  }
+
+  @Test(expectedExceptions = IllegalStateException.class)
+  public void noResults() {
+    new ScenarioResultsAggregator().getSum(0, 0);
+  }
+
+  /**
+   * Creates results with two rows and two columns. Row 1 column 1 fails for odd scenarios and row 1 column 2
+   * is never numeric.
+   */
+  private static Results results(int scenario, Object value) {
+    ResultBuilder builder = new ResultBuilder(ImmutableList.of("input1", "input2"), ImmutableList.of("col1", "col2"));
+    builder.add(0, 0, Result.success(scenario), null);
+    builder.add(0, 1, Result.success(value), null);
+
+    if (scenario % 2 == 0) {
+      builder.add(1, 0, Result.success((double) scenario), null);
+    } else {
+      builder.add(1, 0, Result.failure(FailureStatus.ERROR, "failed"), null);
+    }
+    builder.add(1, 1, Result.success("not a number"), null);
+    return builder.build(Instant.EPOCH, 0, 0, 0);
+  }
+}
@@ -42,8 +42,10 @@ import com.opengamma.sesame.function.AvailableImplementationsImpl;
 import com.opengamma.sesame.function.AvailableOutputs;
 import com.opengamma.sesame.function.AvailableOutputsImpl;
 import com.opengamma.sesame.function.Output;
+import com.opengamma.sesame.marketdata.EmptyMarketDataFactory;
 import com.opengamma.sesame.marketdata.MarketDataEnvironment;
 import com.opengamma.sesame.marketdata.MarketDataEnvironmentBuilder;
+import com.opengamma.sesame.marketdata.builders.MarketDataEnvironmentFactory;
 import com.opengamma.util.test.TestGroup;
 
 /**
@@ -308,10 +310,55 @@ public class ViewFactoryCacheTest {
     assertFalse(values1.get(0).equals(values2.get(0)));
   }
 
-  private ViewFactory createViewFactory(Class<?> function) {
+  /**
+   * tests that all views in a batch use the same cache, even if the cache is cleared while the batch is running.
+   * the first view clears the cache while calculating its value. the second view must still see that value.
+   */
+  @Test
+  public void clearCacheDuringBatch() {
+    ThreadLocalServiceContext.init(ServiceContext.of(ImmutableMap.<Class<?>, Object>of()));
+    ViewFactory viewFactory = createViewFactory(CacheClearingFn.class, RootFn.class);
+    FunctionModelConfig config =
+        config(implementations(CacheFn1.class, Impl1.class,
+                               CacheFn2.class, Impl2.class,
+                               RootFn.class, RootImpl.class),
+               arguments(function(CacheClearingFn.class, argument("viewFactory", viewFactory))));
+    ViewConfig viewConfig1 = configureView("view 1", config, column("Bar"));
+    ViewConfig viewConfig2 = configureView("view 2", config, column("Foo"));
+    DefaultEngine engine =
+        new DefaultEngine(viewFactory,
+                          new MarketDataEnvironmentFactory(new EmptyMarketDataFactory()),
+                          new DirectExecutorService());
+    CalculationArguments calculationArguments = CalculationArguments.builder().build();
+    MarketDataEnvironment marketDataEnvironment = MarketDataEnvironmentBuilder.empty();
+    Trade equityTrade = EngineTestUtils.createEquityTrade();
+
+    List<Results> results =
+        engine.runViews(ImmutableList.of(viewConfig1, viewConfig2),
+                        calculationArguments,
+                        marketDataEnvironment,
+                        ImmutableList.of(equityTrade));
+    assertEquals(2, results.size());
+    List<?> values1 = (List<?>) results.get(0).get(0, 0).getResult().getValue();
+    Object value2 = results.get(1).get(0, 0).getResult().getValue();
+    assertEquals(values1.get(0), values1.get(1));
+    assertEquals(values1.get(0), value2);
+
+    // the cache was cleared by the first batch so the next one recalculates the value
+    List<Results> nextResults =
+        engine.runViews(ImmutableList.of(viewConfig2),
+                        calculationArguments,
+                        marketDataEnvironment,
+                        ImmutableList.of(equityTrade));
+    assertFalse(value2.equals(nextResults.get(0).get(0, 0).getResult().getValue()));
+  }
+
+  private ViewFactory createViewFactory(Class<?>... functions) {
     AvailableOutputs availableOutputs = new AvailableOutputsImpl(String.class, EquitySecurity.class);
     AvailableImplementations availableImplementations = new AvailableImplementationsImpl();
-    availableOutputs.register(function);
+    for (Class<?> function : functions) {
+      availableOutputs.register(function);
+    }
     availableImplementations.register(AutomaticCaching.class);
     return new ViewFactory(new DirectExecutorService(),
                            ComponentMap.EMPTY,
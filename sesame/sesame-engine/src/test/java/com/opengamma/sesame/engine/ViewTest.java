@@ -29,6 +29,7 @@ import com.opengamma.service.ThreadLocalServiceContext;
 import com.opengamma.sesame.EngineTestUtils;
 import com.opengamma.sesame.Environment;
 import com.opengamma.sesame.cache.NoOpCacheInvalidator;
+import com.opengamma.sesame.cache.SingleFlightLoader;
 import com.opengamma.sesame.config.FunctionModelConfig;
 import com.opengamma.sesame.config.ViewConfig;
 import com.opengamma.sesame.function.AvailableImplementationsImpl;
@@ -150,6 +151,7 @@ public class ViewTest {
         EngineTestUtils.createCacheProvider(),
         CacheBuilder.newBuilder(),
         new NoOpCacheInvalidator(),
+        new SingleFlightLoader(),
         Optional.<MetricRegistry>absent()
     );
   }